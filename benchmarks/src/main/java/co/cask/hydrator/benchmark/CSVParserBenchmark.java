@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.benchmark;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.plugin.CSVParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link CSVParser#transform} on lines of comma separated values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CSVParserBenchmark {
+  private static final Schema INPUT = Schema.recordOf("input", Schema.Field.of("body", Schema.of(Schema.Type.STRING)));
+
+  @Param({"NARROW", "WIDE"})
+  public SchemaShape shape;
+
+  private final LastValueEmitter<StructuredRecord> emitter = new LastValueEmitter<>();
+  private CSVParser parser;
+  private StructuredRecord[] lines;
+  private int next;
+
+  @Setup
+  public void setup() throws Exception {
+    Schema schema = shape.getSchema();
+    parser = new CSVParser(new CSVParser.Config("DEFAULT", null, "body", schema.toString()));
+    parser.initialize(null);
+
+    StructuredRecord[] records = new RecordGenerator(schema).generate(RecordGenerator.RECORD_COUNT);
+    lines = new StructuredRecord[records.length];
+    for (int i = 0; i < records.length; i++) {
+      StringBuilder line = new StringBuilder();
+      for (Schema.Field field : schema.getFields()) {
+        if (line.length() > 0) {
+          line.append(',');
+        }
+        Object value = records[i].get(field.getName());
+        line.append(value == null ? "" : value);
+      }
+      lines[i] = StructuredRecord.builder(INPUT).set("body", line.toString()).build();
+    }
+  }
+
+  @Benchmark
+  public StructuredRecord transform() throws Exception {
+    parser.transform(lines[next++ & (lines.length - 1)], emitter);
+    return emitter.poll();
+  }
+}
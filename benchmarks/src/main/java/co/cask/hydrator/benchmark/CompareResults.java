@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.benchmark;
+
+import com.google.common.base.Charsets;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two runs of the benchmarks, written by JMH with {@code -rf json}. For every benchmark and parameters
+ * of the baseline run, it prints the score of both runs, the change of the score, and the memory allocated per
+ * operation when the runs were profiled with {@code -prof gc}. Changes larger than the sum of the errors of both
+ * scores are marked with a '*'.
+ *
+ * Usage: {@code CompareResults <baseline.json> <candidate.json>}
+ */
+public final class CompareResults {
+  private static final String ALLOC_METRIC = "gc.alloc.rate.norm";
+
+  private CompareResults() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("Usage: " + CompareResults.class.getName() + " <baseline.json> <candidate.json>");
+      System.exit(1);
+    }
+    Map<String, Result> baseline = read(new File(args[0]));
+    Map<String, Result> candidate = read(new File(args[1]));
+
+    System.out.println(String.format("%-60s %22s %22s %9s %24s", "Benchmark", "Baseline", "Candidate", "Change",
+                                     "Allocated (B/op)"));
+    for (Map.Entry<String, Result> entry : baseline.entrySet()) {
+      Result base = entry.getValue();
+      Result other = candidate.get(entry.getKey());
+      if (other == null) {
+        System.out.println(String.format("%-60s %22s %22s", entry.getKey(), base.format(), "missing"));
+        continue;
+      }
+      double change = base.score == 0 ? 0 : (other.score - base.score) / base.score * 100;
+      boolean significant = Math.abs(other.score - base.score) > base.error + other.error;
+      String allocated = base.allocated == null || other.allocated == null ? "" :
+        String.format("%.0f -> %.0f", base.allocated, other.allocated);
+      System.out.println(String.format("%-60s %22s %22s %+8.1f%%%s %23s", entry.getKey(), base.format(),
+                                       other.format(), change, significant ? "*" : " ", allocated));
+    }
+    for (String key : candidate.keySet()) {
+      if (!baseline.containsKey(key)) {
+        System.out.println(String.format("%-60s %22s %22s", key, "missing", candidate.get(key).format()));
+      }
+    }
+  }
+
+  /**
+   * Reads the results of a run, keyed by the benchmark name without its package, followed by its parameters.
+   */
+  private static Map<String, Result> read(File file) throws IOException {
+    Map<String, Result> results = new LinkedHashMap<>();
+    try (Reader reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8)) {
+      for (JsonElement element : new JsonParser().parse(reader).getAsJsonArray()) {
+        JsonObject benchmark = element.getAsJsonObject();
+        String name = benchmark.get("benchmark").getAsString();
+        StringBuilder key = new StringBuilder(name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1));
+        if (benchmark.has("params")) {
+          for (Map.Entry<String, JsonElement> param : benchmark.getAsJsonObject("params").entrySet()) {
+            key.append(' ').append(param.getKey()).append('=').append(param.getValue().getAsString());
+          }
+        }
+
+        JsonObject primary = benchmark.getAsJsonObject("primaryMetric");
+        Double allocated = null;
+        if (benchmark.has("secondaryMetrics")) {
+          for (Map.Entry<String, JsonElement> metric : benchmark.getAsJsonObject("secondaryMetrics").entrySet()) {
+            // JMH prefixes the names of the profiler metrics with a middle dot
+            if (metric.getKey().endsWith(ALLOC_METRIC)) {
+              allocated = metric.getValue().getAsJsonObject().get("score").getAsDouble();
+            }
+          }
+        }
+        results.put(key.toString(), new Result(primary.get("score").getAsDouble(),
+                                               errorOf(primary), primary.get("scoreUnit").getAsString(),
+                                               allocated));
+      }
+    }
+    return results;
+  }
+
+  private static double errorOf(JsonObject metric) {
+    JsonElement error = metric.get("scoreError");
+    // the error is "NaN" when there were not enough iterations to compute it
+    return error == null || !error.isJsonPrimitive() || !error.getAsJsonPrimitive().isNumber() ? 0 :
+      error.getAsDouble();
+  }
+
+  /**
+   * Score of a benchmark in one run.
+   */
+  private static final class Result {
+    private final double score;
+    private final double error;
+    private final String unit;
+    private final Double allocated;
+
+    private Result(double score, double error, String unit, Double allocated) {
+      this.score = score;
+      this.error = error;
+      this.unit = unit;
+      this.allocated = allocated;
+    }
+
+    private String format() {
+      return String.format("%.1f +- %.1f %s", score, error, unit);
+    }
+  }
+}
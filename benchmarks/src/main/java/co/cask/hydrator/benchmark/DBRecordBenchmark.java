@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.benchmark;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.plugin.DBRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link DBRecord#readFields(ResultSet)} over the rows of an in-memory HSQLDB table. The query is run
+ * again whenever all of its rows have been read.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DBRecordBenchmark {
+  private static final int ROWS = 10000;
+  private static final String TABLE = "benchmark";
+
+  @Param({"NARROW", "WIDE"})
+  public SchemaShape shape;
+
+  private Connection connection;
+  private Statement statement;
+  private ResultSet resultSet;
+  private DBRecord record;
+
+  @Setup
+  public void setup() throws Exception {
+    Class.forName("org.hsqldb.jdbc.JDBCDriver");
+    connection = DriverManager.getConnection("jdbc:hsqldb:mem:" + shape.name().toLowerCase(), "SA", "");
+    Schema schema = shape.getSchema();
+    List<Schema.Field> fields = schema.getFields();
+
+    StringBuilder create = new StringBuilder("CREATE TABLE \"").append(TABLE).append("\" (");
+    StringBuilder insert = new StringBuilder("INSERT INTO \"").append(TABLE).append("\" VALUES (");
+    for (int i = 0; i < fields.size(); i++) {
+      Schema.Field field = fields.get(i);
+      create.append(i == 0 ? "" : ", ").append('"').append(field.getName()).append("\" ")
+        .append(columnType(field.getSchema()));
+      insert.append(i == 0 ? "?" : ", ?");
+    }
+    try (Statement stmt = connection.createStatement()) {
+      stmt.execute(create.append(')').toString());
+    }
+
+    RecordGenerator generator = new RecordGenerator(schema);
+    try (PreparedStatement stmt = connection.prepareStatement(insert.append(')').toString())) {
+      for (int row = 0; row < ROWS; row++) {
+        StructuredRecord values = generator.next();
+        for (int i = 0; i < fields.size(); i++) {
+          Schema.Field field = fields.get(i);
+          Object value = values.get(field.getName());
+          if (value == null) {
+            stmt.setNull(i + 1, sqlType(field.getSchema()));
+          } else {
+            stmt.setObject(i + 1, value);
+          }
+        }
+        stmt.addBatch();
+      }
+      stmt.executeBatch();
+    }
+
+    record = new DBRecord();
+    record.setConf(new Configuration());
+    statement = connection.createStatement();
+    resultSet = statement.executeQuery("SELECT * FROM \"" + TABLE + "\"");
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    resultSet.close();
+    statement.close();
+    try (Statement stmt = connection.createStatement()) {
+      stmt.execute("DROP TABLE \"" + TABLE + "\"");
+    }
+    connection.close();
+  }
+
+  @Benchmark
+  public StructuredRecord readFields() throws SQLException {
+    if (!resultSet.next()) {
+      resultSet.close();
+      resultSet = statement.executeQuery("SELECT * FROM \"" + TABLE + "\"");
+      resultSet.next();
+    }
+    record.readFields(resultSet);
+    return record.getRecord();
+  }
+
+  private static String columnType(Schema schema) {
+    switch (schema.isNullable() ? schema.getNonNullable().getType() : schema.getType()) {
+      case BOOLEAN:
+        return "BOOLEAN";
+      case INT:
+        return "INTEGER";
+      case LONG:
+        return "BIGINT";
+      case DOUBLE:
+        return "DOUBLE";
+      case STRING:
+        return "VARCHAR(64)";
+      default:
+        throw new IllegalArgumentException("Unsupported column schema " + schema);
+    }
+  }
+
+  private static int sqlType(Schema schema) {
+    switch (schema.isNullable() ? schema.getNonNullable().getType() : schema.getType()) {
+      case BOOLEAN:
+        return Types.BOOLEAN;
+      case INT:
+        return Types.INTEGER;
+      case LONG:
+        return Types.BIGINT;
+      case DOUBLE:
+        return Types.DOUBLE;
+      case STRING:
+        return Types.VARCHAR;
+      default:
+        throw new IllegalArgumentException("Unsupported column schema " + schema);
+    }
+  }
+}
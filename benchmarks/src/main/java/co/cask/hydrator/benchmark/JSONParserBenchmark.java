@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.benchmark;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.format.StructuredRecordStringConverter;
+import co.cask.hydrator.plugin.JSONParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link JSONParser#transform}, both when the whole document is mapped to the output schema and when
+ * a few fields are extracted with JSON paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JSONParserBenchmark {
+  private static final Schema INPUT = Schema.recordOf("input", Schema.Field.of("body", Schema.of(Schema.Type.STRING)));
+  private static final Schema PATHS = Schema.recordOf(
+    "paths",
+    Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)));
+
+  @Param({"NARROW", "WIDE", "NESTED"})
+  public SchemaShape shape;
+
+  private final LastValueEmitter<StructuredRecord> emitter = new LastValueEmitter<>();
+  private JSONParser parser;
+  private JSONParser pathParser;
+  private StructuredRecord[] documents;
+  private int next;
+
+  @Setup
+  public void setup() throws Exception {
+    Schema schema = shape.getSchema();
+    parser = new JSONParser(new JSONParser.Config("body", null, schema.toString()));
+    parser.initialize(null);
+    pathParser = new JSONParser(new JSONParser.Config("body", "id:$.id,name:$.name,score:$.score",
+                                                      PATHS.toString()));
+    pathParser.initialize(null);
+
+    StructuredRecord[] records = new RecordGenerator(schema).generate(RecordGenerator.RECORD_COUNT);
+    documents = new StructuredRecord[records.length];
+    for (int i = 0; i < records.length; i++) {
+      String json = StructuredRecordStringConverter.toJsonString(records[i]);
+      documents[i] = StructuredRecord.builder(INPUT).set("body", json).build();
+    }
+  }
+
+  @Benchmark
+  public StructuredRecord parse() throws Exception {
+    parser.transform(documents[next++ & (documents.length - 1)], emitter);
+    return emitter.poll();
+  }
+
+  @Benchmark
+  public StructuredRecord parsePaths() throws Exception {
+    pathParser.transform(documents[next++ & (documents.length - 1)], emitter);
+    return emitter.poll();
+  }
+}
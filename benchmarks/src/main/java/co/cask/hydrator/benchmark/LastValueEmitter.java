@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.benchmark;
+
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.InvalidEntry;
+
+/**
+ * {@link Emitter} that only keeps the last value emitted. Benchmarks return that value, so that JMH consumes it
+ * and the work that produced it cannot be eliminated, without allocating anything per record.
+ *
+ * @param <T> the type of the values emitted
+ */
+public final class LastValueEmitter<T> implements Emitter<T> {
+  private T last;
+  private long errors;
+
+  @Override
+  public void emit(T value) {
+    last = value;
+  }
+
+  @Override
+  public void emitError(InvalidEntry<T> invalidEntry) {
+    errors++;
+  }
+
+  /**
+   * @return the last value emitted since the previous call, or null if nothing was emitted
+   */
+  public T poll() {
+    T value = last;
+    last = null;
+    return value;
+  }
+
+  /**
+   * @return the number of errors emitted so far
+   */
+  public long getErrors() {
+    return errors;
+  }
+}
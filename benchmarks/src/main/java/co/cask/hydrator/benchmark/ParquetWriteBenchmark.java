@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.benchmark;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.plugin.common.StructuredRecordWriteSupport;
+import co.cask.hydrator.plugin.common.StructuredToAvroTransformer;
+import com.google.common.io.Files;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import parquet.avro.AvroParquetWriter;
+import parquet.column.ParquetProperties;
+import parquet.hadoop.ParquetWriter;
+import parquet.hadoop.metadata.CompressionCodecName;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares writing records to Parquet with the {@link StructuredRecordWriteSupport} to converting them to Avro
+ * first and writing them with the {@link AvroParquetWriter}. Files are not compressed, so that the benchmark
+ * measures the conversion and encoding of the records rather than the codec. A new file is written for every
+ * iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParquetWriteBenchmark {
+
+  @Param({"NARROW", "WIDE", "NESTED"})
+  public SchemaShape shape;
+
+  private StructuredRecord[] records;
+  private StructuredToAvroTransformer transformer;
+  private org.apache.avro.Schema avroSchema;
+  private Configuration conf;
+  private File dir;
+  private ParquetWriter<StructuredRecord> directWriter;
+  private AvroParquetWriter<GenericRecord> avroWriter;
+  private int next;
+
+  @Setup
+  public void setup() {
+    Schema schema = shape.getSchema();
+    records = new RecordGenerator(schema).generate(RecordGenerator.RECORD_COUNT);
+    transformer = new StructuredToAvroTransformer(schema.toString());
+    avroSchema = new org.apache.avro.Schema.Parser().parse(schema.toString());
+    conf = new Configuration();
+    conf.set(StructuredRecordWriteSupport.SCHEMA, schema.toString());
+  }
+
+  @Setup(Level.Iteration)
+  public void openWriters() throws IOException {
+    dir = Files.createTempDir();
+    directWriter = new ParquetWriter<>(new Path(new File(dir, "direct.parquet").toURI()),
+                                       new StructuredRecordWriteSupport(), CompressionCodecName.UNCOMPRESSED,
+                                       ParquetWriter.DEFAULT_BLOCK_SIZE, ParquetWriter.DEFAULT_PAGE_SIZE,
+                                       ParquetWriter.DEFAULT_PAGE_SIZE, true, false,
+                                       ParquetProperties.WriterVersion.PARQUET_1_0, conf);
+    avroWriter = new AvroParquetWriter<>(new Path(new File(dir, "avro.parquet").toURI()), avroSchema);
+  }
+
+  @TearDown(Level.Iteration)
+  public void closeWriters() throws IOException {
+    try {
+      directWriter.close();
+      avroWriter.close();
+    } finally {
+      File[] files = dir.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          file.delete();
+        }
+      }
+      dir.delete();
+    }
+  }
+
+  @Benchmark
+  public void direct() throws IOException {
+    directWriter.write(records[next++ & (records.length - 1)]);
+  }
+
+  @Benchmark
+  public void avro() throws IOException {
+    avroWriter.write(transformer.transform(records[next++ & (records.length - 1)]));
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.benchmark;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.hydrator.plugin.transform.ProjectionTransform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link ProjectionTransform#transform} dropping, renaming and converting a field each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionTransformBenchmark {
+
+  @Param({"NARROW", "WIDE", "NESTED"})
+  public SchemaShape shape;
+
+  private final LastValueEmitter<StructuredRecord> emitter = new LastValueEmitter<>();
+  private ProjectionTransform transform;
+  private StructuredRecord[] records;
+  private int next;
+
+  @Setup
+  public void setup() throws Exception {
+    transform = new ProjectionTransform(new ProjectionTransform.ProjectionTransformConfig(
+      "active", "name:label", "count:long", null));
+    transform.initialize(null);
+    records = new RecordGenerator(shape.getSchema()).generate(RecordGenerator.RECORD_COUNT);
+  }
+
+  @Benchmark
+  public StructuredRecord transform() {
+    transform.transform(records[next++ & (records.length - 1)], emitter);
+    return emitter.poll();
+  }
+}
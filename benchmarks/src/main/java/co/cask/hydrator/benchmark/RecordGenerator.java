@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.benchmark;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates random records of a schema. The records only depend on the schema and the seed, so two runs of a
+ * benchmark, possibly on two versions of a plugin, process exactly the same data.
+ *
+ * Strings are picked from a vocabulary of random words, so that values repeat as they do in real data. Nullable
+ * fields are null one time out of ten, and arrays and maps hold up to four elements.
+ */
+public final class RecordGenerator {
+  public static final long DEFAULT_SEED = 42L;
+  /**
+   * Number of distinct records the benchmarks cycle through. It is a power of two, so that the next record can
+   * be picked with a mask.
+   */
+  public static final int RECORD_COUNT = 1024;
+
+  private static final int VOCABULARY_SIZE = 1024;
+  private static final int MAX_COLLECTION_SIZE = 5;
+
+  private final Schema schema;
+  private final Random random;
+  private final String[] vocabulary;
+
+  public RecordGenerator(Schema schema) {
+    this(schema, DEFAULT_SEED);
+  }
+
+  public RecordGenerator(Schema schema, long seed) {
+    this.schema = schema;
+    this.random = new Random(seed);
+    this.vocabulary = new String[VOCABULARY_SIZE];
+    for (int i = 0; i < VOCABULARY_SIZE; i++) {
+      char[] word = new char[4 + random.nextInt(9)];
+      for (int j = 0; j < word.length; j++) {
+        word[j] = (char) ('a' + random.nextInt(26));
+      }
+      vocabulary[i] = new String(word);
+    }
+  }
+
+  /**
+   * @return the next record
+   */
+  public StructuredRecord next() {
+    return record(schema);
+  }
+
+  /**
+   * @return an array of the given number of records
+   */
+  public StructuredRecord[] generate(int count) {
+    StructuredRecord[] records = new StructuredRecord[count];
+    for (int i = 0; i < count; i++) {
+      records[i] = next();
+    }
+    return records;
+  }
+
+  private StructuredRecord record(Schema recordSchema) {
+    StructuredRecord.Builder builder = StructuredRecord.builder(recordSchema);
+    for (Schema.Field field : recordSchema.getFields()) {
+      builder.set(field.getName(), value(field.getSchema()));
+    }
+    return builder.build();
+  }
+
+  private Object value(Schema valueSchema) {
+    if (valueSchema.isNullable()) {
+      if (random.nextInt(10) == 0) {
+        return null;
+      }
+      valueSchema = valueSchema.getNonNullable();
+    }
+    switch (valueSchema.getType()) {
+      case NULL:
+        return null;
+      case BOOLEAN:
+        return random.nextBoolean();
+      case INT:
+        return random.nextInt(1000000);
+      case LONG:
+        return random.nextLong();
+      case FLOAT:
+        return random.nextFloat() * 1000;
+      case DOUBLE:
+        return random.nextDouble() * 1000;
+      case BYTES:
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        return bytes;
+      case STRING:
+        return vocabulary[random.nextInt(VOCABULARY_SIZE)];
+      case ENUM:
+        List<String> symbols = new ArrayList<>(valueSchema.getEnumValues());
+        return symbols.get(random.nextInt(symbols.size()));
+      case ARRAY:
+        int length = random.nextInt(MAX_COLLECTION_SIZE);
+        List<Object> array = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+          array.add(value(valueSchema.getComponentSchema()));
+        }
+        return array;
+      case MAP:
+        int size = random.nextInt(MAX_COLLECTION_SIZE);
+        Map<Object, Object> map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+          map.put(value(valueSchema.getMapSchema().getKey()), value(valueSchema.getMapSchema().getValue()));
+        }
+        return map;
+      case RECORD:
+        return record(valueSchema);
+      default:
+        throw new IllegalArgumentException("Unsupported type " + valueSchema.getType());
+    }
+  }
+}
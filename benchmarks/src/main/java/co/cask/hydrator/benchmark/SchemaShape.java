@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.benchmark;
+
+import co.cask.cdap.api.data.schema.Schema;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shapes of the synthetic records used by the benchmarks.
+ */
+public enum SchemaShape {
+  /**
+   * A handful of primitive fields.
+   */
+  NARROW,
+  /**
+   * One hundred primitive fields, every other one nullable.
+   */
+  WIDE,
+  /**
+   * The narrow fields, plus a nested record, arrays and a map.
+   */
+  NESTED;
+
+  private static final int WIDE_FIELDS = 100;
+
+  private static final Schema.Type[] WIDE_TYPES = {
+    Schema.Type.STRING, Schema.Type.LONG, Schema.Type.DOUBLE, Schema.Type.INT, Schema.Type.BOOLEAN
+  };
+
+  private static final Schema ADDRESS = Schema.recordOf(
+    "address",
+    Schema.Field.of("street", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("city", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("zip", Schema.of(Schema.Type.INT)));
+
+  private static final Schema EVENT = Schema.recordOf(
+    "event",
+    Schema.Field.of("ts", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("type", Schema.of(Schema.Type.STRING)));
+
+  /**
+   * @return the schema of the records of this shape
+   */
+  public Schema getSchema() {
+    List<Schema.Field> fields = narrowFields();
+    switch (this) {
+      case WIDE:
+        for (int i = fields.size(); i < WIDE_FIELDS; i++) {
+          Schema schema = Schema.of(WIDE_TYPES[i % WIDE_TYPES.length]);
+          fields.add(Schema.Field.of("c" + i, i % 2 == 0 ? schema : Schema.nullableOf(schema)));
+        }
+        break;
+      case NESTED:
+        fields.add(Schema.Field.of("address", Schema.nullableOf(ADDRESS)));
+        fields.add(Schema.Field.of("tags", Schema.arrayOf(Schema.of(Schema.Type.STRING))));
+        fields.add(Schema.Field.of("attributes", Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                                              Schema.of(Schema.Type.STRING))));
+        fields.add(Schema.Field.of("events", Schema.arrayOf(EVENT)));
+        break;
+      default:
+        break;
+    }
+    return Schema.recordOf(name().toLowerCase(), fields);
+  }
+
+  private static List<Schema.Field> narrowFields() {
+    List<Schema.Field> fields = new ArrayList<>();
+    fields.add(Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+    fields.add(Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+    fields.add(Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)));
+    fields.add(Schema.Field.of("count", Schema.of(Schema.Type.INT)));
+    fields.add(Schema.Field.of("active", Schema.nullableOf(Schema.of(Schema.Type.BOOLEAN))));
+    return fields;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.aggregator;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.hydrator.benchmark.LastValueEmitter;
+import co.cask.hydrator.benchmark.RecordGenerator;
+import co.cask.hydrator.benchmark.SchemaShape;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link GroupByAggregator#groupBy} per record and {@link GroupByAggregator#aggregate} over groups of
+ * {@value #GROUP_SIZE} records, so that both report records per second. It is in the package of the aggregator to
+ * be able to create its config.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupByAggregatorBenchmark {
+  private static final int GROUP_SIZE = 128;
+  private static final int GROUPS = RecordGenerator.RECORD_COUNT / GROUP_SIZE;
+
+  @Param({"NARROW", "WIDE", "NESTED"})
+  public SchemaShape shape;
+
+  private final LastValueEmitter<StructuredRecord> emitter = new LastValueEmitter<>();
+  private GroupByAggregator aggregator;
+  private StructuredRecord[] records;
+  private StructuredRecord[] groupKeys;
+  private List<List<StructuredRecord>> groups;
+  private int next;
+
+  @Setup
+  public void setup() throws Exception {
+    aggregator = new GroupByAggregator(new GroupByConfig(
+      "name", "total:sum(count),average:avg(score),largest:max(id),records:count(*),first:first(active)"));
+    aggregator.initialize(null);
+    records = new RecordGenerator(shape.getSchema()).generate(RecordGenerator.RECORD_COUNT);
+
+    groupKeys = new StructuredRecord[GROUPS];
+    groups = new ArrayList<>(GROUPS);
+    List<StructuredRecord> all = Arrays.asList(records);
+    for (int i = 0; i < GROUPS; i++) {
+      aggregator.groupBy(records[i * GROUP_SIZE], emitter);
+      groupKeys[i] = emitter.poll();
+      groups.add(all.subList(i * GROUP_SIZE, (i + 1) * GROUP_SIZE));
+    }
+  }
+
+  @Benchmark
+  public StructuredRecord groupBy() throws Exception {
+    aggregator.groupBy(records[next++ & (records.length - 1)], emitter);
+    return emitter.poll();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(GROUP_SIZE)
+  public StructuredRecord aggregate() throws Exception {
+    int group = next++ % GROUPS;
+    aggregator.aggregate(groupKeys[group], groups.get(group).iterator(), emitter);
+    return emitter.poll();
+  }
+}
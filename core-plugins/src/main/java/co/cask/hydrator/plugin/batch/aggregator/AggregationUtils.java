@@ -18,6 +18,8 @@ package co.cask.hydrator.plugin.batch.aggregator;
 
 import co.cask.cdap.api.data.schema.Schema;
 
+import java.nio.ByteBuffer;
+
 /**
  * Common functions for aggregation related functionalities.
  */
@@ -35,4 +37,19 @@ public final class AggregationUtils {
       fieldType == Schema.Type.FLOAT || fieldType == Schema.Type.DOUBLE;
   }
 
+  /**
+   * Returns the content of a bytes field value, which can either be a byte array or a {@link ByteBuffer}.
+   * @param value value of the bytes field.
+   * @return the bytes of the value.
+   */
+  public static byte[] toBytes(Object value) {
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+    }
+    return (byte[]) value;
+  }
+
 }
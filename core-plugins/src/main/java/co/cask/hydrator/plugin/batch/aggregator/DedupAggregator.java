@@ -27,10 +27,16 @@ import co.cask.cdap.etl.api.StageConfigurer;
 import co.cask.cdap.etl.api.batch.BatchAggregator;
 import co.cask.cdap.etl.api.batch.BatchRuntimeContext;
 import co.cask.hydrator.plugin.batch.aggregator.function.SelectionFunction;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
+import javax.annotation.Nullable;
 import javax.ws.rs.Path;
 
 /**
@@ -41,9 +47,17 @@ import javax.ws.rs.Path;
 @Description("Deduplicates input records, optionally restricted to one or more fields. Takes an optional " +
   "filter function to choose one or more records based on a specific field and a selection function.")
 public class DedupAggregator extends RecordAggregator {
+  private static final Preselection ANY_RECORD = new Preselection(0, true);
   private final DedupConfig dedupConfig;
   private List<String> uniqueFields;
   private DedupConfig.DedupFunctionInfo filterFunction;
+  // records that cannot be chosen are dropped before the shuffle, based on the records of the group read so far
+  private Cache<List<Object>, Preselection> preselections;
+  // schemas derived from the last input schema seen, since all records usually have the same schema
+  private Schema groupKeyInputSchema;
+  private Schema groupKeySchema;
+  private Schema dedupInputSchema;
+  private Schema dedupSchema;
 
   public DedupAggregator(DedupConfig dedupConfig) {
     super(dedupConfig.numPartitions);
@@ -52,6 +66,7 @@ public class DedupAggregator extends RecordAggregator {
 
   @Override
   public void configurePipeline(PipelineConfigurer pipelineConfigurer) {
+    dedupConfig.validate();
     List<String> uniqueFields = dedupConfig.getUniqueFields();
     DedupConfig.DedupFunctionInfo functionInfo = dedupConfig.getFilter();
     if (functionInfo != null) {
@@ -77,16 +92,29 @@ public class DedupAggregator extends RecordAggregator {
   public void initialize(BatchRuntimeContext context) throws Exception {
     uniqueFields = dedupConfig.getUniqueFields();
     filterFunction = dedupConfig.getFilter();
+    int preselectionCacheSize = dedupConfig.getPreselectionCacheSize();
+    // first and last depend on the order in which the records of a group are read after the shuffle
+    if (preselectionCacheSize > 0 && (filterFunction == null || filterFunction.getFunction().isNumberSelection())) {
+      preselections = CacheBuilder.newBuilder().maximumSize(preselectionCacheSize).build();
+    }
   }
 
   @Override
   public void groupBy(StructuredRecord record, Emitter<StructuredRecord> emitter) throws Exception {
+    if (preselections != null && !preselect(record)) {
+      return;
+    }
     if (uniqueFields == null) {
       emitter.emit(record);
       return;
     }
 
-    StructuredRecord.Builder builder = StructuredRecord.builder(getGroupKeySchema(record.getSchema()));
+    Schema inputSchema = record.getSchema();
+    if (!inputSchema.equals(groupKeyInputSchema)) {
+      groupKeySchema = getGroupKeySchema(inputSchema);
+      groupKeyInputSchema = inputSchema;
+    }
+    StructuredRecord.Builder builder = StructuredRecord.builder(groupKeySchema);
     for (String fieldName : uniqueFields) {
       builder.set(fieldName, record.get(fieldName));
     }
@@ -116,8 +144,12 @@ public class DedupAggregator extends RecordAggregator {
 
       List<StructuredRecord> outputRecords = selectionFunction.getSelectedRecords();
       for (StructuredRecord outputRecord : outputRecords) {
-        Schema outputSchema = getOutputSchema(outputRecord.getSchema());
-        StructuredRecord.Builder builder = StructuredRecord.builder(outputSchema);
+        Schema inputSchema = outputRecord.getSchema();
+        if (!inputSchema.equals(dedupInputSchema)) {
+          dedupSchema = getOutputSchema(inputSchema);
+          dedupInputSchema = inputSchema;
+        }
+        StructuredRecord.Builder builder = StructuredRecord.builder(dedupSchema);
         for (Schema.Field field : outputRecord.getSchema().getFields()) {
           builder.set(field.getName(), outputRecord.get(field.getName()));
         }
@@ -131,6 +163,41 @@ public class DedupAggregator extends RecordAggregator {
     return getOutputSchema(request.inputSchema);
   }
 
+  /**
+   * Returns whether the record can still be chosen, given the records of its group read so far by this task.
+   */
+  private boolean preselect(StructuredRecord record) {
+    List<Object> groupKey = new ArrayList<>();
+    if (uniqueFields == null || uniqueFields.isEmpty()) {
+      for (Schema.Field field : record.getSchema().getFields()) {
+        groupKey.add(toKeyValue(record.get(field.getName())));
+      }
+    } else {
+      for (String fieldName : uniqueFields) {
+        groupKey.add(toKeyValue(record.get(fieldName)));
+      }
+    }
+
+    if (filterFunction == null) {
+      // any record of the group can be chosen, so only the first one read needs to be shuffled
+      return preselections.asMap().putIfAbsent(groupKey, ANY_RECORD) == null;
+    }
+    Preselection preselection = preselections.getIfPresent(groupKey);
+    if (preselection == null) {
+      preselection = new Preselection(filterFunction.getSelectionSize(),
+                                      filterFunction.getFunction() == DedupConfig.Function.MAX);
+      preselections.put(groupKey, preselection);
+    }
+    // records without a value are never chosen by max or min
+    Object value = record.get(filterFunction.getField());
+    return value != null && preselection.offer((Comparable) value);
+  }
+
+  private static Object toKeyValue(@Nullable Object value) {
+    // arrays do not implement equals and hashCode
+    return value instanceof byte[] ? ByteBuffer.wrap((byte[]) value) : value;
+  }
+
   private Schema getGroupKeySchema(Schema inputSchema) {
     List<Schema.Field> fields = new ArrayList<>();
     for (String fieldName : dedupConfig.getUniqueFields()) {
@@ -148,6 +215,48 @@ public class DedupAggregator extends RecordAggregator {
     return Schema.recordOf(inputSchema.getRecordName() + ".dedup", inputSchema.getFields());
   }
 
+  /**
+   * The best values of the filter field read so far for a group. A record is dropped if its value is worse than
+   * all of them, since those records will be chosen over it. Records tied with the worst value are kept, as the
+   * tie policy is only applied after the shuffle.
+   */
+  private static final class Preselection {
+    private final int size;
+    private final boolean largest;
+    private final PriorityQueue<Comparable> values;
+
+    private Preselection(int size, boolean largest) {
+      this.size = size;
+      this.largest = largest;
+      // the head of the queue is the worst value
+      this.values = new PriorityQueue<>(Math.min(size, 1024) + 1,
+                                        largest ? null : Collections.<Comparable>reverseOrder());
+    }
+
+    /**
+     * Returns whether a record with the given value can still be chosen, and adds the value to the best values.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean offer(Comparable value) {
+      if (values.size() < size) {
+        values.add(value);
+        return true;
+      }
+      int cmp = value.compareTo(values.peek());
+      if (!largest) {
+        cmp = -cmp;
+      }
+      if (cmp < 0) {
+        return false;
+      }
+      if (cmp > 0) {
+        values.poll();
+        values.add(value);
+      }
+      return true;
+    }
+  }
+
   /**
    * Endpoint request for output schema.
    */
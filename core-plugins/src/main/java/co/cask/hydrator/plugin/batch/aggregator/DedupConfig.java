@@ -22,6 +22,7 @@ import co.cask.hydrator.plugin.batch.aggregator.function.Last;
 import co.cask.hydrator.plugin.batch.aggregator.function.MaxSelection;
 import co.cask.hydrator.plugin.batch.aggregator.function.MinSelection;
 import co.cask.hydrator.plugin.batch.aggregator.function.SelectionFunction;
+import co.cask.hydrator.plugin.batch.aggregator.function.TopKSelection;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
@@ -54,6 +55,25 @@ public class DedupConfig extends AggregatorConfig {
   @Nullable
   private String filterOperation;
 
+  @Description("Number of records to choose from each group of duplicate records when the filter function is max " +
+    "or min. For example, if the filter operation is 'cost:max' and this is set to 3, the three records with " +
+    "the highest cost are chosen. Defaults to 1.")
+  @Nullable
+  private Integer selectionSize;
+
+  @Description("Which records to choose when records with the same value compete for the last chosen places, " +
+    "when the filter function is max or min. 'first' keeps the records read first, 'last' keeps the records read " +
+    "last, and 'all' keeps every record with the same value, which can choose more records than the selection " +
+    "size. Defaults to 'last'.")
+  @Nullable
+  private String tiePolicy;
+
+  @Description("Maximum number of groups for which records already read are tracked before the records are " +
+    "shuffled. Records that cannot be chosen, because enough better records of their group were already read, " +
+    "are dropped before the shuffle. Set to 0 to disable. Defaults to 10000.")
+  @Nullable
+  private Integer preselectionCacheSize;
+
   public DedupConfig() {
     this.uniqueFields = "";
     this.filterOperation = "";
@@ -61,8 +81,55 @@ public class DedupConfig extends AggregatorConfig {
 
   @VisibleForTesting
   DedupConfig(String uniqueFields, String filterOperation) {
+    this(uniqueFields, filterOperation, null, null, null);
+  }
+
+  @VisibleForTesting
+  DedupConfig(String uniqueFields, String filterOperation, @Nullable Integer selectionSize,
+              @Nullable String tiePolicy, @Nullable Integer preselectionCacheSize) {
     this.uniqueFields = uniqueFields;
     this.filterOperation = filterOperation;
+    this.selectionSize = selectionSize;
+    this.tiePolicy = tiePolicy;
+    this.preselectionCacheSize = preselectionCacheSize;
+  }
+
+  int getSelectionSize() {
+    return selectionSize == null ? 1 : selectionSize;
+  }
+
+  TopKSelection.TiePolicy getTiePolicy() {
+    if (Strings.isNullOrEmpty(tiePolicy)) {
+      return TopKSelection.TiePolicy.LAST;
+    }
+    try {
+      return TopKSelection.TiePolicy.valueOf(tiePolicy.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid tie policy '%s'. Must be one of %s.", tiePolicy,
+        Joiner.on(',').join(TopKSelection.TiePolicy.values()).toLowerCase()));
+    }
+  }
+
+  int getPreselectionCacheSize() {
+    return preselectionCacheSize == null ? 10000 : preselectionCacheSize;
+  }
+
+  void validate() {
+    if (getSelectionSize() < 1) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid selection size %d. At least one record must be chosen.", getSelectionSize()));
+    }
+    if (getPreselectionCacheSize() < 0) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid preselection cache size %d. It must not be negative.", getPreselectionCacheSize()));
+    }
+    getTiePolicy();
+    DedupFunctionInfo filter = getFilter();
+    if (getSelectionSize() > 1 && (filter == null || !filter.getFunction().isNumberSelection())) {
+      throw new IllegalArgumentException(
+        "A selection size greater than 1 is only supported with the max and min filter functions.");
+    }
   }
 
   List<String> getUniqueFields() {
@@ -100,16 +167,24 @@ public class DedupConfig extends AggregatorConfig {
       throw new IllegalArgumentException(String.format("Invalid function '%s'. Must be one of %s.",
                                                        functionStr, Joiner.on(',').join(Function.values())));
     }
-    return new DedupFunctionInfo(fieldName, function);
+    return new DedupFunctionInfo(fieldName, function, getSelectionSize(), getTiePolicy());
   }
 
   static class DedupFunctionInfo {
     private final String field;
     private final Function function;
+    private final int selectionSize;
+    private final TopKSelection.TiePolicy tiePolicy;
 
     DedupFunctionInfo(String field, Function function) {
+      this(field, function, 1, TopKSelection.TiePolicy.LAST);
+    }
+
+    DedupFunctionInfo(String field, Function function, int selectionSize, TopKSelection.TiePolicy tiePolicy) {
       this.field = field;
       this.function = function;
+      this.selectionSize = selectionSize;
+      this.tiePolicy = tiePolicy;
     }
 
     public String getField() {
@@ -120,6 +195,10 @@ public class DedupConfig extends AggregatorConfig {
       return function;
     }
 
+    public int getSelectionSize() {
+      return selectionSize;
+    }
+
     public SelectionFunction getSelectionFunction(Schema fieldSchema) {
       switch (function) {
         case FIRST:
@@ -127,9 +206,15 @@ public class DedupConfig extends AggregatorConfig {
         case LAST:
           return new Last(field, fieldSchema);
         case MAX:
-          return new MaxSelection(field, fieldSchema);
+          if (selectionSize == 1 && tiePolicy == TopKSelection.TiePolicy.LAST) {
+            return new MaxSelection(field, fieldSchema);
+          }
+          return new TopKSelection(field, fieldSchema, selectionSize, true, tiePolicy);
         case MIN:
-          return new MinSelection(field, fieldSchema);
+          if (selectionSize == 1 && tiePolicy == TopKSelection.TiePolicy.LAST) {
+            return new MinSelection(field, fieldSchema);
+          }
+          return new TopKSelection(field, fieldSchema, selectionSize, false, tiePolicy);
       }
       throw new IllegalStateException("Unknown function type " + function);
     }
@@ -144,12 +229,13 @@ public class DedupConfig extends AggregatorConfig {
       }
 
       DedupFunctionInfo that = (DedupFunctionInfo) o;
-      return Objects.equals(field, that.field) && Objects.equals(function, that.function);
+      return Objects.equals(field, that.field) && Objects.equals(function, that.function) &&
+        selectionSize == that.selectionSize && Objects.equals(tiePolicy, that.tiePolicy);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(field, function);
+      return Objects.hash(field, function, selectionSize, tiePolicy);
     }
 
     @Override
@@ -157,6 +243,8 @@ public class DedupConfig extends AggregatorConfig {
       return "DedupFunctionInfo{" +
         "field='" + field + '\'' +
         ", function=" + function +
+        ", selectionSize=" + selectionSize +
+        ", tiePolicy=" + tiePolicy +
         '}';
     }
   }
@@ -165,6 +253,13 @@ public class DedupConfig extends AggregatorConfig {
     FIRST,
     LAST,
     MIN,
-    MAX
+    MAX;
+
+    /**
+     * @return whether the function selects records by comparing the numeric values of the field.
+     */
+    boolean isNumberSelection() {
+      return this == MIN || this == MAX;
+    }
   }
 }
@@ -41,7 +41,8 @@ import javax.ws.rs.Path;
 @Plugin(type = BatchAggregator.PLUGIN_TYPE)
 @Name("GroupByAggregate")
 @Description("Groups by one or more fields, then performs one or more aggregate functions on each group. " +
-  "Supports avg, count, count(*), first, last, max, min, and sum as aggregate functions.")
+  "Supports avg, count, count(*), first, last, max, min, sum, stddev, variance, approx_count_distinct " +
+  "and percentile_approx as aggregate functions.")
 public class GroupByAggregator extends RecordAggregator {
   private final GroupByConfig conf;
   private List<String> groupByFields;
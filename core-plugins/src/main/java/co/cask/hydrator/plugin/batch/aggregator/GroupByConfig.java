@@ -19,6 +19,7 @@ package co.cask.hydrator.plugin.batch.aggregator;
 import co.cask.cdap.api.annotation.Description;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.hydrator.plugin.batch.aggregator.function.AggregateFunction;
+import co.cask.hydrator.plugin.batch.aggregator.function.ApproxCountDistinct;
 import co.cask.hydrator.plugin.batch.aggregator.function.Avg;
 import co.cask.hydrator.plugin.batch.aggregator.function.Count;
 import co.cask.hydrator.plugin.batch.aggregator.function.CountAll;
@@ -26,6 +27,7 @@ import co.cask.hydrator.plugin.batch.aggregator.function.First;
 import co.cask.hydrator.plugin.batch.aggregator.function.Last;
 import co.cask.hydrator.plugin.batch.aggregator.function.Max;
 import co.cask.hydrator.plugin.batch.aggregator.function.Min;
+import co.cask.hydrator.plugin.batch.aggregator.function.PercentileApprox;
 import co.cask.hydrator.plugin.batch.aggregator.function.Stddev;
 import co.cask.hydrator.plugin.batch.aggregator.function.Sum;
 import co.cask.hydrator.plugin.batch.aggregator.function.Variance;
@@ -34,6 +36,7 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
@@ -45,9 +48,13 @@ import java.util.Set;
 public class GroupByConfig extends AggregatorConfig {
 
   @Description("Aggregates to compute on grouped records. " +
-    "Supported aggregate functions are count, count(*), sum, avg, min, max, first, last. " +
+    "Supported aggregate functions are count, count(*), sum, avg, min, max, first, last, stddev, variance, " +
+    "approx_count_distinct and percentile_approx. " +
     "A function must specify the field it should be applied on, as well as the name it should be called. " +
     "Aggregates are specified using syntax: \"name:function(field)[, other aggregates]\"." +
+    "approx_count_distinct takes the precision of the estimate as an optional second argument, " +
+    "for example 'users:approx_count_distinct(user, 14)'. percentile_approx takes the percentage, between 0 " +
+    "and 1, and the accuracy as optional arguments, for example 'p99:percentile_approx(latency, 0.99, 200)'. " +
     "For example, 'avgPrice:avg(price),cheapest:min(price)' will calculate two aggregates. " +
     "The first will create a field called 'avgPrice' that is the average of all 'price' fields in the group. " +
     "The second will create a field called 'cheapest' that contains the minimum 'price' field in the group")
@@ -85,7 +92,7 @@ public class GroupByConfig extends AggregatorConfig {
   List<FunctionInfo> getAggregates() {
     List<FunctionInfo> functionInfos = new ArrayList<>();
     Set<String> aggregateNames = new HashSet<>();
-    for (String aggregate : Splitter.on(',').trimResults().split(aggregates)) {
+    for (String aggregate : splitAggregates(aggregates)) {
       int colonIdx = aggregate.indexOf(':');
       if (colonIdx < 0) {
         throw new IllegalArgumentException(String.format(
@@ -118,13 +125,23 @@ public class GroupByConfig extends AggregatorConfig {
           "Could not find closing ')' in function '%s'. Functions must be specified as function(field).",
           functionAndField));
       }
-      String field = functionAndField.substring(leftParanIdx + 1, functionAndField.length() - 1).trim();
+      List<String> arguments = new ArrayList<>();
+      for (String argument : Splitter.on(',').trimResults().split(
+        functionAndField.substring(leftParanIdx + 1, functionAndField.length() - 1))) {
+        arguments.add(argument);
+      }
+      String field = arguments.remove(0);
       if (field.isEmpty()) {
         throw new IllegalArgumentException(String.format(
           "Invalid function '%s'. A field must be given as an argument.", functionAndField));
       }
+      if (arguments.size() > function.getMaxArguments()) {
+        throw new IllegalArgumentException(String.format(
+          "Invalid function '%s'. Function %s takes at most %d arguments besides the field.",
+          functionAndField, functionStr, function.getMaxArguments()));
+      }
 
-      functionInfos.add(new FunctionInfo(name, field, function));
+      functionInfos.add(new FunctionInfo(name, field, function, arguments));
     }
 
     if (functionInfos.isEmpty()) {
@@ -133,6 +150,28 @@ public class GroupByConfig extends AggregatorConfig {
     return functionInfos;
   }
 
+  /**
+   * Splits the aggregates on commas, except for commas between the parentheses of a function.
+   */
+  private static List<String> splitAggregates(String aggregates) {
+    List<String> splits = new ArrayList<>();
+    int depth = 0;
+    int start = 0;
+    for (int i = 0; i < aggregates.length(); i++) {
+      char c = aggregates.charAt(i);
+      if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (c == ',' && depth <= 0) {
+        splits.add(aggregates.substring(start, i).trim());
+        start = i + 1;
+      }
+    }
+    splits.add(aggregates.substring(start).trim());
+    return splits;
+  }
+
   /**
    * Class to hold information for an aggregate function.
    */
@@ -140,11 +179,17 @@ public class GroupByConfig extends AggregatorConfig {
     private final String name;
     private final String field;
     private final Function function;
+    private final List<String> arguments;
 
     FunctionInfo(String name, String field, Function function) {
+      this(name, field, function, Collections.<String>emptyList());
+    }
+
+    FunctionInfo(String name, String field, Function function, List<String> arguments) {
       this.name = name;
       this.field = field;
       this.function = function;
+      this.arguments = arguments;
     }
 
     public String getName() {
@@ -159,6 +204,10 @@ public class GroupByConfig extends AggregatorConfig {
       return function;
     }
 
+    public List<String> getArguments() {
+      return arguments;
+    }
+
     public AggregateFunction getAggregateFunction(Schema fieldSchema) {
       switch (function) {
         case COUNT:
@@ -182,11 +231,39 @@ public class GroupByConfig extends AggregatorConfig {
           return new Stddev(field, fieldSchema);
         case VARIANCE:
           return new Variance(field, fieldSchema);
+        case APPROX_COUNT_DISTINCT:
+          return new ApproxCountDistinct(
+            field, arguments.isEmpty() ? ApproxCountDistinct.DEFAULT_PRECISION : getIntArgument(0, "precision"));
+        case PERCENTILE_APPROX:
+          return new PercentileApprox(
+            field, fieldSchema,
+            arguments.isEmpty() ? PercentileApprox.DEFAULT_PERCENTAGE : getDoubleArgument(0, "percentage"),
+            arguments.size() < 2 ? PercentileApprox.DEFAULT_COMPRESSION : getDoubleArgument(1, "accuracy"));
       }
       // should never happen
       throw new IllegalStateException("Unknown function type " + function);
     }
 
+    private int getIntArgument(int index, String argumentName) {
+      try {
+        return Integer.parseInt(arguments.get(index));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(String.format(
+          "Invalid %s '%s' for function %s(%s). It must be an integer.",
+          argumentName, arguments.get(index), function, field));
+      }
+    }
+
+    private double getDoubleArgument(int index, String argumentName) {
+      try {
+        return Double.parseDouble(arguments.get(index));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(String.format(
+          "Invalid %s '%s' for function %s(%s). It must be a number.",
+          argumentName, arguments.get(index), function, field));
+      }
+    }
+
     @Override
     public boolean equals(Object o) {
       if (this == o) {
@@ -200,12 +277,13 @@ public class GroupByConfig extends AggregatorConfig {
 
       return Objects.equals(name, that.name) &&
         Objects.equals(field, that.field) &&
-        Objects.equals(function, that.function);
+        Objects.equals(function, that.function) &&
+        Objects.equals(arguments, that.arguments);
     }
 
     @Override
     public int hashCode() {
-      return Objects.hash(name, field, function);
+      return Objects.hash(name, field, function, arguments);
     }
 
     @Override
@@ -214,6 +292,7 @@ public class GroupByConfig extends AggregatorConfig {
         "name='" + name + '\'' +
         ", field='" + field + '\'' +
         ", function=" + function +
+        ", arguments=" + arguments +
         '}';
     }
   }
@@ -227,6 +306,25 @@ public class GroupByConfig extends AggregatorConfig {
     FIRST,
     LAST,
     STDDEV,
-    VARIANCE
+    VARIANCE,
+    APPROX_COUNT_DISTINCT(1),
+    PERCENTILE_APPROX(2);
+
+    private final int maxArguments;
+
+    Function() {
+      this(0);
+    }
+
+    Function(int maxArguments) {
+      this.maxArguments = maxArguments;
+    }
+
+    /**
+     * @return the maximum number of arguments the function takes after the field.
+     */
+    int getMaxArguments() {
+      return maxArguments;
+    }
   }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.aggregator.function;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.plugin.batch.aggregator.AggregationUtils;
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Estimates the number of distinct non-null values of a field with a {@link HyperLogLog}.
+ */
+public class ApproxCountDistinct implements AggregateFunction<Long> {
+  public static final int DEFAULT_PRECISION = 12;
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private final String fieldName;
+  private final int precision;
+  private HyperLogLog hll;
+
+  public ApproxCountDistinct(String fieldName, int precision) {
+    if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+      throw new IllegalArgumentException(String.format(
+        "Cannot compute approximate distinct count on field %s because precision %d is not between %d and %d.",
+        fieldName, precision, HyperLogLog.MIN_PRECISION, HyperLogLog.MAX_PRECISION));
+    }
+    this.fieldName = fieldName;
+    this.precision = precision;
+  }
+
+  @Override
+  public void beginFunction() {
+    hll = new HyperLogLog(precision);
+  }
+
+  @Override
+  public void operateOn(StructuredRecord record) {
+    Object val = record.get(fieldName);
+    if (val != null) {
+      hll.addHash(hash(val));
+    }
+  }
+
+  @Override
+  public Long getAggregate() {
+    return hll.cardinality();
+  }
+
+  @Override
+  public Schema getOutputSchema() {
+    return Schema.of(Schema.Type.LONG);
+  }
+
+  private static long hash(Object val) {
+    Hasher hasher = HASH_FUNCTION.newHasher();
+    if (val instanceof Integer || val instanceof Long) {
+      hasher.putLong(((Number) val).longValue());
+    } else if (val instanceof Float || val instanceof Double) {
+      hasher.putDouble(((Number) val).doubleValue());
+    } else if (val instanceof byte[] || val instanceof ByteBuffer) {
+      hasher.putBytes(AggregationUtils.toBytes(val));
+    } else {
+      hasher.putBytes(val.toString().getBytes(Charsets.UTF_8));
+    }
+    return hasher.hash().asLong();
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.aggregator.function;
+
+/**
+ * Estimates the number of distinct values in a single pass using a fixed amount of memory.
+ * Uses the HyperLogLog algorithm with 64 bit hashes, as described in
+ * http://static.googleusercontent.com/media/research.google.com/en//pubs/archive/40671.pdf,
+ * with linear counting for small cardinalities.
+ *
+ * The precision p determines the number of registers, 2^p, which is also the memory used in bytes.
+ * The standard error of the estimate is about 1.04 / sqrt(2^p).
+ */
+public final class HyperLogLog {
+  public static final int MIN_PRECISION = 4;
+  public static final int MAX_PRECISION = 18;
+
+  private final int precision;
+  private final byte[] registers;
+
+  /**
+   * @param precision number of bits of the hash used to select a register.
+   */
+  public HyperLogLog(int precision) {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException(String.format(
+        "Precision must be between %d and %d, but is %d.", MIN_PRECISION, MAX_PRECISION, precision));
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  /**
+   * Adds the 64 bit hash of a value.
+   * @param hash hash of the value to be counted.
+   */
+  public void addHash(long hash) {
+    int index = (int) (hash >>> (Long.SIZE - precision));
+    // the bit after the remaining hash bits bounds the rank if they are all zeros
+    long remaining = (hash << precision) | (1L << (precision - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+    if (rank > registers[index]) {
+      registers[index] = rank;
+    }
+  }
+
+  /**
+   * @return Estimated number of distinct values.
+   */
+  public long cardinality() {
+    int m = registers.length;
+    double sum = 0d;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1d / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    double estimate = alpha(m) * m * m / sum;
+    if (estimate <= 2.5d * m && zeros > 0) {
+      // linear counting is more accurate for small cardinalities
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  private static double alpha(int m) {
+    switch (m) {
+      case 16:
+        return 0.673d;
+      case 32:
+        return 0.697d;
+      case 64:
+        return 0.709d;
+      default:
+        return 0.7213d / (1d + 1.079d / m);
+    }
+  }
+}
@@ -14,88 +14,18 @@
  * the License.
  */
 
+
 package co.cask.hydrator.plugin.batch.aggregator.function;
 
-import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-
 /**
- * A {@link StructuredRecord} that can be used to select the record with the min value of a given field.
+ * A {@link SelectionFunction} that can be used to select the record with the min value of a given field.
+ * If several records have the min value, the last one is selected.
  */
-public class MinSelection extends NumberSelection {
-  private StructuredRecord minRecord;
-  private Integer minInt;
-  private Long minLong;
-  private Float minFloat;
-  private Double minDouble;
+public class MinSelection extends TopKSelection {
 
   public MinSelection(String fieldName, Schema fieldSchema) {
-    super(fieldName, fieldSchema);
-    minRecord = null;
-  }
-
-  @Override
-  protected void startInt() {
-    minInt = null;
-  }
-
-  @Override
-  protected void startLong() {
-    minLong = null;
-  }
-
-  @Override
-  protected void startFloat() {
-    minFloat = null;
-  }
-
-  @Override
-  protected void startDouble() {
-    minDouble = null;
-  }
-
-  @Override
-  protected void operateOnInt(int current, StructuredRecord record) {
-    minInt = minInt == null ? current : Math.min(minInt, current);
-    if (Objects.equals(minInt, current)) {
-      minRecord = record;
-    }
-  }
-
-  @Override
-  protected void operateOnLong(long current, StructuredRecord record) {
-    minLong = minLong == null ? current : Math.min(minLong, current);
-    if (Objects.equals(minLong, current)) {
-      minRecord = record;
-    }
-  }
-
-  @Override
-  protected void operateOnFloat(float current, StructuredRecord record) {
-    minFloat = minFloat == null ? current : Math.min(minFloat, current);
-    if (Objects.equals(minFloat, current)) {
-      minRecord = record;
-    }
-  }
-
-  @Override
-  protected void operateOnDouble(double current, StructuredRecord record) {
-    minDouble = minDouble == null ? current : Math.min(minDouble, current);
-    if (Objects.equals(minDouble, current)) {
-      minRecord = record;
-    }
-  }
-
-  @Override
-  protected List<StructuredRecord> getRecords() {
-    List<StructuredRecord> records = new ArrayList<>();
-    if (minRecord != null) {
-      records.add(minRecord);
-    }
-    return records;
+    super(fieldName, fieldSchema, 1, false, TiePolicy.LAST);
   }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.aggregator.function;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.plugin.batch.aggregator.AggregationUtils;
+
+/**
+ * Estimates a percentile of a numeric field with a {@link TDigest}.
+ */
+public class PercentileApprox implements AggregateFunction<Double> {
+  public static final double DEFAULT_PERCENTAGE = 0.5d;
+  public static final double DEFAULT_COMPRESSION = 100d;
+
+  private final String fieldName;
+  private final double percentage;
+  private final double compression;
+  private final Schema outputSchema;
+  private TDigest digest;
+
+  public PercentileApprox(String fieldName, Schema fieldSchema, double percentage, double compression) {
+    this.fieldName = fieldName;
+    boolean isNullable = fieldSchema.isNullable();
+    Schema.Type fieldType = isNullable ? fieldSchema.getNonNullable().getType() : fieldSchema.getType();
+    if (!AggregationUtils.isNumericType(fieldType)) {
+      throw new IllegalArgumentException(String.format(
+        "Cannot compute percentile on field %s because its type %s is not numeric", fieldName, fieldType));
+    }
+    if (percentage < 0d || percentage > 1d) {
+      throw new IllegalArgumentException(String.format(
+        "Cannot compute percentile on field %s because percentage %s is not between 0 and 1", fieldName, percentage));
+    }
+    if (compression < TDigest.MIN_COMPRESSION) {
+      throw new IllegalArgumentException(String.format(
+        "Cannot compute percentile on field %s because accuracy %s is less than %s",
+        fieldName, compression, TDigest.MIN_COMPRESSION));
+    }
+    this.percentage = percentage;
+    this.compression = compression;
+    outputSchema = isNullable ? Schema.nullableOf(Schema.of(Schema.Type.DOUBLE)) : Schema.of(Schema.Type.DOUBLE);
+  }
+
+  @Override
+  public void beginFunction() {
+    digest = new TDigest(compression);
+  }
+
+  @Override
+  public void operateOn(StructuredRecord record) {
+    Object val = record.get(fieldName);
+    if (val != null) {
+      digest.add(((Number) val).doubleValue());
+    }
+  }
+
+  @Override
+  public Double getAggregate() {
+    if (digest.size() == 0) {
+      // only happens if the field value was always null
+      return null;
+    }
+    return digest.quantile(percentage);
+  }
+
+  @Override
+  public Schema getOutputSchema() {
+    return outputSchema;
+  }
+}
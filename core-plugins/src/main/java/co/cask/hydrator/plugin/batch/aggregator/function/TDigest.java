@@ -0,0 +1,177 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.aggregator.function;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Estimates quantiles in a single pass, using a t-digest as described in
+ * https://github.com/tdunning/t-digest/blob/master/docs/t-digest-paper/histo.pdf.
+ *
+ * Values are buffered and periodically merged into a sorted list of centroids. Centroids near the tails
+ * hold fewer values than centroids near the median, so extreme quantiles are estimated accurately. The
+ * number of centroids, and with it the memory used, is bounded by the compression, independently of the
+ * number of values.
+ */
+public final class TDigest {
+  public static final double MIN_COMPRESSION = 10d;
+
+  private final double compression;
+  private final double[] bufferMeans;
+  private final double[] bufferWeights;
+  private int buffered;
+  private double[] means = new double[0];
+  private double[] weights = new double[0];
+  private double totalWeight;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  /**
+   * @param compression accuracy of the digest. Higher values are more accurate and use more memory.
+   */
+  public TDigest(double compression) {
+    if (compression < MIN_COMPRESSION) {
+      throw new IllegalArgumentException(String.format(
+        "Compression must be at least %s, but is %s.", MIN_COMPRESSION, compression));
+    }
+    this.compression = compression;
+    int bufferSize = 5 * (int) Math.ceil(compression);
+    this.bufferMeans = new double[bufferSize];
+    this.bufferWeights = new double[bufferSize];
+  }
+
+  /**
+   * Adds a value to the digest.
+   * @param x value to be added.
+   */
+  public void add(double x) {
+    min = Math.min(min, x);
+    max = Math.max(max, x);
+    add(x, 1d);
+  }
+
+  /**
+   * @return Number of values added to the digest.
+   */
+  public long size() {
+    return (long) totalWeight;
+  }
+
+  /**
+   * @param q the quantile, between 0 and 1.
+   * @return Estimated value at the given quantile, or NaN if the digest is empty.
+   */
+  public double quantile(double q) {
+    compress();
+    int size = means.length;
+    if (size == 0) {
+      return Double.NaN;
+    }
+    if (size == 1) {
+      return means[0];
+    }
+
+    // each centroid is treated as if its values were spread evenly around its mean
+    double target = q * totalWeight;
+    double center = weights[0] / 2;
+    if (target <= center) {
+      return min + (means[0] - min) * target / center;
+    }
+    for (int i = 0; i < size - 1; i++) {
+      double nextCenter = center + (weights[i] + weights[i + 1]) / 2;
+      if (target <= nextCenter) {
+        return means[i] + (means[i + 1] - means[i]) * (target - center) / (nextCenter - center);
+      }
+      center = nextCenter;
+    }
+    double remaining = totalWeight - center;
+    return means[size - 1] + (max - means[size - 1]) * Math.min(1d, (target - center) / remaining);
+  }
+
+  private void add(double mean, double weight) {
+    if (buffered == bufferMeans.length) {
+      compress();
+    }
+    bufferMeans[buffered] = mean;
+    bufferWeights[buffered] = weight;
+    buffered++;
+    totalWeight += weight;
+  }
+
+  /**
+   * Merges the buffered values into the centroids. Neighbouring centroids are combined as long as the
+   * combined centroid does not span more than one unit of the scale function.
+   */
+  private void compress() {
+    if (buffered == 0) {
+      return;
+    }
+    int count = means.length + buffered;
+    final double[] allMeans = Arrays.copyOf(means, count);
+    double[] allWeights = Arrays.copyOf(weights, count);
+    System.arraycopy(bufferMeans, 0, allMeans, means.length, buffered);
+    System.arraycopy(bufferWeights, 0, allWeights, means.length, buffered);
+    buffered = 0;
+
+    Integer[] order = new Integer[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i1, Integer i2) {
+        return Double.compare(allMeans[i1], allMeans[i2]);
+      }
+    });
+
+    double[] newMeans = new double[count];
+    double[] newWeights = new double[count];
+    int size = 0;
+    double mean = allMeans[order[0]];
+    double weight = allWeights[order[0]];
+    double weightSoFar = 0d;
+    double kLeft = scale(0d);
+    for (int i = 1; i < count; i++) {
+      int next = order[i];
+      double proposed = weight + allWeights[next];
+      if (scale((weightSoFar + proposed) / totalWeight) - kLeft <= 1d) {
+        mean += (allMeans[next] - mean) * allWeights[next] / proposed;
+        weight = proposed;
+      } else {
+        newMeans[size] = mean;
+        newWeights[size] = weight;
+        size++;
+        weightSoFar += weight;
+        kLeft = scale(weightSoFar / totalWeight);
+        mean = allMeans[next];
+        weight = allWeights[next];
+      }
+    }
+    newMeans[size] = mean;
+    newWeights[size] = weight;
+    size++;
+
+    means = Arrays.copyOf(newMeans, size);
+    weights = Arrays.copyOf(newWeights, size);
+  }
+
+  private double scale(double q) {
+    return compression / (2 * Math.PI) * Math.asin(2 * Math.min(1d, q) - 1);
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.aggregator.function;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link SelectionFunction} that selects the records with the k largest or smallest values of a given field.
+ * Records are kept in a heap whose head is the worst selected record, so memory is bounded by k, unless all
+ * records tied with the k-th value are kept. Selected records are returned from best to worst.
+ */
+public class TopKSelection extends NumberSelection {
+
+  /**
+   * Which records to keep when records with the same value compete for the last selected places.
+   */
+  public enum TiePolicy {
+    /** Keep the records seen first. */
+    FIRST,
+    /** Keep the records seen last. */
+    LAST,
+    /** Keep all records tied with the k-th value, which can select more than k records. */
+    ALL
+  }
+
+  private final int k;
+  private final boolean largest;
+  private final TiePolicy tiePolicy;
+  private final Comparator<Selected> worstFirst;
+  private PriorityQueue<Selected> selected;
+  private long sequence;
+
+  public TopKSelection(String fieldName, @Nullable Schema fieldSchema, int k, boolean largest, TiePolicy tiePolicy) {
+    super(fieldName, fieldSchema);
+    if (k < 1) {
+      throw new IllegalArgumentException(String.format(
+        "Cannot select %d records on field '%s'. At least one record must be selected.", k, fieldName));
+    }
+    this.k = k;
+    this.largest = largest;
+    this.tiePolicy = tiePolicy;
+    this.worstFirst = new Comparator<Selected>() {
+      @Override
+      public int compare(Selected s1, Selected s2) {
+        int cmp = compareValues(s1.value, s2.value);
+        if (cmp != 0) {
+          return cmp;
+        }
+        // among ties, the record that would be dropped first is the worst
+        return TopKSelection.this.tiePolicy == TiePolicy.LAST ?
+          Long.compare(s1.sequence, s2.sequence) : Long.compare(s2.sequence, s1.sequence);
+      }
+    };
+  }
+
+  @Override
+  protected void startInt() {
+    start();
+  }
+
+  @Override
+  protected void startLong() {
+    start();
+  }
+
+  @Override
+  protected void startFloat() {
+    start();
+  }
+
+  @Override
+  protected void startDouble() {
+    start();
+  }
+
+  @Override
+  protected void operateOnInt(int val, StructuredRecord record) {
+    offer(val, record);
+  }
+
+  @Override
+  protected void operateOnLong(long val, StructuredRecord record) {
+    offer(val, record);
+  }
+
+  @Override
+  protected void operateOnFloat(float val, StructuredRecord record) {
+    offer(val, record);
+  }
+
+  @Override
+  protected void operateOnDouble(double val, StructuredRecord record) {
+    offer(val, record);
+  }
+
+  @Override
+  protected List<StructuredRecord> getRecords() {
+    List<Selected> sorted = new ArrayList<>(selected);
+    Collections.sort(sorted, Collections.reverseOrder(worstFirst));
+    List<StructuredRecord> records = new ArrayList<>(sorted.size());
+    for (Selected s : sorted) {
+      records.add(s.record);
+    }
+    return records;
+  }
+
+  private void start() {
+    selected = new PriorityQueue<>(Math.min(k, 1024) + 1, worstFirst);
+    sequence = 0;
+  }
+
+  private void offer(Comparable value, StructuredRecord record) {
+    Selected current = new Selected(value, sequence++, record);
+    if (selected.size() < k) {
+      selected.add(current);
+      return;
+    }
+
+    int cmp = compareValues(value, selected.peek().value);
+    if (cmp < 0) {
+      return;
+    }
+    if (cmp == 0) {
+      switch (tiePolicy) {
+        case FIRST:
+          return;
+        case LAST:
+          selected.poll();
+          selected.add(current);
+          return;
+        default:
+          selected.add(current);
+          return;
+      }
+    }
+
+    selected.add(current);
+    if (tiePolicy != TiePolicy.ALL) {
+      selected.poll();
+      return;
+    }
+    // drop the worst records and their ties, as long as k records remain
+    while (true) {
+      List<Selected> worst = new ArrayList<>();
+      worst.add(selected.poll());
+      while (!selected.isEmpty() && compareValues(selected.peek().value, worst.get(0).value) == 0) {
+        worst.add(selected.poll());
+      }
+      if (selected.size() < k) {
+        selected.addAll(worst);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Compares two values of the field, so that the worse value is smaller.
+   */
+  @SuppressWarnings("unchecked")
+  private int compareValues(Comparable v1, Comparable v2) {
+    int cmp = v1.compareTo(v2);
+    return largest ? cmp : -cmp;
+  }
+
+  /**
+   * A selected record, with its value and the order in which it was seen.
+   */
+  private static final class Selected {
+    private final Comparable value;
+    private final long sequence;
+    private final StructuredRecord record;
+
+    private Selected(Comparable value, long sequence, StructuredRecord record) {
+      this.value = value;
+      this.sequence = sequence;
+      this.record = record;
+    }
+  }
+}
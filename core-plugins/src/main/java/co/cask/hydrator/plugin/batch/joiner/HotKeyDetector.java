@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.batch.joiner;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Finds the most frequent join keys of an input in a fixed amount of memory, using the Space-Saving algorithm
+ * described in https://www.cs.ucsb.edu/research/tech-reports/2005-23. Only one out of every {@code sampleRate}
+ * keys is counted, so that the detection adds little to the cost of each record.
+ *
+ * The count of a tracked key can be overestimated by at most the smallest tracked count, so every key that
+ * appears in more than a 1/capacity share of the sampled keys is guaranteed to be tracked. Keys are only reported
+ * as hot if their count minus that overestimation reaches the requested share, so that evenly distributed keys
+ * are not reported.
+ *
+ * The tracked keys are kept in a min-heap ordered by count, so that counting a key and replacing the least
+ * frequent key take logarithmic time in the capacity.
+ */
+final class HotKeyDetector {
+  private final int capacity;
+  private final int sampleRate;
+  private final Map<Object, Counter> counters;
+  // min-heap of the tracked counters by count
+  private final Counter[] heap;
+  private int size;
+  private long records;
+  private long sampled;
+
+  HotKeyDetector(int capacity, int sampleRate) {
+    this.capacity = capacity;
+    this.sampleRate = sampleRate;
+    this.counters = new HashMap<>(capacity * 2);
+    this.heap = new Counter[capacity];
+  }
+
+  /**
+   * Counts a record of the input and returns whether its key is sampled. Callers only need to build the key of
+   * the record and pass it to {@link #add(Object)} if it is.
+   */
+  boolean sampleNext() {
+    return records++ % sampleRate == 0;
+  }
+
+  /**
+   * Counts the key of a record for which {@link #sampleNext()} returned true.
+   */
+  void add(Object key) {
+    sampled++;
+    Counter counter = counters.get(key);
+    if (counter != null) {
+      counter.count++;
+      siftDown(counter.index);
+      return;
+    }
+    if (size < capacity) {
+      counter = new Counter(key, 1, 0);
+      counters.put(key, counter);
+      counter.index = size;
+      heap[size++] = counter;
+      siftUp(counter.index);
+      return;
+    }
+    // replace the least frequent key, which the new key may have been counted as so far
+    Counter min = heap[0];
+    counters.remove(min.key);
+    counter = new Counter(key, min.count + 1, min.count);
+    counters.put(key, counter);
+    counter.index = 0;
+    heap[0] = counter;
+    siftDown(0);
+  }
+
+  private void siftUp(int index) {
+    while (index > 0) {
+      int parent = (index - 1) / 2;
+      if (heap[parent].count <= heap[index].count) {
+        return;
+      }
+      swap(index, parent);
+      index = parent;
+    }
+  }
+
+  private void siftDown(int index) {
+    while (true) {
+      int smallest = index;
+      int left = 2 * index + 1;
+      int right = left + 1;
+      if (left < size && heap[left].count < heap[smallest].count) {
+        smallest = left;
+      }
+      if (right < size && heap[right].count < heap[smallest].count) {
+        smallest = right;
+      }
+      if (smallest == index) {
+        return;
+      }
+      swap(index, smallest);
+      index = smallest;
+    }
+  }
+
+  private void swap(int i, int j) {
+    Counter counter = heap[i];
+    heap[i] = heap[j];
+    heap[j] = counter;
+    heap[i].index = i;
+    heap[j].index = j;
+  }
+
+  /**
+   * @return the number of records counted by {@link #sampleNext()}
+   */
+  long getRecords() {
+    return records;
+  }
+
+  /**
+   * Returns the keys whose share of all sampled keys is at least the given share, with the estimated
+   * number of records that have the key.
+   */
+  Map<Object, Long> getHotKeys(double minShare) {
+    Map<Object, Long> hotKeys = new LinkedHashMap<>();
+    if (sampled == 0) {
+      return hotKeys;
+    }
+    for (Map.Entry<Object, Counter> entry : counters.entrySet()) {
+      Counter counter = entry.getValue();
+      if (counter.count - counter.error >= minShare * sampled) {
+        hotKeys.put(entry.getKey(), counter.count * records / sampled);
+      }
+    }
+    return hotKeys;
+  }
+
+  /**
+   * Count of a tracked key, with the count of the key it replaced, which is the maximum overestimation, and its
+   * position in the heap.
+   */
+  private static final class Counter {
+    private final Object key;
+    private long count;
+    private final long error;
+    private int index;
+
+    private Counter(Object key, long count, long error) {
+      this.key = key;
+      this.count = count;
+      this.error = error;
+    }
+  }
+}
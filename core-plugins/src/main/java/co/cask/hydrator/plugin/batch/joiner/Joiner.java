@@ -32,7 +32,10 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Table;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -52,6 +55,10 @@ import javax.ws.rs.Path;
   "records from non-required inputs will only be present if they match join criteria. If there are no required " +
   "inputs, outer join will be performed")
 public class Joiner extends BatchJoiner<StructuredRecord, StructuredRecord, StructuredRecord> {
+  private static final Logger LOG = LoggerFactory.getLogger(Joiner.class);
+  // hot keys are only reported if enough records were read for their share to be meaningful
+  private static final long HOT_KEY_MIN_RECORDS = 10000L;
+  private static final int HOT_KEY_SAMPLE_RATE = 10;
   private final JoinerConfig conf;
   private Map<String, Schema> inputSchemas;
   private Schema outputSchema;
@@ -59,6 +66,11 @@ public class Joiner extends BatchJoiner<StructuredRecord, StructuredRecord, Stru
   private Table<String, String, String> perStageSelectedFields;
   private Set<String> requiredInputs;
   private Multimap<String, String> duplicateFields = ArrayListMultimap.create();
+  // join key schema of each input stage, computed once instead of for every record
+  private Map<String, Schema> perStageKeySchemas;
+  // input field name to output field name of the selected fields of each input stage
+  private Map<String, List<Map.Entry<String, String>>> perStageOutputFields;
+  private Map<String, HotKeyDetector> perStageHotKeys;
 
   public Joiner(JoinerConfig conf) {
     this.conf = conf;
@@ -66,6 +78,7 @@ public class Joiner extends BatchJoiner<StructuredRecord, StructuredRecord, Stru
 
   @Override
   public void configurePipeline(MultiInputPipelineConfigurer pipelineConfigurer) {
+    conf.validate();
     MultiInputStageConfigurer stageConfigurer = pipelineConfigurer.getMultiInputStageConfigurer();
     Map<String, Schema> inputSchemas = stageConfigurer.getInputSchemas();
     init(inputSchemas);
@@ -85,29 +98,88 @@ public class Joiner extends BatchJoiner<StructuredRecord, StructuredRecord, Stru
     init(context.getInputSchemas());
     inputSchemas = context.getInputSchemas();
     outputSchema = context.getOutputSchema();
+    perStageKeySchemas = new HashMap<>();
+    for (Map.Entry<String, Schema> inputSchema : inputSchemas.entrySet()) {
+      if (inputSchema.getValue() != null && perStageJoinKeys.containsKey(inputSchema.getKey())) {
+        perStageKeySchemas.put(inputSchema.getKey(),
+                               getKeySchema(inputSchema.getValue(), perStageJoinKeys.get(inputSchema.getKey())));
+      }
+    }
+    perStageOutputFields = new HashMap<>();
+    for (String stageName : perStageSelectedFields.rowKeySet()) {
+      perStageOutputFields.put(stageName,
+                               new ArrayList<>(perStageSelectedFields.row(stageName).entrySet()));
+    }
+    double hotKeyThreshold = conf.getHotKeyThreshold();
+    if (hotKeyThreshold > 0) {
+      // Space-Saving tracks every key whose share is above 1/capacity
+      int capacity = Math.max(10, (int) Math.ceil(2 / hotKeyThreshold));
+      perStageHotKeys = new HashMap<>();
+      for (String stageName : perStageJoinKeys.keySet()) {
+        perStageHotKeys.put(stageName, new HotKeyDetector(capacity, HOT_KEY_SAMPLE_RATE));
+      }
+    }
   }
 
   @Override
-  public StructuredRecord joinOn(String stageName, StructuredRecord record) throws Exception {
-    List<Schema.Field> fields = new ArrayList<>();
-    Schema schema = record.getSchema();
+  public void destroy() {
+    if (perStageHotKeys == null) {
+      return;
+    }
+    for (Map.Entry<String, HotKeyDetector> stageHotKeys : perStageHotKeys.entrySet()) {
+      HotKeyDetector detector = stageHotKeys.getValue();
+      if (detector.getRecords() < HOT_KEY_MIN_RECORDS) {
+        continue;
+      }
+      for (Map.Entry<Object, Long> hotKey : detector.getHotKeys(conf.getHotKeyThreshold()).entrySet()) {
+        // join keys can hold personal data, so only their hash is logged
+        LOG.warn("Join key with hash {} of input stage '{}' was found in about {} of the {} records read from that " +
+                   "stage. All records with the same join key are joined by a single task, which can slow down the " +
+                   "join.", Integer.toHexString(hotKey.getKey().hashCode()), stageHotKeys.getKey(), hotKey.getValue(),
+                 detector.getRecords());
+      }
+    }
+  }
 
+  @Override
+  public StructuredRecord joinOn(String stageName, StructuredRecord record) throws Exception {
     List<String> joinKeys = perStageJoinKeys.get(stageName);
-    int i = 1;
-    for (String joinKey : joinKeys) {
-      Schema.Field joinField = Schema.Field.of(String.valueOf(i++), schema.getField(joinKey).getSchema());
-      fields.add(joinField);
+    Schema keySchema = perStageKeySchemas.get(stageName);
+    if (keySchema == null) {
+      keySchema = getKeySchema(record.getSchema(), joinKeys);
+      perStageKeySchemas.put(stageName, keySchema);
     }
-    Schema keySchema = Schema.recordOf("join.key", fields);
+
     StructuredRecord.Builder keyRecordBuilder = StructuredRecord.builder(keySchema);
-    i = 1;
+    int i = 1;
     for (String joinKey : joinKeys) {
       keyRecordBuilder.set(String.valueOf(i++), record.get(joinKey));
     }
 
+    HotKeyDetector hotKeys = perStageHotKeys == null ? null : perStageHotKeys.get(stageName);
+    if (hotKeys != null && hotKeys.sampleNext()) {
+      List<Object> keyValues = new ArrayList<>(joinKeys.size());
+      for (String joinKey : joinKeys) {
+        Object value = record.get(joinKey);
+        // arrays do not implement equals and hashCode
+        keyValues.add(value instanceof byte[] ? ByteBuffer.wrap((byte[]) value) : value);
+      }
+      hotKeys.add(keyValues);
+    }
+
     return keyRecordBuilder.build();
   }
 
+  private static Schema getKeySchema(Schema schema, List<String> joinKeys) {
+    List<Schema.Field> fields = new ArrayList<>();
+    int i = 1;
+    for (String joinKey : joinKeys) {
+      Schema.Field joinField = Schema.Field.of(String.valueOf(i++), schema.getField(joinKey).getSchema());
+      fields.add(joinField);
+    }
+    return Schema.recordOf("join.key", fields);
+  }
+
   @Override
   public JoinConfig getJoinConfig() {
     return new JoinConfig(requiredInputs);
@@ -120,19 +192,18 @@ public class Joiner extends BatchJoiner<StructuredRecord, StructuredRecord, Stru
     for (JoinElement<StructuredRecord> joinElement : joinRow) {
       String stageName = joinElement.getStageName();
       StructuredRecord record = joinElement.getInputRecord();
+      Schema recordSchema = record.getSchema();
 
-      Map<String, String> selectedFields = perStageSelectedFields.row(stageName);
-
-      for (Schema.Field field : record.getSchema().getFields()) {
-        String inputFieldName = field.getName();
-
-        // drop the field if not part of fieldsToRename
-        if (!selectedFields.containsKey(inputFieldName)) {
-          continue;
+      List<Map.Entry<String, String>> outputFields = perStageOutputFields.get(stageName);
+      if (outputFields == null) {
+        continue;
+      }
+      // only the selected fields are copied, the other fields are dropped
+      for (Map.Entry<String, String> outputField : outputFields) {
+        String inputFieldName = outputField.getKey();
+        if (recordSchema.getField(inputFieldName) != null) {
+          outRecordBuilder.set(outputField.getValue(), record.get(inputFieldName));
         }
-
-        String outputFieldName = selectedFields.get(inputFieldName);
-        outRecordBuilder.set(outputFieldName, record.get(inputFieldName));
       }
     }
     return outRecordBuilder.build();
@@ -57,7 +57,10 @@ public class JoinerConfig extends PluginConfig {
     " Required input stages decide the type of the join. If all the input stages are present in required inputs, " +
     "inner join will be performed. Otherwise, outer join will be performed considering non-required inputs as " +
     "optional.";
-
+  private static final String HOT_KEY_THRESHOLD_DESC = "Share of the records of an input, between 0 and 1, above " +
+    "which a join key is reported as a hot key. All records with the same join key are joined by a single task, " +
+    "so hot keys slow down the join. Hot keys are logged as warnings at the end of each task, with the hash of " +
+    "the key rather than its value. Defaults to 0, which disables hot key detection.";
 
   @Nullable
   @Description(NUM_PARTITIONS_DESC)
@@ -73,6 +76,10 @@ public class JoinerConfig extends PluginConfig {
   @Description(REQUIRED_INPUTS_DESC)
   protected String requiredInputs;
 
+  @Nullable
+  @Description(HOT_KEY_THRESHOLD_DESC)
+  protected Double hotKeyThreshold;
+
   public JoinerConfig() {
     this.joinKeys = "";
     this.selectedFields = "";
@@ -104,6 +111,16 @@ public class JoinerConfig extends PluginConfig {
     return requiredInputs;
   }
 
+  public double getHotKeyThreshold() {
+    return hotKeyThreshold == null ? 0d : hotKeyThreshold;
+  }
+
+  void validate() {
+    if (getHotKeyThreshold() < 0 || getHotKeyThreshold() > 1) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid hot key threshold %s. It must be between 0 and 1.", getHotKeyThreshold()));
+    }
+  }
 
   Map<String, List<String>> getPerStageJoinKeys() {
     Map<String, List<String>> stageToKey = new HashMap<>();
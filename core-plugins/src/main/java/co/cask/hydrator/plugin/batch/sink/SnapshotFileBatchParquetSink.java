@@ -27,13 +27,10 @@ import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.api.dataset.lib.FileSetProperties;
 import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.etl.api.Emitter;
-import co.cask.cdap.etl.api.batch.BatchRuntimeContext;
 import co.cask.hydrator.common.HiveSchemaConverter;
 import co.cask.hydrator.plugin.common.FileSetUtil;
-import co.cask.hydrator.plugin.common.StructuredToAvroTransformer;
-import org.apache.avro.generic.GenericRecord;
+import co.cask.hydrator.plugin.common.StructuredRecordParquetOutputFormat;
 import parquet.avro.AvroParquetInputFormat;
-import parquet.avro.AvroParquetOutputFormat;
 
 import java.io.IOException;
 import javax.annotation.Nullable;
@@ -41,30 +38,25 @@ import javax.annotation.Nullable;
 
 /**
  * {@link SnapshotFileBatchSink} that stores data in Parquet format.
+ * <p/>
+ * Records are written with a {@link co.cask.hydrator.plugin.common.StructuredRecordWriteSupport}, without
+ * converting them to Avro records.
  */
 @Plugin(type = "batchsink")
 @Name("SnapshotParquet")
 @Description("Sink for a SnapshotFileSet that writes data in Parquet format.")
-public class SnapshotFileBatchParquetSink extends SnapshotFileBatchSink<Void, GenericRecord> {
+public class SnapshotFileBatchParquetSink extends SnapshotFileBatchSink<Void, StructuredRecord> {
   private final SnapshotParquetConfig config;
 
-  private StructuredToAvroTransformer recordTransformer;
-
   public SnapshotFileBatchParquetSink(SnapshotParquetConfig config) {
     super(config);
     this.config = config;
   }
 
-  @Override
-  public void initialize(BatchRuntimeContext context) throws Exception {
-    super.initialize(context);
-    recordTransformer = new StructuredToAvroTransformer(config.schema);
-  }
-
   @Override
   public void transform(StructuredRecord input,
-                        Emitter<KeyValue<Void, GenericRecord>> emitter) throws Exception {
-    emitter.emit(new KeyValue<Void, GenericRecord>(null, recordTransformer.transform(input)));
+                        Emitter<KeyValue<Void, StructuredRecord>> emitter) throws Exception {
+    emitter.emit(new KeyValue<Void, StructuredRecord>(null, input));
   }
 
   @Override
@@ -80,10 +72,12 @@ public class SnapshotFileBatchParquetSink extends SnapshotFileBatchSink<Void, Ge
     }
     propertiesBuilder.addAll(FileSetUtil.getParquetCompressionConfiguration(config.compressionCodec, config.schema,
                                                                             true));
+    propertiesBuilder.addAll(FileSetUtil.getParquetWriterConfiguration(config.rowGroupSize, config.pageSize,
+                                                                       config.enableDictionary));
 
     propertiesBuilder
       .setInputFormat(AvroParquetInputFormat.class)
-      .setOutputFormat(AvroParquetOutputFormat.class)
+      .setOutputFormat(StructuredRecordParquetOutputFormat.class)
       .setEnableExploreOnCreate(true)
       .setExploreFormat("parquet")
       .setExploreSchema(hiveSchema.substring(1, hiveSchema.length() - 1))
@@ -102,6 +96,20 @@ public class SnapshotFileBatchParquetSink extends SnapshotFileBatchSink<Void, Ge
     @Description("Used to specify the compression codec to be used for the final dataset.")
     private String compressionCodec;
 
+    @Nullable
+    @Description("Size of a row group in bytes. A row group is buffered in memory before it is written. " +
+      "Defaults to 134217728 (128 MB).")
+    private Integer rowGroupSize;
+
+    @Nullable
+    @Description("Size of a page in bytes. A page is the smallest unit that must be read to access a single " +
+      "value. Defaults to 1048576 (1 MB).")
+    private Integer pageSize;
+
+    @Nullable
+    @Description("Whether to use dictionary encoding for columns with few distinct values. Defaults to true.")
+    private Boolean enableDictionary;
+
     public SnapshotParquetConfig(String name, @Nullable String basePath, String schema,
                                  @Nullable String compressionCodec) {
       super(name, basePath, null);
@@ -119,6 +127,7 @@ public class SnapshotFileBatchParquetSink extends SnapshotFileBatchSink<Void, Ge
       } catch (IOException e) {
         throw new IllegalArgumentException("Unable to parse schema: " + e.getMessage());
       }
+      FileSetUtil.validateParquetWriterConfiguration(rowGroupSize, pageSize);
     }
   }
 }
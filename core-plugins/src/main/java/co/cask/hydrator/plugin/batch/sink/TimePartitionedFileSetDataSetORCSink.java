@@ -24,12 +24,10 @@ import co.cask.cdap.api.dataset.lib.FileSetProperties;
 import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.api.dataset.lib.TimePartitionedFileSet;
 import co.cask.cdap.etl.api.Emitter;
-import co.cask.cdap.etl.api.batch.BatchRuntimeContext;
 import co.cask.cdap.etl.api.batch.BatchSink;
 import co.cask.hydrator.plugin.common.FileSetUtil;
-import co.cask.hydrator.plugin.common.StructuredToOrcTransformer;
+import co.cask.hydrator.plugin.common.StructuredRecordOrcOutputFormat;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.orc.mapred.OrcStruct;
 
 import javax.annotation.Nullable;
 
@@ -39,60 +37,62 @@ import javax.annotation.Nullable;
 @Plugin(type = BatchSink.PLUGIN_TYPE)
 @Name("TPFSOrc")
 @Description("Sink for a TimePartitionedFileSet that writes data in ORC format.")
-public class TimePartitionedFileSetDataSetORCSink extends TimePartitionedFileSetSink<NullWritable, OrcStruct> {
+public class TimePartitionedFileSetDataSetORCSink extends TimePartitionedFileSetSink<NullWritable, StructuredRecord> {
   private static final String ORC_COMPRESS = "orc.compress";
   private static final String SNAPPY_CODEC = "SNAPPY";
   private static final String ZLIB_CODEC = "ZLIB";
   private static final String COMPRESS_SIZE = "orc.compress.size";
+  private static final String STRIPE_SIZE = "orc.stripe.size";
   private static final String ROW_INDEX_STRIDE = "orc.row.index.stride";
-  private static final String CREATE_INDEX = "orc.create.index";
+  private static final String BLOOM_FILTER_COLUMNS = "orc.bloom.filter.columns";
+  private static final String BLOOM_FILTER_FPP = "orc.bloom.filter.fpp";
   private final TPFSOrcSinkConfig config;
-  private StructuredToOrcTransformer recordTransformer;
 
   public TimePartitionedFileSetDataSetORCSink(TPFSOrcSinkConfig config) {
     super(config);
     this.config = config;
   }
 
-  @Override
-  public void initialize(BatchRuntimeContext context) throws Exception {
-    super.initialize(context);
-    recordTransformer = new StructuredToOrcTransformer();
-  }
-
   @Override
   protected void addFileSetProperties(FileSetProperties.Builder properties) {
     FileSetUtil.configureORCFileSet(config.schema, properties);
     if (config.compressionCodec != null && !config.compressionCodec.equalsIgnoreCase("None")) {
-      switch (config.compressionCodec.toUpperCase()) {
-        case SNAPPY_CODEC:
-          properties.setOutputProperty(ORC_COMPRESS, SNAPPY_CODEC);
-          break;
-        case ZLIB_CODEC:
-          properties.setOutputProperty(ORC_COMPRESS, ZLIB_CODEC);
-          break;
-        default:
-          throw new IllegalArgumentException("Unsupported compression codec " + config.compressionCodec);
-      }
-      if (config.compressionChunkSize != null) {
-        properties.setOutputProperty(COMPRESS_SIZE, config.compressionChunkSize.toString());
-      }
-      if (config.stripeSize != null) {
-        properties.setOutputProperty(COMPRESS_SIZE, config.stripeSize.toString());
-      }
-      if (config.indexStride != null) {
-        properties.setOutputProperty(ROW_INDEX_STRIDE, config.indexStride.toString());
-      }
-      if (config.createIndex != null) {
-        properties.setOutputProperty(CREATE_INDEX, config.indexStride.toString());
-      }
+      properties.setOutputProperty(ORC_COMPRESS, getCodec(config.compressionCodec));
+    }
+    if (config.compressionChunkSize != null) {
+      properties.setOutputProperty(COMPRESS_SIZE, config.compressionChunkSize.toString());
+    }
+    if (config.stripeSize != null) {
+      properties.setOutputProperty(STRIPE_SIZE, config.stripeSize.toString());
+    }
+    if (config.indexStride != null) {
+      properties.setOutputProperty(ROW_INDEX_STRIDE, config.indexStride.toString());
+    }
+    if (config.createIndex != null) {
+      properties.setOutputProperty(StructuredRecordOrcOutputFormat.CREATE_INDEX, config.createIndex.toString());
+    }
+    if (config.bloomFilterColumns != null) {
+      properties.setOutputProperty(BLOOM_FILTER_COLUMNS, config.bloomFilterColumns);
+    }
+    if (config.bloomFilterFpp != null) {
+      properties.setOutputProperty(BLOOM_FILTER_FPP, config.bloomFilterFpp.toString());
     }
   }
 
   @Override
   public void transform(StructuredRecord input,
-                        Emitter<KeyValue<NullWritable, OrcStruct>> emitter) throws Exception {
-    emitter.emit(new KeyValue<>(NullWritable.get(), recordTransformer.transform(input, input.getSchema())));
+                        Emitter<KeyValue<NullWritable, StructuredRecord>> emitter) throws Exception {
+    emitter.emit(new KeyValue<>(NullWritable.get(), input));
+  }
+
+  private static String getCodec(String compressionCodec) {
+    switch (compressionCodec.toUpperCase()) {
+      case SNAPPY_CODEC:
+      case ZLIB_CODEC:
+        return compressionCodec.toUpperCase();
+      default:
+        throw new IllegalArgumentException("Unsupported compression codec " + compressionCodec);
+    }
   }
 
   /**
@@ -120,6 +120,15 @@ public class TimePartitionedFileSetDataSetORCSink extends TimePartitionedFileSet
     @Description("Whether to create inline indexes")
     private Boolean createIndex;
 
+    @Nullable
+    @Description("Comma separated list of the fields to create bloom filters for. Bloom filters let readers skip " +
+      "row groups that do not contain a given value of these fields.")
+    private String bloomFilterColumns;
+
+    @Nullable
+    @Description("False positive probability of the bloom filters, between 0 and 1. Defaults to 0.05.")
+    private Double bloomFilterFpp;
+
     public TPFSOrcSinkConfig(String name, @Nullable String basePath, @Nullable String pathFormat,
                              @Nullable String timeZone, @Nullable String compressionCodec,
                              @Nullable Long compressionChunkSize, @Nullable Long stripeSize, @Nullable Long indexStride,
@@ -131,5 +140,29 @@ public class TimePartitionedFileSetDataSetORCSink extends TimePartitionedFileSet
       this.indexStride = indexStride;
       this.createIndex = (createIndex != null && createIndex.equals("True"));
     }
+
+    @Override
+    public void validate() {
+      super.validate();
+      if (compressionCodec != null && !compressionCodec.equalsIgnoreCase("None")) {
+        getCodec(compressionCodec);
+      }
+      if (compressionChunkSize != null && compressionChunkSize <= 0) {
+        throw new IllegalArgumentException(String.format("Invalid compression chunk size %d. It must be positive.",
+                                                         compressionChunkSize));
+      }
+      if (stripeSize != null && stripeSize <= 0) {
+        throw new IllegalArgumentException(String.format("Invalid stripe size %d. It must be positive.",
+                                                         stripeSize));
+      }
+      if (indexStride != null && indexStride < 1000) {
+        throw new IllegalArgumentException(String.format("Invalid index stride %d. It must be at least 1000.",
+                                                         indexStride));
+      }
+      if (bloomFilterFpp != null && (bloomFilterFpp <= 0 || bloomFilterFpp >= 1)) {
+        throw new IllegalArgumentException(String.format("Invalid bloom filter false positive probability %s. " +
+                                                           "It must be between 0 and 1.", bloomFilterFpp));
+      }
+    }
   }
 }
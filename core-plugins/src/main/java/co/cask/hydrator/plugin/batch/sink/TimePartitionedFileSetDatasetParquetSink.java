@@ -24,23 +24,22 @@ import co.cask.cdap.api.dataset.lib.FileSetProperties;
 import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.api.dataset.lib.TimePartitionedFileSet;
 import co.cask.cdap.etl.api.Emitter;
-import co.cask.cdap.etl.api.batch.BatchRuntimeContext;
 import co.cask.cdap.etl.api.batch.BatchSink;
 import co.cask.hydrator.plugin.common.FileSetUtil;
-import co.cask.hydrator.plugin.common.StructuredToAvroTransformer;
-import org.apache.avro.generic.GenericRecord;
+import co.cask.hydrator.plugin.common.StructuredRecordWriteSupport;
 
 import javax.annotation.Nullable;
 
 /**
  * A {@link BatchSink} to write Parquet records to a {@link TimePartitionedFileSet}.
+ * <p/>
+ * Records are written with a {@link StructuredRecordWriteSupport}, without converting them to Avro records.
  */
 @Plugin(type = "batchsink")
 @Name("TPFSParquet")
 @Description("Sink for a TimePartitionedFileSet that writes data in Parquet format.")
-public class TimePartitionedFileSetDatasetParquetSink extends TimePartitionedFileSetSink<Void, GenericRecord> {
+public class TimePartitionedFileSetDatasetParquetSink extends TimePartitionedFileSetSink<Void, StructuredRecord> {
 
-  private StructuredToAvroTransformer recordTransformer;
   private final TPFSParquetSinkConfig config;
 
   public TimePartitionedFileSetDatasetParquetSink(TPFSParquetSinkConfig config) {
@@ -52,17 +51,13 @@ public class TimePartitionedFileSetDatasetParquetSink extends TimePartitionedFil
   protected void addFileSetProperties(FileSetProperties.Builder properties) {
     FileSetUtil.configureParquetFileSet(config.schema, properties);
     properties.addAll(FileSetUtil.getParquetCompressionConfiguration(config.compressionCodec, config.schema, true));
+    properties.addAll(FileSetUtil.getParquetWriterConfiguration(config.rowGroupSize, config.pageSize,
+                                                                config.enableDictionary));
   }
 
   @Override
-  public void initialize(BatchRuntimeContext context) throws Exception {
-    super.initialize(context);
-    recordTransformer = new StructuredToAvroTransformer(config.schema);
-  }
-
-  @Override
-  public void transform(StructuredRecord input, Emitter<KeyValue<Void, GenericRecord>> emitter) throws Exception {
-    emitter.emit(new KeyValue<Void, GenericRecord>(null, recordTransformer.transform(input)));
+  public void transform(StructuredRecord input, Emitter<KeyValue<Void, StructuredRecord>> emitter) throws Exception {
+    emitter.emit(new KeyValue<Void, StructuredRecord>(null, input));
   }
 
   /**
@@ -74,10 +69,30 @@ public class TimePartitionedFileSetDatasetParquetSink extends TimePartitionedFil
     @Description("Used to specify the compression codec to be used for the final dataset.")
     private String compressionCodec;
 
+    @Nullable
+    @Description("Size of a row group in bytes. A row group is buffered in memory before it is written. " +
+      "Defaults to 134217728 (128 MB).")
+    private Integer rowGroupSize;
+
+    @Nullable
+    @Description("Size of a page in bytes. A page is the smallest unit that must be read to access a single " +
+      "value. Defaults to 1048576 (1 MB).")
+    private Integer pageSize;
+
+    @Nullable
+    @Description("Whether to use dictionary encoding for columns with few distinct values. Defaults to true.")
+    private Boolean enableDictionary;
+
     public TPFSParquetSinkConfig(String name, @Nullable String basePath, @Nullable String pathFormat,
                                  @Nullable String timeZone, @Nullable String compressionCodec) {
       super(name, basePath, pathFormat, timeZone);
       this.compressionCodec = compressionCodec;
     }
+
+    @Override
+    public void validate() {
+      super.validate();
+      FileSetUtil.validateParquetWriterConfiguration(rowGroupSize, pageSize);
+    }
   }
 }
@@ -19,35 +19,29 @@ package co.cask.hydrator.plugin.batch.source;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
-import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
-import org.apache.poi.ss.util.CellReference;
 
+import java.io.File;
 import java.io.IOException;
-import java.util.Iterator;
+import java.util.Map;
 
 
 /**
- * {@link ExcelInputFormat} is {@link TextInputFormat} implementation for reading Excel files.
+ * {@link ExcelInputFormat} is {@link FileInputFormat} implementation for reading Excel files.
  *
  * The {@link ExcelInputFormat.ExcelRecordReader} reads a given sheet, and within a sheet reads
  * all columns and all rows.
  */
-public class ExcelInputFormat extends TextInputFormat {
+public class ExcelInputFormat extends FileInputFormat<LongWritable, ExcelRow> {
 
   public static final String SHEET_NAME = "Sheet Name";
   public static final String RE_PROCESS = "reprocess";
@@ -62,10 +56,16 @@ public class ExcelInputFormat extends TextInputFormat {
   public static final String SHEET_VALUE = "sheetValue";
 
   @Override
-  public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+  public RecordReader<LongWritable, ExcelRow> createRecordReader(InputSplit split, TaskAttemptContext context) {
     return new ExcelRecordReader();
   }
 
+  @Override
+  protected boolean isSplitable(JobContext context, Path filename) {
+    // a workbook can only be read as a whole
+    return false;
+  }
+
   public static void setConfigurations(Job job, String filePattern, String sheet, boolean reprocess,
                                        String sheetValue, String columnList, boolean skipFirstRow,
                                        String terminateIfEmptyRow, String rowLimit, String ifErrorRecord,
@@ -90,29 +90,27 @@ public class ExcelInputFormat extends TextInputFormat {
 
 
   /**
-   * Reads excel spread sheet, where the keys are the offset in the excel file and the text is the complete record.
+   * Reads excel spread sheet, where the keys are the row index and the values are the typed cells of a row.
+   *
+   * The file is copied to the local disk of the task first, so that XLSX files can be read with random access to
+   * their zip entries instead of being held in memory.
    */
-  public static class ExcelRecordReader extends RecordReader<LongWritable, Text> {
-
-    public static final String END = "END";
-    public static final String MID = "MID";
-
-    // Non-printable ASCII character(EOT) to seperate column-values
-    public static final String CELL_SEPERATOR = String.valueOf((char) 4);
-
-    public static final String COLUMN_SEPERATOR = "\r";
+  public static class ExcelRecordReader extends RecordReader<LongWritable, ExcelRow> {
 
     // Map key that represents the row index.
     private LongWritable key;
 
     // Map value that represents an excel row
-    private Text value;
+    private ExcelRow value;
+
+    // Reads the rows of the sheet, one row ahead of the current row.
+    private ExcelSheetReader rows;
 
-    // Specifies all the rows of an Excel spreadsheet - An iterator over all the rows.
-    private Iterator<Row> rows;
+    // Whether the sheet reader is positioned on a row that was not returned yet.
+    private boolean hasNext;
 
-    // InputStream handler for Excel files.
-    private FSDataInputStream fileIn;
+    // Local copy of the input file.
+    private File localFile;
 
     // Path of input file.
     private Path file;
@@ -120,9 +118,6 @@ public class ExcelInputFormat extends TextInputFormat {
     // Specifies the row index.
     private long rowIdx;
 
-    // Specifies last row num.
-    private int lastRowNum;
-
     //Keeps row limits
     private int rowCount;
 
@@ -135,84 +130,44 @@ public class ExcelInputFormat extends TextInputFormat {
       file = split.getPath();
 
       FileSystem fs = file.getFileSystem(job);
-      fileIn = fs.open(split.getPath());
+      localFile = File.createTempFile("excel-", "-" + file.getName());
+      fs.copyToLocalFile(false, file, new Path(localFile.getAbsolutePath()), true);
 
       // Reads the excel file, selects the sheet to be read.
       String sheet = job.get(SHEET);
       String sheetValue = job.get(SHEET_VALUE);
 
-      Sheet workSheet; // sheet can be used as common for XSSF and HSSF workbook
       try {
-        Workbook workbook = WorkbookFactory.create(fileIn);
-        if (sheet.equalsIgnoreCase(SHEET_NAME)) {
-          workSheet = workbook.getSheet(sheetValue);
-        } else {
-          workSheet = workbook.getSheetAt(Integer.parseInt(sheetValue));
-        }
+        rows = ExcelSheetReader.open(localFile, sheet.equalsIgnoreCase(SHEET_NAME), sheetValue);
       } catch (Exception e) {
         throw new IllegalArgumentException("Exception while reading excel sheet. " + e.getMessage(), e);
       }
 
-      rowCount = job.getInt(ROWS_LIMIT, workSheet.getPhysicalNumberOfRows());
-      rows = workSheet.iterator();
-      lastRowNum = workSheet.getLastRowNum();
+      rowCount = job.getInt(ROWS_LIMIT, Integer.MAX_VALUE);
       rowIdx = 0;
 
       boolean skipFirstRow = job.getBoolean(SKIP_FIRST_ROW, false);
       if (skipFirstRow) {
-        Preconditions.checkArgument(rows.hasNext(), "No rows found on sheet %s", sheetValue);
+        Preconditions.checkArgument(rows.next(), "No rows found on sheet %s", sheetValue);
         rowIdx = 1;
-        rows.next();
       }
+      hasNext = rows.next();
     }
 
     @Override
     public boolean nextKeyValue() throws IOException, InterruptedException {
-      if (!rows.hasNext() || rowCount == 0) {
+      if (!hasNext || rowCount == 0) {
         return false;
       }
 
-      StringBuilder sb = new StringBuilder();
-
-      // Get the next row.
-      Row row = rows.next();
-
-      // For each row, iterate through each columns
-      Iterator<Cell> cellIterator = row.cellIterator();
-
-      sb.append(row.getRowNum()).append(CELL_SEPERATOR);
-      sb.append(file).append(CELL_SEPERATOR);
-      sb.append(row.getSheet().getSheetName()).append(CELL_SEPERATOR);
-
-      if (rowCount - 1 == 0 || !rows.hasNext()) {
-        sb.append(END).append(CELL_SEPERATOR);
-      } else {
-        sb.append(MID).append(CELL_SEPERATOR);
-      }
+      int rowNum = rows.getRowNumber();
+      Map<String, Object> cells = rows.getCells();
+      hasNext = rows.next();
+      boolean last = rowCount - 1 == 0 || !hasNext;
       rowCount--;
 
       key = new LongWritable(rowIdx);
-      while (cellIterator.hasNext()) {
-        Cell cell = cellIterator.next();
-        String colName = CellReference.convertNumToColString(cell.getColumnIndex());
-        switch (cell.getCellType()) {
-          case Cell.CELL_TYPE_STRING:
-            sb.append(colName)
-              .append(COLUMN_SEPERATOR).append(cell.getStringCellValue()).append(CELL_SEPERATOR);
-            break;
-
-          case Cell.CELL_TYPE_BOOLEAN:
-            sb.append(colName)
-              .append(COLUMN_SEPERATOR).append(cell.getBooleanCellValue()).append(CELL_SEPERATOR);
-            break;
-
-          case Cell.CELL_TYPE_NUMERIC:
-            sb.append(colName)
-              .append(COLUMN_SEPERATOR).append(cell.getNumericCellValue()).append(CELL_SEPERATOR);
-            break;
-        }
-      }
-      value = new Text(sb.toString());
+      value = new ExcelRow(rowNum, file.toString(), rows.getSheetName(), last, cells);
       rowIdx++;
 
       return true;
@@ -220,13 +175,19 @@ public class ExcelInputFormat extends TextInputFormat {
 
     @Override
     public float getProgress() throws IOException {
-        return rowIdx / lastRowNum;
+      return rows == null ? 0f : rows.getProgress();
     }
 
     @Override
     public void close() throws IOException {
-      if (fileIn != null) {
-        fileIn.close();
+      try {
+        if (rows != null) {
+          rows.close();
+        }
+      } finally {
+        if (localFile != null && !localFile.delete()) {
+          localFile.deleteOnExit();
+        }
       }
     }
 
@@ -236,7 +197,7 @@ public class ExcelInputFormat extends TextInputFormat {
     }
 
     @Override
-    public Text getCurrentValue() throws IOException, InterruptedException {
+    public ExcelRow getCurrentValue() throws IOException, InterruptedException {
       return value;
     }
   }
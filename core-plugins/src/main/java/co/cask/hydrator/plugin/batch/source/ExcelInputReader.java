@@ -76,13 +76,8 @@ public class ExcelInputReader extends BatchSource<LongWritable, Object, Structur
   private static final String EXIT_ON_ERROR = "Exit on error";
   private static final String WRITE_ERROR_DATASET = "Write to error dataset";
   private static final String NULL = "NULL";
-  private static final String END = "END";
   private static final String SHEET_NO = "Sheet Number";
 
-  // Non-printable ASCII character(EOT) to seperate column-values
-  private static final String CELL_SEPERATION = String.valueOf((char) 4);
-  private static final String COLUMN_SEPERATION = "\r";
-
   private static final Gson GSON = new Gson();
   private static final Type ARRAYLIST_PREPROCESSED_FILES = new TypeToken<ArrayList<String>>() { }.getType();
 
@@ -155,34 +150,26 @@ public class ExcelInputReader extends BatchSource<LongWritable, Object, Structur
 
     getOutputSchema();
     StructuredRecord.Builder builder = StructuredRecord.builder(outputSchema);
-    String inputValue = input.getValue().toString();
-
-    String[] excelRecord = inputValue.split(CELL_SEPERATION);
+    ExcelRow excelRow = (ExcelRow) input.getValue();
 
-    String fileName = excelRecord[1];
-    String sheetName = excelRecord[2];
-    String ifEndRow = excelRecord[3];
+    String fileName = excelRow.getFile();
+    String sheetName = excelRow.getSheet();
 
-    int currentRowNum = Integer.parseInt(excelRecord[0]);
+    int currentRowNum = excelRow.getRowNumber();
     if (currentRowNum - prevRowNum > 1 && excelInputreaderConfig.terminateIfEmptyRow.equalsIgnoreCase("true")) {
       throw new ExecutionException("Encountered empty row while reading Excel file :" + fileName +
                                      " . Terminating processing", new Throwable());
     }
     prevRowNum = currentRowNum;
 
-    Map<String, String> excelColumnValueMap = new HashMap<>();
-
-    for (String column : excelRecord) {
-      String[] columnValue = column.split(COLUMN_SEPERATION);
-      if (columnValue.length > 1) {
-        String name = columnValue[0];
-        String value = columnValue[1];
+    Map<String, Object> excelColumnValueMap = new HashMap<>();
 
-        if (columnMapping.containsKey(name)) {
-          excelColumnValueMap.put(columnMapping.get(name), value);
-        } else {
-          excelColumnValueMap.put(name, value);
-        }
+    for (Map.Entry<String, Object> cell : excelRow.getCells().entrySet()) {
+      String name = cell.getKey();
+      if (columnMapping.containsKey(name)) {
+        excelColumnValueMap.put(columnMapping.get(name), cell.getValue());
+      } else {
+        excelColumnValueMap.put(name, cell.getValue());
       }
     }
 
@@ -190,7 +177,7 @@ public class ExcelInputReader extends BatchSource<LongWritable, Object, Structur
       for (Schema.Field field : outputSchema.getFields()) {
         String fieldName = field.getName();
         if (excelColumnValueMap.containsKey(fieldName)) {
-          builder.convertAndSet(fieldName, excelColumnValueMap.get(fieldName));
+          setValue(builder, field, excelColumnValueMap.get(fieldName));
         } else {
           builder.set(fieldName, NULL);
         }
@@ -201,7 +188,7 @@ public class ExcelInputReader extends BatchSource<LongWritable, Object, Structur
 
       emitter.emit(builder.build());
 
-      if (ifEndRow.equalsIgnoreCase(END) && !Strings.isNullOrEmpty(excelInputreaderConfig.memoryTableName)) {
+      if (excelRow.isLast() && !Strings.isNullOrEmpty(excelInputreaderConfig.memoryTableName)) {
         KeyValueTable processedFileMemoryTable = batchRuntimeContext.getDataset(excelInputreaderConfig.memoryTableName);
         processedFileMemoryTable.write(Bytes.toBytes(fileName), Bytes.toBytes(new Date().getTime()));
       }
@@ -211,10 +198,10 @@ public class ExcelInputReader extends BatchSource<LongWritable, Object, Structur
           throw new IllegalStateException("Terminating processing on error : " + e.getMessage());
         case WRITE_ERROR_DATASET:
           StructuredRecord.Builder errorRecordBuilder = StructuredRecord.builder(errorRecordSchema);
-          errorRecordBuilder.set(KEY, fileName + "_" + sheetName + "_" + excelRecord[0]);
+          errorRecordBuilder.set(KEY, fileName + "_" + sheetName + "_" + currentRowNum);
           errorRecordBuilder.set(FILE, fileName);
           errorRecordBuilder.set(SHEET, sheetName);
-          errorRecordBuilder.set(RECORD, inputValue);
+          errorRecordBuilder.set(RECORD, excelRow.toString());
           Table errorTable = batchRuntimeContext.getDataset(excelInputreaderConfig.errorDatasetName);
           errorTable.write(errorRecordBuilder.build());
           break;
@@ -225,6 +212,45 @@ public class ExcelInputReader extends BatchSource<LongWritable, Object, Structur
     }
   }
 
+  /**
+   * Sets a typed cell value, converting it to the type of the field. Numbers are only converted to an int or a
+   * long field if they do not have a fractional part.
+   */
+  private static void setValue(StructuredRecord.Builder builder, Schema.Field field, Object value) {
+    String fieldName = field.getName();
+    Schema.Type type = field.getSchema().isNullable() ?
+      field.getSchema().getNonNullable().getType() : field.getSchema().getType();
+    if (value instanceof Double) {
+      double number = (Double) value;
+      switch (type) {
+        case DOUBLE:
+          builder.set(fieldName, number);
+          return;
+        case FLOAT:
+          builder.set(fieldName, (float) number);
+          return;
+        case INT:
+          if (number == Math.rint(number) && number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+            builder.set(fieldName, (int) number);
+            return;
+          }
+          break;
+        case LONG:
+          if (number == Math.rint(number) && number >= Long.MIN_VALUE && number <= Long.MAX_VALUE) {
+            builder.set(fieldName, (long) number);
+            return;
+          }
+          break;
+        default:
+          break;
+      }
+    } else if (value instanceof Boolean && type == Schema.Type.BOOLEAN) {
+      builder.set(fieldName, value);
+      return;
+    }
+    builder.convertAndSet(fieldName, String.valueOf(value));
+  }
+
   /**
    * Returns list of all the processed file names which are kept in memory table.
    * @param batchSourceContext
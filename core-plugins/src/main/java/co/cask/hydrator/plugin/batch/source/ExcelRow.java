@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.source;
+
+import java.util.Map;
+
+/**
+ * A row of an Excel sheet, as read by the {@link ExcelInputFormat}. Cell values are keyed by column name, such as
+ * "A" or "AB", and are either a {@link String}, a {@link Double} or a {@link Boolean}. Empty cells, error cells and
+ * formula cells are not included.
+ */
+public final class ExcelRow {
+  // Non-printable ASCII character(EOT) to seperate column-values in the text representation
+  private static final String CELL_SEPERATOR = String.valueOf((char) 4);
+  private static final String COLUMN_SEPERATOR = "\r";
+  private static final String END = "END";
+  private static final String MID = "MID";
+
+  private final int rowNumber;
+  private final String file;
+  private final String sheet;
+  private final boolean last;
+  private final Map<String, Object> cells;
+
+  ExcelRow(int rowNumber, String file, String sheet, boolean last, Map<String, Object> cells) {
+    this.rowNumber = rowNumber;
+    this.file = file;
+    this.sheet = sheet;
+    this.last = last;
+    this.cells = cells;
+  }
+
+  /**
+   * @return the zero based number of the row in the sheet
+   */
+  public int getRowNumber() {
+    return rowNumber;
+  }
+
+  public String getFile() {
+    return file;
+  }
+
+  public String getSheet() {
+    return sheet;
+  }
+
+  /**
+   * @return whether this is the last row read from the sheet
+   */
+  public boolean isLast() {
+    return last;
+  }
+
+  public Map<String, Object> getCells() {
+    return cells;
+  }
+
+  /**
+   * Returns the row in the delimited text format that was used for Excel records before rows were read as typed
+   * values, which is kept for the records written to the error dataset.
+   */
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(rowNumber).append(CELL_SEPERATOR);
+    sb.append(file).append(CELL_SEPERATOR);
+    sb.append(sheet).append(CELL_SEPERATOR);
+    sb.append(last ? END : MID).append(CELL_SEPERATOR);
+    for (Map.Entry<String, Object> cell : cells.entrySet()) {
+      sb.append(cell.getKey()).append(COLUMN_SEPERATOR).append(cell.getValue()).append(CELL_SEPERATOR);
+    }
+    return sb.toString();
+  }
+}
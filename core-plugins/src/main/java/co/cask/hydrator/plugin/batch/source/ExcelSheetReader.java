@@ -0,0 +1,377 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.batch.source;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Reads the rows of one sheet of an Excel file, one row at a time.
+ *
+ * XLSX files are read with a pull parser over the sheet XML, so only the shared strings table and the current
+ * row are held in memory, whatever the size of the sheet. XLS files are limited to 65536 rows and are read with
+ * the POI user model.
+ */
+abstract class ExcelSheetReader implements Closeable {
+  private static final byte[] ZIP_MAGIC = {'P', 'K', 3, 4};
+
+  /**
+   * Opens the given sheet of an Excel file.
+   *
+   * @param file a local Excel file
+   * @param byName whether the sheet is selected by name or by zero based index
+   * @param sheet the name or index of the sheet
+   */
+  static ExcelSheetReader open(File file, boolean byName, String sheet) throws Exception {
+    byte[] header = new byte[ZIP_MAGIC.length];
+    int read;
+    try (InputStream in = new FileInputStream(file)) {
+      read = in.read(header);
+    }
+    if (read == header.length && Arrays.equals(header, ZIP_MAGIC)) {
+      return new XlsxSheetReader(file, byName, sheet);
+    }
+    return new WorkbookSheetReader(file, byName, sheet);
+  }
+
+  /**
+   * Moves to the next row of the sheet.
+   *
+   * @return false if there are no more rows
+   */
+  abstract boolean next() throws IOException;
+
+  /**
+   * @return the zero based number of the current row
+   */
+  abstract int getRowNumber();
+
+  /**
+   * @return the values of the current row by column name, in column order
+   */
+  abstract Map<String, Object> getCells();
+
+  abstract String getSheetName();
+
+  /**
+   * @return an estimate of the fraction of the sheet read so far
+   */
+  abstract float getProgress();
+
+  private static float progress(int rowNumber, int lastRowNumber) {
+    return lastRowNumber <= 0 ? 0f : Math.min(1f, (float) rowNumber / lastRowNumber);
+  }
+
+  /**
+   * Reads a sheet of an XLSX file with a StAX parser. Formula cells are skipped, as they are by the
+   * {@link WorkbookSheetReader}.
+   */
+  static final class XlsxSheetReader extends ExcelSheetReader {
+    private final OPCPackage pkg;
+    private final ReadOnlySharedStringsTable sharedStrings;
+    private final InputStream sheetData;
+    private final XMLStreamReader xml;
+    private final String sheetName;
+    private int lastRowNumber = -1;
+    private int rowNumber = -1;
+    private Map<String, Object> cells;
+
+    private XlsxSheetReader(File file, boolean byName, String sheet) throws Exception {
+      pkg = OPCPackage.open(file.getPath(), PackageAccess.READ);
+      try {
+        XSSFReader reader = new XSSFReader(pkg);
+        sharedStrings = new ReadOnlySharedStringsTable(pkg);
+        XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+        InputStream selected = null;
+        String selectedName = null;
+        for (int index = 0; selected == null && sheets.hasNext(); index++) {
+          InputStream in = sheets.next();
+          // same as Workbook.getSheet(), sheet names are case insensitive
+          if (byName ? sheets.getSheetName().equalsIgnoreCase(sheet) : index == Integer.parseInt(sheet)) {
+            selected = in;
+            selectedName = sheets.getSheetName();
+          } else {
+            in.close();
+          }
+        }
+        if (selected == null) {
+          throw new IllegalArgumentException(String.format("Sheet %s not found in %s", sheet, file.getName()));
+        }
+        sheetData = selected;
+        sheetName = selectedName;
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xml = factory.createXMLStreamReader(sheetData);
+      } catch (Exception e) {
+        pkg.revert();
+        throw e;
+      }
+    }
+
+    @Override
+    boolean next() throws IOException {
+      try {
+        while (xml.hasNext()) {
+          if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+            continue;
+          }
+          String element = xml.getLocalName();
+          if ("dimension".equals(element)) {
+            lastRowNumber = parseLastRow(xml.getAttributeValue(null, "ref"));
+          } else if ("row".equals(element)) {
+            readRow();
+            return true;
+          }
+        }
+        return false;
+      } catch (XMLStreamException e) {
+        throw new IOException("Failed to read sheet " + sheetName, e);
+      }
+    }
+
+    private void readRow() throws XMLStreamException {
+      String r = xml.getAttributeValue(null, "r");
+      rowNumber = r == null ? rowNumber + 1 : Integer.parseInt(r) - 1;
+      cells = new LinkedHashMap<>();
+      int column = 0;
+      String cellType = null;
+      String value = null;
+      StringBuilder inlineString = null;
+      boolean formula = false;
+      while (xml.hasNext()) {
+        int event = xml.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          String element = xml.getLocalName();
+          if ("c".equals(element)) {
+            String ref = xml.getAttributeValue(null, "r");
+            if (ref != null) {
+              column = CellReference.convertColStringToIndex(ref.substring(0, columnEnd(ref)));
+            }
+            cellType = xml.getAttributeValue(null, "t");
+            value = null;
+            inlineString = null;
+            formula = false;
+          } else if ("f".equals(element)) {
+            formula = true;
+          } else if ("v".equals(element)) {
+            value = xml.getElementText();
+          } else if ("t".equals(element)) {
+            // text of an inline string, possibly split in rich text runs
+            inlineString = inlineString == null ? new StringBuilder() : inlineString;
+            inlineString.append(xml.getElementText());
+          } else if ("rPh".equals(element)) {
+            // phonetic hints are not part of the cell value
+            skipElement();
+          }
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          String element = xml.getLocalName();
+          if ("c".equals(element)) {
+            Object cellValue = formula ? null : cellValue(cellType, value, inlineString);
+            if (cellValue != null) {
+              cells.put(CellReference.convertNumToColString(column), cellValue);
+            }
+            column++;
+          } else if ("row".equals(element)) {
+            return;
+          }
+        }
+      }
+    }
+
+    private Object cellValue(String type, String value, StringBuilder inlineString) {
+      if ("inlineStr".equals(type)) {
+        return inlineString == null ? null : inlineString.toString();
+      }
+      if (value == null) {
+        return null;
+      }
+      if (type == null || "n".equals(type)) {
+        return Double.parseDouble(value);
+      }
+      switch (type) {
+        case "s":
+          return sharedStrings.getEntryAt(Integer.parseInt(value));
+        case "b":
+          return "1".equals(value);
+        case "str":
+        case "d":
+          return value;
+        default:
+          // error cells
+          return null;
+      }
+    }
+
+    private void skipElement() throws XMLStreamException {
+      int depth = 1;
+      while (depth > 0) {
+        int event = xml.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          depth++;
+        } else if (event == XMLStreamConstants.END_ELEMENT) {
+          depth--;
+        }
+      }
+    }
+
+    private static int columnEnd(String ref) {
+      int end = 0;
+      while (end < ref.length() && Character.isLetter(ref.charAt(end))) {
+        end++;
+      }
+      return end;
+    }
+
+    private static int parseLastRow(String ref) {
+      if (ref == null) {
+        return -1;
+      }
+      String last = ref.substring(ref.indexOf(':') + 1);
+      String digits = last.substring(columnEnd(last));
+      return digits.isEmpty() ? -1 : Integer.parseInt(digits) - 1;
+    }
+
+    @Override
+    int getRowNumber() {
+      return rowNumber;
+    }
+
+    @Override
+    Map<String, Object> getCells() {
+      return cells;
+    }
+
+    @Override
+    String getSheetName() {
+      return sheetName;
+    }
+
+    @Override
+    float getProgress() {
+      return progress(rowNumber, lastRowNumber);
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        xml.close();
+        sheetData.close();
+      } catch (XMLStreamException e) {
+        throw new IOException(e);
+      } finally {
+        // the package is opened read only, so it must not be saved on close
+        pkg.revert();
+      }
+    }
+  }
+
+  /**
+   * Reads a sheet of any workbook supported by POI with the user model, which holds the whole workbook in memory.
+   */
+  static final class WorkbookSheetReader extends ExcelSheetReader {
+    private final Sheet sheet;
+    private final Iterator<Row> rows;
+    private Row row;
+
+    private WorkbookSheetReader(File file, boolean byName, String sheetValue) throws Exception {
+      Workbook workbook;
+      try (InputStream in = new FileInputStream(file)) {
+        workbook = WorkbookFactory.create(in);
+      }
+      sheet = byName ? workbook.getSheet(sheetValue) : workbook.getSheetAt(Integer.parseInt(sheetValue));
+      if (sheet == null) {
+        throw new IllegalArgumentException(String.format("Sheet %s not found in %s", sheetValue, file.getName()));
+      }
+      rows = sheet.iterator();
+    }
+
+    @Override
+    boolean next() {
+      if (!rows.hasNext()) {
+        return false;
+      }
+      row = rows.next();
+      return true;
+    }
+
+    @Override
+    int getRowNumber() {
+      return row.getRowNum();
+    }
+
+    @Override
+    Map<String, Object> getCells() {
+      Map<String, Object> cells = new LinkedHashMap<>();
+      Iterator<Cell> cellIterator = row.cellIterator();
+      while (cellIterator.hasNext()) {
+        Cell cell = cellIterator.next();
+        String colName = CellReference.convertNumToColString(cell.getColumnIndex());
+        switch (cell.getCellType()) {
+          case Cell.CELL_TYPE_STRING:
+            cells.put(colName, cell.getStringCellValue());
+            break;
+
+          case Cell.CELL_TYPE_BOOLEAN:
+            cells.put(colName, cell.getBooleanCellValue());
+            break;
+
+          case Cell.CELL_TYPE_NUMERIC:
+            cells.put(colName, cell.getNumericCellValue());
+            break;
+        }
+      }
+      return cells;
+    }
+
+    @Override
+    String getSheetName() {
+      return sheet.getSheetName();
+    }
+
+    @Override
+    float getProgress() {
+      return row == null ? 0f : progress(row.getRowNum(), sheet.getLastRowNum());
+    }
+
+    @Override
+    public void close() {
+      // the workbook was read from a stream that is already closed
+    }
+  }
+}
@@ -25,8 +25,10 @@ import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.api.dataset.lib.TimePartitionedFileSet;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.PipelineConfigurer;
+import co.cask.cdap.etl.api.batch.BatchRuntimeContext;
 import co.cask.cdap.etl.api.batch.BatchSource;
 import co.cask.hydrator.plugin.common.AvroToStructuredTransformer;
+import co.cask.hydrator.plugin.common.ColumnFilter;
 import co.cask.hydrator.plugin.common.FileSetUtil;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
@@ -35,6 +37,8 @@ import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.mapred.AvroKey;
 import org.apache.hadoop.io.NullWritable;
 
+import java.util.Map;
+
 /**
  * A {@link BatchSource} to read Avro record from {@link TimePartitionedFileSet}
  */
@@ -46,6 +50,7 @@ public class TimePartitionedFileSetDatasetAvroSource extends
   private final TPFSAvroConfig tpfsAvroConfig;
 
   private final AvroToStructuredTransformer recordTransformer = new AvroToStructuredTransformer();
+  private ColumnFilter filter;
 
   /**
    * Config for TimePartitionedFileSetDatasetAvroSource
@@ -63,6 +68,7 @@ public class TimePartitionedFileSetDatasetAvroSource extends
       } catch (Exception e) {
         throw new IllegalArgumentException("Unable to parse schema with error: " + e.getMessage(), e);
       }
+      getFilter(getReadSchema(schema).toString());
     }
   }
 
@@ -71,7 +77,8 @@ public class TimePartitionedFileSetDatasetAvroSource extends
     super.configurePipeline(pipelineConfigurer);
     Preconditions.checkArgument(!Strings.isNullOrEmpty(tpfsAvroConfig.schema), "Schema must be specified.");
     try {
-      co.cask.cdap.api.data.schema.Schema schema = co.cask.cdap.api.data.schema.Schema.parseJson(tpfsAvroConfig.schema);
+      co.cask.cdap.api.data.schema.Schema schema =
+        co.cask.cdap.api.data.schema.Schema.parseJson(tpfsAvroConfig.getReadSchema(tpfsAvroConfig.schema).toString());
       pipelineConfigurer.getStageConfigurer().setOutputSchema(schema);
     } catch (Exception e) {
       throw new IllegalArgumentException("Invalid output schema: " + e.getMessage(), e);
@@ -88,9 +95,27 @@ public class TimePartitionedFileSetDatasetAvroSource extends
     FileSetUtil.configureAvroFileSet(tpfsAvroConfig.schema, properties);
   }
 
+  @Override
+  protected void addInputArguments(Map<String, String> arguments) {
+    if (tpfsAvroConfig.isFilteredOrProjected()) {
+      arguments.putAll(FileSetUtil.getAvroReadArguments(tpfsAvroConfig.getReadSchema(tpfsAvroConfig.schema)
+                                                          .toString()));
+    }
+  }
+
+  @Override
+  public void initialize(BatchRuntimeContext context) throws Exception {
+    super.initialize(context);
+    // Avro files can not skip records, so they are filtered once they are read
+    filter = tpfsAvroConfig.getFilter(tpfsAvroConfig.getReadSchema(tpfsAvroConfig.schema).toString());
+  }
+
   @Override
   public void transform(KeyValue<AvroKey<GenericRecord>, NullWritable> input,
                         Emitter<StructuredRecord> emitter) throws Exception {
-    emitter.emit(recordTransformer.transform(input.getKey().datum()));
+    GenericRecord record = input.getKey().datum();
+    if (filter == null || filter.test(record)) {
+      emitter.emit(recordTransformer.transform(record));
+    }
   }
 }
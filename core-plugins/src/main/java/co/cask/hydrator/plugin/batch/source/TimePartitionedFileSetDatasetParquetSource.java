@@ -27,12 +27,15 @@ import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.PipelineConfigurer;
 import co.cask.cdap.etl.api.batch.BatchSource;
 import co.cask.hydrator.plugin.common.AvroToStructuredTransformer;
+import co.cask.hydrator.plugin.common.ColumnFilter;
 import co.cask.hydrator.plugin.common.FileSetUtil;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.hadoop.io.NullWritable;
 
+import java.util.Map;
+
 /**
  * A {@link BatchSource} to read Avro record from {@link TimePartitionedFileSet}
  */
@@ -61,6 +64,12 @@ public class TimePartitionedFileSetDatasetParquetSource extends
       } catch (Exception e) {
         throw new IllegalArgumentException("Unable to parse schema with error: " + e.getMessage(), e);
       }
+      getFilter(getParquetReadSchema());
+    }
+
+    private String getParquetReadSchema() {
+      // the file set reads the lower-cased schema
+      return getReadSchema(schema).toString().toLowerCase();
     }
   }
 
@@ -70,7 +79,8 @@ public class TimePartitionedFileSetDatasetParquetSource extends
     Preconditions.checkArgument(!Strings.isNullOrEmpty(tpfsParquetConfig.schema), "Schema must be specified.");
     try {
       co.cask.cdap.api.data.schema.Schema schema =
-        co.cask.cdap.api.data.schema.Schema.parseJson(tpfsParquetConfig.schema);
+        co.cask.cdap.api.data.schema.Schema.parseJson(tpfsParquetConfig.getReadSchema(tpfsParquetConfig.schema)
+                                                        .toString());
       pipelineConfigurer.getStageConfigurer().setOutputSchema(schema);
     } catch (Exception e) {
       throw new IllegalArgumentException("Invalid output schema: " + e.getMessage(), e);
@@ -87,6 +97,17 @@ public class TimePartitionedFileSetDatasetParquetSource extends
     FileSetUtil.configureParquetFileSet(tpfsParquetConfig.schema, properties);
   }
 
+  @Override
+  protected void addInputArguments(Map<String, String> arguments) {
+    if (!tpfsParquetConfig.isFilteredOrProjected()) {
+      return;
+    }
+    String readSchema = tpfsParquetConfig.getParquetReadSchema();
+    ColumnFilter filter = tpfsParquetConfig.getFilter(readSchema);
+    arguments.putAll(FileSetUtil.getParquetReadArguments(readSchema,
+                                                         filter == null ? null : filter.toParquetPredicate()));
+  }
+
   @Override
   public void transform(KeyValue<NullWritable, GenericRecord> input,
                         Emitter<StructuredRecord> emitter) throws Exception {
@@ -29,11 +29,17 @@ import co.cask.cdap.etl.api.PipelineConfigurer;
 import co.cask.cdap.etl.api.batch.BatchSource;
 import co.cask.cdap.etl.api.batch.BatchSourceContext;
 import co.cask.hydrator.common.TimeParser;
+import co.cask.hydrator.plugin.common.ColumnFilter;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.collect.Maps;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.annotation.Nullable;
 
 /**
@@ -75,6 +81,17 @@ public abstract class TimePartitionedFileSetSource<KEY, VALUE> extends BatchSour
     @Macro
     private String delay;
 
+    @Description("Optional comma separated list of the fields to read. Other fields are not read, and are not in " +
+      "the output records. Defaults to all the fields of the schema.")
+    @Nullable
+    private String fields;
+
+    @Description("Optional filter of the records to read, made of conditions joined with 'and'. A condition " +
+      "compares a field to a value with '=', '<' or '>', or to a list of values with 'in', for example " +
+      "\"country = 'US' and age > 30 and status in (1, 2)\". The fields must be read.")
+    @Nullable
+    private String filter;
+
     protected void validate() {
       // check duration and delay
       if (!containsMacro("duration")) {
@@ -85,6 +102,66 @@ public abstract class TimePartitionedFileSetSource<KEY, VALUE> extends BatchSour
         TimeParser.parseDuration(delay);
       }
     }
+
+    /**
+     * Returns the schema of the records to read, which is the schema of the file set restricted to the fields to
+     * read, in the order of the schema.
+     *
+     * @param schema the Avro schema of the file set
+     */
+    protected org.apache.avro.Schema getReadSchema(String schema) {
+      org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(schema);
+      if (Strings.isNullOrEmpty(fields)) {
+        return avroSchema;
+      }
+      Set<String> fieldNames = new LinkedHashSet<>();
+      for (String field : fields.split(",")) {
+        if (!field.trim().isEmpty()) {
+          fieldNames.add(field.trim());
+        }
+      }
+      List<org.apache.avro.Schema.Field> readFields = new ArrayList<>();
+      for (org.apache.avro.Schema.Field field : avroSchema.getFields()) {
+        if (fieldNames.remove(field.name())) {
+          readFields.add(new org.apache.avro.Schema.Field(field.name(), field.schema(), field.doc(),
+                                                          field.defaultValue()));
+        }
+      }
+      if (!fieldNames.isEmpty()) {
+        throw new IllegalArgumentException(String.format("Fields %s are not in the schema.", fieldNames));
+      }
+      if (readFields.isEmpty()) {
+        throw new IllegalArgumentException("At least one field must be read.");
+      }
+      org.apache.avro.Schema readSchema = org.apache.avro.Schema.createRecord(
+        avroSchema.getName(), avroSchema.getDoc(), avroSchema.getNamespace(), avroSchema.isError());
+      readSchema.setFields(readFields);
+      return readSchema;
+    }
+
+    /**
+     * @return whether the records are filtered or only some of the fields are read
+     */
+    protected boolean isFilteredOrProjected() {
+      return !Strings.isNullOrEmpty(fields) || !Strings.isNullOrEmpty(filter);
+    }
+
+    /**
+     * Returns the filter of the records to read, if there is one.
+     *
+     * @param readSchema the JSON schema of the records to read
+     */
+    @Nullable
+    protected ColumnFilter getFilter(String readSchema) {
+      if (Strings.isNullOrEmpty(filter)) {
+        return null;
+      }
+      try {
+        return ColumnFilter.parse(filter, co.cask.cdap.api.data.schema.Schema.parseJson(readSchema));
+      } catch (IOException e) {
+        throw new IllegalArgumentException("Unable to parse schema with error: " + e.getMessage(), e);
+      }
+    }
   }
 
   public TimePartitionedFileSetSource(TPFSConfig config) {
@@ -127,6 +204,7 @@ public abstract class TimePartitionedFileSetSource<KEY, VALUE> extends BatchSour
     Map<String, String> sourceArgs = Maps.newHashMap();
     TimePartitionedFileSetArguments.setInputStartTime(sourceArgs, startTime);
     TimePartitionedFileSetArguments.setInputEndTime(sourceArgs, endTime);
+    addInputArguments(sourceArgs);
     context.setInput(Input.ofDataset(config.name, sourceArgs));
   }
 
@@ -134,4 +212,12 @@ public abstract class TimePartitionedFileSetSource<KEY, VALUE> extends BatchSour
    * Set file set specific properties, such as input/output format and explore properties.
    */
   protected abstract void addFileSetProperties(FileSetProperties.Builder properties);
+
+  /**
+   * Add runtime arguments of the file set for this run, such as input format properties that depend on the fields
+   * to read.
+   */
+  protected void addInputArguments(Map<String, String> arguments) {
+    // no-op by default
+  }
 }
@@ -39,6 +39,7 @@ public class XMLInputFormat extends FileInputFormat<LongWritable, Map<String, St
   public static final String XML_INPUTFORMAT_PROCESSED_FILES = "xml.inputformat.processed.files";
   public static final String XML_INPUTFORMAT_FILE_ACTION = "xml.inputformat.file.action";
   public static final String XML_INPUTFORMAT_TARGET_FOLDER = "xml.inputformat.target.folder";
+  public static final String XML_INPUTFORMAT_SPLITTABLE = "xml.inputformat.splittable";
 
   @Override
   public RecordReader<LongWritable, Map<String, String>> createRecordReader(InputSplit split,
@@ -48,7 +49,7 @@ public class XMLInputFormat extends FileInputFormat<LongWritable, Map<String, St
   }
 
   protected boolean isSplitable(JobContext context, Path file) {
-    //XML files are not splittable hence returning false.
-    return false;
+    //XML files are only splittable if records are read by scanning for the start tag of the record node.
+    return context.getConfiguration().getBoolean(XML_INPUTFORMAT_SPLITTABLE, false);
   }
 }
@@ -127,6 +127,7 @@ public class XMLReaderBatchSource extends ReferenceBatchSource<LongWritable, Obj
       conf.set(XMLInputFormat.XML_INPUTFORMAT_PATTERN, config.pattern);
     }
     conf.set(XMLInputFormat.XML_INPUTFORMAT_FILE_ACTION, config.actionAfterProcess);
+    conf.setBoolean(XMLInputFormat.XML_INPUTFORMAT_SPLITTABLE, config.isSplittable());
     if (!Strings.isNullOrEmpty(config.targetFolder)) {
       conf.set(XMLInputFormat.XML_INPUTFORMAT_TARGET_FOLDER, config.targetFolder);
     }
@@ -278,10 +279,26 @@ public class XMLReaderBatchSource extends ReferenceBatchSource<LongWritable, Obj
     @Macro
     private final String temporaryFolder;
 
+    @Nullable
+    @Description("Specifies whether large files should be split and read in parallel. Each split reads the " +
+      "records of the last node of the node path whose start tag falls within it, so that node must not be nested " +
+      "in itself, and its ancestors are not checked against the node path. The offset of a record is its byte " +
+      "offset in the file. Only supported if the action after processing is NONE. Defaults to false.")
+    private final Boolean splittable;
+
     @VisibleForTesting
     XMLReaderConfig(String referenceName, String path, @Nullable String pattern, String nodePath,
                     String actionAfterProcess, @Nullable String targetFolder, String reprocessingRequired,
                     @Nullable String tableName, @Nullable Integer tableExpiryPeriod, String temporaryFolder) {
+      this(referenceName, path, pattern, nodePath, actionAfterProcess, targetFolder, reprocessingRequired, tableName,
+           tableExpiryPeriod, temporaryFolder, null);
+    }
+
+    @VisibleForTesting
+    XMLReaderConfig(String referenceName, String path, @Nullable String pattern, String nodePath,
+                    String actionAfterProcess, @Nullable String targetFolder, String reprocessingRequired,
+                    @Nullable String tableName, @Nullable Integer tableExpiryPeriod, String temporaryFolder,
+                    @Nullable Boolean splittable) {
       super(referenceName);
       this.path = path;
       this.pattern = pattern;
@@ -292,6 +309,7 @@ public class XMLReaderBatchSource extends ReferenceBatchSource<LongWritable, Obj
       this.tableName = tableName;
       this.tableExpiryPeriod = tableExpiryPeriod;
       this.temporaryFolder = temporaryFolder;
+      this.splittable = splittable;
     }
 
     @VisibleForTesting
@@ -303,6 +321,10 @@ public class XMLReaderBatchSource extends ReferenceBatchSource<LongWritable, Obj
       return reprocessingRequired.equalsIgnoreCase("YES") ? true : false;
     }
 
+    boolean isSplittable() {
+      return splittable == null ? false : splittable;
+    }
+
     @VisibleForTesting
     String getPath() {
       return path;
@@ -338,6 +360,10 @@ public class XMLReaderBatchSource extends ReferenceBatchSource<LongWritable, Obj
       Preconditions.checkArgument(!targetFolderEmpty, "Target folder cannot be empty for Action = '" +
         actionAfterProcess + "'.");
 
+      Preconditions.checkArgument(!isSplittable() || actionAfterProcess.equalsIgnoreCase("NONE"),
+                                  "Action after processing must be NONE when files are splittable, because a file " +
+                                    "is read by multiple tasks.");
+
       if (!Strings.isNullOrEmpty(pattern)) {
         try {
           Pattern.compile(pattern);
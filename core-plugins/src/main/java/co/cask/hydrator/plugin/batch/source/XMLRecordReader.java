@@ -31,6 +31,8 @@ import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.HashMap;
@@ -44,6 +46,10 @@ import javax.xml.stream.XMLStreamReader;
 
 /**
  * XMLRecordReader class to read through a given xml document and to output xml blocks as per node path specified.
+ *
+ * If the input is splittable, only the records of the last node of the node path whose start tag falls within the
+ * split are read. The split is scanned with a {@link XMLRecordScanner} and each record is parsed on its own, and the
+ * key of a record is its byte offset in the file instead of its line number.
  */
 public class XMLRecordReader extends RecordReader<LongWritable, Map<String, String>> {
   private static final Logger LOG = LoggerFactory.getLogger(XMLRecordReader.class);
@@ -65,6 +71,10 @@ public class XMLRecordReader extends RecordReader<LongWritable, Map<String, Stri
   private long availableBytes;
   private FSDataInputStream fdDataInputStream;
   private final DecimalFormat df = new DecimalFormat("#.##");
+  private XMLInputFactory factory;
+  private XMLRecordScanner scanner;
+  private long splitStart;
+  private boolean lastSplit;
 
   private LongWritable currentKey;
   private Map<String, String> currentValue;
@@ -75,16 +85,19 @@ public class XMLRecordReader extends RecordReader<LongWritable, Map<String, Stri
     if (reader != null) {
       try {
         reader.close();
-        fdDataInputStream.close();
       } catch (XMLStreamException exception) {
         LOG.error("Error occurred while closing reader : " +  exception.getMessage());
       }
     }
+    if (fdDataInputStream != null) {
+      fdDataInputStream.close();
+    }
   }
 
   @Override
   public float getProgress() throws IOException {
-    float progress = (float) fdDataInputStream.getPos() /  availableBytes;
+    long position = scanner == null ? fdDataInputStream.getPos() : scanner.getPosition() - splitStart;
+    float progress = availableBytes == 0 ? 1f : Math.min(1f, (float) position / availableBytes);
     return Float.valueOf(df.format(progress));
   }
 
@@ -105,14 +118,9 @@ public class XMLRecordReader extends RecordReader<LongWritable, Map<String, Stri
     fileName = file.toUri().toString();
     Configuration conf = context.getConfiguration();
     fs = file.getFileSystem(conf);
-    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory = XMLInputFactory.newInstance();
     fdDataInputStream = fs.open(file);
     availableBytes = split.getLength();
-    try {
-      reader = factory.createXMLStreamReader(fdDataInputStream);
-    } catch (XMLStreamException exception) {
-      throw new RuntimeException("XMLStreamException exception : ", exception);
-    }
     //Set required node path details.
     String nodePath = conf.get(XMLInputFormat.XML_INPUTFORMAT_NODE_PATH);
     //Remove preceding '/' in node path to avoid first unwanted element after split('/')
@@ -121,6 +129,25 @@ public class XMLRecordReader extends RecordReader<LongWritable, Map<String, Stri
     }
     nodes = nodePath.split("/");
 
+    if (conf.getBoolean(XMLInputFormat.XML_INPUTFORMAT_SPLITTABLE, false)) {
+      //Records are parsed on their own, so the ancestors of the record node are not seen and prefixes of
+      //namespaces declared on them cannot be resolved.
+      factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+      String lastNode = nodes[nodes.length - 1];
+      nodes = new String[] { lastNode };
+      splitStart = fileSplit.getStart();
+      long splitEnd = splitStart + fileSplit.getLength();
+      lastSplit = splitEnd >= fs.getFileStatus(file).getLen();
+      fdDataInputStream.seek(splitStart);
+      scanner = new XMLRecordScanner(new BufferedInputStream(fdDataInputStream), splitStart, splitEnd, lastNode);
+    } else {
+      try {
+        reader = factory.createXMLStreamReader(fdDataInputStream);
+      } catch (XMLStreamException exception) {
+        throw new RuntimeException("XMLStreamException exception : ", exception);
+      }
+    }
+
     currentNodeLevelMap = new HashMap<>();
     tempFilePath = conf.get(XMLInputFormat.XML_INPUTFORMAT_PROCESSED_DATA_TEMP_FOLDER);
     fileAction = conf.get(XMLInputFormat.XML_INPUTFORMAT_FILE_ACTION);
@@ -131,6 +158,57 @@ public class XMLRecordReader extends RecordReader<LongWritable, Map<String, Stri
   public boolean nextKeyValue() throws IOException, InterruptedException {
     currentKey = new LongWritable();
     currentValue = new HashMap<>();
+    if (scanner != null) {
+      return nextRecordInSplit();
+    }
+    if (readRecord()) {
+      return true;
+    }
+    if (!Strings.isNullOrEmpty(tempFilePath)) {
+      updateFileTrackingInfo();
+    }
+    processFileAction();
+    return false;
+  }
+
+  /**
+   * Method to read the next record of the split, when the input is splittable.
+   */
+  private boolean nextRecordInSplit() throws IOException {
+    byte[] record = scanner.next();
+    if (record == null) {
+      //Only the split that reads the end of the file marks it as processed.
+      if (lastSplit) {
+        if (!Strings.isNullOrEmpty(tempFilePath)) {
+          updateFileTrackingInfo();
+        }
+        processFileAction();
+      }
+      return false;
+    }
+    try {
+      if (reader != null) {
+        reader.close();
+      }
+      reader = factory.createXMLStreamReader(new ByteArrayInputStream(record));
+    } catch (XMLStreamException exception) {
+      throw new IllegalArgumentException(exception);
+    }
+    nodeLevel = 0;
+    currentNodeLevelMap.clear();
+    if (!readRecord()) {
+      throw new IllegalArgumentException(String.format("Invalid XML record at offset %d in %s",
+                                                       scanner.getRecordStart(), fileName));
+    }
+    currentKey.set(scanner.getRecordStart());
+    return true;
+  }
+
+  /**
+   * Method to read the next record of the node path from the XML stream reader.
+   * @return false if the end of the stream has been reached without finding a record
+   */
+  private boolean readRecord() {
     String lastNode = nodes[nodes.length - 1];
     StringBuilder xmlRecord = new StringBuilder();
 
@@ -196,10 +274,6 @@ public class XMLRecordReader extends RecordReader<LongWritable, Map<String, Stri
     } catch (XMLStreamException exception) {
       throw new IllegalArgumentException(exception);
     }
-    if (!Strings.isNullOrEmpty(tempFilePath)) {
-      updateFileTrackingInfo();
-    }
-    processFileAction();
     return false;
   }
 
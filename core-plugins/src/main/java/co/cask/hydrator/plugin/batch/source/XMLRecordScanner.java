@@ -0,0 +1,268 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.batch.source;
+
+import com.google.common.base.Charsets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Finds the records of an XML element in a byte range of an XML file, without parsing the rest of the document.
+ *
+ * The scanner starts at an arbitrary offset, looks for the next start tag of the record element, and returns the
+ * bytes of the element up to its matching end tag. Only records whose start tag begins before the end of the range
+ * are returned; the last one may extend past it. Comments, CDATA sections and processing instructions that start
+ * within the range are skipped. The record element is matched by its name as written in the file, including any
+ * namespace prefix. It must not be nested in itself, and the document must use an encoding in which '<', '>', '/'
+ * and quotes are single bytes, such as UTF-8.
+ */
+final class XMLRecordScanner {
+  private static final int EOF = -1;
+
+  private final InputStream in;
+  private final long end;
+  private final String element;
+  private long pos;
+  private int pushedBack = EOF;
+  private long recordStart;
+
+  /**
+   * @param in the XML input, positioned at the start of the range
+   * @param start the offset of the start of the range in the file
+   * @param end the offset of the end of the range in the file, exclusive
+   * @param element the name of the record element
+   */
+  XMLRecordScanner(InputStream in, long start, long end, String element) {
+    this.in = in;
+    this.pos = start;
+    this.end = end;
+    this.element = element;
+  }
+
+  /**
+   * Returns the bytes of the next record, from the '<' of its start tag to the '>' of its end tag.
+   *
+   * @return the next record, or null if there are no more records starting in the range
+   */
+  @Nullable
+  byte[] next() throws IOException {
+    while (true) {
+      int b = read();
+      if (b == EOF) {
+        return null;
+      }
+      if (b != '<') {
+        continue;
+      }
+      long tagStart = pos - 1;
+      if (tagStart >= end) {
+        return null;
+      }
+      ByteArrayOutputStream record = new ByteArrayOutputStream();
+      record.write('<');
+      int next = read();
+      if (next == '!' || next == '?') {
+        skipMarkup(next, null);
+        continue;
+      }
+      unread(next);
+      String name = readName(record);
+      if (!isElement(name)) {
+        continue;
+      }
+      recordStart = tagStart;
+      if (readTagEnd(record)) {
+        return record.toByteArray();
+      }
+      readContent(record);
+      return record.toByteArray();
+    }
+  }
+
+  /**
+   * @return the offset in the file of the last record returned by {@link #next()}
+   */
+  long getRecordStart() {
+    return recordStart;
+  }
+
+  /**
+   * @return the offset in the file of the next byte to be read
+   */
+  long getPosition() {
+    return pos;
+  }
+
+  /**
+   * Copies the content of a record up to and including the end tag that closes it.
+   */
+  private void readContent(ByteArrayOutputStream record) throws IOException {
+    int depth = 1;
+    while (depth > 0) {
+      int b = read();
+      if (b == EOF) {
+        throw new IOException(String.format("Unexpected end of file in element '%s' starting at offset %d",
+                                            element, recordStart));
+      }
+      record.write(b);
+      if (b != '<') {
+        continue;
+      }
+      int next = read();
+      if (next == '!' || next == '?') {
+        record.write(next);
+        skipMarkup(next, record);
+        continue;
+      }
+      if (next == '/') {
+        record.write(next);
+        String name = readName(record);
+        readTagEnd(record);
+        if (isElement(name)) {
+          depth--;
+        }
+        continue;
+      }
+      unread(next);
+      String name = readName(record);
+      boolean selfClosing = readTagEnd(record);
+      if (isElement(name) && !selfClosing) {
+        depth++;
+      }
+    }
+  }
+
+  /**
+   * Reads a tag name, up to but excluding the first character that cannot be part of it.
+   */
+  private String readName(ByteArrayOutputStream record) throws IOException {
+    ByteArrayOutputStream name = new ByteArrayOutputStream();
+    int b = read();
+    while (b != EOF && b != '>' && b != '/' && b != '<' && !isWhitespace(b)) {
+      name.write(b);
+      b = read();
+    }
+    unread(b);
+    byte[] bytes = name.toByteArray();
+    record.write(bytes, 0, bytes.length);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  /**
+   * Copies the rest of a tag, skipping '>' characters in quoted attribute values.
+   *
+   * @return whether the tag is self closing
+   */
+  private boolean readTagEnd(ByteArrayOutputStream record) throws IOException {
+    int quote = EOF;
+    int previous = EOF;
+    while (true) {
+      int b = read();
+      if (b == EOF) {
+        throw new IOException(String.format("Unexpected end of file in a tag of element '%s' starting at offset %d",
+                                            element, recordStart));
+      }
+      if (b == '<' && quote == EOF) {
+        // not a well formed tag, let the XML parser report it
+        unread(b);
+        return false;
+      }
+      record.write(b);
+      if (quote != EOF) {
+        if (b == quote) {
+          quote = EOF;
+        }
+      } else if (b == '"' || b == '\'') {
+        quote = b;
+      } else if (b == '>') {
+        return previous == '/';
+      }
+      previous = b;
+    }
+  }
+
+  /**
+   * Skips a comment, CDATA section, doctype or processing instruction whose '<' and first character were read.
+   */
+  private void skipMarkup(int first, @Nullable ByteArrayOutputStream record) throws IOException {
+    String terminator;
+    if (first == '?') {
+      terminator = "?>";
+    } else {
+      int b = read();
+      copy(record, b);
+      if (b == '-') {
+        terminator = "-->";
+      } else if (b == '[') {
+        terminator = "]]>";
+      } else {
+        terminator = ">";
+      }
+    }
+    int matched = 0;
+    while (matched < terminator.length()) {
+      int b = read();
+      if (b == EOF) {
+        return;
+      }
+      copy(record, b);
+      if (b == terminator.charAt(matched)) {
+        matched++;
+      } else {
+        matched = b == terminator.charAt(0) ? 1 : 0;
+      }
+    }
+  }
+
+  private boolean isElement(String name) {
+    return name.equals(element);
+  }
+
+  private static boolean isWhitespace(int b) {
+    return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+  }
+
+  private static void copy(@Nullable ByteArrayOutputStream record, int b) {
+    if (record != null && b != EOF) {
+      record.write(b);
+    }
+  }
+
+  private int read() throws IOException {
+    int b;
+    if (pushedBack != EOF) {
+      b = pushedBack;
+      pushedBack = EOF;
+    } else {
+      b = in.read();
+    }
+    if (b != EOF) {
+      pos++;
+    }
+    return b;
+  }
+
+  private void unread(int b) {
+    if (b != EOF) {
+      pushedBack = b;
+      pos--;
+    }
+  }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.common;
+
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.avro.generic.GenericRecord;
+import parquet.filter2.predicate.FilterApi;
+import parquet.filter2.predicate.FilterPredicate;
+import parquet.io.api.Binary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A filter on the values of primitive fields of records, which can be pushed down to Parquet.
+ * <p/>
+ * The filter is parsed from an expression made of conditions joined with {@code and}, such as
+ * {@code country = 'US' and age > 30 and status in (1, 2)}. A condition compares a field with {@code =}, {@code <} or
+ * {@code >} to a value, or checks that it is equal to one of a list of values with {@code in}. Field names are not
+ * case sensitive. String values can be quoted with single quotes, and must be if they contain spaces, punctuation or
+ * the word {@code and}. A null value never matches a condition.
+ */
+public final class ColumnFilter {
+
+  /**
+   * Comparison of a field to values.
+   */
+  private enum Operator {
+    EQ("="), LT("<"), GT(">"), IN("in");
+
+    private final String symbol;
+
+    Operator(String symbol) {
+      this.symbol = symbol;
+    }
+  }
+
+  private final List<Condition> conditions;
+
+  private ColumnFilter(List<Condition> conditions) {
+    this.conditions = Collections.unmodifiableList(conditions);
+  }
+
+  /**
+   * Parses a filter expression.
+   *
+   * @param expression the filter expression
+   * @param schema the schema of the records to filter, which must contain the fields used in the expression
+   * @return the filter
+   * @throws IllegalArgumentException if the expression is invalid, or uses fields that are not in the schema or
+   *                                  that are not of a primitive type
+   */
+  public static ColumnFilter parse(String expression, Schema schema) {
+    return new Parser(expression, schema).parse();
+  }
+
+  /**
+   * @return the names of the fields used by the filter, as they are in the schema
+   */
+  public List<String> getFieldNames() {
+    List<String> names = new ArrayList<>();
+    for (Condition condition : conditions) {
+      if (!names.contains(condition.field)) {
+        names.add(condition.field);
+      }
+    }
+    return names;
+  }
+
+  /**
+   * @return whether the record matches all the conditions of the filter
+   */
+  public boolean test(GenericRecord record) {
+    for (Condition condition : conditions) {
+      if (!condition.test(record.get(condition.field))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the Parquet predicate for this filter, which is used to skip row groups using their statistics and to
+   *         skip the records that do not match
+   */
+  public FilterPredicate toParquetPredicate() {
+    FilterPredicate predicate = null;
+    for (Condition condition : conditions) {
+      FilterPredicate conditionPredicate = condition.toParquetPredicate();
+      predicate = predicate == null ? conditionPredicate : FilterApi.and(predicate, conditionPredicate);
+    }
+    return predicate;
+  }
+
+  /**
+   * Comparison of a field with one or more values of the type of the field.
+   */
+  private static final class Condition {
+    private final String field;
+    private final Schema.Type type;
+    private final Operator operator;
+    private final List<Comparable<Object>> values;
+
+    private Condition(String field, Schema.Type type, Operator operator, List<Comparable<Object>> values) {
+      this.field = field;
+      this.type = type;
+      this.operator = operator;
+      this.values = values;
+    }
+
+    private boolean test(Object fieldValue) {
+      if (fieldValue == null) {
+        return false;
+      }
+      // Avro strings are usually Utf8
+      Object value = fieldValue instanceof CharSequence ? fieldValue.toString() : fieldValue;
+      switch (operator) {
+        case LT:
+          return values.get(0).compareTo(value) > 0;
+        case GT:
+          return values.get(0).compareTo(value) < 0;
+        default:
+          return values.contains(value);
+      }
+    }
+
+    private FilterPredicate toParquetPredicate() {
+      switch (operator) {
+        case LT:
+          return lt(values.get(0));
+        case GT:
+          return gt(values.get(0));
+        default:
+          FilterPredicate predicate = null;
+          for (Object value : values) {
+            predicate = predicate == null ? eq(value) : FilterApi.or(predicate, eq(value));
+          }
+          return predicate;
+      }
+    }
+
+    private FilterPredicate eq(Object value) {
+      switch (type) {
+        case BOOLEAN:
+          return FilterApi.eq(FilterApi.booleanColumn(field), (Boolean) value);
+        case INT:
+          return FilterApi.eq(FilterApi.intColumn(field), (Integer) value);
+        case LONG:
+          return FilterApi.eq(FilterApi.longColumn(field), (Long) value);
+        case FLOAT:
+          return FilterApi.eq(FilterApi.floatColumn(field), (Float) value);
+        case DOUBLE:
+          return FilterApi.eq(FilterApi.doubleColumn(field), (Double) value);
+        default:
+          return FilterApi.eq(FilterApi.binaryColumn(field), Binary.fromString((String) value));
+      }
+    }
+
+    private FilterPredicate lt(Object value) {
+      switch (type) {
+        case INT:
+          return FilterApi.lt(FilterApi.intColumn(field), (Integer) value);
+        case LONG:
+          return FilterApi.lt(FilterApi.longColumn(field), (Long) value);
+        case FLOAT:
+          return FilterApi.lt(FilterApi.floatColumn(field), (Float) value);
+        case DOUBLE:
+          return FilterApi.lt(FilterApi.doubleColumn(field), (Double) value);
+        default:
+          return FilterApi.lt(FilterApi.binaryColumn(field), Binary.fromString((String) value));
+      }
+    }
+
+    private FilterPredicate gt(Object value) {
+      switch (type) {
+        case INT:
+          return FilterApi.gt(FilterApi.intColumn(field), (Integer) value);
+        case LONG:
+          return FilterApi.gt(FilterApi.longColumn(field), (Long) value);
+        case FLOAT:
+          return FilterApi.gt(FilterApi.floatColumn(field), (Float) value);
+        case DOUBLE:
+          return FilterApi.gt(FilterApi.doubleColumn(field), (Double) value);
+        default:
+          return FilterApi.gt(FilterApi.binaryColumn(field), Binary.fromString((String) value));
+      }
+    }
+  }
+
+  /**
+   * A word, a quoted string or a punctuation character of a filter expression.
+   */
+  private static final class Token {
+    private final String text;
+    private final boolean quoted;
+
+    private Token(String text, boolean quoted) {
+      this.text = text;
+      this.quoted = quoted;
+    }
+
+    private boolean is(String keyword) {
+      return !quoted && text.equalsIgnoreCase(keyword);
+    }
+  }
+
+  /**
+   * Parses a filter expression, one condition at a time.
+   */
+  private static final class Parser {
+    private static final String PUNCTUATION = "=<>(),";
+
+    private final String expression;
+    private final Schema schema;
+    private final List<Token> tokens;
+    private int position;
+
+    private Parser(String expression, Schema schema) {
+      this.expression = expression;
+      this.schema = schema;
+      this.tokens = tokenize(expression);
+    }
+
+    private ColumnFilter parse() {
+      if (tokens.isEmpty()) {
+        throw error("it is empty");
+      }
+      List<Condition> conditions = new ArrayList<>();
+      conditions.add(parseCondition());
+      while (position < tokens.size()) {
+        if (!next().is("and")) {
+          throw error("conditions must be separated by 'and'");
+        }
+        conditions.add(parseCondition());
+      }
+      return new ColumnFilter(conditions);
+    }
+
+    private Condition parseCondition() {
+      Token name = next();
+      if (name.quoted || PUNCTUATION.contains(name.text)) {
+        throw error(String.format("expected a field name instead of '%s'", name.text));
+      }
+      Schema.Field field = getField(name.text);
+      Schema fieldSchema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+      Schema.Type type = fieldSchema.getType();
+      if (!fieldSchema.getType().isSimpleType() || type == Schema.Type.NULL || type == Schema.Type.BYTES) {
+        throw error(String.format("field '%s' is of type %s, only boolean, int, long, float, double and string " +
+                                    "fields can be filtered", field.getName(), type));
+      }
+
+      Token operatorToken = next();
+      Operator operator = null;
+      for (Operator candidate : Operator.values()) {
+        if (operatorToken.is(candidate.symbol)) {
+          operator = candidate;
+        }
+      }
+      if (operator == null) {
+        throw error(String.format("expected =, <, > or in after '%s' instead of '%s'", name.text, operatorToken.text));
+      }
+      if (type == Schema.Type.BOOLEAN && (operator == Operator.LT || operator == Operator.GT)) {
+        throw error(String.format("boolean field '%s' can not be compared with %s", field.getName(), operator.symbol));
+      }
+
+      List<Comparable<Object>> values = new ArrayList<>();
+      if (operator != Operator.IN) {
+        values.add(parseValue(field.getName(), type, next()));
+        return new Condition(field.getName(), type, operator, values);
+      }
+      if (!next().is("(")) {
+        throw error(String.format("expected '(' after '%s in'", name.text));
+      }
+      do {
+        values.add(parseValue(field.getName(), type, next()));
+      } while (next().is(","));
+      if (!tokens.get(position - 1).is(")")) {
+        throw error(String.format("expected ',' or ')' in the values of '%s'", name.text));
+      }
+      return new Condition(field.getName(), type, operator, values);
+    }
+
+    private Schema.Field getField(String name) {
+      for (Schema.Field field : schema.getFields()) {
+        if (field.getName().equalsIgnoreCase(name)) {
+          return field;
+        }
+      }
+      throw error(String.format("field '%s' is not in the schema", name));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Comparable<Object> parseValue(String field, Schema.Type type, Token token) {
+      if (!token.quoted && PUNCTUATION.contains(token.text)) {
+        throw error(String.format("expected a value for '%s' instead of '%s'", field, token.text));
+      }
+      try {
+        switch (type) {
+          case BOOLEAN:
+            if (!token.is("true") && !token.is("false")) {
+              throw error(String.format("'%s' is not a boolean value for '%s'", token.text, field));
+            }
+            return (Comparable) Boolean.valueOf(token.text);
+          case INT:
+            return (Comparable) Integer.valueOf(token.text);
+          case LONG:
+            return (Comparable) Long.valueOf(token.text);
+          case FLOAT:
+            return (Comparable) Float.valueOf(token.text);
+          case DOUBLE:
+            return (Comparable) Double.valueOf(token.text);
+          default:
+            return (Comparable) token.text;
+        }
+      } catch (NumberFormatException e) {
+        throw error(String.format("'%s' is not a valid %s value for '%s'", token.text,
+                                  type.name().toLowerCase(), field));
+      }
+    }
+
+    private Token next() {
+      if (position >= tokens.size()) {
+        throw error("it ends unexpectedly");
+      }
+      return tokens.get(position++);
+    }
+
+    private IllegalArgumentException error(String reason) {
+      return new IllegalArgumentException(String.format("Invalid filter '%s': %s.", expression, reason));
+    }
+
+    private List<Token> tokenize(String expression) {
+      List<Token> tokens = new ArrayList<>();
+      int i = 0;
+      while (i < expression.length()) {
+        char c = expression.charAt(i);
+        if (Character.isWhitespace(c)) {
+          i++;
+        } else if (PUNCTUATION.indexOf(c) >= 0) {
+          tokens.add(new Token(String.valueOf(c), false));
+          i++;
+        } else if (c == '\'') {
+          // a quote is escaped by doubling it
+          StringBuilder value = new StringBuilder();
+          i++;
+          while (true) {
+            if (i >= expression.length()) {
+              throw error("a quoted value is not closed");
+            }
+            char quoted = expression.charAt(i++);
+            if (quoted == '\'') {
+              if (i < expression.length() && expression.charAt(i) == '\'') {
+                value.append('\'');
+                i++;
+              } else {
+                break;
+              }
+            } else {
+              value.append(quoted);
+            }
+          }
+          tokens.add(new Token(value.toString(), true));
+        } else {
+          int start = i;
+          while (i < expression.length() && !Character.isWhitespace(expression.charAt(i))
+            && PUNCTUATION.indexOf(expression.charAt(i)) < 0 && expression.charAt(i) != '\'') {
+            i++;
+          }
+          tokens.add(new Token(expression.substring(start, i), false));
+        }
+      }
+      return tokens;
+    }
+  }
+}
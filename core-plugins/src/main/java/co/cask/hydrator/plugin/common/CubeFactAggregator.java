@@ -0,0 +1,238 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.common;
+
+import co.cask.cdap.api.dataset.lib.cube.CubeFact;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.Measurement;
+import com.google.common.base.Splitter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Merges {@link CubeFact CubeFacts} in memory before they are written to a
+ * {@link co.cask.cdap.api.dataset.lib.cube.Cube} dataset, so that facts with the same dimension values in the same
+ * time bucket result in fewer writes.
+ * <p/>
+ * The time bucket is the greatest common divisor of the resolutions of the Cube, so merged facts are stored at the
+ * same timestamp for every resolution. Counters of facts with the same dimension values are added, which gives the
+ * same totals in any order. Gauges are not merged across facts: the Cube keeps the last value written for each of
+ * its aggregations, and an aggregation over a subset of the dimensions can combine facts with different dimension
+ * values, so gauges are drained in the order they were added. Only the gauges of consecutive facts with the same
+ * dimension values in the same bucket are merged, keeping the last value. If the aggregations of the Cube are known,
+ * only the dimensions that are part of an aggregation are kept, since the others are ignored by the Cube.
+ * <p/>
+ * The number of buffered facts is bounded by the maximum size given at construction; callers are expected to
+ * {@link #drain()} the aggregator once it is {@link #isFull() full}.
+ */
+public class CubeFactAggregator {
+  private static final String AGGREGATION_PREFIX = "dataset.cube.aggregation.";
+  private static final Splitter COMMA_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+  private final int maxSize;
+  private final long bucketSeconds;
+  private final Set<String> dimensions;
+  private Map<FactKey, Map<String, Measurement>> counters;
+  private List<GaugeFact> gauges;
+
+  /**
+   * @param properties the properties of the Cube dataset, used to determine its resolutions and aggregations
+   * @param maxSize maximum number of merged facts to buffer
+   */
+  public CubeFactAggregator(Map<String, String> properties, int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException(String.format("Invalid buffer size %d. It must be at least 1.", maxSize));
+    }
+    this.maxSize = maxSize;
+    this.bucketSeconds = getBucketSeconds(properties.get(Properties.Cube.DATASET_RESOLUTIONS));
+    this.dimensions = getAggregationDimensions(properties);
+    this.counters = new LinkedHashMap<>();
+    this.gauges = new ArrayList<>();
+  }
+
+  /**
+   * Merges a fact into the buffered facts.
+   */
+  public void add(CubeFact fact) {
+    Map<String, String> dimensionValues = new TreeMap<>();
+    for (Map.Entry<String, String> entry : fact.getDimensionValues().entrySet()) {
+      if (dimensions == null || dimensions.contains(entry.getKey())) {
+        dimensionValues.put(entry.getKey(), entry.getValue());
+      }
+    }
+    long timestamp = fact.getTimestamp() - fact.getTimestamp() % bucketSeconds;
+    FactKey key = new FactKey(timestamp, dimensionValues);
+    for (Measurement measurement : fact.getMeasurements()) {
+      if (measurement.getType() == MeasureType.COUNTER) {
+        addCounter(key, measurement);
+      } else {
+        addGauge(key, measurement);
+      }
+    }
+  }
+
+  private void addCounter(FactKey key, Measurement measurement) {
+    Map<String, Measurement> measurements = counters.get(key);
+    if (measurements == null) {
+      measurements = new LinkedHashMap<>();
+      counters.put(key, measurements);
+    }
+    Measurement previous = measurements.get(measurement.getName());
+    if (previous != null) {
+      measurement = new Measurement(measurement.getName(), MeasureType.COUNTER,
+                                    previous.getValue() + measurement.getValue());
+    }
+    measurements.put(measurement.getName(), measurement);
+  }
+
+  private void addGauge(FactKey key, Measurement measurement) {
+    GaugeFact last = gauges.isEmpty() ? null : gauges.get(gauges.size() - 1);
+    if (last == null || !last.key.equals(key)) {
+      last = new GaugeFact(key);
+      gauges.add(last);
+    }
+    last.measurements.put(measurement.getName(), measurement);
+  }
+
+  /**
+   * @return the number of merged facts in the buffer
+   */
+  public int size() {
+    return counters.size() + gauges.size();
+  }
+
+  /**
+   * @return whether the buffer reached its maximum size and should be drained
+   */
+  public boolean isFull() {
+    return size() >= maxSize;
+  }
+
+  /**
+   * Removes and returns all merged facts. Facts with counters come first, in the order in which they were first
+   * added, followed by the facts with gauges in the order in which they were added.
+   */
+  public Collection<CubeFact> drain() {
+    List<CubeFact> drained = new ArrayList<>(size());
+    for (Map.Entry<FactKey, Map<String, Measurement>> entry : counters.entrySet()) {
+      drained.add(toFact(entry.getKey(), entry.getValue()));
+    }
+    for (GaugeFact gauge : gauges) {
+      drained.add(toFact(gauge.key, gauge.measurements));
+    }
+    counters = new LinkedHashMap<>();
+    gauges = new ArrayList<>();
+    return drained;
+  }
+
+  private static CubeFact toFact(FactKey key, Map<String, Measurement> measurements) {
+    CubeFact fact = new CubeFact(key.timestamp);
+    fact.addDimensionValues(key.dimensionValues);
+    fact.addMeasurements(measurements.values());
+    return fact;
+  }
+
+  private static long getBucketSeconds(@Nullable String resolutions) {
+    long bucket = 0;
+    if (resolutions != null) {
+      for (String resolution : COMMA_SPLITTER.split(resolutions)) {
+        bucket = gcd(bucket, Long.parseLong(resolution));
+      }
+    }
+    // a Cube without resolutions uses a resolution of one second
+    return bucket <= 0 ? 1 : bucket;
+  }
+
+  private static long gcd(long a, long b) {
+    return b == 0 ? a : gcd(b, a % b);
+  }
+
+  /**
+   * Returns the dimensions used by the aggregations in the given properties, or null if there are none.
+   */
+  @Nullable
+  private static Set<String> getAggregationDimensions(Map<String, String> properties) {
+    Set<String> dimensions = null;
+    for (Map.Entry<String, String> property : properties.entrySet()) {
+      String key = property.getKey();
+      if (key.startsWith(AGGREGATION_PREFIX)
+        && (key.endsWith(".dimensions") || key.endsWith(".requiredDimensions"))) {
+        if (dimensions == null) {
+          dimensions = new HashSet<>();
+        }
+        for (String dimension : COMMA_SPLITTER.split(property.getValue())) {
+          dimensions.add(dimension);
+        }
+      }
+    }
+    return dimensions;
+  }
+
+  /**
+   * Gauges of consecutive facts with the same key.
+   */
+  private static final class GaugeFact {
+    private final FactKey key;
+    private final Map<String, Measurement> measurements;
+
+    private GaugeFact(FactKey key) {
+      this.key = key;
+      this.measurements = new LinkedHashMap<>();
+    }
+  }
+
+  /**
+   * Identifies the facts that can be merged.
+   */
+  private static final class FactKey {
+    private final long timestamp;
+    private final Map<String, String> dimensionValues;
+    private final int hashCode;
+
+    private FactKey(long timestamp, Map<String, String> dimensionValues) {
+      this.timestamp = timestamp;
+      this.dimensionValues = dimensionValues;
+      this.hashCode = 31 * (int) (timestamp ^ (timestamp >>> 32)) + dimensionValues.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      FactKey that = (FactKey) o;
+      return timestamp == that.timestamp && dimensionValues.equals(that.dimensionValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
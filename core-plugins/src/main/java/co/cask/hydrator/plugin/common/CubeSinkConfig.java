@@ -74,6 +74,14 @@ public class CubeSinkConfig extends BatchReadableWritableConfig {
     "the key and value are delimited by ':' while the entries are delimited by ';'")
   String measurements;
 
+  @Name(Properties.Cube.AGGREGATION_BUFFER_SIZE)
+  @Description("Maximum number of facts to merge in memory before writing them to the Cube dataset, in the " +
+    "real-time sink. Counters of facts with the same dimension values in the same time bucket are added and " +
+    "written once. Gauges are written in the order of the facts, so that every aggregation keeps the last value. " +
+    "Defaults to 0, which writes every fact as it is.")
+  @Nullable
+  Integer aggregationBufferSize;
+
   public CubeSinkConfig(String name, String resolutions, String aggregations,
                         String tsField, String tsFormat, String measurements) {
     super(name);
@@ -108,5 +116,16 @@ public class CubeSinkConfig extends BatchReadableWritableConfig {
   public String getMeasurements() {
     return measurements;
   }
+
+  public int getAggregationBufferSize() {
+    return aggregationBufferSize == null ? 0 : aggregationBufferSize;
+  }
+
+  public void validate() {
+    if (getAggregationBufferSize() < 0) {
+      throw new IllegalArgumentException(String.format("Invalid aggregation buffer size %d. It must not be negative.",
+                                                       getAggregationBufferSize()));
+    }
+  }
 }
 
@@ -29,15 +29,17 @@ import org.apache.avro.mapreduce.AvroKeyOutputFormat;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.orc.mapreduce.OrcInputFormat;
-import org.apache.orc.mapreduce.OrcOutputFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import parquet.avro.AvroParquetInputFormat;
 import parquet.avro.AvroParquetOutputFormat;
+import parquet.filter2.predicate.FilterPredicate;
+import parquet.hadoop.ParquetInputFormat;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Utilities for configuring file sets during pipeline configuration.
@@ -55,11 +57,15 @@ public class FileSetUtil {
   private static final String CODEC_LZO = "lzo";
   private static final String PARQUET_AVRO_SCHEMA = "parquet.avro.schema";
   private static final String PARQUET_COMPRESSION = "parquet.compression";
+  private static final String PARQUET_BLOCK_SIZE = "parquet.block.size";
+  private static final String PARQUET_PAGE_SIZE = "parquet.page.size";
+  private static final String PARQUET_ENABLE_DICTIONARY = "parquet.enable.dictionary";
 
   /**
    * Configure a file set to use Parquet file format with a given schema. The schema is lower-cased, parsed
    * as an Avro schema, validated and converted into a Hive schema. The file set is configured to use
-   * Parquet input and output format, and also configured for Explore to use Parquet. The schema is added
+   * Parquet input format and the {@link StructuredRecordParquetOutputFormat}, which writes the same files as the
+   * Avro Parquet output format, and also configured for Explore to use Parquet. The schema is added
    * to the file set properties in all the different required ways:
    * <ul>
    *   <li>As a top-level dataset property;</li>
@@ -78,7 +84,7 @@ public class FileSetUtil {
 
     properties
       .setInputFormat(AvroParquetInputFormat.class)
-      .setOutputFormat(AvroParquetOutputFormat.class)
+      .setOutputFormat(StructuredRecordParquetOutputFormat.class)
       .setEnableExploreOnCreate(true)
       .setExploreFormat("parquet")
       .setExploreSchema(hiveSchema.substring(1, hiveSchema.length() - 1))
@@ -101,8 +107,8 @@ public class FileSetUtil {
   /**
    * Configure a file set to use ORC file format with a given schema. The schema is parsed
    * validated and converted into a Hive schema which is compatible with ORC format. The file set is configured to use
-   * ORC input and output format, and also configured for Explore to use Hive. The schema is added
-   * to the file set properties in all the different required ways:
+   * the ORC input format and the {@link StructuredRecordOrcOutputFormat}, and also configured for Explore to use Hive.
+   * The schema is added to the file set properties in all the different required ways:
    * <ul>
    *   <li>As a top-level dataset property;</li>
    *   <li>As the schema for the input and output format;</li>
@@ -121,7 +127,7 @@ public class FileSetUtil {
     String orcSchema = parseOrcSchema(configuredSchema);
 
     properties.setInputFormat(OrcInputFormat.class)
-      .setOutputFormat(OrcOutputFormat.class)
+      .setOutputFormat(StructuredRecordOrcOutputFormat.class)
       .setExploreInputFormat("org.apache.hadoop.hive.ql.io.orc.OrcInputFormat")
       .setExploreOutputFormat("org.apache.hadoop.hive.ql.io.orc.OrcOutputFormat")
       .setSerDe("org.apache.hadoop.hive.ql.io.orc.OrcSerde")
@@ -297,4 +303,93 @@ public class FileSetUtil {
     }
     return conf;
   }
+
+  /**
+   * Returns the output properties that configure the Parquet writer of a file set. Properties that are not set are
+   * left to the Parquet defaults.
+   *
+   * @param rowGroupSize size of a row group in bytes, which is buffered in memory while writing
+   * @param pageSize size of a page in bytes, the smallest unit that must be read to access a value
+   * @param enableDictionary whether to use dictionary encoding
+   * @return map of string to be set as output properties in FileSetProperties.Builder
+   */
+  public static Map<String, String> getParquetWriterConfiguration(@Nullable Integer rowGroupSize,
+                                                                  @Nullable Integer pageSize,
+                                                                  @Nullable Boolean enableDictionary) {
+    Map<String, String> conf = new HashMap<>();
+    String prefix = FileSetProperties.OUTPUT_PROPERTIES_PREFIX;
+    if (rowGroupSize != null) {
+      conf.put(prefix + PARQUET_BLOCK_SIZE, String.valueOf(rowGroupSize));
+    }
+    if (pageSize != null) {
+      conf.put(prefix + PARQUET_PAGE_SIZE, String.valueOf(pageSize));
+    }
+    if (enableDictionary != null) {
+      conf.put(prefix + PARQUET_ENABLE_DICTIONARY, String.valueOf(enableDictionary));
+    }
+    return conf;
+  }
+
+  /**
+   * Validates the Parquet writer properties of a sink.
+   */
+  public static void validateParquetWriterConfiguration(@Nullable Integer rowGroupSize, @Nullable Integer pageSize) {
+    if (rowGroupSize != null && rowGroupSize <= 0) {
+      throw new IllegalArgumentException(String.format("Invalid row group size %d. It must be positive.",
+                                                       rowGroupSize));
+    }
+    if (pageSize != null && pageSize <= 0) {
+      throw new IllegalArgumentException(String.format("Invalid page size %d. It must be positive.", pageSize));
+    }
+    if (rowGroupSize != null && pageSize != null && pageSize > rowGroupSize) {
+      throw new IllegalArgumentException(String.format("Page size %d must not be larger than row group size %d.",
+                                                       pageSize, rowGroupSize));
+    }
+  }
+
+  /**
+   * Returns the runtime arguments that make a Parquet file set read only the fields of a schema, and skip the row
+   * groups and records that do not match a filter. The schema must be lower-cased, like the schema the file set
+   * was configured with.
+   *
+   * @param readSchema the Avro schema of the fields to read
+   * @param filter the filter of the records to read
+   * @return map of string to be added to the runtime arguments of the file set
+   */
+  public static Map<String, String> getParquetReadArguments(String readSchema, @Nullable FilterPredicate filter) {
+    Schema avroSchema = new Schema.Parser().parse(readSchema);
+    Job job = createJobForConfiguration();
+    Configuration hConf = job.getConfiguration();
+    hConf.clear();
+    AvroParquetInputFormat.setRequestedProjection(job, avroSchema);
+    AvroParquetInputFormat.setAvroReadSchema(job, avroSchema);
+    if (filter != null) {
+      ParquetInputFormat.setFilterPredicate(hConf, filter);
+    }
+    return getInputArguments(hConf);
+  }
+
+  /**
+   * Returns the runtime arguments that make an Avro file set read records with a schema. Fields of the files that
+   * are not in the schema are skipped.
+   *
+   * @param readSchema the Avro schema of the fields to read
+   * @return map of string to be added to the runtime arguments of the file set
+   */
+  public static Map<String, String> getAvroReadArguments(String readSchema) {
+    Schema avroSchema = new Schema.Parser().parse(readSchema);
+    Job job = createJobForConfiguration();
+    Configuration hConf = job.getConfiguration();
+    hConf.clear();
+    AvroJob.setInputKeySchema(job, avroSchema);
+    return getInputArguments(hConf);
+  }
+
+  private static Map<String, String> getInputArguments(Configuration hConf) {
+    Map<String, String> arguments = new HashMap<>();
+    for (Map.Entry<String, String> entry : hConf) {
+      arguments.put(FileSetProperties.INPUT_PROPERTIES_PREFIX + entry.getKey(), entry.getValue());
+    }
+    return arguments;
+  }
 }
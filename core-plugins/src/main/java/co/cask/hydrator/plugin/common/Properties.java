@@ -105,6 +105,8 @@ public final class Properties {
     public static final String MEASUREMENT_PREFIX = "cubeFact.measurement.";
 
     public static final String MEASUREMENTS = "cubeFact.measurements";
+
+    public static final String AGGREGATION_BUFFER_SIZE = "aggregationBufferSize";
   }
 
   /**
@@ -145,6 +147,10 @@ public final class Properties {
     public static final String ACCESS_KEY = "accessKey";
     public static final String PARTITION_KEY = "partitionKey";
     public static final String SHARD_COUNT = "shardCount";
+    public static final String PARTITION_FIELD = "partitionField";
+    public static final String RANDOM_PARTITION_KEY = "randomPartitionKey";
+    public static final String AGGREGATE = "aggregate";
+    public static final String MAX_RETRIES = "maxRetries";
   }
 
   /**
@@ -0,0 +1,241 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.common;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.orc.OrcFile;
+import org.apache.orc.TypeDescription;
+import org.apache.orc.Writer;
+import org.apache.orc.mapred.OrcOutputFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ORC output format that writes {@link StructuredRecord StructuredRecords} directly into the column vectors of a
+ * {@link VectorizedRowBatch}, without creating an {@code OrcStruct} and a writable for every value.
+ * <p/>
+ * The ORC schema and the writer options are read from the same properties as the ORC mapreduce output format,
+ * such as {@code orc.mapred.output.schema}, {@code orc.compress}, {@code orc.stripe.size} and
+ * {@code orc.bloom.filter.columns}. In addition, indexes are not written if {@code orc.create.index} is false.
+ * The fields of each record are looked up by the names of the fields of the ORC schema. Only primitive types are
+ * supported. Strings are encoded into a buffer that is reused for all the values of a column, and copied into the
+ * batch, which reuses its own buffer from one batch to the next.
+ */
+public class StructuredRecordOrcOutputFormat extends FileOutputFormat<NullWritable, StructuredRecord> {
+  public static final String CREATE_INDEX = "orc.create.index";
+  public static final int BATCH_SIZE = VectorizedRowBatch.DEFAULT_SIZE;
+
+  @Override
+  public RecordWriter<NullWritable, StructuredRecord> getRecordWriter(TaskAttemptContext context)
+    throws IOException {
+    return createRecordWriter(getDefaultWorkFile(context, ".orc"), context.getConfiguration());
+  }
+
+  @VisibleForTesting
+  static RecordWriter<NullWritable, StructuredRecord> createRecordWriter(Path file, Configuration conf)
+    throws IOException {
+    OrcFile.WriterOptions options = OrcOutputFormat.buildOptions(conf);
+    if (!conf.getBoolean(CREATE_INDEX, true)) {
+      options.rowIndexStride(0);
+    }
+    return new VectorizedRecordWriter(OrcFile.createWriter(file, options));
+  }
+
+  /**
+   * Fills a batch of rows from records, and adds it to the ORC writer when it is full.
+   */
+  private static final class VectorizedRecordWriter extends RecordWriter<NullWritable, StructuredRecord> {
+    private final Writer writer;
+    private final VectorizedRowBatch batch;
+    private final List<String> fieldNames;
+    private final ColumnWriter[] columnWriters;
+
+    private VectorizedRecordWriter(Writer writer) {
+      TypeDescription schema = writer.getSchema();
+      if (schema.getCategory() != TypeDescription.Category.STRUCT) {
+        throw new IllegalArgumentException("The ORC schema must be a struct, but it is " + schema);
+      }
+      this.writer = writer;
+      this.batch = schema.createRowBatch(BATCH_SIZE);
+      this.fieldNames = schema.getFieldNames();
+      List<TypeDescription> fieldTypes = schema.getChildren();
+      this.columnWriters = new ColumnWriter[fieldTypes.size()];
+      for (int i = 0; i < columnWriters.length; i++) {
+        columnWriters[i] = createColumnWriter(fieldNames.get(i), fieldTypes.get(i));
+      }
+      resetBatch();
+    }
+
+    @Override
+    public void write(NullWritable key, StructuredRecord record) throws IOException {
+      int row = batch.size++;
+      for (int i = 0; i < columnWriters.length; i++) {
+        ColumnVector vector = batch.cols[i];
+        Object value = record.get(fieldNames.get(i));
+        if (value == null) {
+          vector.noNulls = false;
+          vector.isNull[row] = true;
+        } else {
+          vector.isNull[row] = false;
+          columnWriters[i].write(vector, row, value);
+        }
+      }
+      if (batch.size == batch.getMaxSize()) {
+        flush();
+      }
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException {
+      if (batch.size > 0) {
+        flush();
+      }
+      writer.close();
+    }
+
+    private void flush() throws IOException {
+      writer.addRowBatch(batch);
+      resetBatch();
+    }
+
+    private void resetBatch() {
+      batch.reset();
+      // keeps the buffers of the string columns, so that they are only grown once
+      for (ColumnVector vector : batch.cols) {
+        if (vector instanceof BytesColumnVector) {
+          ((BytesColumnVector) vector).initBuffer();
+        }
+      }
+    }
+  }
+
+  private static ColumnWriter createColumnWriter(String fieldName, TypeDescription type) {
+    switch (type.getCategory()) {
+      case BOOLEAN:
+        return new BooleanColumnWriter();
+      case BYTE:
+      case SHORT:
+      case INT:
+      case LONG:
+        return new LongColumnWriter();
+      case FLOAT:
+      case DOUBLE:
+        return new DoubleColumnWriter();
+      case STRING:
+      case CHAR:
+      case VARCHAR:
+        return new StringColumnWriter();
+      case BINARY:
+        return new BinaryColumnWriter();
+      default:
+        throw new IllegalArgumentException(String.format("Field '%s' is of type %s, which is currently not " +
+                                                           "supported in ORC", fieldName, type));
+    }
+  }
+
+  /**
+   * Sets the non null value of a field in a column vector.
+   */
+  private abstract static class ColumnWriter {
+    abstract void write(ColumnVector vector, int row, Object value);
+  }
+
+  private static final class BooleanColumnWriter extends ColumnWriter {
+    @Override
+    void write(ColumnVector vector, int row, Object value) {
+      ((LongColumnVector) vector).vector[row] = (Boolean) value ? 1 : 0;
+    }
+  }
+
+  private static final class LongColumnWriter extends ColumnWriter {
+    @Override
+    void write(ColumnVector vector, int row, Object value) {
+      ((LongColumnVector) vector).vector[row] = ((Number) value).longValue();
+    }
+  }
+
+  private static final class DoubleColumnWriter extends ColumnWriter {
+    @Override
+    void write(ColumnVector vector, int row, Object value) {
+      ((DoubleColumnVector) vector).vector[row] = ((Number) value).doubleValue();
+    }
+  }
+
+  /**
+   * Encodes strings, and enum values, as UTF-8 into a reused buffer.
+   */
+  private static final class StringColumnWriter extends ColumnWriter {
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer buffer = ByteBuffer.allocate(256);
+
+    @Override
+    void write(ColumnVector vector, int row, Object value) {
+      String string = value.toString();
+      int maxLength = (int) (string.length() * encoder.maxBytesPerChar());
+      if (buffer.capacity() < maxLength) {
+        buffer = ByteBuffer.allocate(Math.max(maxLength, buffer.capacity() * 2));
+      }
+      buffer.clear();
+      encoder.reset();
+      encoder.encode(CharBuffer.wrap(string), buffer, true);
+      encoder.flush(buffer);
+      ((BytesColumnVector) vector).setVal(row, buffer.array(), 0, buffer.position());
+    }
+  }
+
+  private static final class BinaryColumnWriter extends ColumnWriter {
+    @Override
+    void write(ColumnVector vector, int row, Object value) {
+      BytesColumnVector bytesVector = (BytesColumnVector) vector;
+      if (value instanceof ByteBuffer) {
+        ByteBuffer bytes = (ByteBuffer) value;
+        if (bytes.hasArray()) {
+          bytesVector.setVal(row, bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        } else {
+          byte[] copy = new byte[bytes.remaining()];
+          bytes.duplicate().get(copy);
+          bytesVector.setVal(row, copy, 0, copy.length);
+        }
+      } else {
+        byte[] bytes = (byte[]) value;
+        bytesVector.setVal(row, bytes, 0, bytes.length);
+      }
+    }
+  }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.common;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.hadoop.conf.Configuration;
+import parquet.avro.AvroSchemaConverter;
+import parquet.hadoop.api.WriteSupport;
+import parquet.io.api.Binary;
+import parquet.io.api.RecordConsumer;
+import parquet.schema.GroupType;
+import parquet.schema.MessageType;
+import parquet.schema.Type;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parquet {@link WriteSupport} that writes {@link StructuredRecord StructuredRecords} directly, without converting
+ * them to Avro records first.
+ * <p/>
+ * The schema is read from the same {@code parquet.avro.schema} property as the Avro write support, and is converted
+ * to a Parquet schema in the same way. The Avro schema is also stored in the file metadata, so the files are the
+ * same as those written through Avro and can be read with the Avro Parquet input format. When writing starts, a
+ * tree of writers is built from the CDAP schema and the Parquet schema, so that writing a record only walks that
+ * tree and adds each value to its column.
+ */
+public class StructuredRecordWriteSupport extends WriteSupport<StructuredRecord> {
+  public static final String SCHEMA = "parquet.avro.schema";
+
+  private RecordWriter rootWriter;
+  private RecordConsumer recordConsumer;
+
+  @Override
+  public WriteContext init(Configuration configuration) {
+    String schema = configuration.get(SCHEMA);
+    if (schema == null) {
+      throw new IllegalArgumentException("The schema of the records to write must be set in " + SCHEMA);
+    }
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(schema);
+    MessageType messageType = new AvroSchemaConverter().convert(avroSchema);
+    try {
+      rootWriter = new RecordWriter(Schema.parseJson(schema), messageType);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to parse schema: " + e.getMessage(), e);
+    }
+    return new WriteContext(messageType, Collections.singletonMap(SCHEMA, avroSchema.toString()));
+  }
+
+  @Override
+  public void prepareForWrite(RecordConsumer recordConsumer) {
+    this.recordConsumer = recordConsumer;
+  }
+
+  @Override
+  public void write(StructuredRecord record) {
+    recordConsumer.startMessage();
+    rootWriter.writeFields(record);
+    recordConsumer.endMessage();
+  }
+
+  private ValueWriter createWriter(Schema schema, Type type) {
+    if (schema.isNullable()) {
+      // nullable fields are optional in Parquet
+      schema = schema.getNonNullable();
+    }
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return new ValueWriter() {
+          @Override
+          void write(Object value) {
+            recordConsumer.addBoolean((Boolean) value);
+          }
+        };
+      case INT:
+        return new ValueWriter() {
+          @Override
+          void write(Object value) {
+            recordConsumer.addInteger(((Number) value).intValue());
+          }
+        };
+      case LONG:
+        return new ValueWriter() {
+          @Override
+          void write(Object value) {
+            recordConsumer.addLong(((Number) value).longValue());
+          }
+        };
+      case FLOAT:
+        return new ValueWriter() {
+          @Override
+          void write(Object value) {
+            recordConsumer.addFloat(((Number) value).floatValue());
+          }
+        };
+      case DOUBLE:
+        return new ValueWriter() {
+          @Override
+          void write(Object value) {
+            recordConsumer.addDouble(((Number) value).doubleValue());
+          }
+        };
+      case STRING:
+      case ENUM:
+        return new ValueWriter() {
+          @Override
+          void write(Object value) {
+            recordConsumer.addBinary(Binary.fromString(value.toString()));
+          }
+        };
+      case BYTES:
+        return new ValueWriter() {
+          @Override
+          void write(Object value) {
+            recordConsumer.addBinary(Binary.fromByteArray(toBytes(value)));
+          }
+        };
+      case RECORD:
+        return new RecordWriter(schema, type.asGroupType());
+      case ARRAY:
+        return new ArrayWriter(schema, type.asGroupType());
+      case MAP:
+        return new MapWriter(schema, type.asGroupType());
+      default:
+        throw new IllegalArgumentException(String.format("Schema type %s is not supported in Parquet files.",
+                                                         schema.getType()));
+    }
+  }
+
+  private static byte[] toBytes(Object value) {
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+    }
+    return (byte[]) value;
+  }
+
+  /**
+   * Writes one value to the current field.
+   */
+  private abstract static class ValueWriter {
+    abstract void write(Object value);
+  }
+
+  /**
+   * Writes the fields of a record.
+   */
+  private final class RecordWriter extends ValueWriter {
+    private final FieldWriter[] fields;
+
+    private RecordWriter(Schema schema, GroupType type) {
+      List<FieldWriter> fieldWriters = new ArrayList<>();
+      for (Schema.Field field : schema.getFields()) {
+        // null fields are not part of the Parquet schema
+        if (field.getSchema().getType() == Schema.Type.NULL) {
+          continue;
+        }
+        int index = type.getFieldIndex(field.getName());
+        Type fieldType = type.getType(index);
+        fieldWriters.add(new FieldWriter(field.getName(), index, fieldType.isRepetition(Type.Repetition.REQUIRED),
+                                         createWriter(field.getSchema(), fieldType)));
+      }
+      this.fields = fieldWriters.toArray(new FieldWriter[fieldWriters.size()]);
+    }
+
+    @Override
+    void write(Object value) {
+      recordConsumer.startGroup();
+      writeFields((StructuredRecord) value);
+      recordConsumer.endGroup();
+    }
+
+    private void writeFields(StructuredRecord record) {
+      for (FieldWriter field : fields) {
+        Object value = record.get(field.name);
+        if (value != null) {
+          recordConsumer.startField(field.name, field.index);
+          field.writer.write(value);
+          recordConsumer.endField(field.name, field.index);
+        } else if (field.required) {
+          throw new IllegalArgumentException("Null value for required field " + field.name);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the elements of an array as a repeated field in a group.
+   */
+  private final class ArrayWriter extends ValueWriter {
+    private final String elementName;
+    private final ValueWriter elementWriter;
+
+    private ArrayWriter(Schema schema, GroupType type) {
+      Type elementType = type.getType(0);
+      this.elementName = elementType.getName();
+      this.elementWriter = createWriter(schema.getComponentSchema(), elementType);
+    }
+
+    @Override
+    void write(Object value) {
+      recordConsumer.startGroup();
+      Collection<?> elements;
+      if (value instanceof Collection) {
+        elements = (Collection<?>) value;
+      } else {
+        List<Object> list = new ArrayList<>();
+        for (int i = 0; i < Array.getLength(value); i++) {
+          list.add(Array.get(value, i));
+        }
+        elements = list;
+      }
+      if (!elements.isEmpty()) {
+        recordConsumer.startField(elementName, 0);
+        for (Object element : elements) {
+          if (element == null) {
+            throw new IllegalArgumentException("Null elements are not supported in arrays written to Parquet.");
+          }
+          elementWriter.write(element);
+        }
+        recordConsumer.endField(elementName, 0);
+      }
+      recordConsumer.endGroup();
+    }
+  }
+
+  /**
+   * Writes the entries of a map as a repeated group of key and value.
+   */
+  private final class MapWriter extends ValueWriter {
+    private final String entryName;
+    private final String keyName;
+    private final String valueName;
+    private final ValueWriter valueWriter;
+
+    private MapWriter(Schema schema, GroupType type) {
+      GroupType entryType = type.getType(0).asGroupType();
+      this.entryName = entryType.getName();
+      this.keyName = entryType.getType(0).getName();
+      Type valueType = entryType.getType(1);
+      this.valueName = valueType.getName();
+      this.valueWriter = createWriter(schema.getMapSchema().getValue(), valueType);
+    }
+
+    @Override
+    void write(Object value) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      recordConsumer.startGroup();
+      if (!map.isEmpty()) {
+        recordConsumer.startField(entryName, 0);
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          recordConsumer.startGroup();
+          recordConsumer.startField(keyName, 0);
+          recordConsumer.addBinary(Binary.fromString(entry.getKey().toString()));
+          recordConsumer.endField(keyName, 0);
+          if (entry.getValue() != null) {
+            recordConsumer.startField(valueName, 1);
+            valueWriter.write(entry.getValue());
+            recordConsumer.endField(valueName, 1);
+          }
+          recordConsumer.endGroup();
+        }
+        recordConsumer.endField(entryName, 0);
+      }
+      recordConsumer.endGroup();
+    }
+  }
+
+  /**
+   * Writer of a field of a record.
+   */
+  private static final class FieldWriter {
+    private final String name;
+    private final int index;
+    private final boolean required;
+    private final ValueWriter writer;
+
+    private FieldWriter(String name, int index, boolean required, ValueWriter writer) {
+      this.name = name;
+      this.index = index;
+      this.required = required;
+      this.writer = writer;
+    }
+  }
+}
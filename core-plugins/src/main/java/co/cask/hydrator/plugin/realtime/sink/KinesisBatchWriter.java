@@ -0,0 +1,331 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.realtime.sink;
+
+import co.cask.cdap.api.common.Bytes;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes records to a Kinesis stream with the PutRecords API. Records are buffered until a request would exceed
+ * the PutRecords limits, and only the entries that failed are retried.
+ *
+ * If aggregation is enabled, small records are packed into aggregated Kinesis records using the format of the
+ * Kinesis Producer Library, so that consumers using the Kinesis Client Library see the original records. Kinesis
+ * puts an aggregated record on the shard of its partition key, so only records with the same partition key are
+ * aggregated together.
+ */
+final class KinesisBatchWriter {
+  private static final Logger LOG = LoggerFactory.getLogger(KinesisBatchWriter.class);
+
+  // PutRecords limits
+  static final int MAX_RECORDS_PER_REQUEST = 500;
+  static final int MAX_BYTES_PER_REQUEST = 5 * 1024 * 1024;
+  // Default maximum size of an aggregated record in the Kinesis Producer Library
+  static final int MAX_AGGREGATED_BYTES = 50 * 1024;
+  static final byte[] AGGREGATION_MAGIC = {(byte) 0xF3, (byte) 0x89, (byte) 0x9A, (byte) 0xC2};
+
+  private final AmazonKinesis client;
+  private final String streamName;
+  private final int maxRetries;
+  private final long retryBackoffMillis;
+  private final List<KinesisRecord> buffer = new ArrayList<>();
+  // aggregated records being built, by partition key, or null if aggregation is disabled
+  private final Map<String, AggregatedRecordBuilder> aggregators;
+  private int bufferedBytes;
+
+  KinesisBatchWriter(AmazonKinesis client, String streamName, boolean aggregate, int maxRetries,
+                     long retryBackoffMillis) {
+    this.client = client;
+    this.streamName = streamName;
+    this.maxRetries = maxRetries;
+    this.retryBackoffMillis = retryBackoffMillis;
+    this.aggregators = aggregate ? new LinkedHashMap<String, AggregatedRecordBuilder>() : null;
+  }
+
+  /**
+   * Adds a record to the batch, sending the buffered records first if adding it would exceed the request limits.
+   *
+   * @return the number of records that were written while making room for this record
+   */
+  int add(String partitionKey, ByteBuffer data) {
+    if (aggregators == null) {
+      return buffer(new KinesisRecord(partitionKey, data.duplicate(), 1));
+    }
+    byte[] bytes = new byte[data.remaining()];
+    data.duplicate().get(bytes);
+    AggregatedRecordBuilder aggregator = aggregators.get(partitionKey);
+    if (aggregator == null) {
+      aggregator = new AggregatedRecordBuilder(partitionKey);
+      aggregators.put(partitionKey, aggregator);
+    }
+    int written = 0;
+    if (!aggregator.fits(bytes)) {
+      written += buffer(aggregator.build());
+    }
+    aggregator.add(bytes);
+    return written;
+  }
+
+  /**
+   * Sends all buffered records.
+   *
+   * @return the number of records that were written
+   */
+  int flush() {
+    int written = 0;
+    if (aggregators != null) {
+      for (AggregatedRecordBuilder aggregator : aggregators.values()) {
+        written += buffer(aggregator.build());
+      }
+      aggregators.clear();
+    }
+    return written + send();
+  }
+
+  private int buffer(KinesisRecord record) {
+    int written = 0;
+    int size = record.size();
+    if (buffer.size() >= MAX_RECORDS_PER_REQUEST || bufferedBytes + size > MAX_BYTES_PER_REQUEST) {
+      written = send();
+    }
+    buffer.add(record);
+    bufferedBytes += size;
+    return written;
+  }
+
+  private int send() {
+    List<KinesisRecord> pending = new ArrayList<>(buffer);
+    buffer.clear();
+    bufferedBytes = 0;
+
+    int written = 0;
+    for (int attempt = 0; !pending.isEmpty(); attempt++) {
+      if (attempt > 0) {
+        if (attempt > maxRetries) {
+          int dropped = 0;
+          for (KinesisRecord record : pending) {
+            dropped += record.userRecords;
+          }
+          LOG.warn("Could not write {} records to stream {} after {} retries", dropped, streamName, maxRetries);
+          break;
+        }
+        Uninterruptibles.sleepUninterruptibly(retryBackoffMillis * attempt, TimeUnit.MILLISECONDS);
+      }
+
+      List<PutRecordsRequestEntry> entries = new ArrayList<>(pending.size());
+      for (KinesisRecord record : pending) {
+        entries.add(new PutRecordsRequestEntry()
+                      .withPartitionKey(record.partitionKey)
+                      .withData(record.data.duplicate()));
+      }
+      PutRecordsResult result;
+      try {
+        result = client.putRecords(new PutRecordsRequest().withStreamName(streamName).withRecords(entries));
+      } catch (Exception e) {
+        LOG.warn("Could not write data to stream {}", streamName, e);
+        continue;
+      }
+
+      // entries of the result are in the same order as in the request, only keep the failed ones
+      List<KinesisRecord> failed = new ArrayList<>();
+      List<PutRecordsResultEntry> resultEntries = result.getRecords();
+      for (int i = 0; i < resultEntries.size(); i++) {
+        KinesisRecord record = pending.get(i);
+        if (resultEntries.get(i).getErrorCode() == null) {
+          written += record.userRecords;
+        } else {
+          failed.add(record);
+        }
+      }
+      pending = failed;
+    }
+    return written;
+  }
+
+  /**
+   * A record to be sent to Kinesis, with the number of input records it contains.
+   */
+  private static final class KinesisRecord {
+    private final String partitionKey;
+    private final ByteBuffer data;
+    private final int userRecords;
+    private final int size;
+
+    private KinesisRecord(String partitionKey, ByteBuffer data, int userRecords) {
+      this.partitionKey = partitionKey;
+      this.data = data;
+      this.userRecords = userRecords;
+      // the request limits count the partition key in UTF-8 bytes
+      this.size = data.remaining() + Bytes.toBytes(partitionKey).length;
+    }
+
+    private int size() {
+      return size;
+    }
+  }
+
+  /**
+   * Builds aggregated records in the Kinesis Producer Library format: the magic bytes, followed by a protobuf
+   * encoded AggregatedRecord message, followed by the MD5 digest of that message. All records of a builder share
+   * one partition key, which is the only entry of the partition key table.
+   *
+   * <pre>
+   *   message AggregatedRecord {
+   *     repeated string partition_key_table = 1;
+   *     repeated string explicit_hash_key_table = 2;
+   *     repeated Record records = 3;
+   *   }
+   *   message Record {
+   *     required uint64 partition_key_index = 1;
+   *     optional uint64 explicit_hash_key_index = 2;
+   *     required bytes data = 3;
+   *   }
+   * </pre>
+   */
+  private static final class AggregatedRecordBuilder {
+    private static final int DIGEST_LENGTH = 16;
+
+    private final String partitionKey;
+    private final int partitionKeySize;
+    private final byte[] partitionKeyTable;
+    private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+    private byte[] firstData;
+    private int count;
+
+    private AggregatedRecordBuilder(String partitionKey) {
+      byte[] key = Bytes.toBytes(partitionKey);
+      ByteArrayOutputStream table = new ByteArrayOutputStream();
+      writeLengthDelimited(table, 1, key);
+      this.partitionKey = partitionKey;
+      this.partitionKeySize = key.length;
+      this.partitionKeyTable = table.toByteArray();
+    }
+
+    /**
+     * Returns whether the given record can be added without exceeding the aggregated record size. An empty
+     * builder accepts any record.
+     */
+    private boolean fits(byte[] data) {
+      if (count == 0) {
+        return true;
+      }
+      int size = AGGREGATION_MAGIC.length + partitionKeyTable.length + records.size() + DIGEST_LENGTH +
+        partitionKeySize + lengthDelimitedSize(recordSize(0, data.length));
+      return size <= MAX_AGGREGATED_BYTES;
+    }
+
+    private void add(byte[] data) {
+      if (count == 0) {
+        firstData = data;
+      }
+      // Record message, the partition key is always the first entry of the table
+      records.write(tag(3, 2));
+      writeVarint(records, recordSize(0, data.length));
+      records.write(tag(1, 0));
+      writeVarint(records, 0);
+      writeLengthDelimited(records, 3, data);
+      count++;
+    }
+
+    /**
+     * Returns the aggregated record and resets the builder. A single record is returned as is.
+     */
+    private KinesisRecord build() {
+      KinesisRecord record;
+      if (count == 1) {
+        record = new KinesisRecord(partitionKey, ByteBuffer.wrap(firstData), 1);
+      } else {
+        byte[] entries = records.toByteArray();
+        MessageDigest digest = md5();
+        digest.update(partitionKeyTable);
+        digest.update(entries);
+
+        ByteBuffer data = ByteBuffer.allocate(AGGREGATION_MAGIC.length + partitionKeyTable.length + entries.length +
+                                                DIGEST_LENGTH);
+        data.put(AGGREGATION_MAGIC).put(partitionKeyTable).put(entries).put(digest.digest());
+        data.flip();
+        record = new KinesisRecord(partitionKey, data, count);
+      }
+
+      records.reset();
+      firstData = null;
+      count = 0;
+      return record;
+    }
+
+    private static int recordSize(int partitionKeyIndex, int dataLength) {
+      return 1 + varintSize(partitionKeyIndex) + lengthDelimitedSize(dataLength);
+    }
+
+    private static int lengthDelimitedSize(int length) {
+      return 1 + varintSize(length) + length;
+    }
+
+    private static int tag(int field, int wireType) {
+      return (field << 3) | wireType;
+    }
+
+    private static void writeLengthDelimited(ByteArrayOutputStream out, int field, byte[] bytes) {
+      out.write(tag(field, 2));
+      writeVarint(out, bytes.length);
+      out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+      while ((value & ~0x7F) != 0) {
+        out.write((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      out.write(value);
+    }
+
+    private static int varintSize(int value) {
+      int size = 1;
+      while ((value & ~0x7F) != 0) {
+        value >>>= 7;
+        size++;
+      }
+      return size;
+    }
+
+    private static MessageDigest md5() {
+      try {
+        return MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e) {
+        // MD5 is required to be supported by every Java platform
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
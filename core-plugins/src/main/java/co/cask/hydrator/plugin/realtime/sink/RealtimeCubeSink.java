@@ -26,6 +26,7 @@ import co.cask.cdap.etl.api.PipelineConfigurer;
 import co.cask.cdap.etl.api.realtime.DataWriter;
 import co.cask.cdap.etl.api.realtime.RealtimeContext;
 import co.cask.cdap.etl.api.realtime.RealtimeSink;
+import co.cask.hydrator.plugin.common.CubeFactAggregator;
 import co.cask.hydrator.plugin.common.CubeSinkConfig;
 import co.cask.hydrator.plugin.common.CubeUtils;
 import co.cask.hydrator.plugin.common.Properties;
@@ -54,6 +55,9 @@ import java.util.Map;
  * To configure transformation from a {@link co.cask.cdap.api.data.format.StructuredRecord} to a
  * {@link co.cask.cdap.api.dataset.lib.cube.CubeFact}, the
  * mapping configuration is required, following {@link StructuredRecordToCubeFact} documentation.
+ * <p/>
+ * Facts of a batch of records are merged with a {@link CubeFactAggregator} before they are written, unless the
+ * aggregation buffer size is set to 0.
  */
 @Plugin(type = "realtimesink")
 @Name("Cube")
@@ -68,12 +72,14 @@ public class RealtimeCubeSink extends RealtimeSink<StructuredRecord> {
     this.config = config;
   }
 
+  private Map<String, String> properties;
   private StructuredRecordToCubeFact transform;
 
   @Override
   public void configurePipeline(PipelineConfigurer pipelineConfigurer) {
     String datasetName = config.getName();
     Preconditions.checkArgument(datasetName != null && !datasetName.isEmpty(), "Dataset name must be given.");
+    config.validate();
 
     pipelineConfigurer.createDataset(datasetName, Cube.class.getName(), DatasetProperties.builder()
       .addAll(getProperties())
@@ -113,17 +119,31 @@ public class RealtimeCubeSink extends RealtimeSink<StructuredRecord> {
   @Override
   public int write(Iterable<StructuredRecord> objects, DataWriter dataWriter) throws Exception {
     Cube cube = dataWriter.getDataset(config.getName());
+    // a new aggregator for every batch, so that facts of a failed batch are not written with the next one
+    CubeFactAggregator aggregator = config.getAggregationBufferSize() > 0 ?
+      new CubeFactAggregator(properties, config.getAggregationBufferSize()) : null;
     int count = 0;
     for (StructuredRecord record : objects) {
-      cube.add(transform.transform(record));
+      if (aggregator == null) {
+        cube.add(transform.transform(record));
+      } else {
+        aggregator.add(transform.transform(record));
+        if (aggregator.isFull()) {
+          cube.add(aggregator.drain());
+        }
+      }
       count++;
     }
+    if (aggregator != null && aggregator.size() > 0) {
+      cube.add(aggregator.drain());
+    }
     return count;
   }
 
   @Override
   public void initialize(RealtimeContext context) throws Exception {
     super.initialize(context);
-    transform = new StructuredRecordToCubeFact(getProperties());
+    properties = getProperties();
+    transform = new StructuredRecordToCubeFact(properties);
   }
 }
@@ -32,13 +32,13 @@ import co.cask.hydrator.plugin.common.KinesisUtil;
 import co.cask.hydrator.plugin.common.Properties;
 import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.services.kinesis.AmazonKinesisClient;
-import com.amazonaws.services.kinesis.model.PutRecordRequest;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.Random;
 import javax.annotation.Nullable;
 
 
@@ -52,8 +52,11 @@ import javax.annotation.Nullable;
 public class RealtimeKinesisStreamSink extends RealtimeSink<StructuredRecord> {
 
   private static final Logger LOG = LoggerFactory.getLogger(RealtimeKinesisStreamSink.class);
+  private static final long RETRY_BACKOFF_MILLIS = 100;
   private final KinesisConfig config;
+  private final Random random = new Random();
   private AmazonKinesisClient kinesisClient;
+  private KinesisBatchWriter batchWriter;
 
   public RealtimeKinesisStreamSink(KinesisConfig config) {
     this.config = config;
@@ -67,8 +70,11 @@ public class RealtimeKinesisStreamSink extends RealtimeSink<StructuredRecord> {
                                 "Access Key should be non-null, non-empty.");
     Preconditions.checkArgument(!Strings.isNullOrEmpty(config.awsAccessSecret),
                                 "Access Key secret should be non-null, non-empty.");
-    Preconditions.checkArgument(!Strings.isNullOrEmpty(config.partition),
-                                "Partition name should be non-null, non-empty.");
+    Preconditions.checkArgument(config.partitionField != null || config.isRandomPartitionKey() ||
+                                  !Strings.isNullOrEmpty(config.partition),
+                                "Partition name should be non-null, non-empty if no partition field is given " +
+                                  "and random partition keys are disabled.");
+    Preconditions.checkArgument(config.getMaxRetries() >= 0, "Max retries should not be negative.");
     Preconditions.checkArgument(!Strings.isNullOrEmpty(config.bodyField),
                                 "Input field should be non-null, non-empty.");
     Schema inputSchema = pipelineConfigurer.getStageConfigurer().getInputSchema();
@@ -95,6 +101,10 @@ public class RealtimeKinesisStreamSink extends RealtimeSink<StructuredRecord> {
         Schema.Type.INT, Schema.Type.LONG, Schema.Type.FLOAT, Schema.Type.DOUBLE, Schema.Type.STRING, Schema.Type.BYTES,
         fieldType, config.bodyField));
     }
+    if (config.partitionField != null && inputSchema.getField(config.partitionField) == null) {
+      throw new IllegalArgumentException(
+        "Partition field " + config.partitionField + " is not present in the input schema");
+    }
   }
 
   @Override
@@ -103,6 +113,8 @@ public class RealtimeKinesisStreamSink extends RealtimeSink<StructuredRecord> {
     BasicAWSCredentials awsCred = new BasicAWSCredentials(config.awsAccessKey, config.awsAccessSecret);
     kinesisClient = new AmazonKinesisClient(awsCred);
     KinesisUtil.createAndWaitForStream(kinesisClient, config.name, config.shardCount);
+    batchWriter = new KinesisBatchWriter(kinesisClient, config.name, config.isAggregate(), config.getMaxRetries(),
+                                         RETRY_BACKOFF_MILLIS);
   }
 
   @Override
@@ -121,58 +133,53 @@ public class RealtimeKinesisStreamSink extends RealtimeSink<StructuredRecord> {
         continue;
       }
       Schema.Field dataSchemaField = schema.getField(config.bodyField);
-      PutRecordRequest putRecordRequest = new PutRecordRequest();
-      putRecordRequest.setStreamName(config.name);
-      putRecordRequest.setPartitionKey(config.partition);
+      ByteBuffer buffer;
       switch (dataSchemaField.getSchema().getType()) {
         case BYTES:
-          numRecordsWritten += writeBytes(putRecordRequest, data);
+          buffer = toByteBuffer(data);
           break;
         case STRING:
-          numRecordsWritten += writeString(putRecordRequest, data);
+          buffer = ByteBuffer.wrap(Bytes.toBytes((String) data));
           break;
         case LONG:
         case DOUBLE:
         case FLOAT:
         case BOOLEAN:
         case INT:
-          numRecordsWritten += writeString(putRecordRequest, String.valueOf(data));
+          buffer = ByteBuffer.wrap(Bytes.toBytes(String.valueOf(data)));
           break;
         default:
           throw new UnsupportedTypeException(String.format("Type %s is not supported for writing to stream",
                                                            data.getClass().getName()));
       }
+      numRecordsWritten += batchWriter.add(getPartitionKey(structuredRecord), buffer);
     }
-    return numRecordsWritten;
+    return numRecordsWritten + batchWriter.flush();
   }
 
-  private int writeString(PutRecordRequest putRecordRequest, Object data) {
-    putRecordRequest.setData(ByteBuffer.wrap(Bytes.toBytes((String) data)));
-    return putRecord(putRecordRequest);
+  private String getPartitionKey(StructuredRecord structuredRecord) {
+    if (config.partitionField != null) {
+      Object value = structuredRecord.get(config.partitionField);
+      // Kinesis does not accept empty partition keys
+      if (value != null && !(value instanceof String && ((String) value).isEmpty())) {
+        return String.valueOf(value);
+      }
+    }
+    if (config.isRandomPartitionKey() || Strings.isNullOrEmpty(config.partition)) {
+      // Kinesis maps the MD5 hash of the key to a shard, so random keys spread records evenly across shards
+      return Long.toHexString(random.nextLong());
+    }
+    return config.partition;
   }
 
-  private int writeBytes(PutRecordRequest putRecordRequest, Object data) {
-    ByteBuffer buffer;
+  private ByteBuffer toByteBuffer(Object data) {
     if (data instanceof ByteBuffer) {
-      buffer = (ByteBuffer) data;
+      return (ByteBuffer) data;
     } else if (data instanceof byte[]) {
-      buffer = ByteBuffer.wrap((byte[]) data);
-    } else {
-      throw new IllegalStateException(String.format("Type %s is not supported for writing to stream",
-                                                    data.getClass().getName()));
-    }
-    putRecordRequest.setData(buffer);
-    return putRecord(putRecordRequest);
-  }
-
-  private int putRecord(PutRecordRequest putRecordRequest) {
-    try {
-      kinesisClient.putRecord(putRecordRequest);
-      return 1;
-    } catch (Exception e) {
-      LOG.warn("could not write data to stream {}", putRecordRequest.getStreamName(), e);
-      return 0;
+      return ByteBuffer.wrap((byte[]) data);
     }
+    throw new IllegalStateException(String.format("Type %s is not supported for writing to stream",
+                                                  data.getClass().getName()));
   }
 
   /**
@@ -201,9 +208,35 @@ public class RealtimeKinesisStreamSink extends RealtimeSink<StructuredRecord> {
     private int shardCount;
 
     @Name(Properties.KinesisRealtimeSink.PARTITION_KEY)
-    @Description("Partition key to identify shard")
+    @Description("Partition key to identify shard. Used for records that do not have a value for the partition " +
+      "field. Required unless a partition field is given or random partition keys are enabled.")
+    @Nullable
     private String partition;
 
+    @Name(Properties.KinesisRealtimeSink.PARTITION_FIELD)
+    @Description("Name of the field in the record whose value is used as the partition key of the record.")
+    @Nullable
+    private String partitionField;
+
+    @Name(Properties.KinesisRealtimeSink.RANDOM_PARTITION_KEY)
+    @Description("Whether records without a partition field value get a random partition key, which spreads " +
+      "them evenly across all shards. Defaults to false.")
+    @Nullable
+    private Boolean randomPartitionKey;
+
+    @Name(Properties.KinesisRealtimeSink.AGGREGATE)
+    @Description("Whether to aggregate multiple records into a single Kinesis record using the Kinesis Producer " +
+      "Library aggregation format. Consumers must use the Kinesis Client Library or otherwise deaggregate the " +
+      "records. Only records with the same partition key are aggregated together, so aggregation has no effect " +
+      "with random partition keys. Defaults to false.")
+    @Nullable
+    private Boolean aggregate;
+
+    @Name(Properties.KinesisRealtimeSink.MAX_RETRIES)
+    @Description("Maximum number of times records that failed to be written are retried. Defaults to 3.")
+    @Nullable
+    private Integer maxRetries;
+
     KinesisConfig(String name, String bodyField, String awsAccessKey,
                   String awsAccessSecret, String partition, int shardCount) {
       this.name = name;
@@ -213,5 +246,17 @@ public class RealtimeKinesisStreamSink extends RealtimeSink<StructuredRecord> {
       this.partition = partition;
       this.shardCount = shardCount;
     }
+
+    private boolean isRandomPartitionKey() {
+      return randomPartitionKey != null && randomPartitionKey;
+    }
+
+    private boolean isAggregate() {
+      return aggregate != null && aggregate;
+    }
+
+    private int getMaxRetries() {
+      return maxRetries == null ? 3 : maxRetries;
+    }
   }
 }
@@ -31,21 +31,33 @@ import co.cask.hydrator.common.ReferenceRealtimeSource;
 import co.cask.hydrator.plugin.realtime.jms.JmsProvider;
 import co.cask.hydrator.plugin.realtime.jms.JndiBasedJmsProvider;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.annotation.Nullable;
 import javax.jms.BytesMessage;
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
 import javax.jms.Destination;
 import javax.jms.JMSException;
+import javax.jms.MapMessage;
 import javax.jms.Message;
 import javax.jms.MessageConsumer;
 import javax.jms.Session;
@@ -75,6 +87,12 @@ public class JmsSource extends ReferenceRealtimeSource<StructuredRecord> {
   public static final String JMS_PLUGIN_NAME = "jms.plugin.name";
   public static final String JMS_PLUGIN_TYPE = "jms.plugin.type";
   public static final String JMS_CUSTOM_PROPERTIES = "jms.plugin.custom.properties";
+  public static final String JMS_SESSION_MODE = "jms.session.mode";
+  public static final String JMS_CONSUMERS = "jms.consumers";
+  public static final String JMS_MESSAGE_DECODING = "jms.message.decoding";
+
+  public static final String DECODING_STRING = "string";
+  public static final String DECODING_NATIVE = "native";
 
   public static final String DEFAULT_CONNECTION_FACTORY = "ConnectionFactory";
   public static final String JMS_PROVIDER = "JMSProvider";
@@ -82,9 +100,18 @@ public class JmsSource extends ReferenceRealtimeSource<StructuredRecord> {
   private static final long JMS_CONSUMER_TIMEOUT_MS = 2000;
 
   public static final String MESSAGE = "message";
+  public static final String BYTES = "bytes";
+  public static final String MAP = "map";
 
   private static final Schema SCHEMA = Schema.recordOf("JMS Message",
                                                        Schema.Field.of(MESSAGE, Schema.of(Schema.Type.STRING)));
+  // Schema used for native decoding, only the field matching the type of the message is set
+  private static final Schema NATIVE_SCHEMA = Schema.recordOf(
+    "JMS Message",
+    Schema.Field.of(MESSAGE, Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of(BYTES, Schema.nullableOf(Schema.of(Schema.Type.BYTES))),
+    Schema.Field.of(MAP, Schema.nullableOf(Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                                        Schema.nullableOf(Schema.of(Schema.Type.STRING))))));
 
   private final JmsPluginConfig config;
 
@@ -92,10 +119,11 @@ public class JmsSource extends ReferenceRealtimeSource<StructuredRecord> {
   private JmsProvider jmsProvider;
 
   private transient Connection connection;
-  private transient Session session;
-  private transient MessageConsumer consumer;
+  private transient List<ConsumerSession> consumers;
+  private transient ExecutorService receiverExecutor;
 
   private int messagesToReceive;
+  private boolean nativeDecoding;
 
   /**
    * Default constructor
@@ -126,6 +154,10 @@ public class JmsSource extends ReferenceRealtimeSource<StructuredRecord> {
 
     Integer configMessagesToReceive = config.messagesToReceive;
     messagesToReceive = configMessagesToReceive.intValue();
+    nativeDecoding = config.isNativeDecoding();
+    if (config.sessionMode != null) {
+      setSessionAcknowledgeMode(config.getSessionMode());
+    }
 
     // Get environment vars - this would be prefixed with java.naming.*
     final Hashtable<String, String> envVars = new Hashtable<>();
@@ -168,16 +200,22 @@ public class JmsSource extends ReferenceRealtimeSource<StructuredRecord> {
     }
     ConnectionFactory connectionFactory = jmsProvider.getConnectionFactory();
 
+    int consumerCount = config.getConsumers();
+    consumers = new ArrayList<>(consumerCount);
     try {
       connection = connectionFactory.createConnection();
-      session = connection.createSession(false, jmsAcknowledgeMode);
       Destination destination = jmsProvider.getDestination();
-      consumer = session.createConsumer(destination);
+      boolean transacted = jmsAcknowledgeMode == Session.SESSION_TRANSACTED;
+      // sessions are single threaded, so every consumer gets its own session
+      for (int i = 0; i < consumerCount; i++) {
+        Session session = connection.createSession(transacted, jmsAcknowledgeMode);
+        consumers.add(new ConsumerSession(session, session.createConsumer(destination)));
+      }
       connection.start();
     } catch (JMSException ex) {
-      if (session != null) {
+      for (ConsumerSession consumer : consumers) {
         try {
-          session.close();
+          consumer.session.close();
         } catch (JMSException ex1) {
           LOG.warn("Exception when closing session", ex1);
         }
@@ -191,6 +229,10 @@ public class JmsSource extends ReferenceRealtimeSource<StructuredRecord> {
       }
       throw new RuntimeException("JMSException thrown when trying to initialize connection", ex);
     }
+    if (consumerCount > 1) {
+      receiverExecutor = Executors.newFixedThreadPool(
+        consumerCount, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("jms-consumer-%d").build());
+    }
   }
 
   @Override
@@ -203,8 +245,9 @@ public class JmsSource extends ReferenceRealtimeSource<StructuredRecord> {
                                 "Unable to find JMS Initial Connection Factory Context class. Please make sure that " +
                                   "the plugin '%s' of type '%s' containing the class has been installed correctly.",
                                 config.jmsPluginName, config.jmsPluginType);
+    config.validate();
 
-    pipelineConfigurer.getStageConfigurer().setOutputSchema(SCHEMA);
+    pipelineConfigurer.getStageConfigurer().setOutputSchema(config.isNativeDecoding() ? NATIVE_SCHEMA : SCHEMA);
   }
 
   private String getPluginId() {
@@ -214,46 +257,105 @@ public class JmsSource extends ReferenceRealtimeSource<StructuredRecord> {
   @Nullable
   @Override
   public SourceState poll(Emitter<StructuredRecord> writer, SourceState currentState) {
-    // Try to get message from Queue
-    Message message = null;
-
-    int count = 0;
-    do {
-      try {
-        message = consumer.receive(JMS_CONSUMER_TIMEOUT_MS);
-      } catch (JMSException e) {
-        LOG.warn("Exception when trying to receive message from JMS consumer.");
-      }
-      if (message != null) {
-        String text;
-        try {
-          if (message instanceof TextMessage) {
-            TextMessage textMessage = (TextMessage) message;
-            text = textMessage.getText();
-            LOG.trace("Process JMS TextMessage : ", text);
-          } else if (message instanceof BytesMessage) {
-            BytesMessage bytesMessage = (BytesMessage) message;
-            text = bytesMessage.readUTF();
-            LOG.trace("Processing JMS ByteMessage : {}", text);
-          } else {
-            // Different kind of messages, just get String for now
-            // TODO Process different kind of JMS messages
-            text = message.toString();
-            LOG.trace("Processing JMS message : ", text);
+    // Messages are only committed or acknowledged once the whole batch has been received and emitted
+    try {
+      receive();
+      for (ConsumerSession consumer : consumers) {
+        for (Message message : consumer.received) {
+          StructuredRecord record = toStructuredRecord(message);
+          if (record != null) {
+            writer.emit(record);
           }
-        } catch (JMSException e) {
-          LOG.error("Unable to read text from a JMS Message.");
-          continue;
         }
-
-        writer.emit(stringMessageToStructuredRecord(text));
-        count++;
       }
-    } while (message != null && count < messagesToReceive);
+    } catch (RuntimeException e) {
+      for (ConsumerSession consumer : consumers) {
+        consumer.rollback();
+      }
+      throw e;
+    }
+    for (ConsumerSession consumer : consumers) {
+      consumer.commit();
+    }
 
     return new SourceState(currentState.getState());
   }
 
+  /**
+   * Receives up to {@link #messagesToReceive} messages, spread evenly over the consumers. With more than one
+   * consumer, the consumers receive concurrently.
+   */
+  private void receive() {
+    final int perConsumer = (messagesToReceive + consumers.size() - 1) / consumers.size();
+    if (receiverExecutor == null) {
+      consumers.get(0).receive(perConsumer);
+      return;
+    }
+
+    List<Future<?>> futures = new ArrayList<>(consumers.size());
+    for (final ConsumerSession consumer : consumers) {
+      futures.add(receiverExecutor.submit(new Runnable() {
+        @Override
+        public void run() {
+          consumer.receive(perConsumer);
+        }
+      }));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      awaitReceivers(futures);
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      awaitReceivers(futures);
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  /**
+   * Waits for every consumer to be done with its session after a failed receive, so that the messages the other
+   * consumers received can be rolled back. Sessions must not be used by two threads at the same time.
+   */
+  private static void awaitReceivers(List<Future<?>> futures) {
+    for (Future<?> future : futures) {
+      try {
+        Uninterruptibles.getUninterruptibly(future);
+      } catch (ExecutionException e) {
+        LOG.warn("Exception when trying to receive messages from JMS consumer.", e.getCause());
+      }
+    }
+  }
+
+  @Nullable
+  private StructuredRecord toStructuredRecord(Message message) {
+    try {
+      if (nativeDecoding) {
+        return nativeMessageToStructuredRecord(message);
+      }
+      String text;
+      if (message instanceof TextMessage) {
+        TextMessage textMessage = (TextMessage) message;
+        text = textMessage.getText();
+        LOG.trace("Process JMS TextMessage : ", text);
+      } else if (message instanceof BytesMessage) {
+        BytesMessage bytesMessage = (BytesMessage) message;
+        text = bytesMessage.readUTF();
+        LOG.trace("Processing JMS ByteMessage : {}", text);
+      } else {
+        // Different kind of messages, just get String for now
+        text = message.toString();
+        LOG.trace("Processing JMS message : ", text);
+      }
+      return stringMessageToStructuredRecord(text);
+    } catch (JMSException e) {
+      LOG.error("Unable to read text from a JMS Message.");
+      return null;
+    }
+  }
+
   // Helper method to encode JMS String message to StructuredRecord.
   private static StructuredRecord stringMessageToStructuredRecord(String text) {
     StructuredRecord.Builder recordBuilder = StructuredRecord.builder(SCHEMA);
@@ -261,15 +363,42 @@ public class JmsSource extends ReferenceRealtimeSource<StructuredRecord> {
     return recordBuilder.build();
   }
 
+  // Helper method to encode a JMS message to StructuredRecord based on the type of the message.
+  private static StructuredRecord nativeMessageToStructuredRecord(Message message) throws JMSException {
+    StructuredRecord.Builder recordBuilder = StructuredRecord.builder(NATIVE_SCHEMA);
+    if (message instanceof TextMessage) {
+      recordBuilder.set(MESSAGE, ((TextMessage) message).getText());
+    } else if (message instanceof BytesMessage) {
+      BytesMessage bytesMessage = (BytesMessage) message;
+      byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+      bytesMessage.readBytes(body);
+      recordBuilder.set(BYTES, body);
+    } else if (message instanceof MapMessage) {
+      MapMessage mapMessage = (MapMessage) message;
+      Map<String, String> map = new HashMap<>();
+      Enumeration<?> names = mapMessage.getMapNames();
+      while (names.hasMoreElements()) {
+        String name = (String) names.nextElement();
+        map.put(name, mapMessage.getString(name));
+      }
+      recordBuilder.set(MAP, map);
+    } else {
+      recordBuilder.set(MESSAGE, message.toString());
+    }
+    return recordBuilder.build();
+  }
+
   @Override
   public void destroy() {
+    if (receiverExecutor != null) {
+      receiverExecutor.shutdownNow();
+    }
     try {
-      if (consumer != null) {
-        consumer.close();
-      }
-
-      if (session != null) {
-        session.close();
+      if (consumers != null) {
+        for (ConsumerSession consumer : consumers) {
+          consumer.consumer.close();
+          consumer.session.close();
+        }
       }
 
       if (connection != null) {
@@ -324,6 +453,73 @@ public class JmsSource extends ReferenceRealtimeSource<StructuredRecord> {
     return jmsProvider;
   }
 
+  /**
+   * A {@link MessageConsumer} together with the {@link Session} it was created from, and the messages it
+   * received during the current poll.
+   */
+  private final class ConsumerSession {
+    private final Session session;
+    private final MessageConsumer consumer;
+    private final List<Message> received = new ArrayList<>();
+
+    private ConsumerSession(Session session, MessageConsumer consumer) {
+      this.session = session;
+      this.consumer = consumer;
+    }
+
+    private void receive(int maxMessages) {
+      received.clear();
+      Message message;
+      do {
+        message = null;
+        try {
+          // only wait for the first message, afterwards drain what has already been dispatched to the consumer
+          message = received.isEmpty() ? consumer.receive(JMS_CONSUMER_TIMEOUT_MS) : consumer.receiveNoWait();
+        } catch (JMSException e) {
+          LOG.warn("Exception when trying to receive message from JMS consumer.");
+        }
+        if (message != null) {
+          received.add(message);
+        }
+      } while (message != null && received.size() < maxMessages);
+    }
+
+    private void commit() {
+      if (received.isEmpty()) {
+        return;
+      }
+      try {
+        if (jmsAcknowledgeMode == Session.SESSION_TRANSACTED) {
+          session.commit();
+        } else if (jmsAcknowledgeMode == Session.CLIENT_ACKNOWLEDGE) {
+          // acknowledges every message consumed by the session so far
+          received.get(received.size() - 1).acknowledge();
+        }
+      } catch (JMSException e) {
+        throw new RuntimeException("Failed to commit received JMS messages", e);
+      } finally {
+        received.clear();
+      }
+    }
+
+    private void rollback() {
+      if (received.isEmpty()) {
+        return;
+      }
+      try {
+        if (jmsAcknowledgeMode == Session.SESSION_TRANSACTED) {
+          session.rollback();
+        } else if (jmsAcknowledgeMode == Session.CLIENT_ACKNOWLEDGE) {
+          session.recover();
+        }
+      } catch (JMSException e) {
+        LOG.warn("Failed to roll back received JMS messages", e);
+      } finally {
+        received.clear();
+      }
+    }
+  }
+
   /**
    * Config class for {@link JmsSource}.
    */
@@ -369,6 +565,27 @@ public class JmsSource extends ReferenceRealtimeSource<StructuredRecord> {
     @Nullable
     public String customProperties;
 
+    @Name(JMS_SESSION_MODE)
+    @Description("Acknowledgement mode of the JMS sessions. One of AUTO_ACKNOWLEDGE, CLIENT_ACKNOWLEDGE, " +
+      "DUPS_OK_ACKNOWLEDGE or SESSION_TRANSACTED. With CLIENT_ACKNOWLEDGE or SESSION_TRANSACTED, the messages " +
+      "of a poll are acknowledged or committed once, after all of them have been emitted. " +
+      "The default is AUTO_ACKNOWLEDGE.")
+    @Nullable
+    public String sessionMode;
+
+    @Name(JMS_CONSUMERS)
+    @Description("Number of consumers that concurrently receive messages from the destination. " +
+      "The default value is 1.")
+    @Nullable
+    public Integer consumers;
+
+    @Name(JMS_MESSAGE_DECODING)
+    @Description("How messages are decoded. With 'string', every message is emitted as a string in the 'message' " +
+      "field. With 'native', text messages are emitted in the 'message' field, bytes messages in the 'bytes' field " +
+      "and map messages in the 'map' field. The default is 'string'.")
+    @Nullable
+    public String messageDecoding;
+
     public JmsPluginConfig() {
       this("", null, null, null, 50, DEFAULT_CONNECTION_FACTORY, Context.INITIAL_CONTEXT_FACTORY, JMS_PROVIDER, null);
     }
@@ -377,7 +594,20 @@ public class JmsSource extends ReferenceRealtimeSource<StructuredRecord> {
                            String providerUrl, @Nullable Integer messagesToReceive,
                            @Nullable String connectionFactoryName, @Nullable String jmsPluginName,
                            @Nullable String jmsPluginType, @Nullable String customProperties) {
+      this(referenceName, destinationName, initialContextFactory, providerUrl, messagesToReceive,
+           connectionFactoryName, jmsPluginName, jmsPluginType, customProperties, null, null, null);
+    }
+
+    public JmsPluginConfig(String referenceName, String destinationName, String initialContextFactory,
+                           String providerUrl, @Nullable Integer messagesToReceive,
+                           @Nullable String connectionFactoryName, @Nullable String jmsPluginName,
+                           @Nullable String jmsPluginType, @Nullable String customProperties,
+                           @Nullable String sessionMode, @Nullable Integer consumers,
+                           @Nullable String messageDecoding) {
       super(referenceName);
+      this.sessionMode = sessionMode;
+      this.consumers = consumers;
+      this.messageDecoding = messageDecoding;
       this.destinationName = destinationName;
       if (messagesToReceive != null) {
         this.messagesToReceive = messagesToReceive;
@@ -409,5 +639,41 @@ public class JmsSource extends ReferenceRealtimeSource<StructuredRecord> {
       }
       this.customProperties = customProperties;
     }
+
+    private int getSessionMode() {
+      switch (sessionMode) {
+        case "AUTO_ACKNOWLEDGE":
+          return Session.AUTO_ACKNOWLEDGE;
+        case "CLIENT_ACKNOWLEDGE":
+          return Session.CLIENT_ACKNOWLEDGE;
+        case "DUPS_OK_ACKNOWLEDGE":
+          return Session.DUPS_OK_ACKNOWLEDGE;
+        case "SESSION_TRANSACTED":
+          return Session.SESSION_TRANSACTED;
+        default:
+          throw new IllegalArgumentException("Unknown JMS session mode: " + sessionMode);
+      }
+    }
+
+    private int getConsumers() {
+      return consumers == null ? 1 : consumers;
+    }
+
+    private boolean isNativeDecoding() {
+      return DECODING_NATIVE.equals(messageDecoding);
+    }
+
+    private void validate() {
+      if (sessionMode != null) {
+        getSessionMode();
+      }
+      if (getConsumers() < 1) {
+        throw new IllegalArgumentException("Number of consumers must be at least 1, but was " + consumers);
+      }
+      if (messageDecoding != null && !DECODING_STRING.equals(messageDecoding) && !isNativeDecoding()) {
+        throw new IllegalArgumentException(String.format("Message decoding must be '%s' or '%s', but was '%s'",
+                                                         DECODING_STRING, DECODING_NATIVE, messageDecoding));
+      }
+    }
   }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.realtime.source;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.BatchResultErrorEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+
+/**
+ * Receives and deletes messages from an SQS queue using the native batch API. Each call to {@link #receive()}
+ * issues one long polling receive request per receiver in parallel, each asking for up to
+ * {@link #MAX_BATCH_SIZE} messages.
+ */
+final class SqsBatchReceiver implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(SqsBatchReceiver.class);
+  // SQS does not allow more than 10 messages per receive or delete batch
+  static final int MAX_BATCH_SIZE = 10;
+
+  private final AmazonSQS client;
+  private final String queueUrl;
+  private final int receivers;
+  private final int waitTimeSeconds;
+  private final Integer visibilityTimeout;
+  private final ExecutorService executor;
+
+  SqsBatchReceiver(AmazonSQS client, String queueUrl, int receivers, int waitTimeSeconds,
+                   @Nullable Integer visibilityTimeout) {
+    this.client = client;
+    this.queueUrl = queueUrl;
+    this.receivers = receivers;
+    this.waitTimeSeconds = waitTimeSeconds;
+    this.visibilityTimeout = visibilityTimeout;
+    this.executor = Executors.newFixedThreadPool(
+      receivers, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("sqs-receiver-%d").build());
+  }
+
+  /**
+   * Receives the next messages from the queue. The returned messages stay invisible to other consumers
+   * until the visibility timeout expires, unless they are deleted with {@link #delete(List)}.
+   */
+  List<Message> receive() throws InterruptedException {
+    List<Future<List<Message>>> futures = new ArrayList<>(receivers);
+    for (int i = 0; i < receivers; i++) {
+      futures.add(executor.submit(new Callable<List<Message>>() {
+        @Override
+        public List<Message> call() throws Exception {
+          ReceiveMessageRequest request = new ReceiveMessageRequest(queueUrl)
+            .withMaxNumberOfMessages(MAX_BATCH_SIZE)
+            .withWaitTimeSeconds(waitTimeSeconds);
+          if (visibilityTimeout != null) {
+            request.setVisibilityTimeout(visibilityTimeout);
+          }
+          return client.receiveMessage(request).getMessages();
+        }
+      }));
+    }
+
+    List<Message> messages = new ArrayList<>();
+    for (Future<List<Message>> future : futures) {
+      try {
+        messages.addAll(future.get());
+      } catch (ExecutionException e) {
+        // messages received by the failed request become visible again once their visibility timeout expires
+        LOG.warn("Failed to receive messages from SQS queue {}", queueUrl, e.getCause());
+      }
+    }
+    return messages;
+  }
+
+  /**
+   * Deletes the given messages from the queue, in batches of up to {@link #MAX_BATCH_SIZE} messages.
+   * Messages that could not be deleted will be received again after their visibility timeout expires.
+   */
+  void delete(List<Message> messages) {
+    for (int start = 0; start < messages.size(); start += MAX_BATCH_SIZE) {
+      List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(MAX_BATCH_SIZE);
+      int end = Math.min(start + MAX_BATCH_SIZE, messages.size());
+      for (int i = start; i < end; i++) {
+        entries.add(new DeleteMessageBatchRequestEntry(Integer.toString(i), messages.get(i).getReceiptHandle()));
+      }
+      DeleteMessageBatchResult result = client.deleteMessageBatch(new DeleteMessageBatchRequest(queueUrl, entries));
+      for (BatchResultErrorEntry failed : result.getFailed()) {
+        LOG.warn("Failed to delete message {} from SQS queue {}: {}",
+                 messages.get(Integer.parseInt(failed.getId())).getMessageId(), queueUrl, failed.getMessage());
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    client.shutdown();
+  }
+}
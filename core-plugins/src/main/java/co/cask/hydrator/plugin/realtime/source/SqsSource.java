@@ -29,11 +29,14 @@ import co.cask.hydrator.common.ReferencePluginConfig;
 import co.cask.hydrator.common.ReferenceRealtimeSource;
 import com.amazon.sqs.javamessaging.SQSConnection;
 import com.amazon.sqs.javamessaging.SQSConnectionFactory;
+import com.amazonaws.auth.BasicAWSCredentials;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
+import com.amazonaws.services.sqs.AmazonSQSClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
 import javax.annotation.Nullable;
 import javax.jms.Message;
 import javax.jms.MessageConsumer;
@@ -55,13 +58,25 @@ public class SqsSource extends ReferenceRealtimeSource<StructuredRecord> {
   private static final String QUEUENAME_DESCRIPTION = "Name of the queue.";
   private static final String ENDPOINT_DESCRIPTION = "Endpoint of the SQS server to connect to. Omit this field to " +
     "connect to AWS (Amazon Web Services).";
+  private static final String BATCH_RECEIVE_DESCRIPTION = "Whether to read messages with the native SQS batch API " +
+    "instead of through JMS. In batch mode, messages are received with long polling, up to 10 messages per request, " +
+    "and are deleted in batches after they have been emitted. Defaults to false.";
+  private static final String RECEIVERS_DESCRIPTION = "Number of receive requests issued concurrently in each poll " +
+    "when batch receive is enabled. Defaults to 1.";
+  private static final String WAIT_TIME_DESCRIPTION = "Number of seconds a receive request waits for messages to " +
+    "arrive when batch receive is enabled. Must be between 0 and 20. Defaults to 1.";
+  private static final String VISIBILITY_TIMEOUT_DESCRIPTION = "Number of seconds received messages stay hidden " +
+    "from other consumers before they are deleted, when batch receive is enabled. Defaults to the visibility " +
+    "timeout of the queue.";
   private static final Schema DEFAULT_SCHEMA = Schema.recordOf(
     "event",
     Schema.Field.of("body", Schema.of(Schema.Type.STRING))
   );
   private static final int MAX_MESSAGE_COUNT = 20;
   private static final int TIMEOUT_LENGTH = 1000;
+  private static final int MAX_WAIT_TIME_SECONDS = 20;
   private final SqsConfig config;
+  private SqsBatchReceiver batchReceiver;
   private SQSConnectionFactory connectionFactory;
   private MessageConsumer consumer;
   private Session session;
@@ -75,11 +90,30 @@ public class SqsSource extends ReferenceRealtimeSource<StructuredRecord> {
   @Override
   public void configurePipeline(PipelineConfigurer pipelineConfigurer) {
     super.configurePipeline(pipelineConfigurer);
+    config.validate();
     pipelineConfigurer.getStageConfigurer().setOutputSchema(DEFAULT_SCHEMA);
   }
 
   @Override
   public void initialize(RealtimeContext context) {
+    if (config.isBatchReceive()) {
+      super.initialize(context);
+      AmazonSQSClient client = new AmazonSQSClient(new BasicAWSCredentials(config.accessID, config.accessKey));
+      client.setRegion(Region.getRegion(Regions.fromName(config.region)));
+      if (config.endpoint != null) {
+        client.setEndpoint(config.endpoint);
+      }
+      try {
+        String queueUrl = client.getQueueUrl(config.queueName).getQueueUrl();
+        batchReceiver = new SqsBatchReceiver(client, queueUrl, config.getReceivers(), config.getWaitTimeSeconds(),
+                                             config.visibilityTimeout);
+      } catch (Exception e) {
+        client.shutdown();
+        LOG.error("Failed to connect to SQS", e);
+        throw new IllegalStateException("Could not connect to SQS.", e);
+      }
+      return;
+    }
     try {
       super.initialize(context);
       SQSConnectionFactory.Builder sqsBuild = SQSConnectionFactory.builder()
@@ -118,6 +152,9 @@ public class SqsSource extends ReferenceRealtimeSource<StructuredRecord> {
 
   @Override
   public SourceState poll(Emitter<StructuredRecord> writer, SourceState currentState) throws Exception {
+    if (batchReceiver != null) {
+      return pollBatch(writer, currentState);
+    }
     Message msg;
     int count = 0;
     while ((msg = consumer.receive(TIMEOUT_LENGTH)) != null && count < MAX_MESSAGE_COUNT) {
@@ -137,8 +174,28 @@ public class SqsSource extends ReferenceRealtimeSource<StructuredRecord> {
     return currentState;
   }
 
+  private SourceState pollBatch(Emitter<StructuredRecord> writer, SourceState currentState) throws Exception {
+    List<com.amazonaws.services.sqs.model.Message> messages = batchReceiver.receive();
+    for (com.amazonaws.services.sqs.model.Message message : messages) {
+      String text = message.getBody();
+      if (text == null || text.isEmpty()) {
+        continue;
+      }
+      writer.emit(StructuredRecord.builder(DEFAULT_SCHEMA)
+                    .set("body", text)
+                    .build());
+    }
+    // only delete once every message of the batch has been emitted, so that failures lead to redelivery
+    batchReceiver.delete(messages);
+    return currentState;
+  }
+
   @Override
   public void destroy() {
+    if (batchReceiver != null) {
+      batchReceiver.close();
+      return;
+    }
     try {
       consumer.close();
       session.close();
@@ -174,14 +231,69 @@ public class SqsSource extends ReferenceRealtimeSource<StructuredRecord> {
     @Description(ENDPOINT_DESCRIPTION)
     private String endpoint;
 
+    @Name("batchReceive")
+    @Nullable
+    @Description(BATCH_RECEIVE_DESCRIPTION)
+    private Boolean batchReceive;
+
+    @Name("receivers")
+    @Nullable
+    @Description(RECEIVERS_DESCRIPTION)
+    private Integer receivers;
+
+    @Name("waitTimeSeconds")
+    @Nullable
+    @Description(WAIT_TIME_DESCRIPTION)
+    private Integer waitTimeSeconds;
+
+    @Name("visibilityTimeout")
+    @Nullable
+    @Description(VISIBILITY_TIMEOUT_DESCRIPTION)
+    private Integer visibilityTimeout;
+
     public SqsConfig(String referenceName, String region, String accessKey, String accessID, String queueName,
                      @Nullable String endpoint) {
+      this(referenceName, region, accessKey, accessID, queueName, endpoint, null, null, null, null);
+    }
+
+    public SqsConfig(String referenceName, String region, String accessKey, String accessID, String queueName,
+                     @Nullable String endpoint, @Nullable Boolean batchReceive, @Nullable Integer receivers,
+                     @Nullable Integer waitTimeSeconds, @Nullable Integer visibilityTimeout) {
       super(referenceName);
       this.region = region;
       this.accessID = accessID;
       this.accessKey = accessKey;
       this.queueName = queueName;
       this.endpoint = endpoint;
+      this.batchReceive = batchReceive;
+      this.receivers = receivers;
+      this.waitTimeSeconds = waitTimeSeconds;
+      this.visibilityTimeout = visibilityTimeout;
+    }
+
+    private boolean isBatchReceive() {
+      return batchReceive != null && batchReceive;
+    }
+
+    private int getReceivers() {
+      return receivers == null ? 1 : receivers;
+    }
+
+    private int getWaitTimeSeconds() {
+      return waitTimeSeconds == null ? 1 : waitTimeSeconds;
+    }
+
+    private void validate() {
+      if (getReceivers() < 1) {
+        throw new IllegalArgumentException("Number of receivers must be at least 1, but was " + receivers);
+      }
+      if (getWaitTimeSeconds() < 0 || getWaitTimeSeconds() > MAX_WAIT_TIME_SECONDS) {
+        throw new IllegalArgumentException(String.format("Wait time must be between 0 and %d seconds, but was %d",
+                                                         MAX_WAIT_TIME_SECONDS, waitTimeSeconds));
+      }
+      if (visibilityTimeout != null && visibilityTimeout < 0) {
+        throw new IllegalArgumentException("Visibility timeout must not be negative, but was " + visibilityTimeout);
+      }
     }
   }
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.transform;
+
+import javax.annotation.Nullable;
+
+/**
+ * Single pass tokenizer for access log lines. Each supported log format is parsed by walking the line once
+ * with a cursor, instead of matching it against a regular expression. Every {@code next*} method returns
+ * {@code null} if the line does not contain the expected token at the current position.
+ *
+ * A tokenizer is created per line and is not meant to be shared.
+ */
+final class LogLineTokenizer {
+
+  //Number of fields in a S3 log, the last one holding the version id and any trailing fields
+  private static final int S3_FIELD_COUNT = 18;
+
+  private final String line;
+  private int pos;
+
+  LogLineTokenizer(String line) {
+    this.line = line;
+  }
+
+  /**
+   * Parses a line in the Amazon S3 server access log format.
+   *
+   * @return the parsed line, or null if the line does not match the S3 format
+   */
+  @Nullable
+  AccessLogLine parseS3() {
+    String[] fields = new String[S3_FIELD_COUNT];
+    // bucket owner, bucket
+    fields[0] = nextToken();
+    fields[1] = nextToken();
+    // time
+    fields[2] = nextDelimited('[', ']');
+    // remote ip, requester, request id, operation, key
+    for (int i = 3; i < 8; i++) {
+      fields[i] = nextToken();
+    }
+    // request uri
+    fields[8] = nextDelimited('"', '"');
+    // http status, error code, bytes sent, object size, total time, turn-around time
+    for (int i = 9; i < 15; i++) {
+      fields[i] = nextToken();
+    }
+    // referrer, user agent
+    fields[15] = nextDelimited('"', '"');
+    fields[16] = nextDelimited('"', '"');
+    // version id, followed by any fields added to the format later on
+    fields[17] = remaining();
+
+    for (String field : fields) {
+      if (field == null) {
+        return null;
+      }
+    }
+    if (!isStatusCode(fields[9])) {
+      return null;
+    }
+    return new AccessLogLine(fields[8], fields[2], fields[3], fields[16], fields[9]);
+  }
+
+  /**
+   * Parses a line in the Combined Log Format.
+   *
+   * @return the parsed line, or null if the line does not match the CLF format
+   */
+  @Nullable
+  AccessLogLine parseCLF() {
+    String ip = nextToken();
+    // identity, user
+    String identity = nextToken();
+    String user = nextToken();
+    String time = nextDelimited('[', ']');
+    String request = nextDelimited('"', '"');
+    String status = nextToken();
+    String size = nextToken();
+    String referrer = nextDelimited('"', '"');
+    String userAgent = nextDelimited('"', '"');
+
+    if (ip == null || identity == null || user == null || time == null || request == null || status == null ||
+      size == null || referrer == null || userAgent == null || pos != line.length() || !isStatusCode(status)) {
+      return null;
+    }
+    return new AccessLogLine(request, time, ip, userAgent, status);
+  }
+
+  /**
+   * Parses a tab separated line in the Amazon CloudFront web distribution log format.
+   * The returned time is the date and time fields joined with a ':'.
+   *
+   * @return the parsed line, or null if the line does not have enough fields
+   */
+  @Nullable
+  static AccessLogLine parseCloudfront(String line) {
+    // date, time, edge location, bytes, ip, method, host, uri, status, referrer, user agent
+    String[] fields = new String[11];
+    int start = 0;
+    for (int i = 0; i < fields.length; i++) {
+      int end = line.indexOf('\t', start);
+      if (end < 0) {
+        if (i != fields.length - 1) {
+          return null;
+        }
+        end = line.length();
+      }
+      fields[i] = line.substring(start, end);
+      start = end + 1;
+    }
+    return new AccessLogLine(fields[7], fields[0] + ":" + fields[1], fields[4], fields[10], fields[8]);
+  }
+
+  /**
+   * Returns the next space terminated token, consuming the separator that follows it.
+   */
+  @Nullable
+  private String nextToken() {
+    if (pos >= line.length()) {
+      return null;
+    }
+    int end = line.indexOf(' ', pos);
+    if (end == pos) {
+      return null;
+    }
+    if (end < 0) {
+      end = line.length();
+    }
+    String token = line.substring(pos, end);
+    pos = Math.min(end + 1, line.length());
+    return token;
+  }
+
+  /**
+   * Returns the content between the given open and close characters, consuming the separator that follows it.
+   */
+  @Nullable
+  private String nextDelimited(char open, char close) {
+    if (pos >= line.length() || line.charAt(pos) != open) {
+      return null;
+    }
+    int end = line.indexOf(close, pos + 1);
+    if (end < 0) {
+      return null;
+    }
+    String token = line.substring(pos + 1, end);
+    pos = end + 1;
+    if (pos < line.length()) {
+      if (line.charAt(pos) != ' ') {
+        return null;
+      }
+      pos++;
+    }
+    return token;
+  }
+
+  @Nullable
+  private String remaining() {
+    if (pos >= line.length()) {
+      return null;
+    }
+    String token = line.substring(pos);
+    pos = line.length();
+    return token;
+  }
+
+  private static boolean isStatusCode(String token) {
+    if (token.length() != 3) {
+      return false;
+    }
+    for (int i = 0; i < 3; i++) {
+      if (!Character.isDigit(token.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The fields of an access log line that are used by the {@link LogParserTransform}.
+   */
+  static final class AccessLogLine {
+    final String request;
+    final String time;
+    final String ip;
+    final String userAgent;
+    final String httpStatus;
+
+    AccessLogLine(String request, String time, String ip, String userAgent, String httpStatus) {
+      this.request = request;
+      this.time = time;
+      this.ip = ip;
+      this.userAgent = userAgent;
+      this.httpStatus = httpStatus;
+    }
+  }
+}
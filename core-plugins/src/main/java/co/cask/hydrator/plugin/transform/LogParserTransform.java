@@ -27,6 +27,9 @@ import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.InvalidEntry;
 import co.cask.cdap.etl.api.PipelineConfigurer;
 import co.cask.cdap.etl.api.Transform;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import net.sf.uadetector.ReadableUserAgent;
 import net.sf.uadetector.UserAgentStringParser;
 import net.sf.uadetector.service.UADetectorServiceFactory;
@@ -36,8 +39,8 @@ import org.slf4j.LoggerFactory;
 import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Locale;
+import java.util.TimeZone;
 import javax.annotation.Nullable;
 
 /**
@@ -61,35 +64,19 @@ public class LogParserTransform extends Transform<StructuredRecord, StructuredRe
     "CLF, and Cloudfront formats.";
   private static final String INPUT_NAME_DESCRIPTION = "Name of the field in the input schema which encodes the " +
     "log information. The given field must be of type String or Bytes.";
+  private static final String USER_AGENT_CACHE_SIZE_DESCRIPTION = "Maximum number of distinct user agent strings " +
+    "whose parsed browser and device are kept in memory. Defaults to 10000.";
   private static final Logger LOG = LoggerFactory.getLogger(LogParserTransform.class);
-  //Regex used to parse a CLF log, each field is commented above
-  private static final Pattern CLF_LOG_PATTERN = Pattern.compile(
-    //   IP                    id    user      date          request     code     size    referrer    user agent
-    "^([\\d.]+|[:][:][\\d]) (\\S+) (\\S+) \\[([^\\]]+)\\] \"([^\"]+)\" (\\d{3}) ([-\"\\d]+) \"([^\"]+)\" \"([^\"]+)\"");
-  //Regex used to parse a S3 log, each field is commented above
-  private static final Pattern S3_LOG_PATTERN = Pattern.compile(
-    // bucket owner name   time           ip                    req   reqID operation  key    request
-    "^(\\S+) (\\S+) \\[(\\p{Print}+)\\] ([\\d.]+|[:][:][\\d]) (\\S+) (\\S+) (\\S+) (\\S+) \"([^\"]+)\" " +
-      //  HTTP stat error code  bytes sent     obj size  time    turn time  referrer         user agent
-      "(\\d{3}) (\\p{Print}+) ([-\"\\d]+) ([-\"\\d]+) ([\\d]+) ([-\"\\d]+) \"(\\p{Print}+)\" \"([^\"]+)\" " +
-      //  version id
-      "(\\p{Print}+)");
-  //Regex used to parse the request field for the URI
-  private static final Pattern REQUEST_PAGE_PATTERN = Pattern.compile("(\\S+)\\s(\\S+).*");
-  //Indices of which group request, time, ip, user agent, and HTTP status code are in the S3 regex
-  private static final int[] S3_INDICES = {9, 3, 4, 17, 10};
-  //Indices of which group request, time, ip, user agent, and HTTP status code are in the CLF regex
-  private static final int[] CLF_INDICES = {5, 4, 1, 9, 6};
-  //Number of groups matched in the S3 regex
-  private static final int S3_REGEX_LENGTH = 18;
-  //Number of groups matched in the CLF regex
-  private static final int CLF_REGEX_LENGTH = 9;
   private static final String S3_LOG = "S3";
   private static final String CLF_LOG = "CLF";
   private static final String CLOUDFRONT_LOG = "Cloudfront";
+  private static final CachedDateParser STRFTIME_DATE_PARSER =
+    new CachedDateParser("dd/MMM/yyyy:HH:mm:ss Z", null);
+  private static final CachedDateParser CLOUDFRONT_DATE_PARSER =
+    new CachedDateParser("yyyy-MM-dd:HH:mm:ss", TimeZone.getTimeZone("UTC"));
+  private static final int DEFAULT_USER_AGENT_CACHE_SIZE = 10000;
   private final LogParserConfig config;
-  private final SimpleDateFormat sdfStrftime = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z");
-  private final SimpleDateFormat sdfCloudfront = new SimpleDateFormat("yyyy-MM-dd:HH:mm:ss z");
+  private LoadingCache<String, UserAgent> userAgentCache;
 
   public LogParserTransform(LogParserConfig config) {
     this.config = config;
@@ -103,6 +90,10 @@ public class LogParserTransform extends Transform<StructuredRecord, StructuredRe
       LOG.error("Log format not currently supported.");
       throw new IllegalStateException("Unsupported log format: " + config.logFormat);
     }
+    if (config.getUserAgentCacheSize() < 0) {
+      throw new IllegalArgumentException("User agent cache size must not be negative, but was " +
+                                           config.userAgentCacheSize);
+    }
     Schema inputSchema = pipelineConfigurer.getStageConfigurer().getInputSchema();
     if (inputSchema != null) {
       if (!inputSchema.getType().equals(Schema.Type.RECORD)) {
@@ -128,46 +119,45 @@ public class LogParserTransform extends Transform<StructuredRecord, StructuredRe
 
     StructuredRecord output;
     if (S3_LOG.equals(config.logFormat)) {
-      Matcher logMatcher = S3_LOG_PATTERN.matcher(log);
-      if (!logMatcher.matches() || logMatcher.groupCount() < S3_REGEX_LENGTH) {
+      LogLineTokenizer.AccessLogLine logLine = new LogLineTokenizer(log).parseS3();
+      if (logLine == null) {
         LOG.debug("Couldn't parse log because log did not match the S3 format, log: {}", log);
         emitter.emitError(new InvalidEntry<>(31, "Couldn't parse log, because the log did not match the S3 format.",
                                              input));
         return;
       }
-      output = parseRequest(logMatcher, S3_INDICES);
+      output = parseRequest(logLine);
     } else if (CLF_LOG.equals(config.logFormat)) {
-      Matcher logMatcher = CLF_LOG_PATTERN.matcher(log);
-      if (!logMatcher.matches() || logMatcher.groupCount() < CLF_REGEX_LENGTH) {
+      LogLineTokenizer.AccessLogLine logLine = new LogLineTokenizer(log).parseCLF();
+      if (logLine == null) {
         LOG.debug("Couldn't parse log because the log did not match the CLF format. log: {}", log);
         emitter.emitError(new InvalidEntry<>(31, "Couldn't parse log, because the log did not match the CLF format.",
                                              input));
         return;
       }
-      output = parseRequest(logMatcher, CLF_INDICES);
+      output = parseRequest(logLine);
     } else {
       if (log.startsWith("#")) {
         LOG.trace("Log is a comment. Ignoring...");
         return;
       }
 
-      String[] fields = log.split("\\t");
-      String uri = fields[7];
-      String ip = fields[4];
-      long ts = sdfCloudfront.parse(String.format("%s:%s UTC", fields[0], fields[1])).getTime();
-      UserAgentStringParser parser = UADetectorServiceFactory.getResourceModuleParser();
-      ReadableUserAgent userAgent = parser.parse(fields[10]);
-      String browser = userAgent.getFamily().getName();
-      String device = userAgent.getDeviceCategory().getCategory().getName();
-      int httpStatus = Integer.parseInt(fields[8]);
+      LogLineTokenizer.AccessLogLine logLine = LogLineTokenizer.parseCloudfront(log);
+      if (logLine == null) {
+        LOG.debug("Couldn't parse log because the log did not match the Cloudfront format. log: {}", log);
+        emitter.emitError(new InvalidEntry<>(31, "Couldn't parse log, because the log did not match the " +
+          "Cloudfront format.", input));
+        return;
+      }
+      UserAgent userAgent = getUserAgent(logLine.userAgent);
 
       output = StructuredRecord.builder(LOG_SCHEMA)
-        .set("uri", uri)
-        .set("ip", ip)
-        .set("browser", browser)
-        .set("device", device)
-        .set("httpStatus", httpStatus)
-        .set("ts", ts)
+        .set("uri", logLine.request)
+        .set("ip", logLine.ip)
+        .set("browser", userAgent.browser)
+        .set("device", userAgent.device)
+        .set("httpStatus", Integer.parseInt(logLine.httpStatus))
+        .set("ts", CLOUDFRONT_DATE_PARSER.parse(logLine.time))
         .build();
     }
     if (output != null) {
@@ -228,45 +218,130 @@ public class LogParserTransform extends Transform<StructuredRecord, StructuredRe
   /**
    * Parses a request for the URI, IP, Browser, Device, and Time
    *
-   * @param logMatcher the regex matcher to use
-   * @param indices array of indices that define what position in the regex the fields are, in the order of Request,
-   *                Time, IP, User Agent, and HTTP status code.
+   * @param logLine the tokenized log line
    */
   @Nullable
-  private StructuredRecord parseRequest(Matcher logMatcher, int[] indices) {
-    String request = logMatcher.group(indices[0]);
-    Matcher requestMatcher = REQUEST_PAGE_PATTERN.matcher(request);
-    if (!requestMatcher.matches() || requestMatcher.groupCount() < 2) {
-      LOG.debug("Couldn't parse uri because request does not match request pattern, request: {}", request);
+  private StructuredRecord parseRequest(LogLineTokenizer.AccessLogLine logLine) {
+    String uri = getRequestUri(logLine.request);
+    if (uri == null) {
+      LOG.debug("Couldn't parse uri because request does not match request pattern, request: {}", logLine.request);
       return null;
     }
 
-    String uri = requestMatcher.group(2);
     long ts = System.currentTimeMillis();
     try {
-      ts = sdfStrftime.parse(logMatcher.group(indices[1])).getTime();
+      ts = STRFTIME_DATE_PARSER.parse(logLine.time);
     } catch (ParseException e) {
       LOG.debug("Couldn't parse time from the input record, using current timestamp instead. Exception: {}",
                 e.getMessage());
     }
 
-    String ip = logMatcher.group(indices[2]);
-    UserAgentStringParser parser = UADetectorServiceFactory.getResourceModuleParser();
-    ReadableUserAgent userAgent = parser.parse(logMatcher.group(indices[3]));
-    String browser = userAgent.getFamily().getName();
-    String device = userAgent.getDeviceCategory().getCategory().getName();
-    int httpStatus = Integer.parseInt(logMatcher.group(indices[4]));
+    UserAgent userAgent = getUserAgent(logLine.userAgent);
+    int httpStatus = Integer.parseInt(logLine.httpStatus);
 
     return StructuredRecord.builder(LOG_SCHEMA)
       .set("uri", uri)
-      .set("ip", ip)
-      .set("browser", browser)
-      .set("device", device)
+      .set("ip", logLine.ip)
+      .set("browser", userAgent.browser)
+      .set("device", userAgent.device)
       .set("httpStatus", httpStatus)
       .set("ts", ts)
       .build();
   }
 
+  /**
+   * Returns the second whitespace separated token of a request such as "GET /index.html HTTP/1.1",
+   * or null if the request doesn't have one.
+   */
+  @Nullable
+  private static String getRequestUri(String request) {
+    int length = request.length();
+    int methodEnd = 0;
+    while (methodEnd < length && !Character.isWhitespace(request.charAt(methodEnd))) {
+      methodEnd++;
+    }
+    int uriStart = methodEnd + 1;
+    if (methodEnd == 0 || uriStart >= length) {
+      return null;
+    }
+    int uriEnd = uriStart;
+    while (uriEnd < length && !Character.isWhitespace(request.charAt(uriEnd))) {
+      uriEnd++;
+    }
+    return uriEnd == uriStart ? null : request.substring(uriStart, uriEnd);
+  }
+
+  /**
+   * Returns the browser and device of a user agent string, parsing it only if it is not in the cache.
+   */
+  private UserAgent getUserAgent(String userAgent) {
+    if (userAgentCache == null) {
+      final UserAgentStringParser parser = UADetectorServiceFactory.getResourceModuleParser();
+      userAgentCache = CacheBuilder.newBuilder()
+        .maximumSize(config.getUserAgentCacheSize())
+        .build(new CacheLoader<String, UserAgent>() {
+          @Override
+          public UserAgent load(String userAgent) throws Exception {
+            return new UserAgent(parser.parse(userAgent));
+          }
+        });
+    }
+    return userAgentCache.getUnchecked(userAgent);
+  }
+
+  /**
+   * Browser and device of a parsed user agent string.
+   */
+  private static final class UserAgent {
+    private final String browser;
+    private final String device;
+
+    private UserAgent(ReadableUserAgent userAgent) {
+      this.browser = userAgent.getFamily().getName();
+      this.device = userAgent.getDeviceCategory().getCategory().getName();
+    }
+  }
+
+  /**
+   * Thread safe date parser. Each thread gets its own {@link SimpleDateFormat}, and the last parsed value is
+   * remembered since consecutive log lines usually share the same timestamp.
+   */
+  private static final class CachedDateParser {
+    private final ThreadLocal<ParseState> state;
+
+    private CachedDateParser(final String pattern, @Nullable final TimeZone timeZone) {
+      this.state = new ThreadLocal<ParseState>() {
+        @Override
+        protected ParseState initialValue() {
+          SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+          if (timeZone != null) {
+            format.setTimeZone(timeZone);
+          }
+          return new ParseState(format);
+        }
+      };
+    }
+
+    private long parse(String text) throws ParseException {
+      ParseState parseState = state.get();
+      if (!text.equals(parseState.lastText)) {
+        parseState.lastMillis = parseState.format.parse(text).getTime();
+        parseState.lastText = text;
+      }
+      return parseState.lastMillis;
+    }
+
+    private static final class ParseState {
+      private final SimpleDateFormat format;
+      private String lastText;
+      private long lastMillis;
+
+      private ParseState(SimpleDateFormat format) {
+        this.format = format;
+      }
+    }
+  }
+
   /**
    * Config class for LogParserTransform
    */
@@ -279,9 +354,23 @@ public class LogParserTransform extends Transform<StructuredRecord, StructuredRe
     @Description(INPUT_NAME_DESCRIPTION)
     private String inputName;
 
+    @Name("userAgentCacheSize")
+    @Description(USER_AGENT_CACHE_SIZE_DESCRIPTION)
+    @Nullable
+    private Integer userAgentCacheSize;
+
     public LogParserConfig(String logFormat, String inputName) {
+      this(logFormat, inputName, null);
+    }
+
+    public LogParserConfig(String logFormat, String inputName, @Nullable Integer userAgentCacheSize) {
       this.logFormat = logFormat;
       this.inputName = inputName;
+      this.userAgentCacheSize = userAgentCacheSize;
+    }
+
+    private int getUserAgentCacheSize() {
+      return userAgentCacheSize == null ? DEFAULT_USER_AGENT_CACHE_SIZE : userAgentCacheSize;
     }
   }
 }
@@ -39,7 +39,7 @@ public class ScriptContext {
 
     this.logger = logger;
     this.metrics = metrics;
-    this.lookup = new ScriptLookupProvider(lookup, lookupConfig);
+    this.lookup = new ScriptLookupProvider(lookup, lookupConfig, metrics);
     this.js = js;
   }
 
@@ -17,8 +17,11 @@ package co.cask.hydrator.plugin.transform;
 
 import co.cask.cdap.etl.api.Lookup;
 import co.cask.cdap.etl.api.LookupTableConfig;
+import co.cask.cdap.etl.api.StageMetrics;
+import co.cask.hydrator.common.lookup.CachingLookup;
 
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Provides JavaScript-friendly lookup functions.
@@ -30,9 +33,17 @@ public class ScriptLookup {
   private final LookupTableConfig config;
 
   public ScriptLookup(Lookup<Object> delegate, LookupTableConfig config, JavaTypeConverters js) {
+    this(delegate, config, js, null, null);
+  }
+
+  public ScriptLookup(Lookup<Object> delegate, LookupTableConfig config, JavaTypeConverters js,
+                      @Nullable StageMetrics metrics, @Nullable String table) {
     this.config = config;
     this.js = js;
-    this.delegate = config.isCacheEnabled() ? new CachingLookup<>(delegate, config.getCacheConfig()) : delegate;
+    this.delegate = config.isCacheEnabled() ?
+      new CachingLookup<>(delegate, config.getCacheConfig(), 0, false, CachingLookup.DEFAULT_BATCH_SIZE,
+                          metrics, table) :
+      delegate;
   }
 
   public Object lookup(String key) {
@@ -19,6 +19,11 @@ import co.cask.cdap.api.dataset.DatasetProperties;
 import co.cask.cdap.etl.api.LookupConfig;
 import co.cask.cdap.etl.api.LookupProvider;
 import co.cask.cdap.etl.api.LookupTableConfig;
+import co.cask.cdap.etl.api.StageMetrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * {@link LookupProvider} implementation.
@@ -27,14 +32,26 @@ public class ScriptLookupProvider {
 
   private final LookupProvider delegate;
   private final LookupConfig config;
+  private final StageMetrics metrics;
+  // scripts usually get the lookup for every record, so that its cache is kept across calls
+  private final Map<String, ScriptLookup> lookups = new HashMap<>();
 
   public ScriptLookupProvider(LookupProvider delegate, LookupConfig config) {
+    this(delegate, config, null);
+  }
+
+  public ScriptLookupProvider(LookupProvider delegate, LookupConfig config, @Nullable StageMetrics metrics) {
     this.delegate = delegate;
     this.config = config;
+    this.metrics = metrics;
   }
 
   @SuppressWarnings("unchecked")
   public ScriptLookup provide(String table, JavaTypeConverters converters) {
+    ScriptLookup lookup = lookups.get(table);
+    if (lookup != null) {
+      return lookup;
+    }
     if (config == null) {
       throw new RuntimeException("Missing lookup configuration");
     }
@@ -45,6 +62,9 @@ public class ScriptLookupProvider {
     }
 
     DatasetProperties arguments = DatasetProperties.builder().addAll(tableConfig.getDatasetProperties()).build();
-    return new ScriptLookup(delegate.provide(table, arguments.getProperties()), tableConfig, converters);
+    lookup = new ScriptLookup(delegate.provide(table, arguments.getProperties()), tableConfig, converters,
+                              metrics, table);
+    lookups.put(table, lookup);
+    return lookup;
   }
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.aggregator;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.etl.mock.common.MockEmitter;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the preselection done by {@link DedupAggregator} before the shuffle.
+ */
+public class DedupAggregatorTest {
+  private static final Schema SCHEMA = Schema.recordOf("purchase",
+                                                       Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+                                                       Schema.Field.of("price", Schema.of(Schema.Type.LONG)));
+
+  @Test
+  public void testPreselectionWithoutFilter() throws Exception {
+    DedupAggregator aggregator = new DedupAggregator(new DedupConfig("user", null));
+    aggregator.initialize(null);
+    MockEmitter<StructuredRecord> emitter = new MockEmitter<>();
+    for (int i = 0; i < 100; i++) {
+      aggregator.groupBy(purchase("user" + (i % 3), i), emitter);
+    }
+    Assert.assertEquals(3, emitter.getEmitted().size());
+  }
+
+  @Test
+  public void testPreselectionWithMax() throws Exception {
+    DedupAggregator aggregator = new DedupAggregator(new DedupConfig("user", "price:max", 2, null, null));
+    aggregator.initialize(null);
+    MockEmitter<StructuredRecord> emitter = new MockEmitter<>();
+    long[] prices = {5L, 3L, 8L, 1L, 8L, 2L, 9L, 4L};
+    for (long price : prices) {
+      aggregator.groupBy(purchase("samuel", price), emitter);
+    }
+    // 1, 2 and 4 are worse than two records read before them
+    Assert.assertEquals(5, emitter.getEmitted().size());
+  }
+
+  @Test
+  public void testPreselectionDisabled() throws Exception {
+    DedupAggregator aggregator = new DedupAggregator(new DedupConfig("user", "price:min", null, null, 0));
+    aggregator.initialize(null);
+    MockEmitter<StructuredRecord> emitter = new MockEmitter<>();
+    for (int i = 0; i < 10; i++) {
+      aggregator.groupBy(purchase("samuel", i), emitter);
+    }
+    Assert.assertEquals(10, emitter.getEmitted().size());
+  }
+
+  private static StructuredRecord purchase(String user, long price) {
+    return StructuredRecord.builder(SCHEMA).set("user", user).set("price", price).build();
+  }
+}
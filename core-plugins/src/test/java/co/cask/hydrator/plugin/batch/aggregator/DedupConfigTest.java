@@ -16,6 +16,7 @@
 
 package co.cask.hydrator.plugin.batch.aggregator;
 
+import co.cask.hydrator.plugin.batch.aggregator.function.TopKSelection;
 import org.junit.Assert;
 import org.junit.Test;
 import org.python.google.common.collect.ImmutableList;
@@ -38,4 +39,24 @@ public class DedupConfigTest {
       Assert.assertNotNull(actual.getSelectionFunction(null));
     }
   }
+
+  @Test
+  public void testSelectionSize() {
+    DedupConfig config = new DedupConfig("user", "price:max", 3, "all", null);
+    config.validate();
+    Assert.assertEquals(new DedupConfig.DedupFunctionInfo("price", DedupConfig.Function.MAX, 3,
+                                                          TopKSelection.TiePolicy.ALL),
+                        config.getFilter());
+    Assert.assertTrue(config.getFilter().getSelectionFunction(null) instanceof TopKSelection);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSelectionSizeRequiresNumberSelection() {
+    new DedupConfig("user", "price:first", 3, null, null).validate();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidTiePolicy() {
+    new DedupConfig("user", "price:max", 3, "random", null).validate();
+  }
 }
@@ -51,4 +51,23 @@ public class GroupByAggregatorConfigTest {
     );
     Assert.assertEquals(expected, config.getAggregates());
   }
+
+  @Test
+  public void testParsingArguments() {
+    GroupByConfig config = new GroupByConfig("user", "users:approx_count_distinct(user, 14), " +
+      "median:percentile_approx( latency ),p99 : percentile_approx(latency, 0.99, 200)");
+    List<GroupByConfig.FunctionInfo> expected = ImmutableList.of(
+      new GroupByConfig.FunctionInfo("users", "user", GroupByConfig.Function.APPROX_COUNT_DISTINCT,
+                                     ImmutableList.of("14")),
+      new GroupByConfig.FunctionInfo("median", "latency", GroupByConfig.Function.PERCENTILE_APPROX),
+      new GroupByConfig.FunctionInfo("p99", "latency", GroupByConfig.Function.PERCENTILE_APPROX,
+                                     ImmutableList.of("0.99", "200"))
+    );
+    Assert.assertEquals(expected, config.getAggregates());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testTooManyArguments() {
+    new GroupByConfig("user", "total:sum(price, 2)").getAggregates();
+  }
 }
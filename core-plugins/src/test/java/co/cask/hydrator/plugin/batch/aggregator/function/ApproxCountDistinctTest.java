@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.aggregator.function;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ApproxCountDistinct}.
+ */
+public class ApproxCountDistinctTest {
+  private static final Schema SCHEMA = Schema.recordOf("test", Schema.Field.of("x", Schema.of(Schema.Type.STRING)));
+
+  @Test
+  public void testSmallCardinality() {
+    ApproxCountDistinct count = new ApproxCountDistinct("x", ApproxCountDistinct.DEFAULT_PRECISION);
+    count.beginFunction();
+    for (int i = 0; i < 1000; i++) {
+      count.operateOn(record("user" + (i % 10)));
+    }
+    Assert.assertEquals(10L, (long) count.getAggregate());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPrecision() {
+    new ApproxCountDistinct("x", 30);
+  }
+
+  private static StructuredRecord record(String value) {
+    return StructuredRecord.builder(SCHEMA).set("x", value).build();
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.aggregator.function;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PercentileApprox}.
+ */
+public class PercentileApproxTest {
+  private static final Schema SCHEMA = Schema.recordOf("test", Schema.Field.of("x", Schema.of(Schema.Type.LONG)));
+
+  @Test
+  public void testPercentiles() {
+    PercentileApprox median = new PercentileApprox("x", Schema.of(Schema.Type.LONG), 0.5d, 100d);
+    PercentileApprox p99 = new PercentileApprox("x", Schema.of(Schema.Type.LONG), 0.99d, 100d);
+    median.beginFunction();
+    p99.beginFunction();
+    for (long i = 1; i <= 100000; i++) {
+      StructuredRecord record = StructuredRecord.builder(SCHEMA).set("x", i).build();
+      median.operateOn(record);
+      p99.operateOn(record);
+    }
+    Assert.assertEquals(50000d, median.getAggregate(), 500d);
+    Assert.assertEquals(99000d, p99.getAggregate(), 200d);
+  }
+
+  @Test
+  public void testNullValues() {
+    Schema schema = Schema.recordOf("test", Schema.Field.of("x", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE))));
+    PercentileApprox median = new PercentileApprox("x", Schema.nullableOf(Schema.of(Schema.Type.DOUBLE)), 0.5d, 100d);
+    median.beginFunction();
+    median.operateOn(StructuredRecord.builder(schema).set("x", null).build());
+    Assert.assertNull(median.getAggregate());
+    median.operateOn(StructuredRecord.builder(schema).set("x", 3.5d).build());
+    Assert.assertEquals(3.5d, median.getAggregate(), 0.000001d);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPercentage() {
+    new PercentileApprox("x", Schema.of(Schema.Type.LONG), 99d, 100d);
+  }
+}
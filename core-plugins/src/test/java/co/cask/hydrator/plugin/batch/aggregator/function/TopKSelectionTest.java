@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.aggregator.function;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link TopKSelection}.
+ */
+public class TopKSelectionTest {
+  private static final Schema SCHEMA = Schema.recordOf("purchase",
+                                                       Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                                                       Schema.Field.of("price", Schema.of(Schema.Type.LONG)));
+
+  @Test
+  public void testLargest() {
+    TopKSelection selection = new TopKSelection("price", Schema.of(Schema.Type.LONG), 3, true,
+                                                TopKSelection.TiePolicy.FIRST);
+    Assert.assertEquals(Arrays.asList(2, 6, 4), select(selection, 5L, 1L, 9L, 5L, 7L, 5L, 9L));
+  }
+
+  @Test
+  public void testSmallest() {
+    TopKSelection selection = new TopKSelection("price", Schema.of(Schema.Type.LONG), 2, false,
+                                                TopKSelection.TiePolicy.FIRST);
+    Assert.assertEquals(Arrays.asList(1, 0), select(selection, 5L, 1L, 9L, 5L, 7L));
+  }
+
+  @Test
+  public void testTiePolicies() {
+    Schema fieldSchema = Schema.of(Schema.Type.LONG);
+    long[] prices = {5L, 1L, 9L, 5L, 7L, 5L, 1L};
+    Assert.assertEquals(Arrays.asList(2, 4, 0),
+                        select(new TopKSelection("price", fieldSchema, 3, true, TopKSelection.TiePolicy.FIRST),
+                               prices));
+    Assert.assertEquals(Arrays.asList(2, 4, 5),
+                        select(new TopKSelection("price", fieldSchema, 3, true, TopKSelection.TiePolicy.LAST),
+                               prices));
+    Assert.assertEquals(Arrays.asList(2, 4, 0, 3, 5),
+                        select(new TopKSelection("price", fieldSchema, 3, true, TopKSelection.TiePolicy.ALL),
+                               prices));
+    // ties with better values than the k-th value do not count towards the ties kept
+    Assert.assertEquals(Arrays.asList(2, 4),
+                        select(new TopKSelection("price", fieldSchema, 2, true, TopKSelection.TiePolicy.ALL),
+                               prices));
+  }
+
+  @Test
+  public void testMaxSelectionKeepsLastTie() {
+    Assert.assertEquals(Arrays.asList(3), select(new MaxSelection("price", Schema.of(Schema.Type.LONG)),
+                                                 3L, 9L, 1L, 9L));
+    Assert.assertEquals(Arrays.asList(2), select(new MinSelection("price", Schema.of(Schema.Type.LONG)),
+                                                 3L, 1L, 1L, 9L));
+  }
+
+  private static List<Integer> select(SelectionFunction selection, long... prices) {
+    selection.beginFunction();
+    for (int i = 0; i < prices.length; i++) {
+      selection.operateOn(StructuredRecord.builder(SCHEMA).set("id", i).set("price", prices[i]).build());
+    }
+    List<Integer> ids = new ArrayList<>();
+    for (StructuredRecord record : selection.getSelectedRecords()) {
+      ids.add((Integer) record.get("id"));
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.joiner;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * Tests for {@link HotKeyDetector}
+ */
+public class HotKeyDetectorTest {
+
+  @Test
+  public void testHotKeys() {
+    HotKeyDetector detector = new HotKeyDetector(20, 1);
+    // key 'hot' in 30% of the records, 'warm' in 10%, and 6000 distinct cold keys
+    for (int i = 0; i < 10000; i++) {
+      if (i % 10 < 3) {
+        offer(detector, "hot");
+      } else if (i % 10 == 3) {
+        offer(detector, "warm");
+      } else {
+        offer(detector, "cold" + i);
+      }
+    }
+    Assert.assertEquals(10000, detector.getRecords());
+
+    Map<Object, Long> hotKeys = detector.getHotKeys(0.2);
+    Assert.assertEquals(1, hotKeys.size());
+    // the count of a key is overestimated by at most records / capacity
+    long count = hotKeys.get("hot");
+    Assert.assertTrue(count >= 3000 && count <= 3500);
+
+    hotKeys = detector.getHotKeys(0.08);
+    Assert.assertTrue(hotKeys.containsKey("hot"));
+    Assert.assertTrue(hotKeys.containsKey("warm"));
+  }
+
+  @Test
+  public void testSampling() {
+    HotKeyDetector detector = new HotKeyDetector(20, 10);
+    for (int i = 0; i < 100000; i++) {
+      offer(detector, i % 3 == 0 ? "hot" : "cold" + i);
+    }
+    Assert.assertEquals(100000, detector.getRecords());
+    Map<Object, Long> hotKeys = detector.getHotKeys(0.25);
+    Assert.assertEquals(1, hotKeys.size());
+    long count = hotKeys.get("hot");
+    Assert.assertTrue(count >= 30000 && count <= 40000);
+  }
+
+  @Test
+  public void testSampleBeforeAdd() {
+    HotKeyDetector detector = new HotKeyDetector(20, 10);
+    int sampled = 0;
+    for (int i = 0; i < 1000; i++) {
+      // the key is only built for sampled records
+      if (detector.sampleNext()) {
+        sampled++;
+        detector.add("hot");
+      }
+    }
+    Assert.assertEquals(100, sampled);
+    Assert.assertEquals(1000, detector.getRecords());
+    Assert.assertEquals(1000L, (long) detector.getHotKeys(0.5).get("hot"));
+  }
+
+  @Test
+  public void testReplacesLeastFrequentKey() {
+    HotKeyDetector detector = new HotKeyDetector(2, 1);
+    for (String key : new String[] { "a", "a", "a", "b", "c" }) {
+      offer(detector, key);
+    }
+    // 'c' replaced 'b', whose count it inherits as overestimation
+    Map<Object, Long> hotKeys = detector.getHotKeys(0);
+    Assert.assertEquals(2, hotKeys.size());
+    Assert.assertEquals(3L, (long) hotKeys.get("a"));
+    Assert.assertEquals(2L, (long) hotKeys.get("c"));
+    Assert.assertTrue(detector.getHotKeys(0.4).containsKey("a"));
+    Assert.assertFalse(detector.getHotKeys(0.4).containsKey("c"));
+  }
+
+  @Test
+  public void testNoHotKeys() {
+    HotKeyDetector detector = new HotKeyDetector(20, 1);
+    for (int i = 0; i < 10000; i++) {
+      offer(detector, i);
+    }
+    Assert.assertTrue(detector.getHotKeys(0.05).isEmpty());
+  }
+
+  private static void offer(HotKeyDetector detector, Object key) {
+    if (detector.sampleNext()) {
+      detector.add(key);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.source;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+/**
+ * Tests for {@link ExcelSheetReader}
+ */
+public class ExcelSheetReaderTest {
+
+  @Test
+  public void testReadXlsx() throws Exception {
+    File file = new File(getClass().getResource("/civil_test_data_one.xlsx").toURI());
+    try (ExcelSheetReader reader = ExcelSheetReader.open(file, false, "0")) {
+      Assert.assertEquals("Sheet1", reader.getSheetName());
+
+      Assert.assertTrue(reader.next());
+      Assert.assertEquals(0, reader.getRowNumber());
+      Assert.assertEquals(ImmutableMap.<String, Object>of("A", "id", "B", "name", "C", "age", "D", "gender",
+                                                          "E", "occupation"),
+                          reader.getCells());
+
+      Assert.assertTrue(reader.next());
+      Assert.assertEquals(1, reader.getRowNumber());
+      Assert.assertEquals(ImmutableMap.<String, Object>of("A", 1.0d, "B", "romy", "C", 26.0d, "D", "f",
+                                                          "E", "private"),
+                          reader.getCells());
+
+      // the third row is empty and not part of the sheet
+      Assert.assertTrue(reader.next());
+      Assert.assertEquals(3, reader.getRowNumber());
+      Assert.assertEquals(ImmutableMap.<String, Object>of("A", 3.0d, "B", "john", "C", 33.0d, "D", "m"),
+                          reader.getCells());
+      Assert.assertEquals(1f, reader.getProgress(), 0.001f);
+
+      Assert.assertFalse(reader.next());
+    }
+  }
+
+  @Test
+  public void testSheetByName() throws Exception {
+    File file = new File(getClass().getResource("/civil_test_data_two.xlsx").toURI());
+    int rows = 0;
+    try (ExcelSheetReader reader = ExcelSheetReader.open(file, true, "sheet1")) {
+      Assert.assertEquals("Sheet1", reader.getSheetName());
+      while (reader.next()) {
+        rows++;
+      }
+    }
+    Assert.assertEquals(6, rows);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingSheet() throws Exception {
+    File file = new File(getClass().getResource("/civil_test_data_two.xlsx").toURI());
+    ExcelSheetReader.open(file, true, "missing").close();
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.batch.source;
+
+import com.google.common.base.Charsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link XMLRecordScanner}
+ */
+public class XMLRecordScannerTest {
+  private static final String CATALOG =
+    "<?xml version=\"1.0\"?>\n" +
+    "<catalog>\n" +
+    "  <!-- <book id=\"commented\"></book> -->\n" +
+    "  <book id=\"bk101\"><title>XML Developer's Guide</title></book>\n" +
+    "  <book id=\"bk102\" note=\"a > b\"><title><![CDATA[</book>]]></title></book>\n" +
+    "  <bookshelf/>\n" +
+    "  <book id=\"bk103\"/>\n" +
+    "  <x:book id=\"bk104\"><x:title>Oberon's Legacy</x:title></x:book>\n" +
+    "</catalog>\n";
+
+  @Test
+  public void testWholeFile() throws IOException {
+    List<String> records = scan(CATALOG, 0, CATALOG.length(), "book");
+    Assert.assertEquals(Arrays.asList(
+      "<book id=\"bk101\"><title>XML Developer's Guide</title></book>",
+      "<book id=\"bk102\" note=\"a > b\"><title><![CDATA[</book>]]></title></book>",
+      "<book id=\"bk103\"/>"), records);
+  }
+
+  @Test
+  public void testPrefixedElement() throws IOException {
+    List<String> records = scan(CATALOG, 0, CATALOG.length(), "x:book");
+    Assert.assertEquals(Arrays.asList("<x:book id=\"bk104\"><x:title>Oberon's Legacy</x:title></x:book>"), records);
+  }
+
+  @Test
+  public void testRecordStart() throws IOException {
+    byte[] bytes = CATALOG.getBytes(Charsets.UTF_8);
+    XMLRecordScanner scanner = new XMLRecordScanner(new ByteArrayInputStream(bytes), 0, bytes.length, "book");
+    int expected = CATALOG.indexOf("<book id=\"bk101\"");
+    Assert.assertNotNull(scanner.next());
+    Assert.assertEquals(expected, scanner.getRecordStart());
+  }
+
+  @Test
+  public void testEverySplitReadsEachRecordOnce() throws IOException {
+    StringBuilder xml = new StringBuilder("<catalog>\n");
+    for (int i = 0; i < 100; i++) {
+      xml.append("  <book id=\"bk").append(i).append("\"><title>Title ").append(i).append("</title></book>\n");
+    }
+    xml.append("</catalog>\n");
+    String document = xml.toString();
+    List<String> expected = scan(document, 0, document.length(), "book");
+    Assert.assertEquals(100, expected.size());
+
+    for (int splitSize : new int[] { 1, 7, 50, 64, 1000 }) {
+      List<String> records = new ArrayList<>();
+      for (int start = 0; start < document.length(); start += splitSize) {
+        records.addAll(scan(document, start, Math.min(start + splitSize, document.length()), "book"));
+      }
+      Assert.assertEquals("Split size " + splitSize, expected, records);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedRecord() throws IOException {
+    String xml = "<catalog><book id=\"bk101\"><title>XML Developer's Guide</title>";
+    scan(xml, 0, xml.length(), "book");
+  }
+
+  private static List<String> scan(String xml, int start, int end, String element) throws IOException {
+    byte[] bytes = xml.getBytes(Charsets.UTF_8);
+    ByteArrayInputStream in = new ByteArrayInputStream(bytes, start, bytes.length - start);
+    XMLRecordScanner scanner = new XMLRecordScanner(in, start, end, element);
+    List<String> records = new ArrayList<>();
+    byte[] record;
+    while ((record = scanner.next()) != null) {
+      records.add(new String(record, Charsets.UTF_8));
+    }
+    return records;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.common;
+
+import co.cask.cdap.api.data.schema.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+import org.junit.Assert;
+import org.junit.Test;
+import parquet.filter2.predicate.FilterApi;
+import parquet.io.api.Binary;
+
+import java.util.Arrays;
+
+/**
+ * Tests for {@link ColumnFilter}
+ */
+public class ColumnFilterTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "user",
+    Schema.Field.of("country", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("age", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("active", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("score", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("photo", Schema.of(Schema.Type.BYTES)));
+  private static final org.apache.avro.Schema AVRO_SCHEMA = new org.apache.avro.Schema.Parser().parse(
+    SCHEMA.toString());
+
+  @Test
+  public void testParquetPredicate() {
+    ColumnFilter filter = ColumnFilter.parse("Country = 'US' and age > 30 and age in (31, 40) and active = true " +
+                                               "and score < 2.5", SCHEMA);
+    Assert.assertEquals(Arrays.asList("country", "age", "active", "score"), filter.getFieldNames());
+    Assert.assertEquals(
+      FilterApi.and(
+        FilterApi.and(
+          FilterApi.and(
+            FilterApi.and(FilterApi.eq(FilterApi.binaryColumn("country"), Binary.fromString("US")),
+                          FilterApi.gt(FilterApi.intColumn("age"), 30)),
+            FilterApi.or(FilterApi.eq(FilterApi.intColumn("age"), 31), FilterApi.eq(FilterApi.intColumn("age"), 40))),
+          FilterApi.eq(FilterApi.booleanColumn("active"), true)),
+        FilterApi.lt(FilterApi.doubleColumn("score"), 2.5d)),
+      filter.toParquetPredicate());
+  }
+
+  @Test
+  public void testRecords() {
+    ColumnFilter filter = ColumnFilter.parse("country in ('US', 'it''s') and age > 30 and score < 2.5", SCHEMA);
+    Assert.assertTrue(filter.test(record(new Utf8("US"), 31, 1.0)));
+    Assert.assertTrue(filter.test(record("it's", 31, 1.0)));
+    Assert.assertFalse(filter.test(record("FR", 31, 1.0)));
+    Assert.assertFalse(filter.test(record(null, 31, 1.0)));
+    Assert.assertFalse(filter.test(record("US", 30, 1.0)));
+    Assert.assertFalse(filter.test(record("US", 31, 2.5)));
+  }
+
+  @Test
+  public void testQuotedKeyword() {
+    ColumnFilter filter = ColumnFilter.parse("country = 'and' and age = 1", SCHEMA);
+    Assert.assertTrue(filter.test(record("and", 1, 0)));
+  }
+
+  @Test
+  public void testInvalidFilters() {
+    for (String expression : new String[] {
+      "", "age", "age =", "age = x", "active < true", "photo = 1", "unknown = 1", "age = 1 or age = 2",
+      "age in (1, 2", "age in 1", "country = 'US", "age = 1 and", "= 1"}) {
+      try {
+        ColumnFilter.parse(expression, SCHEMA);
+        Assert.fail("Expected an invalid filter: " + expression);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  private static GenericRecord record(Object country, int age, double score) {
+    GenericRecord record = new GenericData.Record(AVRO_SCHEMA);
+    record.put("country", country);
+    record.put("age", age);
+    record.put("active", true);
+    record.put("score", score);
+    return record;
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.common;
+
+import co.cask.cdap.api.dataset.lib.cube.CubeFact;
+import co.cask.cdap.api.dataset.lib.cube.MeasureType;
+import co.cask.cdap.api.dataset.lib.cube.Measurement;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link CubeFactAggregator}
+ */
+public class CubeFactAggregatorTest {
+
+  @Test
+  public void testMergeInBucket() {
+    Map<String, String> properties = ImmutableMap.of(Properties.Cube.DATASET_RESOLUTIONS, "60,3600");
+    CubeFactAggregator aggregator = new CubeFactAggregator(properties, 100);
+    aggregator.add(fact(1000, "user1", 1, 10));
+    aggregator.add(fact(1010, "user1", 2, 20));
+    aggregator.add(fact(1019, "user2", 4, 30));
+    // next minute
+    aggregator.add(fact(1020, "user1", 8, 40));
+    // counters are merged by key, gauges only with the previous fact with the same key
+    Assert.assertEquals(6, aggregator.size());
+
+    List<CubeFact> facts = new ArrayList<>(aggregator.drain());
+    Assert.assertEquals(0, aggregator.size());
+    Assert.assertEquals(6, facts.size());
+
+    assertMeasurement(facts.get(0), 960, "user1", "count", MeasureType.COUNTER, 3);
+    assertMeasurement(facts.get(1), 960, "user2", "count", MeasureType.COUNTER, 4);
+    assertMeasurement(facts.get(2), 1020, "user1", "count", MeasureType.COUNTER, 8);
+    assertMeasurement(facts.get(3), 960, "user1", "price", MeasureType.GAUGE, 20);
+    assertMeasurement(facts.get(4), 960, "user2", "price", MeasureType.GAUGE, 30);
+    assertMeasurement(facts.get(5), 1020, "user1", "price", MeasureType.GAUGE, 40);
+  }
+
+  @Test
+  public void testDefaultResolution() {
+    CubeFactAggregator aggregator = new CubeFactAggregator(new HashMap<String, String>(), 100);
+    aggregator.add(fact(1000, "user1", 1, 10));
+    aggregator.add(fact(1001, "user1", 1, 10));
+    aggregator.add(fact(1001, "user1", 1, 10));
+    // one counter fact and one gauge fact per second
+    Assert.assertEquals(4, aggregator.size());
+  }
+
+  @Test
+  public void testAggregationDimensions() {
+    Map<String, String> properties = ImmutableMap.of("dataset.cube.aggregation.byName.dimensions", "name");
+    CubeFactAggregator aggregator = new CubeFactAggregator(properties, 100);
+    CubeFact first = fact(1000, "user1", 1, 10);
+    first.addDimensionValue("id", "a");
+    CubeFact second = fact(1000, "user1", 1, 20);
+    second.addDimensionValue("id", "b");
+    aggregator.add(first);
+    aggregator.add(second);
+
+    List<CubeFact> facts = new ArrayList<>(aggregator.drain());
+    Assert.assertEquals(2, facts.size());
+    Assert.assertEquals(ImmutableMap.of("name", "user1"), facts.get(0).getDimensionValues());
+    assertMeasurement(facts.get(0), 1000, "user1", "count", MeasureType.COUNTER, 2);
+    Assert.assertEquals(ImmutableMap.of("name", "user1"), facts.get(1).getDimensionValues());
+    assertMeasurement(facts.get(1), 1000, "user1", "price", MeasureType.GAUGE, 20);
+  }
+
+  @Test
+  public void testGaugesWithTwoAggregations() {
+    Map<String, String> properties = ImmutableMap.of("dataset.cube.aggregation.a.dimensions", "A",
+                                                     "dataset.cube.aggregation.ab.dimensions", "A,B");
+    List<CubeFact> facts = new ArrayList<>();
+    facts.add(gaugeFact("1", "1", 10));
+    facts.add(gaugeFact("1", "2", 20));
+    facts.add(gaugeFact("1", "1", 30));
+    facts.add(gaugeFact("1", "1", 40));
+    facts.add(gaugeFact("1", "2", 50));
+
+    CubeFactAggregator aggregator = new CubeFactAggregator(properties, 100);
+    for (CubeFact fact : facts) {
+      aggregator.add(fact);
+    }
+    // the last two facts with A=1,B=1 are consecutive and merged
+    Assert.assertEquals(4, aggregator.size());
+    Collection<CubeFact> drained = aggregator.drain();
+
+    // every aggregation must end with the same gauge values as if the facts were written one by one
+    for (List<String> aggregation : ImmutableList.of(ImmutableList.of("A"), ImmutableList.of("A", "B"))) {
+      Map<List<String>, Long> expected = lastGaugeValues(facts, aggregation);
+      Assert.assertEquals(expected, lastGaugeValues(drained, aggregation));
+    }
+    Assert.assertEquals(50L, (long) lastGaugeValues(drained, ImmutableList.of("A")).get(ImmutableList.of("1")));
+  }
+
+  @Test
+  public void testFull() {
+    CubeFactAggregator aggregator = new CubeFactAggregator(new HashMap<String, String>(), 2);
+    aggregator.add(counterFact(1000, "user1", 1));
+    aggregator.add(counterFact(1000, "user1", 1));
+    Assert.assertFalse(aggregator.isFull());
+    aggregator.add(counterFact(1000, "user2", 1));
+    Assert.assertTrue(aggregator.isFull());
+    Assert.assertEquals(2, aggregator.drain().size());
+    Assert.assertFalse(aggregator.isFull());
+  }
+
+  /**
+   * Returns the last value of the gauge of each group of the given dimensions, as a Cube aggregation keeps it.
+   */
+  private static Map<List<String>, Long> lastGaugeValues(Collection<CubeFact> facts, List<String> dimensions) {
+    Map<List<String>, Long> values = new HashMap<>();
+    for (CubeFact fact : facts) {
+      List<String> group = new ArrayList<>();
+      for (String dimension : dimensions) {
+        group.add(fact.getDimensionValues().get(dimension));
+      }
+      for (Measurement measurement : fact.getMeasurements()) {
+        if (measurement.getType() == MeasureType.GAUGE) {
+          values.put(group, measurement.getValue());
+        }
+      }
+    }
+    return values;
+  }
+
+  private static CubeFact fact(long timestamp, String name, long count, long price) {
+    CubeFact fact = counterFact(timestamp, name, count);
+    fact.addMeasurement("price", MeasureType.GAUGE, price);
+    return fact;
+  }
+
+  private static CubeFact counterFact(long timestamp, String name, long count) {
+    CubeFact fact = new CubeFact(timestamp);
+    fact.addDimensionValue("name", name);
+    fact.addMeasurement("count", MeasureType.COUNTER, count);
+    return fact;
+  }
+
+  private static CubeFact gaugeFact(String a, String b, long value) {
+    CubeFact fact = new CubeFact(1000);
+    fact.addDimensionValue("A", a);
+    fact.addDimensionValue("B", b);
+    fact.addMeasurement("g", MeasureType.GAUGE, value);
+    return fact;
+  }
+
+  private static void assertMeasurement(CubeFact fact, long timestamp, String name, String measurementName,
+                                        MeasureType type, long value) {
+    Assert.assertEquals(timestamp, fact.getTimestamp());
+    Assert.assertEquals(name, fact.getDimensionValues().get("name"));
+    Assert.assertEquals(1, fact.getMeasurements().size());
+    Measurement measurement = fact.getMeasurements().iterator().next();
+    Assert.assertEquals(measurementName, measurement.getName());
+    Assert.assertEquals(type, measurement.getType());
+    Assert.assertEquals(value, measurement.getValue());
+  }
+}
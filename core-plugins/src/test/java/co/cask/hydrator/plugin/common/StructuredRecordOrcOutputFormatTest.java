@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.common;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.common.HiveSchemaConverter;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.orc.CompressionKind;
+import org.apache.orc.OrcFile;
+import org.apache.orc.Reader;
+import org.apache.orc.RecordReader;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tests for {@link StructuredRecordOrcOutputFormat}
+ */
+public class StructuredRecordOrcOutputFormatTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("boolField", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("intField", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("longField", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("floatField", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("doubleField", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("stringField", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("bytesField", Schema.of(Schema.Type.BYTES)));
+
+  @Test
+  public void testWriteRecords() throws Exception {
+    // more than two batches, so that the batch is reused and the last one is partial
+    int numRecords = StructuredRecordOrcOutputFormat.BATCH_SIZE * 2 + 100;
+    Configuration conf = createConfiguration();
+    conf.set("orc.compress", "SNAPPY");
+    conf.set("orc.bloom.filter.columns", "stringField");
+    Path path = write(conf, numRecords);
+
+    Reader reader = OrcFile.createReader(path, OrcFile.readerOptions(conf));
+    Assert.assertEquals(numRecords, reader.getNumberOfRows());
+    Assert.assertEquals(CompressionKind.SNAPPY, reader.getCompressionKind());
+
+    RecordReader rows = reader.rows();
+    VectorizedRowBatch batch = reader.getSchema().createRowBatch();
+    int i = 0;
+    while (rows.nextBatch(batch)) {
+      for (int row = 0; row < batch.size; row++, i++) {
+        Assert.assertEquals(i % 2, ((LongColumnVector) batch.cols[0]).vector[row]);
+        Assert.assertEquals(i, ((LongColumnVector) batch.cols[1]).vector[row]);
+        Assert.assertEquals(i * 1000000000L, ((LongColumnVector) batch.cols[2]).vector[row]);
+        Assert.assertEquals(i + 0.5d, ((DoubleColumnVector) batch.cols[3]).vector[row], 0d);
+        Assert.assertEquals(i / 4d, ((DoubleColumnVector) batch.cols[4]).vector[row], 0d);
+        BytesColumnVector strings = (BytesColumnVector) batch.cols[5];
+        if (i % 3 == 0) {
+          Assert.assertTrue(strings.isNull[row]);
+        } else {
+          Assert.assertFalse(strings.isNull[row]);
+          Assert.assertEquals(string(i), new String(strings.vector[row], strings.start[row], strings.length[row],
+                                                    StandardCharsets.UTF_8));
+        }
+        BytesColumnVector bytes = (BytesColumnVector) batch.cols[6];
+        Assert.assertEquals(String.valueOf(i),
+                            new String(bytes.vector[row], bytes.start[row], bytes.length[row], StandardCharsets.UTF_8));
+      }
+    }
+    rows.close();
+    Assert.assertEquals(numRecords, i);
+  }
+
+  @Test
+  public void testWithoutIndex() throws Exception {
+    Configuration conf = createConfiguration();
+    conf.setBoolean(StructuredRecordOrcOutputFormat.CREATE_INDEX, false);
+    Path path = write(conf, 10);
+    Reader reader = OrcFile.createReader(path, OrcFile.readerOptions(conf));
+    Assert.assertEquals(10, reader.getNumberOfRows());
+    Assert.assertEquals(0, reader.getRowIndexStride());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedType() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set("orc.mapred.output.schema", "struct<id:int,tags:array<string>>");
+    File file = new File(TMP_FOLDER.newFolder(), "unsupported.orc");
+    StructuredRecordOrcOutputFormat.createRecordWriter(new Path(file.toURI()), conf);
+  }
+
+  private static Configuration createConfiguration() throws Exception {
+    StringBuilder orcSchema = new StringBuilder();
+    HiveSchemaConverter.appendType(orcSchema, SCHEMA);
+    Configuration conf = new Configuration();
+    conf.set("orc.mapred.output.schema", orcSchema.toString());
+    return conf;
+  }
+
+  private static Path write(Configuration conf, int numRecords) throws Exception {
+    File file = new File(TMP_FOLDER.newFolder(), "records.orc");
+    Path path = new Path(file.toURI());
+    RecordWriter<NullWritable, StructuredRecord> writer =
+      StructuredRecordOrcOutputFormat.createRecordWriter(path, conf);
+    for (int i = 0; i < numRecords; i++) {
+      // bytes are given either as arrays or as buffers
+      byte[] bytes = String.valueOf(i).getBytes(StandardCharsets.UTF_8);
+      writer.write(NullWritable.get(), StructuredRecord.builder(SCHEMA)
+        .set("boolField", i % 2 == 1)
+        .set("intField", i)
+        .set("longField", i * 1000000000L)
+        .set("floatField", i + 0.5f)
+        .set("doubleField", i / 4d)
+        .set("stringField", i % 3 == 0 ? null : string(i))
+        .set("bytesField", i % 2 == 0 ? bytes : ByteBuffer.wrap(bytes))
+        .build());
+    }
+    writer.close(null);
+    return path;
+  }
+
+  private static String string(int i) {
+    // strings of different lengths, with characters of multiple bytes in UTF-8
+    StringBuilder builder = new StringBuilder("récord-").append(i);
+    for (int j = 0; j < i % 200; j++) {
+      builder.append('€');
+    }
+    return builder.toString();
+  }
+}
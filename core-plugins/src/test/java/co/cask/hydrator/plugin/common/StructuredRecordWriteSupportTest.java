@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.common;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import parquet.avro.AvroParquetReader;
+import parquet.avro.AvroParquetWriter;
+import parquet.column.ParquetProperties;
+import parquet.hadoop.ParquetWriter;
+import parquet.hadoop.metadata.CompressionCodecName;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link StructuredRecordWriteSupport}
+ */
+public class StructuredRecordWriteSupportTest {
+
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  private static final Schema INNER_SCHEMA = Schema.recordOf(
+    "inner",
+    Schema.Field.of("innerInt", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("innerString", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("boolField", Schema.of(Schema.Type.BOOLEAN)),
+    Schema.Field.of("intField", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("longField", Schema.of(Schema.Type.LONG)),
+    Schema.Field.of("floatField", Schema.of(Schema.Type.FLOAT)),
+    Schema.Field.of("doubleField", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("stringField", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("bytesField", Schema.nullableOf(Schema.of(Schema.Type.BYTES))),
+    Schema.Field.of("arrayField", Schema.arrayOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("mapField", Schema.mapOf(Schema.of(Schema.Type.STRING),
+                                             Schema.nullableOf(Schema.of(Schema.Type.INT)))),
+    Schema.Field.of("recordField", Schema.nullableOf(INNER_SCHEMA)));
+
+  @Test
+  public void testSameAsAvro() throws Exception {
+    List<StructuredRecord> records = new ArrayList<>();
+    records.add(StructuredRecord.builder(SCHEMA)
+                  .set("boolField", true)
+                  .set("intField", 1)
+                  .set("longField", 2L)
+                  .set("floatField", 3.5f)
+                  .set("doubleField", 4.5d)
+                  .set("stringField", "five")
+                  .set("bytesField", new byte[] { 6, 7 })
+                  .set("arrayField", ImmutableList.of("a", "b"))
+                  .set("mapField", ImmutableMap.of("x", 8))
+                  .set("recordField", StructuredRecord.builder(INNER_SCHEMA)
+                    .set("innerInt", 9)
+                    .set("innerString", "ten")
+                    .build())
+                  .build());
+    // nulls, empty collections and byte buffers
+    records.add(StructuredRecord.builder(SCHEMA)
+                  .set("boolField", false)
+                  .set("intField", -1)
+                  .set("longField", Long.MAX_VALUE)
+                  .set("floatField", 0f)
+                  .set("doubleField", Double.MIN_VALUE)
+                  .set("bytesField", ByteBuffer.wrap(new byte[] { 11 }))
+                  .set("arrayField", new String[0])
+                  .set("mapField", ImmutableMap.of())
+                  .build());
+
+    Path direct = new Path(new File(TMP_FOLDER.getRoot(), "direct.parquet").toURI());
+    Configuration conf = new Configuration();
+    conf.set(StructuredRecordWriteSupport.SCHEMA, SCHEMA.toString());
+    try (ParquetWriter<StructuredRecord> writer =
+           new ParquetWriter<>(direct, new StructuredRecordWriteSupport(), CompressionCodecName.UNCOMPRESSED,
+                               ParquetWriter.DEFAULT_BLOCK_SIZE, ParquetWriter.DEFAULT_PAGE_SIZE,
+                               ParquetWriter.DEFAULT_PAGE_SIZE, true, false,
+                               ParquetProperties.WriterVersion.PARQUET_1_0, conf)) {
+      for (StructuredRecord record : records) {
+        writer.write(record);
+      }
+    }
+
+    Path avro = new Path(new File(TMP_FOLDER.getRoot(), "avro.parquet").toURI());
+    StructuredToAvroTransformer transformer = new StructuredToAvroTransformer(SCHEMA.toString());
+    org.apache.avro.Schema avroSchema = new org.apache.avro.Schema.Parser().parse(SCHEMA.toString());
+    try (AvroParquetWriter<GenericRecord> writer = new AvroParquetWriter<>(avro, avroSchema)) {
+      for (StructuredRecord record : records) {
+        writer.write(transformer.transform(record));
+      }
+    }
+
+    List<GenericRecord> expected = read(avro);
+    List<GenericRecord> actual = read(direct);
+    Assert.assertEquals(records.size(), expected.size());
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNullRequiredField() throws Exception {
+    Path path = new Path(new File(TMP_FOLDER.getRoot(), "required.parquet").toURI());
+    Configuration conf = new Configuration();
+    conf.set(StructuredRecordWriteSupport.SCHEMA, INNER_SCHEMA.toString());
+    try (ParquetWriter<StructuredRecord> writer =
+           new ParquetWriter<>(path, new StructuredRecordWriteSupport(), CompressionCodecName.UNCOMPRESSED,
+                               ParquetWriter.DEFAULT_BLOCK_SIZE, ParquetWriter.DEFAULT_PAGE_SIZE,
+                               ParquetWriter.DEFAULT_PAGE_SIZE, true, false,
+                               ParquetProperties.WriterVersion.PARQUET_1_0, conf)) {
+      writer.write(StructuredRecord.builder(INNER_SCHEMA).set("innerString", "no int").build());
+    }
+  }
+
+  private static List<GenericRecord> read(Path path) throws IOException {
+    List<GenericRecord> records = new ArrayList<>();
+    try (AvroParquetReader<GenericRecord> reader = new AvroParquetReader<>(path)) {
+      GenericRecord record;
+      while ((record = reader.read()) != null) {
+        records.add(record);
+      }
+    }
+    return records;
+  }
+}
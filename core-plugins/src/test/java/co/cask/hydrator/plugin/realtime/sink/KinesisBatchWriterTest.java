@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.plugin.realtime.sink;
+
+import co.cask.cdap.api.common.Bytes;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+import com.google.common.base.Strings;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link KinesisBatchWriter}
+ */
+public class KinesisBatchWriterTest {
+
+  @Test
+  public void testBatching() {
+    MockKinesis kinesis = new MockKinesis(0);
+    KinesisBatchWriter writer = new KinesisBatchWriter(kinesis.getClient(), "stream", false, 3, 0);
+    int written = 0;
+    for (int i = 0; i < 1200; i++) {
+      written += writer.add("key" + i, ByteBuffer.wrap(Bytes.toBytes("record" + i)));
+    }
+    written += writer.flush();
+
+    Assert.assertEquals(1200, written);
+    Assert.assertEquals(Arrays.asList(500, 500, 200), kinesis.requestSizes);
+  }
+
+  @Test
+  public void testRetryFailedEntriesOnly() {
+    // fail every third entry of the first request
+    MockKinesis kinesis = new MockKinesis(3);
+    KinesisBatchWriter writer = new KinesisBatchWriter(kinesis.getClient(), "stream", false, 3, 0);
+    int written = 0;
+    for (int i = 0; i < 30; i++) {
+      written += writer.add("key", ByteBuffer.wrap(Bytes.toBytes("record" + i)));
+    }
+    written += writer.flush();
+
+    Assert.assertEquals(30, written);
+    Assert.assertEquals(Arrays.asList(30, 10), kinesis.requestSizes);
+    Assert.assertEquals(30, kinesis.written.size());
+  }
+
+  @Test
+  public void testAggregation() throws Exception {
+    MockKinesis kinesis = new MockKinesis(0);
+    KinesisBatchWriter writer = new KinesisBatchWriter(kinesis.getClient(), "stream", true, 3, 0);
+    int written = 0;
+    for (int i = 0; i < 100; i++) {
+      written += writer.add("key" + (i % 2), ByteBuffer.wrap(Bytes.toBytes("record" + i)));
+    }
+    written += writer.flush();
+
+    Assert.assertEquals(100, written);
+    // records are only aggregated with records of the same partition key, so that they stay on their shard
+    Assert.assertEquals(Arrays.asList(2), kinesis.requestSizes);
+    for (int i = 0; i < 2; i++) {
+      PutRecordsRequestEntry entry = kinesis.written.get(i);
+      Assert.assertEquals("key" + i, entry.getPartitionKey());
+      byte[] data = Bytes.toBytes(entry.getData());
+      byte[] magic = Arrays.copyOfRange(data, 0, KinesisBatchWriter.AGGREGATION_MAGIC.length);
+      Assert.assertArrayEquals(KinesisBatchWriter.AGGREGATION_MAGIC, magic);
+      byte[] message = Arrays.copyOfRange(data, magic.length, data.length - 16);
+      byte[] digest = Arrays.copyOfRange(data, data.length - 16, data.length);
+      Assert.assertArrayEquals(MessageDigest.getInstance("MD5").digest(message), digest);
+      // the partition key table comes first and only contains the key of the record
+      Assert.assertEquals(0x0A, message[0]);
+      Assert.assertEquals("key" + i, Bytes.toString(message, 2, message[1]));
+      Assert.assertEquals(0x1A, message[2 + message[1]]);
+    }
+  }
+
+  @Test
+  public void testRequestSizeCountsPartitionKeyBytes() {
+    MockKinesis kinesis = new MockKinesis(0);
+    KinesisBatchWriter writer = new KinesisBatchWriter(kinesis.getClient(), "stream", false, 3, 0);
+    // 256 characters, but 768 bytes in UTF-8
+    String key = Strings.repeat("\u20ac", 256);
+    byte[] data = new byte[104500];
+    int written = 0;
+    for (int i = 0; i < 50; i++) {
+      written += writer.add(key, ByteBuffer.wrap(data));
+    }
+    written += writer.flush();
+
+    Assert.assertEquals(50, written);
+    // counting characters, the 50 records would fit into a single request
+    Assert.assertEquals(Arrays.asList(49, 1), kinesis.requestSizes);
+  }
+
+  @Test
+  public void testAggregatedRecordSizeLimit() {
+    MockKinesis kinesis = new MockKinesis(0);
+    KinesisBatchWriter writer = new KinesisBatchWriter(kinesis.getClient(), "stream", true, 3, 0);
+    byte[] data = new byte[1000];
+    int written = 0;
+    for (int i = 0; i < 200; i++) {
+      written += writer.add("key", ByteBuffer.wrap(data));
+    }
+    written += writer.flush();
+
+    Assert.assertEquals(200, written);
+    // 200 KB of data does not fit into less than 4 aggregated records
+    Assert.assertTrue(kinesis.written.size() >= 4);
+    for (PutRecordsRequestEntry entry : kinesis.written) {
+      Assert.assertTrue(entry.getData().remaining() <= KinesisBatchWriter.MAX_AGGREGATED_BYTES);
+    }
+  }
+
+  /**
+   * Fake Kinesis client that records the PutRecords requests it receives.
+   */
+  private static final class MockKinesis implements InvocationHandler {
+    private final int failEvery;
+    private final List<Integer> requestSizes = new ArrayList<>();
+    private final List<PutRecordsRequestEntry> written = new ArrayList<>();
+
+    private MockKinesis(int failEvery) {
+      this.failEvery = failEvery;
+    }
+
+    private AmazonKinesis getClient() {
+      return (AmazonKinesis) Proxy.newProxyInstance(AmazonKinesis.class.getClassLoader(),
+                                                    new Class<?>[] { AmazonKinesis.class }, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      if (!"putRecords".equals(method.getName())) {
+        throw new UnsupportedOperationException(method.getName());
+      }
+      List<PutRecordsRequestEntry> entries = ((PutRecordsRequest) args[0]).getRecords();
+      boolean fail = failEvery > 0 && requestSizes.isEmpty();
+      requestSizes.add(entries.size());
+
+      List<PutRecordsResultEntry> results = new ArrayList<>();
+      int failed = 0;
+      for (int i = 0; i < entries.size(); i++) {
+        if (fail && i % failEvery == 0) {
+          results.add(new PutRecordsResultEntry().withErrorCode("ProvisionedThroughputExceededException"));
+          failed++;
+        } else {
+          results.add(new PutRecordsResultEntry().withSequenceNumber(Integer.toString(written.size())));
+          written.add(entries.get(i));
+        }
+      }
+      return new PutRecordsResult().withRecords(results).withFailedRecordCount(failed);
+    }
+  }
+}
@@ -22,6 +22,7 @@ import co.cask.cdap.etl.api.InvalidEntry;
 import co.cask.cdap.etl.api.realtime.SourceState;
 import co.cask.cdap.etl.mock.realtime.MockRealtimeContext;
 import co.cask.hydrator.plugin.realtime.jms.JmsProvider;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import org.junit.After;
 import org.junit.Assert;
@@ -30,11 +31,16 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import javax.jms.BytesMessage;
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
 import javax.jms.Destination;
 import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.MessageConsumer;
 import javax.jms.MessageProducer;
 import javax.jms.Queue;
 import javax.jms.QueueConnection;
@@ -171,6 +177,86 @@ public class JmsSourceTest {
     }
   }
 
+  @Test
+  public void testTransactedBatchWithMultipleConsumers() throws Exception {
+    jmsSource = new JmsSource(
+      new JmsSource.JmsPluginConfig("testJMS", "dynamicQueues/CDAP.BATCH.QUEUE",
+                                    "org.apache.activemq.jndi.ActiveMQInitialContextFactory",
+                                    "vm://localhost?broker.persistent=false", 100,
+                                    JmsSource.DEFAULT_CONNECTION_FACTORY, null, null, null,
+                                    "SESSION_TRANSACTED", 3, null));
+    jmsProvider = new MockJmsProvider("dynamicQueues/CDAP.BATCH.QUEUE");
+    jmsSource.setJmsProvider(jmsProvider);
+    jmsSource.initialize(new MockRealtimeContext());
+
+    Connection connection = jmsProvider.getConnectionFactory().createConnection();
+    try {
+      connection.start();
+      Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+      MessageProducer producer = session.createProducer(jmsProvider.getDestination());
+      Set<String> expected = new HashSet<>();
+      for (int i = 0; i < 30; i++) {
+        producer.send(session.createTextMessage("message" + i));
+        expected.add("message" + i);
+      }
+
+      MockEmitter emitter = new MockEmitter();
+      for (int i = 0; i < 10 && emitter.getCurrentValues().size() < expected.size(); i++) {
+        jmsSource.poll(emitter, new SourceState());
+      }
+      Set<String> received = new HashSet<>();
+      for (StructuredRecord record : emitter.getCurrentValues()) {
+        received.add((String) record.get(JmsSource.MESSAGE));
+      }
+      Assert.assertEquals(expected.size(), emitter.getCurrentValues().size());
+      Assert.assertEquals(expected, received);
+
+      // everything was committed, so nothing is redelivered
+      MessageConsumer consumer = session.createConsumer(jmsProvider.getDestination());
+      Assert.assertNull(consumer.receive(500));
+    } finally {
+      connection.close();
+    }
+  }
+
+  @Test
+  public void testNativeDecoding() throws Exception {
+    jmsSource = new JmsSource(
+      new JmsSource.JmsPluginConfig("testJMS", "dynamicQueues/CDAP.NATIVE.QUEUE",
+                                    "org.apache.activemq.jndi.ActiveMQInitialContextFactory",
+                                    "vm://localhost?broker.persistent=false", 50,
+                                    JmsSource.DEFAULT_CONNECTION_FACTORY, null, null, null,
+                                    "CLIENT_ACKNOWLEDGE", null, JmsSource.DECODING_NATIVE));
+    jmsProvider = new MockJmsProvider("dynamicQueues/CDAP.NATIVE.QUEUE");
+    jmsSource.setJmsProvider(jmsProvider);
+    jmsSource.initialize(new MockRealtimeContext());
+
+    Connection connection = jmsProvider.getConnectionFactory().createConnection();
+    try {
+      connection.start();
+      Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+      MessageProducer producer = session.createProducer(jmsProvider.getDestination());
+      producer.send(session.createTextMessage("text"));
+      BytesMessage bytesMessage = session.createBytesMessage();
+      bytesMessage.writeBytes(new byte[] {1, 2, 3});
+      producer.send(bytesMessage);
+      MapMessage mapMessage = session.createMapMessage();
+      mapMessage.setString("name", "cdap");
+      mapMessage.setInt("count", 5);
+      producer.send(mapMessage);
+
+      MockEmitter emitter = new MockEmitter();
+      jmsSource.poll(emitter, new SourceState());
+      List<StructuredRecord> records = emitter.getCurrentValues();
+      Assert.assertEquals(3, records.size());
+      Assert.assertEquals("text", records.get(0).get(JmsSource.MESSAGE));
+      Assert.assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) records.get(1).get(JmsSource.BYTES));
+      Assert.assertEquals(ImmutableMap.of("name", "cdap", "count", "5"), records.get(2).get(JmsSource.MAP));
+    } finally {
+      connection.close();
+    }
+  }
+
   // Helper method to start sending message to destination
   private void sendMessage(Connection connection, Destination destination, String destType) throws JMSException {
     Session session = connection.createSession(false, sessionAckMode);
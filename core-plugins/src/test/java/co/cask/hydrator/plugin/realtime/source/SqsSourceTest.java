@@ -36,6 +36,8 @@ import org.junit.Test;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.Set;
 
 public class SqsSourceTest {
   private Node elasticNode;
@@ -78,6 +80,43 @@ public class SqsSourceTest {
     Assert.assertEquals(testMsgOrder, ((StructuredRecord) emitter.getEmitted().get(1)).get("body"));
   }
 
+  @Test
+  public void testSQSBatchReceive() throws Exception {
+    String queueName = "testBatchQueue";
+    AmazonSQSClient sqsClient = new AmazonSQSClient(new BasicAWSCredentials(SQSServer.AWS_CRED, SQSServer.AWS_CRED));
+    sqsClient.setEndpoint(sqsServer.getURL());
+    sqsClient.createQueue(queueName);
+    String queueURL = sqsClient.getQueueUrl(queueName).getQueueUrl();
+    Set<String> expected = new HashSet<>();
+    for (int i = 0; i < 25; i++) {
+      String message = "testMessage" + i;
+      sqsClient.sendMessage(queueURL, message);
+      expected.add(message);
+    }
+
+    SqsSource sqsSource = new SqsSource(new SqsSource.SqsConfig("sqs", "us-west-1", SQSServer.AWS_CRED,
+                                                                SQSServer.AWS_CRED, queueName, sqsServer.getURL(),
+                                                                true, 2, 0, 30));
+    sqsSource.initialize(new MockRealtimeContext());
+
+    MockEmitter<StructuredRecord> emitter = new MockEmitter<>();
+    SourceState sourceState = new SourceState();
+    // each poll receives at most 2 batches of 10 messages
+    for (int i = 0; i < 5 && emitter.getEmitted().size() < expected.size(); i++) {
+      sqsSource.poll(emitter, sourceState);
+    }
+    sqsSource.destroy();
+
+    Set<String> received = new HashSet<>();
+    for (StructuredRecord record : emitter.getEmitted()) {
+      received.add((String) record.get("body"));
+    }
+    Assert.assertEquals(expected.size(), emitter.getEmitted().size());
+    Assert.assertEquals(expected, received);
+    // emitted messages are deleted from the queue
+    Assert.assertTrue(sqsClient.receiveMessage(queueURL).getMessages().isEmpty());
+  }
+
   @After
   public void stopElasticMQ() {
     sqsRestServer.stop();
@@ -252,4 +252,40 @@ public class LogParserTransformTest {
                         invalidEntry.getErrorMsg());
     Assert.assertEquals("Error Record", botRecord, invalidEntry.getInvalidRecord());
   }
+
+  @Test
+  public void testErrorDatasetForInvalidCloudfrontLog() throws Exception {
+    StructuredRecord record = StructuredRecord.builder(STRING_SCHEMA)
+      .set("body", "2015-04-17\t13:35:48\tSFO20\t582123\t11.111.111.11\tGET")
+      .build();
+
+    MockEmitter<StructuredRecord> emitter = new MockEmitter<>();
+    CLOUDFRONT_TRANSFORM.transform(record, emitter);
+    Assert.assertEquals(0, emitter.getEmitted().size());
+    Assert.assertEquals(1, emitter.getErrors().size());
+    Assert.assertEquals("Couldn't parse log, because the log did not match the Cloudfront format.",
+                        emitter.getErrors().get(0).getErrorMsg());
+  }
+
+  @Test
+  public void testRepeatedUserAgentsAndTimestamps() throws Exception {
+    Transform<StructuredRecord, StructuredRecord> transform =
+      new LogParserTransform(new LogParserTransform.LogParserConfig("CLF", "body", 1));
+    MockEmitter<StructuredRecord> emitter = new MockEmitter<>();
+    String[] userAgents = {"Mozilla/5.0 Gecko/20100115 Firefox/3.6",
+      "Debian APT-HTTP/1.3 (0.8.16~exp12ubuntu10.  17)", "Mozilla/5.0 Gecko/20100115 Firefox/3.6"};
+    for (String userAgent : userAgents) {
+      transform.transform(StructuredRecord.builder(STRING_SCHEMA)
+                            .set("body", "127.0.0.1 - frank [10/Oct/2000:13:55:36 -0700] \"GET /a.gif HTTP/1.0\" " +
+                              "200 2326 \"-\" \"" + userAgent + "\"")
+                            .build(), emitter);
+    }
+    Assert.assertEquals(3, emitter.getEmitted().size());
+    Assert.assertEquals("Firefox", emitter.getEmitted().get(0).get("browser"));
+    Assert.assertEquals("unknown", emitter.getEmitted().get(1).get("browser"));
+    Assert.assertEquals("Firefox", emitter.getEmitted().get(2).get("browser"));
+    for (StructuredRecord output : emitter.getEmitted()) {
+      Assert.assertEquals(971211336000L, output.get("ts"));
+    }
+  }
 }
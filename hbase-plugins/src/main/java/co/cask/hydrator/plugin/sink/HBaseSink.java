@@ -38,30 +38,46 @@ import co.cask.hydrator.plugin.HBaseConfig;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.client.Durability;
+import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Mutation;
 import org.apache.hadoop.hbase.mapreduce.KeyValueSerialization;
 import org.apache.hadoop.hbase.mapreduce.MutationSerialization;
 import org.apache.hadoop.hbase.mapreduce.ResultSerialization;
 import org.apache.hadoop.hbase.mapreduce.TableOutputFormat;
+import org.apache.hadoop.hbase.zookeeper.ZKUtil;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.util.StringUtils;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import javax.annotation.Nullable;
 
 /**
  * Sink to write to HBase tables.
+ *
+ * By default, puts are sent to the region servers through the buffered HBase client. In bulk load mode, the puts
+ * are written to HFiles in a staging directory instead, and the files are loaded into the table when the job
+ * commits, which bypasses the write ahead log and the memstores of the region servers.
  */
 @Plugin(type = BatchSink.PLUGIN_TYPE)
 @Name("HBase")
 @Description("HBase Batch Sink")
 public class HBaseSink extends ReferenceBatchSink<StructuredRecord, NullWritable, Mutation> {
+  private static final String PUT_MODE = "put";
+  private static final String BULK_LOAD_MODE = "bulkload";
 
   private HBaseSinkConfig config;
   private RecordPutTransformer recordPutTransformer;
+  private Durability durability;
 
   public HBaseSink(HBaseSinkConfig config) {
     super(config);
@@ -87,7 +103,13 @@ public class HBaseSink extends ReferenceBatchSink<StructuredRecord, NullWritable
     Configuration conf = job.getConfiguration();
     HBaseConfiguration.addHbaseResources(conf);
 
-    context.addOutput(Output.of(config.referenceName, new HBaseOutputFormatProvider(config, conf)));
+    if (config.isBulkLoad()) {
+      ZKUtil.applyClusterKeyToConf(conf, config.getClusterKey());
+      context.addOutput(Output.of(config.referenceName,
+                                  new BulkLoadOutputFormatProvider(config, conf, config.getBulkLoadPath(conf))));
+    } else {
+      context.addOutput(Output.of(config.referenceName, new HBaseOutputFormatProvider(config, conf)));
+    }
   }
 
   @Override
@@ -95,6 +117,7 @@ public class HBaseSink extends ReferenceBatchSink<StructuredRecord, NullWritable
     super.configurePipeline(pipelineConfigurer);
     Preconditions.checkArgument(!Strings.isNullOrEmpty(config.rowField),
                                 "Row field must be given as a property.");
+    config.validate();
     Schema outputSchema =
       SchemaValidator.validateOutputSchemaAndInputSchemaIfPresent(config.schema,
                                                                   config.rowField, pipelineConfigurer);
@@ -109,16 +132,12 @@ public class HBaseSink extends ReferenceBatchSink<StructuredRecord, NullWritable
     HBaseOutputFormatProvider(HBaseSinkConfig config, Configuration configuration) {
       this.conf = new HashMap<>();
       conf.put(TableOutputFormat.OUTPUT_TABLE, config.tableName);
-      String zkQuorum = !Strings.isNullOrEmpty(config.zkQuorum) ? config.zkQuorum : "localhost";
-      String zkClientPort = !Strings.isNullOrEmpty(config.zkClientPort) ? config.zkClientPort : "2181";
-      String zkNodeParent = !Strings.isNullOrEmpty(config.zkNodeParent) ? config.zkNodeParent : "/hbase";
-      conf.put(TableOutputFormat.QUORUM_ADDRESS, String.format("%s:%s:%s", zkQuorum, zkClientPort, zkNodeParent));
-      String[] serializationClasses = {
-        configuration.get("io.serializations"),
-        MutationSerialization.class.getName(),
-        ResultSerialization.class.getName(),
-        KeyValueSerialization.class.getName() };
-      conf.put("io.serializations", StringUtils.arrayToString(serializationClasses));
+      conf.put(TableOutputFormat.QUORUM_ADDRESS, config.getClusterKey());
+      if (config.writeBufferSize != null) {
+        // read by the HTable created by TableOutputFormat
+        conf.put("hbase.client.write.buffer", String.valueOf(config.writeBufferSize));
+      }
+      conf.put("io.serializations", getSerializations(configuration));
     }
 
     @Override
@@ -132,6 +151,55 @@ public class HBaseSink extends ReferenceBatchSink<StructuredRecord, NullWritable
     }
   }
 
+  /**
+   * Provides the {@link HFileBulkLoadOutputFormat}, with the regions and the column family settings of the table.
+   */
+  private class BulkLoadOutputFormatProvider implements OutputFormatProvider {
+
+    private final Map<String, String> conf;
+
+    BulkLoadOutputFormatProvider(HBaseSinkConfig config, Configuration configuration,
+                                 Path outputPath) throws IOException {
+      this.conf = new HashMap<>();
+      try (HTable table = new HTable(configuration, config.tableName)) {
+        HColumnDescriptor family = table.getTableDescriptor().getFamily(config.columnFamily.getBytes());
+        if (family == null) {
+          throw new IllegalArgumentException(String.format("Column family %s does not exist in table %s.",
+                                                           config.columnFamily, config.tableName));
+        }
+        HFileBulkLoadOutputFormat.setRegionStartKeys(conf, table.getStartKeys());
+        HFileBulkLoadOutputFormat.setFamilyProperties(conf, family);
+      }
+      conf.put(TableOutputFormat.OUTPUT_TABLE, config.tableName);
+      conf.put(TableOutputFormat.QUORUM_ADDRESS, config.getClusterKey());
+      conf.put(FileOutputFormat.OUTDIR, outputPath.toString());
+      // the loader expects only column family directories in the output directory
+      conf.put(FileOutputCommitter.SUCCESSFUL_JOB_OUTPUT_DIR_MARKER, Boolean.FALSE.toString());
+      conf.put(HFileBulkLoadOutputFormat.SORT_BUFFER_SIZE, String.valueOf(
+        config.writeBufferSize == null ? HFileBulkLoadOutputFormat.DEFAULT_SORT_BUFFER_SIZE : config.writeBufferSize));
+      conf.put("io.serializations", getSerializations(configuration));
+    }
+
+    @Override
+    public String getOutputFormatClassName() {
+      return HFileBulkLoadOutputFormat.class.getName();
+    }
+
+    @Override
+    public Map<String, String> getOutputFormatConfiguration() {
+      return conf;
+    }
+  }
+
+  private static String getSerializations(Configuration configuration) {
+    String[] serializationClasses = {
+      configuration.get("io.serializations"),
+      MutationSerialization.class.getName(),
+      ResultSerialization.class.getName(),
+      KeyValueSerialization.class.getName() };
+    return StringUtils.arrayToString(serializationClasses);
+  }
+
   @Override
   public void initialize(BatchRuntimeContext context) throws Exception {
     super.initialize(context);
@@ -143,6 +211,7 @@ public class HBaseSink extends ReferenceBatchSink<StructuredRecord, NullWritable
       outputSchema = Schema.parseJson(schemaString);
     }
     recordPutTransformer = new RecordPutTransformer(config.rowField, outputSchema);
+    durability = config.getDurability();
   }
 
   @Override
@@ -152,6 +221,9 @@ public class HBaseSink extends ReferenceBatchSink<StructuredRecord, NullWritable
     for (Map.Entry<byte[], byte[]> entry : put.getValues().entrySet()) {
       hbasePut.add(config.columnFamily.getBytes(), entry.getKey(), entry.getValue());
     }
+    if (durability != null) {
+      hbasePut.setDurability(durability);
+    }
     emitter.emit(new KeyValue<NullWritable, Mutation>(NullWritable.get(), hbasePut));
   }
 
@@ -163,6 +235,30 @@ public class HBaseSink extends ReferenceBatchSink<StructuredRecord, NullWritable
     @Nullable
     private String zkNodeParent;
 
+    @Description("How to write to the table. 'put' sends puts to the region servers through the buffered HBase " +
+      "client. 'bulkload' writes HFiles to a staging directory and loads them into the table when the job " +
+      "commits. Defaults to 'put'.")
+    @Nullable
+    private String writeMode;
+
+    @Description("Number of bytes buffered in memory by each task before they are written. In put mode, this is " +
+      "the size of the client write buffer, which defaults to the 'hbase.client.write.buffer' setting. In bulk " +
+      "load mode, this is the number of bytes sorted in memory before they are written to HFiles, which defaults " +
+      "to 64 MB.")
+    @Nullable
+    private Long writeBufferSize;
+
+    @Description("Write ahead log durability of the puts in put mode. One of 'USE_DEFAULT', 'SKIP_WAL', " +
+      "'ASYNC_WAL', 'SYNC_WAL' or 'FSYNC_WAL'. Defaults to 'USE_DEFAULT', which uses the setting of the table.")
+    @Nullable
+    private String durability;
+
+    @Description("Directory the HFiles are written to in bulk load mode. A new directory is created in it for " +
+      "every run, and deleted once the files are loaded. Defaults to the Hadoop temporary directory.")
+    @Nullable
+    @Macro
+    private String bulkLoadDirectory;
+
     public HBaseSinkConfig(String tableName, String rowField, @Nullable String schema) {
       super(String.format("HBase_%s", tableName), tableName, rowField, schema);
     }
@@ -170,5 +266,61 @@ public class HBaseSink extends ReferenceBatchSink<StructuredRecord, NullWritable
     public HBaseSinkConfig(String referenceName, String tableName, String rowField, @Nullable String schema) {
       super(referenceName, tableName, rowField, schema);
     }
+
+    private void validate() {
+      String mode = getWriteMode();
+      if (!PUT_MODE.equals(mode) && !BULK_LOAD_MODE.equals(mode)) {
+        throw new IllegalArgumentException(String.format("Invalid write mode '%s'. It must be '%s' or '%s'.",
+                                                         writeMode, PUT_MODE, BULK_LOAD_MODE));
+      }
+      if (writeBufferSize != null && writeBufferSize < 1) {
+        throw new IllegalArgumentException(
+          String.format("Invalid write buffer size %d. It must be at least 1.", writeBufferSize));
+      }
+      getDurability();
+    }
+
+    private String getWriteMode() {
+      return Strings.isNullOrEmpty(writeMode) ? PUT_MODE : writeMode.toLowerCase();
+    }
+
+    private boolean isBulkLoad() {
+      return BULK_LOAD_MODE.equals(getWriteMode());
+    }
+
+    /**
+     * @return the durability to set on puts, or null to leave the default of the client
+     */
+    @Nullable
+    private Durability getDurability() {
+      if (Strings.isNullOrEmpty(durability)) {
+        return null;
+      }
+      try {
+        Durability value = Durability.valueOf(durability.toUpperCase());
+        return value == Durability.USE_DEFAULT ? null : value;
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(String.format(
+          "Invalid durability '%s'. It must be one of 'USE_DEFAULT', 'SKIP_WAL', 'ASYNC_WAL', 'SYNC_WAL' or " +
+            "'FSYNC_WAL'.", durability));
+      }
+    }
+
+    /**
+     * @return the ZooKeeper quorum, client port and parent node of HBase, separated by ':'
+     */
+    private String getClusterKey() {
+      String zkQuorum = !Strings.isNullOrEmpty(this.zkQuorum) ? this.zkQuorum : "localhost";
+      String zkClientPort = !Strings.isNullOrEmpty(this.zkClientPort) ? this.zkClientPort : "2181";
+      String zkNodeParent = !Strings.isNullOrEmpty(this.zkNodeParent) ? this.zkNodeParent : "/hbase";
+      return String.format("%s:%s:%s", zkQuorum, zkClientPort, zkNodeParent);
+    }
+
+    private Path getBulkLoadPath(Configuration conf) {
+      String directory = Strings.isNullOrEmpty(bulkLoadDirectory) ? conf.get("hadoop.tmp.dir") : bulkLoadDirectory;
+      // ':' separates the namespace from the table name, but is not allowed in paths
+      String table = tableName.replace(':', '_');
+      return new Path(directory, String.format("hbase-bulkload-%s-%s", table, UUID.randomUUID()));
+    }
   }
 }
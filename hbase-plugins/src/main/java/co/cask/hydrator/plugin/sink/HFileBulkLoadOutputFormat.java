@@ -0,0 +1,283 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.sink;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Throwables;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.KeyValueUtil;
+import org.apache.hadoop.hbase.client.HTable;
+import org.apache.hadoop.hbase.client.Mutation;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.io.encoding.DataBlockEncoding;
+import org.apache.hadoop.hbase.mapreduce.HFileOutputFormat2;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
+import org.apache.hadoop.hbase.mapreduce.TableOutputFormat;
+import org.apache.hadoop.hbase.util.Base64;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.hbase.zookeeper.ZKUtil;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobStatus;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes {@link Put}s to HFiles that can be bulk loaded into a table with
+ * {@link LoadIncrementalHFiles}.
+ *
+ * HFiles must be sorted, but the records of a pipeline reach the sink in any order and no reducer can be added to
+ * group them by region. Each task therefore buffers the cells of the puts it receives in memory, sorts them once the
+ * buffer is full or the task ends, and writes them through {@link HFileOutputFormat2}, starting new files at the
+ * region boundaries given in the configuration. Each region gets at most one file per family for every buffer
+ * written by every task, so the loader never has to split files, and the files are merged by the next compactions.
+ *
+ * The files are loaded into the table given by {@link TableOutputFormat#OUTPUT_TABLE}, on the cluster given by
+ * {@link TableOutputFormat#QUORUM_ADDRESS}, when the job is committed, so that a failed load fails the job.
+ */
+public class HFileBulkLoadOutputFormat extends FileOutputFormat<NullWritable, Mutation> {
+  private static final Logger LOG = LoggerFactory.getLogger(HFileBulkLoadOutputFormat.class);
+
+  public static final String REGION_START_KEYS = "hbase.sink.bulkload.region.start.keys";
+  public static final String SORT_BUFFER_SIZE = "hbase.sink.bulkload.sort.buffer.bytes";
+  public static final long DEFAULT_SORT_BUFFER_SIZE = 64 * 1024 * 1024;
+
+  // the number of files per region depends on the number of tasks, and they are merged by compactions
+  private static final int MAX_BULK_LOAD_FILES_PER_FAMILY = 10000;
+
+  // read by HFileOutputFormat2, which sets them from the table in configureIncrementalLoad()
+  private static final String COMPRESSION_FAMILIES = "hbase.hfileoutputformat.families.compression";
+  private static final String BLOOM_TYPE_FAMILIES = "hbase.hfileoutputformat.families.bloomtype";
+  private static final String BLOCK_SIZE_FAMILIES = "hbase.mapreduce.hfileoutputformat.blocksize";
+  private static final String DATABLOCK_ENCODING_FAMILIES =
+    "hbase.mapreduce.hfileoutputformat.families.datablock.encoding";
+
+  private BulkLoadOutputCommitter committer;
+
+  /**
+   * Adds the region boundaries of a table to an output format configuration.
+   *
+   * @param conf the output format configuration
+   * @param startKeys the start keys of the regions of the table, in order
+   */
+  public static void setRegionStartKeys(Map<String, String> conf, byte[][] startKeys) {
+    List<String> encoded = new ArrayList<>(startKeys.length);
+    for (byte[] startKey : startKeys) {
+      encoded.add(Base64.encodeBytes(startKey));
+    }
+    conf.put(REGION_START_KEYS, Joiner.on(',').join(encoded));
+  }
+
+  /**
+   * Adds the compression, bloom filter, block size and block encoding of a column family to an output format
+   * configuration, so that the HFiles are written the same way as the files of the table.
+   */
+  public static void setFamilyProperties(Map<String, String> conf, HColumnDescriptor family) {
+    DataBlockEncoding encoding = family.getDataBlockEncoding();
+    conf.put(COMPRESSION_FAMILIES, familyValue(family, family.getCompression().getName()));
+    conf.put(BLOOM_TYPE_FAMILIES, familyValue(family, family.getBloomFilterType().toString()));
+    conf.put(BLOCK_SIZE_FAMILIES, familyValue(family, String.valueOf(family.getBlocksize())));
+    conf.put(DATABLOCK_ENCODING_FAMILIES,
+             familyValue(family, (encoding == null ? DataBlockEncoding.NONE : encoding).toString()));
+  }
+
+  private static String familyValue(HColumnDescriptor family, String value) {
+    try {
+      return URLEncoder.encode(family.getNameAsString(), "UTF-8") + "=" + URLEncoder.encode(value, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      // cannot happen, UTF-8 is always supported
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static byte[][] getRegionStartKeys(Configuration conf) {
+    String startKeys = conf.get(REGION_START_KEYS, "");
+    if (startKeys.isEmpty()) {
+      return new byte[0][];
+    }
+    List<byte[]> decoded = new ArrayList<>();
+    for (String startKey : Splitter.on(',').split(startKeys)) {
+      decoded.add(Base64.decode(startKey));
+    }
+    return decoded.toArray(new byte[decoded.size()][]);
+  }
+
+  @Override
+  public RecordWriter<NullWritable, Mutation> getRecordWriter(TaskAttemptContext context) {
+    Configuration conf = context.getConfiguration();
+    return new SortingRecordWriter(context, getRegionStartKeys(conf),
+                                   conf.getLong(SORT_BUFFER_SIZE, DEFAULT_SORT_BUFFER_SIZE));
+  }
+
+  @Override
+  public synchronized OutputCommitter getOutputCommitter(TaskAttemptContext context) throws IOException {
+    if (committer == null) {
+      committer = new BulkLoadOutputCommitter(getOutputPath(context), context);
+    }
+    return committer;
+  }
+
+  /**
+   * Commits the HFiles of the tasks to the output directory like the {@link FileOutputCommitter}, then loads them
+   * into the table and deletes the directory. If the files cannot be loaded, the job fails and the files that were
+   * not loaded are left in the directory, so that they can be loaded by hand.
+   */
+  private static final class BulkLoadOutputCommitter extends FileOutputCommitter {
+    private final Path outputPath;
+
+    private BulkLoadOutputCommitter(Path outputPath, TaskAttemptContext context) throws IOException {
+      super(outputPath, context);
+      this.outputPath = outputPath;
+    }
+
+    @Override
+    public void commitJob(JobContext context) throws IOException {
+      super.commitJob(context);
+      Configuration conf = HBaseConfiguration.create(context.getConfiguration());
+      String clusterKey = conf.get(TableOutputFormat.QUORUM_ADDRESS);
+      if (clusterKey != null) {
+        ZKUtil.applyClusterKeyToConf(conf, clusterKey);
+      }
+      conf.setInt(LoadIncrementalHFiles.MAX_FILES_PER_REGION_PER_FAMILY, MAX_BULK_LOAD_FILES_PER_FAMILY);
+      String tableName = conf.get(TableOutputFormat.OUTPUT_TABLE);
+      try (HTable table = new HTable(conf, tableName)) {
+        new LoadIncrementalHFiles(conf).doBulkLoad(outputPath, table);
+      } catch (Exception e) {
+        Throwables.propagateIfInstanceOf(e, IOException.class);
+        throw new IOException(String.format("Failed to bulk load the HFiles in %s into table %s.",
+                                            outputPath, tableName), e);
+      }
+      deleteOutputPath(conf);
+    }
+
+    @Override
+    public void abortJob(JobContext context, JobStatus.State state) throws IOException {
+      super.abortJob(context, state);
+      deleteOutputPath(context.getConfiguration());
+    }
+
+    private void deleteOutputPath(Configuration conf) {
+      try {
+        outputPath.getFileSystem(conf).delete(outputPath, true);
+      } catch (IOException e) {
+        LOG.warn("Failed to delete the bulk load directory {}.", outputPath, e);
+      }
+    }
+  }
+
+  /**
+   * Buffers cells in memory and writes them sorted, in one set of HFiles per region.
+   */
+  private static final class SortingRecordWriter extends RecordWriter<NullWritable, Mutation> {
+    private final TaskAttemptContext context;
+    private final HFileOutputFormat2 hfileOutputFormat;
+    private final byte[][] startKeys;
+    private final long bufferSize;
+    private final List<KeyValue> buffer;
+    private long bufferedBytes;
+
+    private SortingRecordWriter(TaskAttemptContext context, byte[][] startKeys, long bufferSize) {
+      this.context = context;
+      this.hfileOutputFormat = new HFileOutputFormat2();
+      this.startKeys = startKeys;
+      this.bufferSize = bufferSize;
+      this.buffer = new ArrayList<>();
+    }
+
+    @Override
+    public void write(NullWritable key, Mutation mutation) throws IOException, InterruptedException {
+      if (!(mutation instanceof Put)) {
+        throw new IOException(String.format("Only puts can be bulk loaded, but got a %s.",
+                                            mutation.getClass().getSimpleName()));
+      }
+      for (List<Cell> cells : mutation.getFamilyCellMap().values()) {
+        for (Cell cell : cells) {
+          KeyValue keyValue = KeyValueUtil.ensureKeyValue(cell);
+          buffer.add(keyValue);
+          bufferedBytes += keyValue.heapSize();
+        }
+      }
+      if (bufferedBytes >= bufferSize) {
+        flush();
+      }
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+      flush();
+    }
+
+    private void flush() throws IOException, InterruptedException {
+      if (buffer.isEmpty()) {
+        return;
+      }
+      Collections.sort(buffer, KeyValue.COMPARATOR);
+      RecordWriter<ImmutableBytesWritable, Cell> writer = null;
+      int region = 0;
+      try {
+        for (KeyValue keyValue : buffer) {
+          int keyRegion = region;
+          while (keyRegion + 1 < startKeys.length && compareRow(keyValue, startKeys[keyRegion + 1]) >= 0) {
+            keyRegion++;
+          }
+          if (writer == null || keyRegion != region) {
+            if (writer != null) {
+              writer.close(context);
+            }
+            // every writer creates new files in the task output directory
+            writer = hfileOutputFormat.getRecordWriter(context);
+            region = keyRegion;
+          }
+          writer.write(new ImmutableBytesWritable(keyValue.getRowArray(), keyValue.getRowOffset(),
+                                                  keyValue.getRowLength()), keyValue);
+        }
+      } finally {
+        if (writer != null) {
+          writer.close(context);
+        }
+      }
+      buffer.clear();
+      bufferedBytes = 0;
+    }
+
+    private static int compareRow(KeyValue keyValue, byte[] row) {
+      return Bytes.compareTo(keyValue.getRowArray(), keyValue.getRowOffset(), keyValue.getRowLength(),
+                             row, 0, row.length);
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2016 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,13 +17,13 @@
 package co.cask.hydrator.plugin.source;
 
 import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
 import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.annotation.Plugin;
 import co.cask.cdap.api.data.batch.Input;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.dataset.lib.KeyValue;
-import co.cask.cdap.api.dataset.table.Row;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.PipelineConfigurer;
 import co.cask.cdap.etl.api.batch.BatchRuntimeContext;
@@ -34,23 +34,41 @@ import co.cask.hydrator.plugin.HBaseConfig;
 import com.google.common.base.Strings;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.CompareFilter;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.hbase.filter.FirstKeyOnlyFilter;
+import org.apache.hadoop.hbase.filter.PrefixFilter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.mapreduce.KeyValueSerialization;
 import org.apache.hadoop.hbase.mapreduce.MutationSerialization;
 import org.apache.hadoop.hbase.mapreduce.ResultSerialization;
 import org.apache.hadoop.hbase.mapreduce.TableInputFormat;
+import org.apache.hadoop.hbase.mapreduce.TableMapReduceUtil;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
 
 /**
+ * Batch source that reads a column family of an HBase table.
  *
+ * The scan only reads the columns of the fields of the schema, within the configured row range and time range, and
+ * the row prefix and value filters are applied by the region servers. Large regions can be read by several tasks.
  */
 @Plugin(type = "batchsource")
 @Name("HBase")
 @Description("Read from an HBase table in batch")
 public class HBaseSource extends ReferenceBatchSource<ImmutableBytesWritable, Result, StructuredRecord> {
   private RowRecordTransformer rowRecordTransformer;
-  private HBaseConfig config;
+  private HBaseSourceConfig config;
 
-  public HBaseSource(HBaseConfig config) {
+  public HBaseSource(HBaseSourceConfig config) {
     super(config);
     this.config = config;
   }
@@ -62,7 +80,10 @@ public class HBaseSource extends ReferenceBatchSource<ImmutableBytesWritable, Re
     conf.clear();
 
     conf.set(TableInputFormat.INPUT_TABLE, config.tableName);
-    conf.set(TableInputFormat.SCAN_COLUMN_FAMILY, config.columnFamily);
+    conf.set(TableInputFormat.SCAN, TableMapReduceUtil.convertScanToString(config.getScan()));
+    if (config.maxSplitSize != null) {
+      conf.setLong(RegionSplitTableInputFormat.MAX_SPLIT_SIZE, config.maxSplitSize);
+    }
     String zkQuorum = !Strings.isNullOrEmpty(config.zkQuorum) ? config.zkQuorum : "localhost";
     String zkClientPort = !Strings.isNullOrEmpty(config.zkClientPort) ? config.zkClientPort : "2181";
     conf.set("hbase.zookeeper.quorum", zkQuorum);
@@ -70,12 +91,14 @@ public class HBaseSource extends ReferenceBatchSource<ImmutableBytesWritable, Re
     conf.setStrings(ioSerializations,
                     MutationSerialization.class.getName(), ResultSerialization.class.getName(),
                     KeyValueSerialization.class.getName());
-    context.setInput(Input.of(config.referenceName, new SourceInputFormatProvider(TableInputFormat.class, conf)));
+    context.setInput(Input.of(config.referenceName,
+                              new SourceInputFormatProvider(RegionSplitTableInputFormat.class, conf)));
   }
 
   @Override
   public void configurePipeline(PipelineConfigurer pipelineConfigurer) {
     super.configurePipeline(pipelineConfigurer);
+    config.validate();
     try {
       pipelineConfigurer.getStageConfigurer().setOutputSchema(Schema.parseJson(config.schema));
     } catch (Exception e) {
@@ -86,16 +109,209 @@ public class HBaseSource extends ReferenceBatchSource<ImmutableBytesWritable, Re
   @Override
   public void initialize(BatchRuntimeContext context) throws Exception {
     super.initialize(context);
-    Schema schema = Schema.parseJson(config.schema);
-    rowRecordTransformer = new RowRecordTransformer(schema, config.rowField);
+    rowRecordTransformer = config.getRowRecordTransformer();
   }
 
   @Override
   public void transform(KeyValue<ImmutableBytesWritable, Result> input, Emitter<StructuredRecord> emitter)
     throws Exception {
-    Row cdapRow = new co.cask.cdap.api.dataset.table.Result(
-      input.getValue().getRow(), input.getValue().getFamilyMap(config.columnFamily.getBytes()));
-    StructuredRecord record = rowRecordTransformer.toRecord(cdapRow);
-    emitter.emit(record);
+    emitter.emit(rowRecordTransformer.toRecord(input.getValue()));
+  }
+
+  /**
+   * Config for the HBase source.
+   */
+  public static class HBaseSourceConfig extends HBaseConfig {
+    @Description("Number of rows fetched from the region server in each call of the scanner. Larger values make " +
+      "fewer calls, but use more memory in the task and the region server. Defaults to the " +
+      "'hbase.client.scanner.caching' setting.")
+    @Nullable
+    private Integer scanCaching;
+
+    @Description("First row to read, inclusive. Non printable bytes can be given as '\\xNN'. " +
+      "Defaults to the first row of the table.")
+    @Nullable
+    @Macro
+    private String startRow;
+
+    @Description("Row to stop reading at, exclusive. Non printable bytes can be given as '\\xNN'. " +
+      "Defaults to the end of the table.")
+    @Nullable
+    @Macro
+    private String stopRow;
+
+    @Description("Only read the rows whose key starts with this prefix. Non printable bytes can be given as " +
+      "'\\xNN'. If the start row or the stop row is not given, the scan is limited to the rows of the prefix.")
+    @Nullable
+    @Macro
+    private String rowPrefix;
+
+    @Description("Only read the cells written at or after this timestamp, in milliseconds since the epoch.")
+    @Nullable
+    @Macro
+    private Long minTimestamp;
+
+    @Description("Only read the cells written before this timestamp, in milliseconds since the epoch.")
+    @Nullable
+    @Macro
+    private Long maxTimestamp;
+
+    @Description("Only read the rows where a field has a given value, as 'field=value'. The field must be a " +
+      "column of the schema, and the value is converted to the type of the field. Rows without the column are " +
+      "skipped.")
+    @Nullable
+    @Macro
+    private String valueFilter;
+
+    @Description("Maximum size in bytes of the part of a region read by one task. Regions larger than this are " +
+      "divided into row ranges of the same width, so this works best when row keys are evenly distributed, as " +
+      "they are when they are hashed or salted. By default, each region is read by one task.")
+    @Nullable
+    private Long maxSplitSize;
+
+    public HBaseSourceConfig(String referenceName, String tableName, String rowField, @Nullable String schema) {
+      super(referenceName, tableName, rowField, schema);
+    }
+
+    private void validate() {
+      if (scanCaching != null && scanCaching < 1) {
+        throw new IllegalArgumentException(
+          String.format("Invalid scan caching %d. It must be at least 1.", scanCaching));
+      }
+      if (maxSplitSize != null && maxSplitSize < 1) {
+        throw new IllegalArgumentException(
+          String.format("Invalid maximum split size %d. It must be at least 1.", maxSplitSize));
+      }
+      if (minTimestamp != null && maxTimestamp != null && minTimestamp >= maxTimestamp) {
+        throw new IllegalArgumentException(String.format(
+          "The minimum timestamp %d must be smaller than the maximum timestamp %d.", minTimestamp, maxTimestamp));
+      }
+      if (!containsMacro("schema") && !containsMacro("valueFilter") && !Strings.isNullOrEmpty(valueFilter)) {
+        try {
+          getValueFilter(Schema.parseJson(schema));
+        } catch (IOException e) {
+          throw new IllegalArgumentException("Invalid output schema: " + e.getMessage(), e);
+        }
+      }
+    }
+
+    private RowRecordTransformer getRowRecordTransformer() throws IOException {
+      return new RowRecordTransformer(Schema.parseJson(schema), rowField, Bytes.toBytes(columnFamily));
+    }
+
+    /**
+     * @return the scan of the columns of the schema, with the row range, time range and filters of the config
+     */
+    private Scan getScan() throws IOException {
+      validate();
+      byte[] family = Bytes.toBytes(columnFamily);
+      byte[][] qualifiers = getRowRecordTransformer().getQualifiers();
+      List<Filter> filters = new ArrayList<>();
+      Scan scan = new Scan();
+      if (qualifiers.length == 0) {
+        // only the row key is read
+        scan.addFamily(family);
+        filters.add(new FirstKeyOnlyFilter());
+      }
+      for (byte[] qualifier : qualifiers) {
+        scan.addColumn(family, qualifier);
+      }
+      // a full scan would evict the rows that are read often from the block cache
+      scan.setCacheBlocks(false);
+      if (scanCaching != null) {
+        scan.setCaching(scanCaching);
+      }
+      if (!Strings.isNullOrEmpty(startRow)) {
+        scan.setStartRow(Bytes.toBytesBinary(startRow));
+      }
+      if (!Strings.isNullOrEmpty(stopRow)) {
+        scan.setStopRow(Bytes.toBytesBinary(stopRow));
+      }
+      if (!Strings.isNullOrEmpty(rowPrefix)) {
+        byte[] prefix = Bytes.toBytesBinary(rowPrefix);
+        filters.add(new PrefixFilter(prefix));
+        if (Strings.isNullOrEmpty(startRow)) {
+          scan.setStartRow(prefix);
+        }
+        if (Strings.isNullOrEmpty(stopRow)) {
+          scan.setStopRow(getPrefixStopRow(prefix));
+        }
+      }
+      if (minTimestamp != null || maxTimestamp != null) {
+        scan.setTimeRange(minTimestamp == null ? 0L : minTimestamp,
+                          maxTimestamp == null ? Long.MAX_VALUE : maxTimestamp);
+      }
+      if (!Strings.isNullOrEmpty(valueFilter)) {
+        filters.add(getValueFilter(Schema.parseJson(schema)));
+      }
+      if (filters.size() == 1) {
+        scan.setFilter(filters.get(0));
+      } else if (filters.size() > 1) {
+        scan.setFilter(new FilterList(FilterList.Operator.MUST_PASS_ALL, filters));
+      }
+      return scan;
+    }
+
+    private Filter getValueFilter(Schema schema) {
+      int index = valueFilter.indexOf('=');
+      if (index < 1) {
+        throw new IllegalArgumentException(
+          String.format("Invalid value filter '%s'. It must be given as 'field=value'.", valueFilter));
+      }
+      String fieldName = valueFilter.substring(0, index).trim();
+      String value = valueFilter.substring(index + 1);
+      Schema.Field field = schema.getField(fieldName);
+      if (field == null || fieldName.equals(rowField)) {
+        throw new IllegalArgumentException(String.format(
+          "Invalid value filter '%s'. Field '%s' must be a column of the schema.", valueFilter, fieldName));
+      }
+      SingleColumnValueFilter filter = new SingleColumnValueFilter(
+        Bytes.toBytes(columnFamily), Bytes.toBytes(fieldName), CompareFilter.CompareOp.EQUAL, toBytes(field, value));
+      filter.setFilterIfMissing(true);
+      filter.setLatestVersionOnly(true);
+      return filter;
+    }
+
+    /**
+     * Converts a value to bytes, in the same way as the values of the field are written by the HBase sink.
+     */
+    private static byte[] toBytes(Schema.Field field, String value) {
+      Schema fieldSchema = field.getSchema().isNullable() ? field.getSchema().getNonNullable() : field.getSchema();
+      try {
+        switch (fieldSchema.getType()) {
+          case BOOLEAN:
+            return Bytes.toBytes(Boolean.parseBoolean(value));
+          case INT:
+            return Bytes.toBytes(Integer.parseInt(value));
+          case LONG:
+            return Bytes.toBytes(Long.parseLong(value));
+          case FLOAT:
+            return Bytes.toBytes(Float.parseFloat(value));
+          case DOUBLE:
+            return Bytes.toBytes(Double.parseDouble(value));
+          case BYTES:
+            return Bytes.toBytesBinary(value);
+          default:
+            return Bytes.toBytes(value);
+        }
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(String.format("Invalid value '%s' for field '%s' of type %s.",
+                                                         value, field.getName(), fieldSchema.getType()), e);
+      }
+    }
+
+    /**
+     * @return the first row after all the rows that start with the prefix, or an empty row for the end of the table
+     */
+    private static byte[] getPrefixStopRow(byte[] prefix) {
+      for (int i = prefix.length - 1; i >= 0; i--) {
+        if (prefix[i] != (byte) 0xff) {
+          byte[] stopRow = Arrays.copyOf(prefix, i + 1);
+          stopRow[i]++;
+          return stopRow;
+        }
+      }
+      return new byte[0];
+    }
   }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.source;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.hadoop.hbase.mapreduce.TableInputFormat;
+import org.apache.hadoop.hbase.mapreduce.TableSplit;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * {@link TableInputFormat} that splits the row range of large regions into several input splits, so that a region
+ * is not read by a single task.
+ *
+ * {@link TableInputFormat} creates one split per region, whose length is the size of the region on disk. Regions
+ * larger than the maximum split size are divided into row ranges of the same width, assuming that row keys are
+ * evenly distributed in the region, as they are when they are hashed or salted.
+ */
+public class RegionSplitTableInputFormat extends TableInputFormat {
+  public static final String MAX_SPLIT_SIZE = "hbase.source.max.split.size";
+
+  @Override
+  public List<InputSplit> getSplits(JobContext context) throws IOException {
+    List<InputSplit> splits = super.getSplits(context);
+    long maxSplitSize = context.getConfiguration().getLong(MAX_SPLIT_SIZE, 0L);
+    if (maxSplitSize <= 0) {
+      return splits;
+    }
+    List<InputSplit> result = new ArrayList<>(splits.size());
+    for (InputSplit split : splits) {
+      TableSplit tableSplit = (TableSplit) split;
+      long length = tableSplit.getLength();
+      // the length is 0 if the size of the region is unknown
+      long count = (length + maxSplitSize - 1) / maxSplitSize;
+      byte[][] keys = count > 1 ?
+        splitRange(tableSplit.getStartRow(), tableSplit.getEndRow(), (int) Math.min(count, Integer.MAX_VALUE)) : null;
+      if (keys == null) {
+        result.add(split);
+        continue;
+      }
+      for (int i = 0; i < keys.length - 1; i++) {
+        result.add(new TableSplit(tableSplit.getTable(), keys[i], keys[i + 1], tableSplit.getRegionLocation(),
+                                  length / (keys.length - 1)));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Divides a row range into row ranges of the same width.
+   *
+   * @param start the first row of the range, or an empty array for the start of the table
+   * @param end the row after the range, or an empty array for the end of the table
+   * @param count the number of ranges
+   * @return the count + 1 boundaries of the ranges, starting with the start row and ending with the end row,
+   *         or null if the range is too small to be divided
+   */
+  @VisibleForTesting
+  @Nullable
+  static byte[][] splitRange(byte[] start, byte[] end, int count) {
+    // one more byte than the keys, so that short keys can be divided as well
+    int length = Math.max(start.length, end.length) + 1;
+    BigInteger low = new BigInteger(1, Arrays.copyOf(start, length));
+    BigInteger high = end.length == 0 ?
+      BigInteger.ONE.shiftLeft(length * 8) : new BigInteger(1, Arrays.copyOf(end, length));
+    BigInteger width = high.subtract(low);
+    if (width.compareTo(BigInteger.valueOf(count)) < 0) {
+      return null;
+    }
+    byte[][] keys = new byte[count + 1][];
+    keys[0] = start;
+    keys[count] = end;
+    for (int i = 1; i < count; i++) {
+      BigInteger key = low.add(width.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(count)));
+      keys[i] = toBytes(key, length);
+    }
+    return keys;
+  }
+
+  private static byte[] toBytes(BigInteger value, int length) {
+    byte[] bytes = value.toByteArray();
+    byte[] key = new byte[length];
+    // toByteArray() may add a sign byte or omit leading zeros
+    int copied = Math.min(bytes.length, length);
+    System.arraycopy(bytes, bytes.length - copied, key, length - copied, copied);
+    return key;
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -19,19 +19,34 @@ package co.cask.hydrator.plugin.source;
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
-import co.cask.cdap.api.dataset.table.Row;
 import com.google.common.base.Preconditions;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.client.Result;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
 /**
- * Transforms Rows into Records.
+ * Transforms the cells of a column family in HBase {@link Result}s into Records.
+ *
+ * The column qualifiers of the fields are sorted once, in the same order as the cells of a result, so that the
+ * cells of a row are matched to their fields in a single pass, without copying qualifiers or building maps.
  */
 public class RowRecordTransformer {
   private final Schema schema;
   private final Schema.Field rowField;
+  private final byte[] family;
+  // qualifiers of the fields other than the row field, sorted, and the index of the field of each qualifier
+  private final byte[][] qualifiers;
+  private final int[] slots;
 
-  public RowRecordTransformer(Schema schema, String rowFieldName) {
+  public RowRecordTransformer(Schema schema, String rowFieldName, byte[] family) {
     validateSchema(schema);
     this.schema = schema;
+    this.family = family;
 
     if (rowFieldName != null) {
       rowField = schema.getField(rowFieldName);
@@ -41,24 +56,75 @@ public class RowRecordTransformer {
     } else {
       rowField = null;
     }
-  }
 
-  public StructuredRecord toRecord(Row row) {
-    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-    if (rowField != null) {
-      setField(builder, rowField, row.getRow());
+    final List<Schema.Field> fields = schema.getFields();
+    List<Integer> columns = new ArrayList<>();
+    for (int i = 0; i < fields.size(); i++) {
+      if (rowField == null || !fields.get(i).getName().equals(rowField.getName())) {
+        columns.add(i);
+      }
+    }
+    Collections.sort(columns, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer first, Integer second) {
+        return Bytes.compareTo(Bytes.toBytes(fields.get(first).getName()),
+                               Bytes.toBytes(fields.get(second).getName()));
+      }
+    });
+    qualifiers = new byte[columns.size()][];
+    slots = new int[columns.size()];
+    for (int i = 0; i < columns.size(); i++) {
+      slots[i] = columns.get(i);
+      qualifiers[i] = Bytes.toBytes(fields.get(slots[i]).getName());
     }
+  }
 
-    for (Schema.Field field : schema.getFields()) {
-      if (rowField != null && field.getName().equals(rowField.getName())) {
+  /**
+   * @return the column qualifiers read by this transformer, that is the names of the fields other than the row field
+   */
+  public byte[][] getQualifiers() {
+    return qualifiers.clone();
+  }
+
+  public StructuredRecord toRecord(Result result) {
+    List<Schema.Field> fields = schema.getFields();
+    byte[][] values = new byte[fields.size()][];
+    // cells are sorted by family and then by qualifier, like the qualifiers of the fields
+    int column = 0;
+    for (Cell cell : result.rawCells()) {
+      if (!CellUtil.matchingFamily(cell, family)) {
         continue;
       }
-      setField(builder, field, row.get(field.getName()));
+      int comparison = -1;
+      while (column < qualifiers.length && (comparison = compareQualifier(qualifiers[column], cell)) < 0) {
+        column++;
+      }
+      if (column == qualifiers.length) {
+        break;
+      }
+      // if the scan returns several versions of a cell, the latest comes first
+      if (comparison == 0 && values[slots[column]] == null) {
+        values[slots[column]] = CellUtil.cloneValue(cell);
+      }
     }
 
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (int i = 0; i < fields.size(); i++) {
+      Schema.Field field = fields.get(i);
+      if (rowField != null && field.getName().equals(rowField.getName())) {
+        setField(builder, field, result.getRow());
+      } else {
+        setField(builder, field, values[i]);
+      }
+    }
     return builder.build();
   }
 
+  private static int compareQualifier(byte[] qualifier, Cell cell) {
+    return Bytes.compareTo(qualifier, 0, qualifier.length,
+                           cell.getQualifierArray(), cell.getQualifierOffset(), cell.getQualifierLength());
+  }
+
   // schema must be a record and must contain only simple types
   private void validateSchema(Schema schema) {
     Preconditions.checkArgument(schema.getType() == Schema.Type.RECORD, "Schema must be a record.");
@@ -46,7 +46,10 @@ import co.cask.hydrator.plugin.sink.HBaseSink;
 import co.cask.hydrator.plugin.source.HBaseSource;
 import com.google.common.collect.ImmutableList;
 import org.apache.hadoop.hbase.HBaseTestingUtility;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
 import org.apache.hadoop.hbase.MiniHBaseCluster;
+import org.apache.hadoop.hbase.TableName;
 import org.apache.hadoop.hbase.client.Get;
 import org.apache.hadoop.hbase.client.HBaseAdmin;
 import org.apache.hadoop.hbase.client.HTable;
@@ -65,6 +68,7 @@ import org.junit.ClassRule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -202,6 +206,72 @@ public class HBaseTest extends HydratorTestBase {
     Assert.assertEquals("212.36", Bytes.toString(orclData.get("col2".getBytes())));
   }
 
+  @Test
+  public void testHBaseSinkBulkLoad() throws Exception {
+    String tableName = "bulkload";
+    // two regions, so that the records of the task are written to one file per region
+    HTableDescriptor descriptor = new HTableDescriptor(TableName.valueOf(tableName));
+    descriptor.addFamily(new HColumnDescriptor(HBASE_FAMILY_COLUMN));
+    hBaseAdmin.createTable(descriptor, new byte[][] { Bytes.toBytes("M") });
+
+    String inputDatasetName = "input-hbasesinkbulkloadtest";
+    ETLStage source = new ETLStage("source", MockSource.getPlugin(inputDatasetName));
+
+    Map<String, String> hBaseProps = new HashMap<>();
+    hBaseProps.put("tableName", tableName);
+    hBaseProps.put("columnFamily", HBASE_FAMILY_COLUMN);
+    hBaseProps.put("zkClientPort", Integer.toString(testUtil.getZkCluster().getClientPort()));
+    hBaseProps.put("schema", BODY_SCHEMA.toString());
+    hBaseProps.put("zkNodeParent", testUtil.getConfiguration().get("zookeeper.znode.parent"));
+    hBaseProps.put("rowField", "ticker");
+    hBaseProps.put("writeMode", "bulkload");
+    hBaseProps.put("bulkLoadDirectory", temporaryFolder.newFolder().toURI().toString());
+    hBaseProps.put(Constants.Reference.REFERENCE_NAME, "HBaseSinkBulkLoadTest");
+    ETLStage sink = new ETLStage("HBase", new ETLPlugin("HBase", BatchSink.PLUGIN_TYPE, hBaseProps, null));
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder("* * * * *")
+      .addStage(source)
+      .addStage(sink)
+      .addConnection(source.getName(), sink.getName())
+      .build();
+
+    AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(BATCH_ARTIFACT, etlConfig);
+    ApplicationId appId = NamespaceId.DEFAULT.app("HBaseSinkBulkLoadTest");
+    ApplicationManager appManager = deployApplication(appId, appRequest);
+
+    DataSetManager<Table> inputManager = getDataset(inputDatasetName);
+    List<StructuredRecord> input = ImmutableList.of(
+      StructuredRecord.builder(BODY_SCHEMA).set("ticker", "ORCL").set("col1", "13").set("col2", "212.36").build(),
+      StructuredRecord.builder(BODY_SCHEMA).set("ticker", "AAPL").set("col1", "10").set("col2", "500.32").build(),
+      StructuredRecord.builder(BODY_SCHEMA).set("ticker", "MSFT").set("col1", "20").set("col2", "62.1").build(),
+      StructuredRecord.builder(BODY_SCHEMA).set("ticker", "GOOG").set("col1", "5").set("col2", "829.53").build()
+    );
+    MockSource.writeInput(inputManager, input);
+
+    WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
+    workflowManager.start();
+    workflowManager.waitForRuns(ProgramRunStatus.COMPLETED, 1, 5, TimeUnit.MINUTES);
+
+    try (HTable bulkLoadTable = new HTable(testUtil.getConfiguration(), tableName)) {
+      ResultScanner resultScanner = bulkLoadTable.getScanner(HBASE_FAMILY_COLUMN.getBytes());
+      List<String> rows = new ArrayList<>();
+      Result result;
+      while ((result = resultScanner.next()) != null) {
+        rows.add(Bytes.toString(result.getRow()));
+      }
+      resultScanner.close();
+      Assert.assertEquals(ImmutableList.of("AAPL", "GOOG", "MSFT", "ORCL"), rows);
+
+      Map<byte[], byte[]> msftData = bulkLoadTable.get(new Get("MSFT".getBytes()))
+        .getFamilyMap(HBASE_FAMILY_COLUMN.getBytes());
+      Assert.assertEquals(2, msftData.size());
+      Assert.assertEquals("20", Bytes.toString(msftData.get("col1".getBytes())));
+      Assert.assertEquals("62.1", Bytes.toString(msftData.get("col2".getBytes())));
+    } finally {
+      hBaseAdmin.disableTable(tableName);
+      hBaseAdmin.deleteTable(tableName);
+    }
+  }
+
   @Test
   public void testHBaseSource() throws Exception {
     Map<String, String> hBaseProps = new HashMap<>();
@@ -244,4 +314,52 @@ public class HBaseTest extends HydratorTestBase {
     Assert.assertEquals(VAL1, row2.get(COL1));
     Assert.assertEquals(VAL2, row2.get(COL2));
   }
+
+  @Test
+  public void testHBaseSourceWithFilters() throws Exception {
+    htable.put(new Put("row3".getBytes()).add(HBASE_FAMILY_COLUMN.getBytes(), COL1.getBytes(), "val3".getBytes()));
+    Schema projectedSchema = Schema.recordOf(
+      "event",
+      Schema.Field.of("ticker", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("col1", Schema.of(Schema.Type.STRING)));
+
+    Map<String, String> hBaseProps = new HashMap<>();
+    hBaseProps.put("tableName", HBASE_TABLE_NAME);
+    hBaseProps.put("columnFamily", HBASE_FAMILY_COLUMN);
+    hBaseProps.put("zkClientPort", Integer.toString(testUtil.getZkCluster().getClientPort()));
+    hBaseProps.put("schema", projectedSchema.toString());
+    hBaseProps.put("rowField", "ticker");
+    hBaseProps.put("rowPrefix", "row");
+    hBaseProps.put("startRow", ROW2);
+    hBaseProps.put("valueFilter", "col1=" + VAL1);
+    hBaseProps.put("scanCaching", "500");
+    hBaseProps.put("maxSplitSize", "1");
+    hBaseProps.put(Constants.Reference.REFERENCE_NAME, "HBaseSourceWithFiltersTest");
+
+    ETLStage source = new ETLStage("HBase", new ETLPlugin("HBase", BatchSource.PLUGIN_TYPE, hBaseProps, null));
+    String outputDatasetName = "output-hbasesourcewithfilterstest";
+    ETLStage sink = new ETLStage("sink", MockSink.getPlugin(outputDatasetName));
+
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder("* * * * *")
+      .addStage(source)
+      .addStage(sink)
+      .addConnection(source.getName(), sink.getName())
+      .build();
+
+    AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(BATCH_ARTIFACT, etlConfig);
+    ApplicationId appId = NamespaceId.DEFAULT.app("HBaseSourceWithFiltersTest");
+    ApplicationManager appManager = deployApplication(appId, appRequest);
+
+    WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
+    workflowManager.start();
+    workflowManager.waitForRuns(ProgramRunStatus.COMPLETED, 1, 5, TimeUnit.MINUTES);
+
+    DataSetManager<Table> outputManager = getDataset(outputDatasetName);
+    List<StructuredRecord> outputRecords = MockSink.readOutput(outputManager);
+    // row1 is before the start row, and row3 does not match the value filter
+    Assert.assertEquals(1, outputRecords.size());
+    Assert.assertEquals(projectedSchema, outputRecords.get(0).getSchema());
+    Assert.assertEquals(ROW2, outputRecords.get(0).get("ticker"));
+    Assert.assertEquals(VAL1, outputRecords.get(0).get(COL1));
+  }
 }
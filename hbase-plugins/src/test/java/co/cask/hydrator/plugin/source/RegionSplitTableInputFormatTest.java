@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.source;
+
+import org.apache.hadoop.hbase.util.Bytes;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for {@link RegionSplitTableInputFormat}.
+ */
+public class RegionSplitTableInputFormatTest {
+
+  @Test
+  public void testSplitRange() {
+    byte[] start = Bytes.toBytes("a");
+    byte[] end = Bytes.toBytes("b");
+    byte[][] keys = RegionSplitTableInputFormat.splitRange(start, end, 4);
+    Assert.assertNotNull(keys);
+    Assert.assertEquals(5, keys.length);
+    Assert.assertArrayEquals(start, keys[0]);
+    Assert.assertArrayEquals(new byte[] { 'a', 0x40 }, keys[1]);
+    Assert.assertArrayEquals(new byte[] { 'a', (byte) 0x80 }, keys[2]);
+    Assert.assertArrayEquals(new byte[] { 'a', (byte) 0xc0 }, keys[3]);
+    Assert.assertArrayEquals(end, keys[4]);
+  }
+
+  @Test
+  public void testSplitOpenRange() {
+    byte[] empty = new byte[0];
+    assertIncreasing(RegionSplitTableInputFormat.splitRange(empty, empty, 10));
+    assertIncreasing(RegionSplitTableInputFormat.splitRange(empty, Bytes.toBytes("row5"), 10));
+    assertIncreasing(RegionSplitTableInputFormat.splitRange(Bytes.toBytes("row5"), empty, 10));
+    assertIncreasing(RegionSplitTableInputFormat.splitRange(new byte[] { (byte) 0xff, (byte) 0xff }, empty, 3));
+  }
+
+  @Test
+  public void testSplitSmallRange() {
+    // there is no row between "a" and "a\x00"
+    Assert.assertNull(RegionSplitTableInputFormat.splitRange(Bytes.toBytes("a"), new byte[] { 'a', 0 }, 2));
+    Assert.assertNotNull(RegionSplitTableInputFormat.splitRange(Bytes.toBytes("a"), new byte[] { 'a', 1 }, 2));
+  }
+
+  private static void assertIncreasing(byte[][] keys) {
+    Assert.assertNotNull(keys);
+    for (int i = 1; i < keys.length - 1; i++) {
+      Assert.assertTrue(Bytes.compareTo(keys[i - 1], keys[i]) < 0);
+    }
+    byte[] end = keys[keys.length - 1];
+    Assert.assertTrue(end.length == 0 || Bytes.compareTo(keys[keys.length - 2], end) < 0);
+  }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.common.RecordConverter;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import parquet.avro.AvroParquetWriter;
+import parquet.hadoop.ParquetWriter;
+import parquet.hadoop.metadata.CompressionCodecName;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Writes {@link StructuredRecord StructuredRecords} to one file, as delimited text, Avro or Parquet.
+ */
+abstract class HDFSFileWriter {
+
+  /**
+   * Writes a record to the file.
+   */
+  abstract void write(StructuredRecord record) throws IOException;
+
+  /**
+   * Flushes and closes the file.
+   */
+  abstract void close() throws IOException;
+
+  /**
+   * Writes each record as a line of delimited text. Null values are written as {@link HDFSSink#NULL_STRING}.
+   * Values that contain the delimiter, a double quote or a line break are written between double quotes, with
+   * double quotes doubled.
+   */
+  static final class TextFileWriter extends HDFSFileWriter {
+    private final Writer writer;
+    private final String delimiter;
+
+    /**
+     * @param out the output stream of the file, compressed if the file is compressed
+     * @param delimiter the delimiter of the fields
+     */
+    TextFileWriter(OutputStream out, String delimiter) {
+      this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+      this.delimiter = delimiter;
+    }
+
+    @Override
+    void write(StructuredRecord record) throws IOException {
+      boolean first = true;
+      for (Schema.Field field : record.getSchema().getFields()) {
+        if (!first) {
+          writer.write(delimiter);
+        }
+        first = false;
+        Object value = record.get(field.getName());
+        writeValue(value == null ? HDFSSink.NULL_STRING : value.toString());
+      }
+      writer.write('\n');
+    }
+
+    private void writeValue(String value) throws IOException {
+      if (!needsQuotes(value)) {
+        writer.write(value);
+        return;
+      }
+      writer.write('"');
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '"') {
+          writer.write('"');
+        }
+        writer.write(c);
+      }
+      writer.write('"');
+    }
+
+    private boolean needsQuotes(String value) {
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '"' || c == '\n' || c == '\r') {
+          return true;
+        }
+      }
+      return value.contains(delimiter);
+    }
+
+    @Override
+    void close() throws IOException {
+      writer.close();
+    }
+  }
+
+  /**
+   * Writes the records to an Avro data file, with the schema of the first record.
+   */
+  static final class AvroFileWriter extends HDFSFileWriter {
+    private final DataFileWriter<GenericRecord> writer;
+    private final StructuredToAvroConverter converter;
+    private final org.apache.avro.Schema schema;
+
+    /**
+     * @param out the output stream of the file
+     * @param codec the Avro codec of the file blocks
+     * @param converter the converter of the records
+     * @param schema the schema of the records
+     */
+    AvroFileWriter(OutputStream out, CodecFactory codec, StructuredToAvroConverter converter,
+                   Schema schema) throws IOException {
+      this.converter = converter;
+      this.schema = converter.getAvroSchema(schema);
+      this.writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(this.schema));
+      writer.setCodec(codec);
+      writer.create(this.schema, out);
+    }
+
+    @Override
+    void write(StructuredRecord record) throws IOException {
+      writer.append(converter.transform(record, schema));
+    }
+
+    @Override
+    void close() throws IOException {
+      writer.close();
+    }
+  }
+
+  /**
+   * Writes the records to a Parquet file, with the schema of the first record.
+   */
+  static final class ParquetFileWriter extends HDFSFileWriter {
+    private final AvroParquetWriter<GenericRecord> writer;
+    private final StructuredToAvroConverter converter;
+    private final org.apache.avro.Schema schema;
+
+    /**
+     * @param file the path of the file
+     * @param codec the compression codec of the pages
+     * @param blockSize the size of the row groups, which are buffered in memory
+     * @param converter the converter of the records
+     * @param schema the schema of the records
+     * @param conf the configuration of the file system
+     */
+    ParquetFileWriter(Path file, CompressionCodecName codec, int blockSize, StructuredToAvroConverter converter,
+                      Schema schema, Configuration conf) throws IOException {
+      this.converter = converter;
+      this.schema = converter.getAvroSchema(schema);
+      this.writer = new AvroParquetWriter<>(file, this.schema, codec, blockSize, ParquetWriter.DEFAULT_PAGE_SIZE,
+                                            true, conf);
+    }
+
+    @Override
+    void write(StructuredRecord record) throws IOException {
+      writer.write(converter.transform(record, schema));
+    }
+
+    @Override
+    void close() throws IOException {
+      writer.close();
+    }
+  }
+
+  /**
+   * Converts StructuredRecords to Avro GenericRecords, keeping the Avro schema of each record schema.
+   */
+  static final class StructuredToAvroConverter extends RecordConverter<StructuredRecord, GenericRecord> {
+    private final Map<Schema, org.apache.avro.Schema> schemaCache = new HashMap<>();
+
+    org.apache.avro.Schema getAvroSchema(Schema schema) {
+      org.apache.avro.Schema avroSchema = schemaCache.get(schema);
+      if (avroSchema == null) {
+        avroSchema = new org.apache.avro.Schema.Parser().parse(schema.toString());
+        schemaCache.put(schema, avroSchema);
+      }
+      return avroSchema;
+    }
+
+    GenericRecord transform(StructuredRecord record, org.apache.avro.Schema avroSchema) throws IOException {
+      Schema schema = record.getSchema();
+      GenericRecordBuilder builder = new GenericRecordBuilder(avroSchema);
+      for (org.apache.avro.Schema.Field field : avroSchema.getFields()) {
+        Schema.Field schemaField = schema.getField(field.name());
+        if (schemaField == null) {
+          throw new IllegalArgumentException("Input record does not contain the " + field.name() + " field.");
+        }
+        builder.set(field.name(), convertField(record.get(field.name()), schemaField.getSchema()));
+      }
+      return builder.build();
+    }
+
+    @Override
+    public GenericRecord transform(StructuredRecord record, Schema schema) throws IOException {
+      // nested records
+      return transform(record, getAvroSchema(schema));
+    }
+
+    @Override
+    protected Object convertBytes(Object field) {
+      if (field instanceof ByteBuffer) {
+        return field;
+      }
+      return ByteBuffer.wrap((byte[]) field);
+    }
+  }
+
+  /**
+   * Returns the codec to compress text files with.
+   *
+   * @param compressionCodec the compression codec option of the sink
+   * @return the name of the Hadoop compression codec class, or null for no compression
+   */
+  @Nullable
+  static String getTextCodec(String compressionCodec) {
+    switch (compressionCodec.toLowerCase()) {
+      case "none":
+        return null;
+      case "gzip":
+        return "org.apache.hadoop.io.compress.GzipCodec";
+      case "snappy":
+        return "org.apache.hadoop.io.compress.SnappyCodec";
+      case "deflate":
+        return "org.apache.hadoop.io.compress.DefaultCodec";
+      case "bzip2":
+        return "org.apache.hadoop.io.compress.BZip2Codec";
+      case "lz4":
+        return "org.apache.hadoop.io.compress.Lz4Codec";
+      case "zstandard":
+        // only available since Hadoop 2.9, so it is not referenced by class
+        return "org.apache.hadoop.io.compress.ZStandardCodec";
+      default:
+        throw new IllegalArgumentException("Unsupported compression codec " + compressionCodec + " for text files.");
+    }
+  }
+
+  /**
+   * Returns the codec to compress the blocks of Avro files with.
+   */
+  static CodecFactory getAvroCodec(String compressionCodec) {
+    switch (compressionCodec.toLowerCase()) {
+      case "none":
+        return CodecFactory.nullCodec();
+      case "snappy":
+        return CodecFactory.snappyCodec();
+      case "deflate":
+        return CodecFactory.deflateCodec(CodecFactory.DEFAULT_DEFLATE_LEVEL);
+      default:
+        throw new IllegalArgumentException("Unsupported compression codec " + compressionCodec + " for Avro files.");
+    }
+  }
+
+  /**
+   * Returns the codec to compress the pages of Parquet files with.
+   */
+  static CompressionCodecName getParquetCodec(String compressionCodec) {
+    switch (compressionCodec.toLowerCase()) {
+      case "none":
+        return CompressionCodecName.UNCOMPRESSED;
+      case "snappy":
+        return CompressionCodecName.SNAPPY;
+      case "gzip":
+        return CompressionCodecName.GZIP;
+      default:
+        throw new IllegalArgumentException("Unsupported compression codec " + compressionCodec +
+                                             " for Parquet files.");
+    }
+  }
+
+  /**
+   * @return the extension of files compressed with a codec, such as '.gz'
+   */
+  static String getExtension(@Nullable CompressionCodec codec) {
+    return codec == null ? "" : codec.getDefaultExtension();
+  }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
+import parquet.hadoop.ParquetWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Output format of the {@link HDFSSink}, which writes {@link StructuredRecord StructuredRecords} as delimited text,
+ * Avro or Parquet files.
+ * <p/>
+ * Records can be partitioned by the values of some of their fields, in which case each record is written to a
+ * directory such as {@code country=US/year=2017} under the output directory. Values are escaped in the same way as
+ * Hive partition values, and null values are written as {@value #NULL_PARTITION}. Each task keeps one open file per
+ * partition directory, up to a maximum number of open files. When that maximum is reached, the file of the partition
+ * that was least recently written to is closed, and a new file is opened if more records of that partition come.
+ * <p/>
+ * Text files are compressed with the standard output compression properties of MapReduce. Avro and Parquet files are
+ * compressed with the codec set in {@value #COMPRESSION_CODEC}, and are written with the schema of their first
+ * record.
+ * <p/>
+ * Parquet writers buffer a whole row group in memory. The memory set in {@value #PARQUET_MEMORY_MB} is divided among
+ * the files that a task can keep open, so the row groups of partitioned output are smaller than the Parquet default.
+ */
+public class HDFSOutputFormat extends FileOutputFormat<NullWritable, StructuredRecord> {
+  public static final String FORMAT = "hdfs.sink.format";
+  public static final String DELIMITER = "hdfs.sink.delimiter";
+  public static final String COMPRESSION_CODEC = "hdfs.sink.compression.codec";
+  public static final String PARTITION_FIELDS = "hdfs.sink.partition.fields";
+  public static final String MAX_OPEN_WRITERS = "hdfs.sink.max.open.writers";
+  public static final String PARQUET_MEMORY_MB = "hdfs.sink.parquet.memory.mb";
+  public static final String TEXT_FORMAT = "text";
+  public static final String AVRO_FORMAT = "avro";
+  public static final String PARQUET_FORMAT = "parquet";
+  public static final String NULL_PARTITION = "__HIVE_DEFAULT_PARTITION__";
+  public static final int DEFAULT_MAX_OPEN_WRITERS = 100;
+  public static final int DEFAULT_PARQUET_MEMORY_MB = 256;
+  // row groups are not made smaller than a Parquet page
+  private static final int MIN_PARQUET_BLOCK_SIZE = ParquetWriter.DEFAULT_PAGE_SIZE;
+  // same as the characters escaped in Hive partition values
+  private static final String ESCAPED_CHARACTERS = "\"#%'*/:=?\\\u007F{[]^";
+
+  @Override
+  public RecordWriter<NullWritable, StructuredRecord> getRecordWriter(TaskAttemptContext context) throws IOException {
+    Path workPath = ((FileOutputCommitter) getOutputCommitter(context)).getWorkPath();
+    return new PartitionedRecordWriter(context, workPath);
+  }
+
+  /**
+   * Returns the row group size of each Parquet file, so that the row groups of all open files fit in the given
+   * memory, up to the Parquet default.
+   *
+   * @param memoryMB the memory for the row groups of all open files, in megabytes
+   * @param openFiles the maximum number of files open at the same time
+   */
+  static int getParquetBlockSize(int memoryMB, int openFiles) {
+    long blockSize = memoryMB * 1024L * 1024L / Math.max(1, openFiles);
+    return (int) Math.max(MIN_PARQUET_BLOCK_SIZE, Math.min(ParquetWriter.DEFAULT_BLOCK_SIZE, blockSize));
+  }
+
+  /**
+   * Escapes a value to be used as a directory name.
+   */
+  static String escapePartitionValue(String value) {
+    StringBuilder escaped = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < ' ' || ESCAPED_CHARACTERS.indexOf(c) >= 0) {
+        escaped.append('%').append(String.format("%02X", (int) c));
+      } else {
+        escaped.append(c);
+      }
+    }
+    return escaped.toString();
+  }
+
+  /**
+   * Writes records to a file per partition directory, keeping a bounded number of files open.
+   */
+  private static final class PartitionedRecordWriter extends RecordWriter<NullWritable, StructuredRecord> {
+    private final TaskAttemptContext context;
+    private final Configuration conf;
+    private final Path workPath;
+    private final String format;
+    private final String delimiter;
+    private final String compressionCodec;
+    private final List<String> partitionFields;
+    private final int maxOpenWriters;
+    private final int parquetBlockSize;
+    private final HDFSFileWriter.StructuredToAvroConverter converter;
+    // in access order, so that the first writer is the least recently used
+    private final LinkedHashMap<String, HDFSFileWriter> writers;
+    private final Map<String, Integer> fileCounts;
+    private final StringBuilder partition;
+
+    private PartitionedRecordWriter(TaskAttemptContext context, Path workPath) {
+      this.context = context;
+      this.conf = context.getConfiguration();
+      this.workPath = workPath;
+      this.format = conf.get(FORMAT, TEXT_FORMAT);
+      this.delimiter = conf.get(DELIMITER, ",");
+      this.compressionCodec = conf.get(COMPRESSION_CODEC, "none");
+      this.partitionFields = ImmutableList.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(
+        conf.get(PARTITION_FIELDS, "")));
+      this.maxOpenWriters = conf.getInt(MAX_OPEN_WRITERS, DEFAULT_MAX_OPEN_WRITERS);
+      // without partitions, a task only writes one file at a time
+      this.parquetBlockSize = getParquetBlockSize(conf.getInt(PARQUET_MEMORY_MB, DEFAULT_PARQUET_MEMORY_MB),
+                                                  partitionFields.isEmpty() ? 1 : maxOpenWriters);
+      this.converter = new HDFSFileWriter.StructuredToAvroConverter();
+      this.writers = new LinkedHashMap<>(16, 0.75f, true);
+      this.fileCounts = new HashMap<>();
+      this.partition = new StringBuilder();
+    }
+
+    @Override
+    public void write(NullWritable key, StructuredRecord record) throws IOException {
+      String partitionDir = getPartitionDir(record);
+      HDFSFileWriter writer = writers.get(partitionDir);
+      if (writer == null) {
+        if (writers.size() >= maxOpenWriters) {
+          Iterator<HDFSFileWriter> leastRecentlyUsed = writers.values().iterator();
+          HDFSFileWriter evicted = leastRecentlyUsed.next();
+          leastRecentlyUsed.remove();
+          evicted.close();
+        }
+        writer = createFileWriter(partitionDir, record.getSchema());
+        writers.put(partitionDir, writer);
+      }
+      writer.write(record);
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException {
+      IOException failure = null;
+      for (HDFSFileWriter writer : writers.values()) {
+        try {
+          writer.close();
+        } catch (IOException e) {
+          if (failure == null) {
+            failure = e;
+          } else {
+            failure.addSuppressed(e);
+          }
+        }
+      }
+      writers.clear();
+      if (failure != null) {
+        throw failure;
+      }
+    }
+
+    private String getPartitionDir(StructuredRecord record) {
+      if (partitionFields.isEmpty()) {
+        return "";
+      }
+      partition.setLength(0);
+      for (String field : partitionFields) {
+        if (partition.length() > 0) {
+          partition.append('/');
+        }
+        Object value = record.get(field);
+        partition.append(field).append('=')
+          .append(value == null ? NULL_PARTITION : escapePartitionValue(value.toString()));
+      }
+      return partition.toString();
+    }
+
+    private HDFSFileWriter createFileWriter(String partitionDir, Schema schema) throws IOException {
+      switch (format) {
+        case AVRO_FORMAT:
+          return new HDFSFileWriter.AvroFileWriter(create(newFile(partitionDir, ".avro")),
+                                                   HDFSFileWriter.getAvroCodec(compressionCodec), converter, schema);
+        case PARQUET_FORMAT:
+          return new HDFSFileWriter.ParquetFileWriter(newFile(partitionDir, ".parquet"),
+                                                      HDFSFileWriter.getParquetCodec(compressionCodec),
+                                                      parquetBlockSize, converter, schema, conf);
+        default:
+          CompressionCodec codec = null;
+          if (getCompressOutput(context)) {
+            codec = ReflectionUtils.newInstance(getOutputCompressorClass(context, GzipCodec.class), conf);
+          }
+          OutputStream out = create(newFile(partitionDir, HDFSFileWriter.getExtension(codec)));
+          return new HDFSFileWriter.TextFileWriter(codec == null ? out : codec.createOutputStream(out), delimiter);
+      }
+    }
+
+    /**
+     * Returns a new file in a partition directory. The first file of the task in the directory has the same name as
+     * the files of other output formats, such as part-m-00000, and the next ones get a sequence number.
+     */
+    private Path newFile(String partitionDir, String extension) {
+      Integer count = fileCounts.get(partitionDir);
+      fileCounts.put(partitionDir, count == null ? 1 : count + 1);
+      String name = getUniqueFile(context, getOutputName(context), "") + (count == null ? "" : "-" + count);
+      Path dir = partitionDir.isEmpty() ? workPath : new Path(workPath, partitionDir);
+      return new Path(dir, name + extension);
+    }
+
+    private OutputStream create(Path file) throws IOException {
+      FileSystem fs = file.getFileSystem(conf);
+      return fs.create(file, false);
+    }
+  }
+}
@@ -31,20 +31,16 @@ import co.cask.cdap.etl.api.batch.BatchSink;
 import co.cask.cdap.etl.api.batch.BatchSinkContext;
 import co.cask.hydrator.common.ReferenceBatchSink;
 import co.cask.hydrator.common.ReferencePluginConfig;
-import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
-import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 
 import java.lang.reflect.Type;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import javax.annotation.Nullable;
 
@@ -54,7 +50,7 @@ import javax.annotation.Nullable;
 @Plugin(type = BatchSink.PLUGIN_TYPE)
 @Name("HDFS")
 @Description("Batch HDFS Sink")
-public class HDFSSink extends ReferenceBatchSink<StructuredRecord, Text, NullWritable> {
+public class HDFSSink extends ReferenceBatchSink<StructuredRecord, NullWritable, StructuredRecord> {
   public static final String NULL_STRING = "\0";
   private HDFSSinkConfig config;
 
@@ -67,6 +63,10 @@ public class HDFSSink extends ReferenceBatchSink<StructuredRecord, Text, NullWri
   public void configurePipeline(PipelineConfigurer pipelineConfigurer) {
     super.configurePipeline(pipelineConfigurer);
     config.validate();
+    Schema inputSchema = pipelineConfigurer.getStageConfigurer().getInputSchema();
+    if (inputSchema != null) {
+      config.validatePartitionFields(inputSchema);
+    }
   }
 
   @Override
@@ -77,14 +77,10 @@ public class HDFSSink extends ReferenceBatchSink<StructuredRecord, Text, NullWri
   }
 
   @Override
-  public void transform(StructuredRecord input, Emitter<KeyValue<Text, NullWritable>> emitter) throws Exception {
-    List<String> dataArray = new ArrayList<>();
-    for (Schema.Field field : input.getSchema().getFields()) {
-      Object fieldValue = input.get(field.getName());
-      String data = (fieldValue != null) ? fieldValue.toString() : NULL_STRING;
-      dataArray.add(data);
-    }
-    emitter.emit(new KeyValue<>(new Text(Joiner.on(",").join(dataArray)), NullWritable.get()));
+  public void transform(StructuredRecord input,
+                        Emitter<KeyValue<NullWritable, StructuredRecord>> emitter) throws Exception {
+    // records are written by the output format, see HDFSOutputFormat
+    emitter.emit(new KeyValue<>(NullWritable.get(), input));
   }
 
   /**
@@ -103,6 +99,20 @@ public class HDFSSink extends ReferenceBatchSink<StructuredRecord, Text, NullWri
       String timeSuffix = !Strings.isNullOrEmpty(config.timeSufix) ?
         new SimpleDateFormat(config.timeSufix).format(context.getLogicalStartTime()) : "";
       conf.put(FileOutputFormat.OUTDIR, String.format("%s/%s", config.path, timeSuffix));
+      conf.put(HDFSOutputFormat.FORMAT, config.getOutputFormat());
+      conf.put(HDFSOutputFormat.DELIMITER, config.getDelimiter());
+      conf.put(HDFSOutputFormat.COMPRESSION_CODEC, config.getCompressionCodec());
+      conf.put(HDFSOutputFormat.MAX_OPEN_WRITERS, String.valueOf(config.getMaxOpenWriters()));
+      conf.put(HDFSOutputFormat.PARQUET_MEMORY_MB, String.valueOf(config.getParquetMemoryMB()));
+      if (!Strings.isNullOrEmpty(config.partitionFields)) {
+        conf.put(HDFSOutputFormat.PARTITION_FIELDS, config.partitionFields);
+      }
+      String textCodec = HDFSOutputFormat.TEXT_FORMAT.equals(config.getOutputFormat()) ?
+        HDFSFileWriter.getTextCodec(config.getCompressionCodec()) : null;
+      if (textCodec != null) {
+        conf.put(FileOutputFormat.COMPRESS, "true");
+        conf.put(FileOutputFormat.COMPRESS_CODEC, textCodec);
+      }
       if (!Strings.isNullOrEmpty(config.jobProperties)) {
         Map<String, String> arguments = GSON.fromJson(config.jobProperties, MAP_TYPE);
         for (Map.Entry<String, String> argument : arguments.entrySet()) {
@@ -113,7 +123,7 @@ public class HDFSSink extends ReferenceBatchSink<StructuredRecord, Text, NullWri
 
     @Override
     public String getOutputFormatClassName() {
-      return outputFormatClassName("TEXT");
+      return HDFSOutputFormat.class.getName();
     }
 
     @Override
@@ -122,11 +132,6 @@ public class HDFSSink extends ReferenceBatchSink<StructuredRecord, Text, NullWri
     }
   }
 
-  private static String outputFormatClassName(String option) {
-    // Use option to extend it to more output formats
-    return TextOutputFormat.class.getName();
-  }
-
   /**
    * Config for HDFSSinkConfig.
    */
@@ -151,6 +156,37 @@ public class HDFSSink extends ReferenceBatchSink<StructuredRecord, Text, NullWri
     @Macro
     protected String jobProperties;
 
+    @Nullable
+    @Description("Format of the output files, one of 'text', 'avro' or 'parquet'. Defaults to 'text'.")
+    private String outputFormat;
+
+    @Nullable
+    @Description("Delimiter of the fields of text files. Values that contain the delimiter, a double quote or a " +
+      "line break are written between double quotes, with double quotes doubled. Defaults to a comma.")
+    private String delimiter;
+
+    @Nullable
+    @Description("Compression codec of the output files. Text files can be compressed with 'gzip', 'snappy', " +
+      "'deflate', 'bzip2', 'lz4' or 'zstandard', Avro files with 'snappy' or 'deflate' and Parquet files with " +
+      "'snappy' or 'gzip'. Defaults to 'none'.")
+    private String compressionCodec;
+
+    @Nullable
+    @Description("Comma separated list of fields to partition the output by. Each record is written to a directory " +
+      "such as 'country=US/year=2017' under the output directory, according to its values of these fields. " +
+      "By default, all records are written to the output directory.")
+    private String partitionFields;
+
+    @Nullable
+    @Description("Maximum number of files each task keeps open when writing partitioned output. Defaults to 100.")
+    private Integer maxOpenWriters;
+
+    @Nullable
+    @Description("Memory in megabytes that each task can use to buffer the row groups of the Parquet files it " +
+      "writes. It is divided among the files that can be open at the same time, and each file uses at most 128 MB. " +
+      "Defaults to 256.")
+    private Integer parquetMemoryMB;
+
     public HDFSSinkConfig(String referenceName, String path, String suffix,
                           @Nullable String jobProperties) {
       super(referenceName);
@@ -159,6 +195,30 @@ public class HDFSSink extends ReferenceBatchSink<StructuredRecord, Text, NullWri
       this.jobProperties = jobProperties;
     }
 
+    private String getOutputFormat() {
+      return Strings.isNullOrEmpty(outputFormat) ? HDFSOutputFormat.TEXT_FORMAT : outputFormat.toLowerCase();
+    }
+
+    private String getDelimiter() {
+      if (Strings.isNullOrEmpty(delimiter)) {
+        return ",";
+      }
+      // a tab can not be entered in a textbox
+      return delimiter.equals("\\t") ? "\t" : delimiter;
+    }
+
+    private String getCompressionCodec() {
+      return Strings.isNullOrEmpty(compressionCodec) ? "none" : compressionCodec;
+    }
+
+    private int getMaxOpenWriters() {
+      return maxOpenWriters == null ? HDFSOutputFormat.DEFAULT_MAX_OPEN_WRITERS : maxOpenWriters;
+    }
+
+    private int getParquetMemoryMB() {
+      return parquetMemoryMB == null ? HDFSOutputFormat.DEFAULT_PARQUET_MEMORY_MB : parquetMemoryMB;
+    }
+
     private void validate() {
       // if macro provided, timeSuffix will be null at configure time
       if (!Strings.isNullOrEmpty(timeSufix)) {
@@ -168,6 +228,51 @@ public class HDFSSink extends ReferenceBatchSink<StructuredRecord, Text, NullWri
         // Try to parse the JSON and propagate the error
         new Gson().fromJson(jobProperties, new TypeToken<Map<String, String>>() { }.getType());
       }
+      switch (getOutputFormat()) {
+        case HDFSOutputFormat.TEXT_FORMAT:
+          HDFSFileWriter.getTextCodec(getCompressionCodec());
+          break;
+        case HDFSOutputFormat.AVRO_FORMAT:
+          HDFSFileWriter.getAvroCodec(getCompressionCodec());
+          break;
+        case HDFSOutputFormat.PARQUET_FORMAT:
+          HDFSFileWriter.getParquetCodec(getCompressionCodec());
+          break;
+        default:
+          throw new IllegalArgumentException(String.format("Invalid output format '%s'. It must be one of 'text', " +
+                                                             "'avro' or 'parquet'.", outputFormat));
+      }
+      String fieldDelimiter = getDelimiter();
+      if (fieldDelimiter.contains("\"") || fieldDelimiter.contains("\n") || fieldDelimiter.contains("\r")) {
+        throw new IllegalArgumentException("The delimiter must not contain double quotes or line breaks.");
+      }
+      if (getMaxOpenWriters() < 1) {
+        throw new IllegalArgumentException(String.format("Invalid maximum number of open files %d. It must be at " +
+                                                           "least 1.", maxOpenWriters));
+      }
+      if (getParquetMemoryMB() < 1) {
+        throw new IllegalArgumentException(String.format("Invalid Parquet memory %d. It must be at least 1 MB.",
+                                                         parquetMemoryMB));
+      }
+    }
+
+    private void validatePartitionFields(Schema inputSchema) {
+      if (Strings.isNullOrEmpty(partitionFields)) {
+        return;
+      }
+      for (String field : Splitter.on(',').trimResults().omitEmptyStrings().split(partitionFields)) {
+        Schema.Field schemaField = inputSchema.getField(field);
+        if (schemaField == null) {
+          throw new IllegalArgumentException(String.format("Partition field '%s' is not in the input schema.",
+                                                           field));
+        }
+        Schema fieldSchema = schemaField.getSchema().isNullable() ?
+          schemaField.getSchema().getNonNullable() : schemaField.getSchema();
+        if (!fieldSchema.getType().isSimpleType() || fieldSchema.getType() == Schema.Type.BYTES) {
+          throw new IllegalArgumentException(String.format("Partition field '%s' must be of a primitive type " +
+                                                             "other than bytes.", field));
+        }
+      }
     }
   }
 }
@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.JobID;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskType;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.task.JobContextImpl;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests for {@link HDFSOutputFormat}.
+ */
+public class HDFSOutputFormatTest {
+  private static final Schema SCHEMA = Schema.recordOf(
+    "event",
+    Schema.Field.of("country", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("ticker", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)));
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testPartitionedText() throws Exception {
+    File outputDir = new File(temporaryFolder.newFolder(), "output");
+    Configuration conf = new Configuration();
+    conf.set(FileOutputFormat.OUTDIR, outputDir.toURI().toString());
+    conf.set(HDFSOutputFormat.DELIMITER, "|");
+    conf.set(HDFSOutputFormat.PARTITION_FIELDS, "country");
+    // alternating partitions with a single open file create a file for each record
+    conf.setInt(HDFSOutputFormat.MAX_OPEN_WRITERS, 1);
+
+    write(conf,
+          record("US", "CDAP", 1.5),
+          record("FR/BE", "a|b", 2.5),
+          record("US", "say \"hi\"", 3.5),
+          record(null, null, 4.5));
+
+    Assert.assertEquals(ImmutableSet.of("country=US", "country=FR%2FBE", "country=__HIVE_DEFAULT_PARTITION__"),
+                        listDirectories(outputDir));
+    Set<String> usFiles = listFiles(new File(outputDir, "country=US"));
+    Assert.assertEquals(ImmutableSet.of("part-m-00000", "part-m-00000-1"), usFiles);
+    Assert.assertEquals(ImmutableSet.of("US|CDAP|1.5", "US|\"say \"\"hi\"\"\"|3.5"),
+                        readLines(new File(outputDir, "country=US")));
+    Assert.assertEquals(ImmutableSet.of("FR/BE|\"a|b\"|2.5"), readLines(new File(outputDir, "country=FR%2FBE")));
+    Assert.assertEquals(ImmutableSet.of(HDFSSink.NULL_STRING + "|" + HDFSSink.NULL_STRING + "|4.5"),
+                        readLines(new File(outputDir, "country=__HIVE_DEFAULT_PARTITION__")));
+  }
+
+  @Test
+  public void testAvro() throws Exception {
+    File outputDir = new File(temporaryFolder.newFolder(), "output");
+    Configuration conf = new Configuration();
+    conf.set(FileOutputFormat.OUTDIR, outputDir.toURI().toString());
+    conf.set(HDFSOutputFormat.FORMAT, HDFSOutputFormat.AVRO_FORMAT);
+    conf.set(HDFSOutputFormat.COMPRESSION_CODEC, "deflate");
+
+    write(conf, record("US", "CDAP", 1.5), record(null, null, 2.5));
+
+    List<String> records = new ArrayList<>();
+    try (DataFileReader<GenericRecord> reader =
+           new DataFileReader<>(new File(outputDir, "part-m-00000.avro"), new GenericDatumReader<GenericRecord>())) {
+      Assert.assertEquals("deflate", reader.getMetaString("avro.codec"));
+      for (GenericRecord record : reader) {
+        records.add(record.get("country") + "," + record.get("ticker") + "," + record.get("price"));
+      }
+    }
+    Assert.assertEquals(2, records.size());
+    Assert.assertEquals("US,CDAP,1.5", records.get(0));
+    Assert.assertEquals("null,null,2.5", records.get(1));
+  }
+
+  @Test
+  public void testParquetBlockSize() {
+    int mb = 1024 * 1024;
+    // a single open file is limited to the Parquet default
+    Assert.assertEquals(128 * mb, HDFSOutputFormat.getParquetBlockSize(256, 1));
+    Assert.assertEquals(64 * mb, HDFSOutputFormat.getParquetBlockSize(64, 1));
+    // the memory is divided among the open files, but a row group is at least a page
+    Assert.assertEquals(256 * mb / 100, HDFSOutputFormat.getParquetBlockSize(256, 100));
+    Assert.assertEquals(mb, HDFSOutputFormat.getParquetBlockSize(256, 1000));
+  }
+
+  private static void write(Configuration conf, StructuredRecord... records) throws Exception {
+    JobID jobId = new JobID("test", 1);
+    JobContext jobContext = new JobContextImpl(conf, jobId);
+    TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID("test", 1, TaskType.MAP, 0, 0));
+    HDFSOutputFormat outputFormat = new HDFSOutputFormat();
+    OutputCommitter committer = outputFormat.getOutputCommitter(context);
+    committer.setupJob(jobContext);
+    committer.setupTask(context);
+    RecordWriter<NullWritable, StructuredRecord> writer = outputFormat.getRecordWriter(context);
+    for (StructuredRecord record : records) {
+      writer.write(NullWritable.get(), record);
+    }
+    writer.close(context);
+    committer.commitTask(context);
+    committer.commitJob(jobContext);
+  }
+
+  private static StructuredRecord record(String country, String ticker, double price) {
+    return StructuredRecord.builder(SCHEMA).set("country", country).set("ticker", ticker).set("price", price).build();
+  }
+
+  private static Set<String> listDirectories(File dir) {
+    Set<String> names = new HashSet<>();
+    for (File file : dir.listFiles()) {
+      if (file.isDirectory()) {
+        names.add(file.getName());
+      }
+    }
+    return names;
+  }
+
+  private static Set<String> listFiles(File dir) {
+    Set<String> names = new HashSet<>();
+    for (File file : dir.listFiles()) {
+      // skip checksum files
+      if (file.isFile() && !file.getName().startsWith(".")) {
+        names.add(file.getName());
+      }
+    }
+    return names;
+  }
+
+  private static Set<String> readLines(File dir) throws IOException {
+    Set<String> lines = new HashSet<>();
+    for (String name : listFiles(dir)) {
+      lines.addAll(Files.readLines(new File(dir, name), Charsets.UTF_8));
+    }
+    return lines;
+  }
+}
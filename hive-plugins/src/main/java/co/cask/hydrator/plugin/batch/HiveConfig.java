@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -59,5 +59,9 @@ public class HiveConfig extends ReferencePluginConfig {
     public static final String TABLE_NAME = "tableName";
     public static final String PARTITIONS = "partitions";
     public static final String SCHEMA = "schema";
+    public static final String DATE_PARTITION = "datePartition";
+    public static final String DATE_PARTITION_FORMAT = "datePartitionFormat";
+    public static final String DURATION = "duration";
+    public static final String DELAY = "delay";
   }
 }
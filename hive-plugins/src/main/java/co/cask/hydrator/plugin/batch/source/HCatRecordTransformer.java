@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -22,17 +22,23 @@ import co.cask.hydrator.plugin.batch.commons.HiveSchemaConverter;
 import org.apache.hadoop.hive.common.type.HiveChar;
 import org.apache.hadoop.hive.common.type.HiveVarchar;
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
-import org.apache.hive.hcatalog.common.HCatException;
 import org.apache.hive.hcatalog.data.HCatRecord;
 import org.apache.hive.hcatalog.data.schema.HCatFieldSchema;
 import org.apache.hive.hcatalog.data.schema.HCatSchema;
 
+import java.util.List;
+
 /**
- * A transform to convert a {@link HCatRecord} from hive to {@link StructuredRecord}.
+ * A transform to convert a {@link HCatRecord} from Hive to {@link StructuredRecord}.
+ *
+ * The position and type of each field in the {@link HCatSchema} are looked up once, so that converting a record
+ * only reads the values by position.
  */
 public class HCatRecordTransformer {
-  private final HCatSchema hCatSchema;
   private final Schema schema;
+  private final String[] fieldNames;
+  private final int[] positions;
+  private final PrimitiveObjectInspector.PrimitiveCategory[] categories;
 
   /**
    * A transform to convert a {@link HCatRecord} to Hive's {@link StructuredRecord}. The given {@link Schema} and
@@ -40,21 +46,13 @@ public class HCatRecordTransformer {
    * see {@link HiveSchemaConverter}
    */
   public HCatRecordTransformer(HCatSchema hCatSchema, Schema schema) {
-    this.hCatSchema = hCatSchema;
     this.schema = schema;
-  }
-
-  /**
-   * Converts a {@link HCatRecord} read from a hive table to {@link StructuredRecord} using the {@link Schema} created
-   * from the {@link HCatSchema}.
-   *
-   * @param hCatRecord the record
-   * @return the converted {@link StructuredRecord}
-   */
-  public StructuredRecord toRecord(HCatRecord hCatRecord) {
-    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-
-    for (Schema.Field field : schema.getFields()) {
+    List<Schema.Field> fields = schema.getFields();
+    this.fieldNames = new String[fields.size()];
+    this.positions = new int[fields.size()];
+    this.categories = new PrimitiveObjectInspector.PrimitiveCategory[fields.size()];
+    for (int i = 0; i < fields.size(); i++) {
+      Schema.Field field = fields.get(i);
       String fieldName = field.getName();
       Schema.Type type = field.getSchema().isNullable() ? field.getSchema().getNonNullable().getType() :
         field.getSchema().getType();
@@ -65,65 +63,66 @@ public class HCatRecordTransformer {
         case FLOAT:
         case DOUBLE:
         case STRING:
-        case BYTES: {
-          try {
-            builder.set(fieldName, getSchemaCompatibleValue(hCatRecord, fieldName));
-            break;
-          } catch (Throwable t) {
-            throw new RuntimeException(String.format("Error converting field '%s' of type %s",
-                                                     fieldName, type), t);
-          }
-        }
-        default: {
+        case BYTES:
+          break;
+        default:
           throw new IllegalStateException(String.format("Output schema contains field '%s' with unsupported type %s.",
                                                         fieldName, type));
-        }
+      }
+      Integer position = hCatSchema.getPosition(fieldName);
+      if (position == null) {
+        throw new IllegalArgumentException(String.format("Field '%s' of the output schema is not in the table.",
+                                                         fieldName));
+      }
+      fieldNames[i] = fieldName;
+      positions[i] = position;
+      categories[i] = getCategory(hCatSchema.get(position), fieldName);
+    }
+  }
+
+  /**
+   * Converts a {@link HCatRecord} read from a hive table to {@link StructuredRecord} using the {@link Schema} created
+   * from the {@link HCatSchema}.
+   *
+   * @param hCatRecord the record
+   * @return the converted {@link StructuredRecord}
+   */
+  public StructuredRecord toRecord(HCatRecord hCatRecord) {
+    StructuredRecord.Builder builder = StructuredRecord.builder(schema);
+    for (int i = 0; i < positions.length; i++) {
+      try {
+        builder.set(fieldNames[i], getSchemaCompatibleValue(hCatRecord.get(positions[i]), categories[i]));
+      } catch (Throwable t) {
+        throw new RuntimeException(String.format("Error converting field '%s' of type %s",
+                                                 fieldNames[i], categories[i]), t);
       }
     }
     return builder.build();
   }
 
   /**
-   * Converts the value for a field from {@link HCatRecord} to the compatible {@link Schema} type to be represented in
-   * {@link StructuredRecord}. For schema conversion details and supported type see {@link HiveSchemaConverter}.
-   * @param hCatRecord the record being converted to {@link StructuredRecord}
-   * @param fieldName name of the field
-   * @return the value for the given field which is of type compatible with {@link Schema}.
-   * @throws HCatException if failed to get {@link HCatFieldSchema} for the given field
+   * Returns the type of a field of the {@link HCatSchema}, which must be supported by the conversion to
+   * {@link Schema}. For schema conversion details and supported type see {@link HiveSchemaConverter}.
    */
-  private Object getSchemaCompatibleValue(HCatRecord hCatRecord, String fieldName) throws HCatException {
-    PrimitiveObjectInspector.PrimitiveCategory category = hCatSchema.get(fieldName)
-      .getTypeInfo().getPrimitiveCategory();
+  private static PrimitiveObjectInspector.PrimitiveCategory getCategory(HCatFieldSchema fieldSchema,
+                                                                        String fieldName) {
+    PrimitiveObjectInspector.PrimitiveCategory category = fieldSchema.getTypeInfo().getPrimitiveCategory();
     switch (category) {
       // Its not required to check that the schema has the same type because if the user provided  the Schema then
       // the HCatSchema was obtained through the convertor and if the user didn't the Schema was obtained through the
       // and hence the types will be same.
       case BOOLEAN:
-        return hCatRecord.getBoolean(fieldName, hCatSchema);
       case BYTE:
-        Byte byteValue = hCatRecord.getByte(fieldName, hCatSchema);
-        return byteValue == null ? null : (int) byteValue;
       case SHORT:
-        Short shortValue = hCatRecord.getShort(fieldName, hCatSchema);
-        return shortValue == null ? null : (int) shortValue;
       case INT:
-        return hCatRecord.getInteger(fieldName, hCatSchema);
       case LONG:
-        return hCatRecord.getLong(fieldName, hCatSchema);
       case FLOAT:
-        return hCatRecord.getFloat(fieldName, hCatSchema);
       case DOUBLE:
-        return hCatRecord.getDouble(fieldName, hCatSchema);
       case CHAR:
-        HiveChar charValue = hCatRecord.getChar(fieldName, hCatSchema);
-        return charValue == null ? null : charValue.toString();
       case STRING:
-        return hCatRecord.getString(fieldName, hCatSchema);
       case VARCHAR:
-        HiveVarchar varcharValue = hCatRecord.getVarchar(fieldName, hCatSchema);
-        return varcharValue == null ? null : varcharValue.toString();
       case BINARY:
-        return hCatRecord.getByteArray(fieldName, hCatSchema);
+        return category;
       // We can support VOID by having Schema type as null but HCatRecord does not support VOID and since we read
       // write through HCatSchema and HCatRecord we are not supporting VOID too for consistent behavior.
       case VOID:
@@ -137,4 +136,30 @@ public class HCatRecordTransformer {
                                                            "which this field is dropped.", fieldName, category.name()));
     }
   }
+
+  /**
+   * Converts the value of a field from {@link HCatRecord} to the compatible {@link Schema} type to be represented in
+   * {@link StructuredRecord}.
+   *
+   * @param value the value of the field in the record
+   * @param category the type of the field in the {@link HCatSchema}
+   * @return the value for the given field which is of type compatible with {@link Schema}.
+   */
+  private static Object getSchemaCompatibleValue(Object value, PrimitiveObjectInspector.PrimitiveCategory category) {
+    if (value == null) {
+      return null;
+    }
+    switch (category) {
+      case BYTE:
+        return (int) (Byte) value;
+      case SHORT:
+        return (int) (Short) value;
+      case CHAR:
+        return ((HiveChar) value).toString();
+      case VARCHAR:
+        return ((HiveVarchar) value).toString();
+      default:
+        return value;
+    }
+  }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2016 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -36,19 +36,28 @@ import co.cask.hydrator.plugin.batch.commons.HiveSchemaConverter;
 import co.cask.hydrator.plugin.batch.commons.HiveSchemaStore;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.security.UserGroupInformation;
 import org.apache.hive.hcatalog.data.HCatRecord;
+import org.apache.hive.hcatalog.data.schema.HCatFieldSchema;
 import org.apache.hive.hcatalog.data.schema.HCatSchema;
 import org.apache.hive.hcatalog.mapreduce.HCatInputFormat;
 import org.apache.hive.service.auth.HiveAuthFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Batch source for Hive.
+ *
+ * The partitions to read are selected by the metastore with the partition filter, which can include a range of dates
+ * computed from the logical start time of the run. If a schema is given, only its columns are read from the files
+ * of the table, which columnar formats such as ORC and Parquet use to skip the other columns.
  */
 @Plugin(type = "batchsource")
 @Name("Hive")
@@ -67,6 +76,7 @@ public class HiveBatchSource extends ReferenceBatchSource<WritableComparable, HC
   @Override
   public void configurePipeline(PipelineConfigurer pipelineConfigurer) {
     super.configurePipeline(pipelineConfigurer);
+    config.validate();
     //TODO CDAP-4132: remove this way of storing Hive schema once we can share info between prepareRun and initialize
     // stage.
     pipelineConfigurer.createDataset(HiveSchemaStore.HIVE_TABLE_SCHEMA_STORE, KeyValueTable.class,
@@ -86,6 +96,7 @@ public class HiveBatchSource extends ReferenceBatchSource<WritableComparable, HC
     ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
     Thread.currentThread().setContextClassLoader(getClass().getClassLoader());
     try {
+      config.validate();
       Job job = JobUtils.createInstance();
       Configuration conf = job.getConfiguration();
 
@@ -95,7 +106,9 @@ public class HiveBatchSource extends ReferenceBatchSource<WritableComparable, HC
         conf.set(HiveConf.ConfVars.METASTORE_USE_THRIFT_SASL.varname, "true");
         conf.set("hive.metastore.token.signature", HiveAuthFactory.HS2_CLIENT_TOKEN);
       }
-      HCatInputFormat.setInput(conf, config.dbName, config.tableName, config.partitions);
+      String partitionFilter = config.getPartitionFilter(context.getLogicalStartTime());
+      LOG.debug("Reading partitions of {}.{} with filter '{}'", config.dbName, config.tableName, partitionFilter);
+      HCatInputFormat.setInput(conf, config.dbName, config.tableName, partitionFilter);
 
       HCatSchema hCatSchema = HCatInputFormat.getTableSchema(conf);
       if (config.schema != null) {
@@ -103,6 +116,7 @@ public class HiveBatchSource extends ReferenceBatchSource<WritableComparable, HC
         // drop non-primitive types and read the table.
         hCatSchema = HiveSchemaConverter.toHiveSchema(Schema.parseJson(config.schema), hCatSchema);
         HCatInputFormat.setOutputSchema(job, hCatSchema);
+        setReadColumns(conf, hCatSchema);
       }
       HiveSchemaStore.storeHiveSchema(context, config.dbName, config.tableName, hCatSchema);
       context.setInput(Input.of(config.referenceName, new SourceInputFormatProvider(HCatInputFormat.class, conf)));
@@ -131,4 +145,22 @@ public class HiveBatchSource extends ReferenceBatchSource<WritableComparable, HC
     StructuredRecord record = hCatRecordTransformer.toRecord(input.getValue());
     emitter.emit(record);
   }
+
+  /**
+   * Restricts the columns read by the input format of the table to the data columns of the output schema.
+   */
+  private static void setReadColumns(Configuration conf, HCatSchema outputSchema) throws IOException {
+    HCatSchema dataColumns = HCatInputFormat.getDataColumns(conf);
+    List<Integer> ids = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    for (HCatFieldSchema field : outputSchema.getFields()) {
+      Integer position = dataColumns.getPosition(field.getName());
+      // partition columns are not stored in the files of the table
+      if (position != null) {
+        ids.add(position);
+        names.add(field.getName());
+      }
+    }
+    ColumnProjectionUtils.appendReadColumns(conf, ids, names);
+  }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -17,9 +17,15 @@
 package co.cask.hydrator.plugin.batch.source;
 
 import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
 import co.cask.cdap.api.annotation.Name;
+import co.cask.hydrator.common.TimeParser;
 import co.cask.hydrator.plugin.batch.HiveConfig;
+import com.google.common.base.Strings;
 
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
 import javax.annotation.Nullable;
 
 /**
@@ -39,4 +45,85 @@ public class HiveSourceConfig extends HiveConfig {
     "a source then you should provide a schema here with non-primitive fields dropped else your pipeline will fail.")
   @Nullable
   public String schema;
+
+  @Name(Hive.DATE_PARTITION)
+  @Description("Optional name of a string partition column holding dates. If set, only the partitions with a date " +
+    "in the time window of the run are read, in addition to the partition filter. The window is defined by the " +
+    "duration and delay.")
+  @Nullable
+  @Macro
+  public String datePartition;
+
+  @Name(Hive.DATE_PARTITION_FORMAT)
+  @Description("The format of the dates in the date partition column, as a SimpleDateFormat pattern, in UTC. Dates " +
+    "in this format must sort in time order, which is the case for 'yyyy-MM-dd' or 'yyyyMMddHH'. " +
+    "Defaults to 'yyyy-MM-dd'.")
+  @Nullable
+  @Macro
+  public String datePartitionFormat;
+
+  @Name(Hive.DURATION)
+  @Description("Size of the time window of date partitions to read with each run of the pipeline. The format is " +
+    "expected to be a number followed by an 's', 'm', 'h', or 'd' specifying the time unit. For example, with a " +
+    "duration of '1d', each run reads the partitions of the day before its logical start time. Required if a date " +
+    "partition column is given.")
+  @Nullable
+  @Macro
+  public String duration;
+
+  @Name(Hive.DELAY)
+  @Description("Optional delay of the time window of date partitions to read, in the same format as the duration. " +
+    "For example, a duration of '1d' and a delay of '1d' reads the partitions from two days to one day before the " +
+    "logical start time. The default value is 0.")
+  @Nullable
+  @Macro
+  public String delay;
+
+  public void validate() {
+    if (containsMacro(Hive.DATE_PARTITION) || Strings.isNullOrEmpty(datePartition)) {
+      return;
+    }
+    if (!containsMacro(Hive.DURATION)) {
+      if (Strings.isNullOrEmpty(duration)) {
+        throw new IllegalArgumentException("A duration must be given to read a date partition.");
+      }
+      if (TimeParser.parseDuration(duration) <= 0) {
+        throw new IllegalArgumentException(String.format("Invalid duration '%s'. It must be greater than 0.",
+                                                         duration));
+      }
+    }
+    if (!containsMacro(Hive.DELAY) && !Strings.isNullOrEmpty(delay)) {
+      TimeParser.parseDuration(delay);
+    }
+    if (!containsMacro(Hive.DATE_PARTITION_FORMAT)) {
+      new SimpleDateFormat(getDatePartitionFormat());
+    }
+  }
+
+  public String getDatePartitionFormat() {
+    return Strings.isNullOrEmpty(datePartitionFormat) ? "yyyy-MM-dd" : datePartitionFormat;
+  }
+
+  /**
+   * Returns the filter of the partitions to read, which is the partition filter and, if a date partition column is
+   * given, a range of dates ending at the logical start time minus the delay.
+   *
+   * @param logicalStartTime the logical start time of the run in milliseconds
+   * @return the filter, or null to read all partitions
+   */
+  @Nullable
+  public String getPartitionFilter(long logicalStartTime) {
+    if (Strings.isNullOrEmpty(datePartition)) {
+      return Strings.isNullOrEmpty(partitions) ? null : partitions;
+    }
+    long endTime = logicalStartTime - (Strings.isNullOrEmpty(delay) ? 0L : TimeParser.parseDuration(delay));
+    long startTime = endTime - TimeParser.parseDuration(duration);
+    SimpleDateFormat format = new SimpleDateFormat(getDatePartitionFormat());
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    // the metastore compares the values of string partition columns as strings
+    String dateFilter = String.format("%s >= \"%s\" and %s < \"%s\"", datePartition,
+                                      format.format(new Date(startTime)), datePartition,
+                                      format.format(new Date(endTime)));
+    return Strings.isNullOrEmpty(partitions) ? dateFilter : String.format("(%s) and (%s)", partitions, dateFilter);
+  }
 }
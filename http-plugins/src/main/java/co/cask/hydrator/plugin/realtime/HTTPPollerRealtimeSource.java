@@ -80,7 +80,11 @@ public class HTTPPollerRealtimeSource extends ReferenceRealtimeSource<Structured
       }
     }
     try {
-      writer.emit(httpRequestor.get());
+      StructuredRecord record = httpRequestor.get();
+      // null means the content did not change since the last poll
+      if (record != null) {
+        writer.emit(record);
+      }
     } finally {
       currentState.setState(POLL_TIME_STATE_KEY, Bytes.toBytes(System.currentTimeMillis()));
     }
@@ -16,6 +16,7 @@
 
 package co.cask.hydrator.plugin.realtime;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.etl.api.realtime.SourceState;
 import co.cask.cdap.etl.mock.common.MockEmitter;
@@ -25,7 +26,10 @@ import co.cask.http.AbstractHttpHandler;
 import co.cask.http.HttpResponder;
 import co.cask.http.NettyHttpService;
 import co.cask.hydrator.common.http.HTTPPollConfig;
+import co.cask.hydrator.common.http.HTTPRequestor;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.net.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
 import org.junit.After;
@@ -33,7 +37,11 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 
@@ -163,8 +171,55 @@ public class HTTPPollTest extends TestBase {
     Assert.assertTrue(end - start > 3 * 2 * 1000);
   }
 
+  @Test
+  public void testConditionalRequests() throws Exception {
+    HTTPPollConfig config = new HTTPPollConfig(
+      "TestConditionalRequests",
+      String.format("http://%s:%s/etag",
+                    service.getBindAddress().getHostName(),
+                    service.getBindAddress().getPort()),
+      1L, null, true);
+    HTTPRequestor requestor = new HTTPRequestor(config);
+
+    StructuredRecord first = requestor.get();
+    Assert.assertNotNull(first);
+    Assert.assertEquals("content", first.get("body"));
+    // the content did not change, so nothing is returned
+    Assert.assertNull(requestor.get());
+  }
+
+  @Test
+  public void testGzipResponse() throws Exception {
+    HTTPPollConfig config = new HTTPPollConfig(
+      "TestGzipResponse",
+      String.format("http://%s:%s/gzip",
+                    service.getBindAddress().getHostName(),
+                    service.getBindAddress().getPort()),
+      1L);
+    StructuredRecord record = new HTTPRequestor(config).get();
+    Assert.assertNotNull(record);
+    Assert.assertEquals("compressed content", record.get("body"));
+  }
+
+  @Test
+  public void testUserAcceptEncoding() throws Exception {
+    HTTPPollConfig config = new HTTPPollConfig(
+      "TestUserAcceptEncoding",
+      String.format("http://%s:%s/acceptencoding",
+                    service.getBindAddress().getHostName(),
+                    service.getBindAddress().getPort()),
+      1L,
+      "accept-encoding:identity");
+    StructuredRecord record = new HTTPRequestor(config).get();
+    Assert.assertNotNull(record);
+    // header names are case insensitive, so the header of the user is kept
+    Assert.assertEquals("identity", record.get("body"));
+  }
+
   // Simple service for testing connection to URL
   public static class PingHandler extends AbstractHttpHandler {
+    private static final String ETAG = "\"v1\"";
+
     @GET
     @Path("/ping")
     public void testGet(HttpRequest request, HttpResponder responder) {
@@ -176,5 +231,34 @@ public class HTTPPollTest extends TestBase {
     public void testUserAgent(HttpRequest request, HttpResponder responder) {
       responder.sendString(HttpResponseStatus.OK, request.getHeader("User-Agent"));
     }
+
+    @GET
+    @Path("/acceptencoding")
+    public void testAcceptEncoding(HttpRequest request, HttpResponder responder) {
+      responder.sendString(HttpResponseStatus.OK, request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    @GET
+    @Path("/etag")
+    public void testETag(HttpRequest request, HttpResponder responder) {
+      if (ETAG.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+        responder.sendStatus(HttpResponseStatus.NOT_MODIFIED);
+        return;
+      }
+      responder.sendBytes(HttpResponseStatus.OK, ByteBuffer.wrap(Bytes.toBytes("content")),
+                          ImmutableMultimap.of(HttpHeaders.ETAG, ETAG));
+    }
+
+    @GET
+    @Path("/gzip")
+    public void testGzip(HttpRequest request, HttpResponder responder) throws IOException {
+      Assert.assertEquals("gzip", request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+        gzip.write(Bytes.toBytes("compressed content"));
+      }
+      responder.sendBytes(HttpResponseStatus.OK, ByteBuffer.wrap(bytes.toByteArray()),
+                          ImmutableMultimap.of(HttpHeaders.CONTENT_ENCODING, "gzip"));
+    }
   }
 }
@@ -44,6 +44,12 @@ public class HTTPPollConfig extends HTTPConfig {
   @Nullable
   private Integer readTimeout;
 
+  @Description("Whether to send conditional requests using the ETag and Last-Modified headers of the previous " +
+    "response. If the content did not change, the server responds with 304 (Not Modified) and no record is emitted. " +
+    "Defaults to false.")
+  @Nullable
+  private Boolean conditionalRequests;
+
   public HTTPPollConfig() {
     this("", null, 60);
   }
@@ -53,11 +59,17 @@ public class HTTPPollConfig extends HTTPConfig {
   }
 
   public HTTPPollConfig(String referenceName, String url, long interval, String requestHeaders) {
+    this(referenceName, url, interval, requestHeaders, false);
+  }
+
+  public HTTPPollConfig(String referenceName, String url, long interval, String requestHeaders,
+                        boolean conditionalRequests) {
     super(url, requestHeaders);
     this.interval = interval;
     this.charset = Charsets.UTF_8.name();
     this.readTimeout = 60 * 1000;
     this.referenceName = referenceName;
+    this.conditionalRequests = conditionalRequests;
   }
 
   public long getInterval() {
@@ -72,6 +84,10 @@ public class HTTPPollConfig extends HTTPConfig {
     return readTimeout;
   }
 
+  public boolean shouldSendConditionalRequests() {
+    return conditionalRequests != null && conditionalRequests;
+  }
+
   @SuppressWarnings("ConstantConditions")
   public void validate() {
     super.validate();
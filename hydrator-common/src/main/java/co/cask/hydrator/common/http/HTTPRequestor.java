@@ -20,16 +20,18 @@ import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
-import com.google.common.io.CharStreams;
+import com.google.common.io.ByteStreams;
+import com.google.common.net.HttpHeaders;
 
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import javax.annotation.Nullable;
 
 /**
  * Utility code for performing a get request and formatting it as a StructuredRecord.
@@ -43,37 +45,56 @@ public class HTTPRequestor {
     Schema.Field.of("headers", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.STRING))),
     Schema.Field.of("body", Schema.of(Schema.Type.STRING))
   );
+  private static final String GZIP = "gzip";
   private final HTTPPollConfig config;
+  // validators of the last successful response, sent with conditional requests
+  private String entityTag;
+  private String lastModified;
 
   public HTTPRequestor(HTTPPollConfig config) {
     this.config = config;
   }
 
+  /**
+   * Performs a get request against the configured url. The connection is not closed afterwards, so that it can
+   * be reused by the next request if the server supports keep-alive.
+   *
+   * @return the response, or null if conditional requests are enabled and the content did not change since
+   *         the last request
+   */
+  @Nullable
   public StructuredRecord get() throws IOException {
     URL url = new URL(config.getUrl());
-    String response = "";
     HttpURLConnection connection = (HttpURLConnection) url.openConnection();
     connection.setRequestMethod("GET");
     connection.setConnectTimeout(config.getConnectTimeout());
     connection.setReadTimeout(config.getReadTimeout());
     connection.setInstanceFollowRedirects(config.shouldFollowRedirects());
     // Set additional request headers
-    for (Map.Entry<String, String> requestHeader : config.getRequestHeadersMap().entrySet()) {
+    Map<String, String> requestHeaders = config.getRequestHeadersMap();
+    for (Map.Entry<String, String> requestHeader : requestHeaders.entrySet()) {
       connection.setRequestProperty(requestHeader.getKey(), requestHeader.getValue());
     }
-    int responseCode = connection.getResponseCode();
-    try {
-      if (connection.getErrorStream() != null) {
-        try (Reader reader = new InputStreamReader(connection.getErrorStream(), config.getCharset())) {
-          response = CharStreams.toString(reader);
-        }
-      } else if (connection.getInputStream() != null) {
-        try (Reader reader = new InputStreamReader(connection.getInputStream(), config.getCharset())) {
-          response = CharStreams.toString(reader);
-        }
+    if (!containsHeader(requestHeaders, HttpHeaders.ACCEPT_ENCODING)) {
+      connection.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, GZIP);
+    }
+    if (config.shouldSendConditionalRequests()) {
+      if (entityTag != null) {
+        connection.setRequestProperty(HttpHeaders.IF_NONE_MATCH, entityTag);
       }
-    } finally {
-      connection.disconnect();
+      if (lastModified != null) {
+        connection.setRequestProperty(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+      }
+    }
+
+    int responseCode = connection.getResponseCode();
+    byte[] response = readBody(connection);
+    if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && config.shouldSendConditionalRequests()) {
+      return null;
+    }
+    if (responseCode == HttpURLConnection.HTTP_OK) {
+      entityTag = connection.getHeaderField(HttpHeaders.ETAG);
+      lastModified = connection.getHeaderField(HttpHeaders.LAST_MODIFIED);
     }
 
     Map<String, List<String>> headers = connection.getHeaderFields();
@@ -84,7 +105,54 @@ public class HTTPRequestor {
         flattenedHeaders.put(entry.getKey(), Joiner.on(',').skipNulls().join(entry.getValue()));
       }
     }
-    return createStructuredRecord(response, flattenedHeaders, responseCode);
+    return createStructuredRecord(new String(response, config.getCharset()), flattenedHeaders, responseCode);
+  }
+
+  // header names are case insensitive
+  private static boolean containsHeader(Map<String, String> headers, String name) {
+    for (String header : headers.keySet()) {
+      if (name.equalsIgnoreCase(header)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads the whole response body, decompressing it if needed. The stream is read until the end and closed, which
+   * returns the underlying connection to the keep-alive cache instead of closing it.
+   *
+   * If the length of an uncompressed body is known, the body is streamed directly into an array of that size,
+   * so that large responses are not copied through growing buffers.
+   */
+  private byte[] readBody(HttpURLConnection connection) throws IOException {
+    InputStream stream = connection.getErrorStream();
+    if (stream == null) {
+      try {
+        stream = connection.getInputStream();
+      } catch (IOException e) {
+        // no body available
+        return new byte[0];
+      }
+    }
+    if (stream == null) {
+      return new byte[0];
+    }
+    try {
+      if (GZIP.equalsIgnoreCase(connection.getContentEncoding())) {
+        stream = new GZIPInputStream(stream);
+        return ByteStreams.toByteArray(stream);
+      }
+      int contentLength = connection.getContentLength();
+      if (contentLength < 0) {
+        return ByteStreams.toByteArray(stream);
+      }
+      byte[] body = new byte[contentLength];
+      ByteStreams.readFully(stream, body);
+      return body;
+    } finally {
+      stream.close();
+    }
   }
 
   private StructuredRecord createStructuredRecord(String response,
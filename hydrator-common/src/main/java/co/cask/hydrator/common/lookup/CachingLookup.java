@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2015-2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.common.lookup;
+
+import co.cask.cdap.etl.api.CacheConfig;
+import co.cask.cdap.etl.api.Lookup;
+import co.cask.cdap.etl.api.StageMetrics;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * {@link Lookup} that provides caching over a delegate.
+ *
+ * Concurrent lookups of the same missing key wait for a single load from the delegate. Keys that are not found
+ * in the delegate can be cached as well, so that repeated lookups of unknown keys do not reach the delegate.
+ * If a refresh interval is set, an entry read after that interval is reloaded by the thread that reads it, while
+ * other threads keep getting the old value until the reload completes. Entries are never loaded in a background
+ * thread, because the delegate may be a dataset that can only be used by the thread of the current transaction.
+ * Lookups of multiple keys load the missing keys from the delegate in batches of at most the configured batch size.
+ *
+ * If metrics are given, the number of cache hits and misses and the time spent loading from the delegate are
+ * reported as {@code lookup.<name>.cache.hits}, {@code lookup.<name>.cache.misses} and
+ * {@code lookup.<name>.load.millis}.
+ *
+ * @param <T> the type of object that will be returned for a lookup
+ */
+public class CachingLookup<T> implements Lookup<T> {
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  private final Lookup<T> delegate;
+  private final boolean cacheMissing;
+  private final int batchSize;
+  private final StageMetrics metrics;
+  private final String hitsMetric;
+  private final String missesMetric;
+  private final String loadMetric;
+  private final LoadingCache<String, Optional<T>> cache;
+
+  public CachingLookup(Lookup<T> delegate, CacheConfig cacheConfig) {
+    this(delegate, cacheConfig, 0, false, DEFAULT_BATCH_SIZE, null, null);
+  }
+
+  /**
+   * @param delegate the lookup to load values from
+   * @param cacheConfig the maximum number of entries and the number of seconds after which an entry expires
+   * @param refreshSeconds number of seconds after which an entry is reloaded when it is read, or 0 to only reload
+   *                       entries once they expired
+   * @param cacheMissing whether to cache keys that are not found in the delegate
+   * @param batchSize maximum number of keys to load from the delegate in one call
+   * @param metrics metrics to report the cache hits, misses and load time to
+   * @param name name of the lookup, used in the metric names
+   */
+  public CachingLookup(Lookup<T> delegate, CacheConfig cacheConfig, long refreshSeconds, boolean cacheMissing,
+                       int batchSize, @Nullable StageMetrics metrics, @Nullable String name) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException(String.format("Invalid batch size %d. It must be at least 1.", batchSize));
+    }
+    this.delegate = delegate;
+    this.cacheMissing = cacheMissing;
+    this.batchSize = batchSize;
+    this.metrics = metrics;
+    String prefix = name == null ? "lookup." : "lookup." + name + ".";
+    this.hitsMetric = prefix + "cache.hits";
+    this.missesMetric = prefix + "cache.misses";
+    this.loadMetric = prefix + "load.millis";
+
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+      .maximumSize(cacheConfig.getMaxSize())
+      .expireAfterWrite(cacheConfig.getExpirySeconds(), TimeUnit.SECONDS);
+    if (refreshSeconds > 0) {
+      builder.refreshAfterWrite(refreshSeconds, TimeUnit.SECONDS);
+    }
+    this.cache = builder.build(new DelegateLoader());
+  }
+
+  @Override
+  public T lookup(String key) {
+    Optional<T> value = cache.getIfPresent(key);
+    if (value == null) {
+      count(missesMetric, 1);
+      value = cache.getUnchecked(key);
+    } else {
+      count(hitsMetric, 1);
+    }
+    if (!value.isPresent() && !cacheMissing) {
+      cache.invalidate(key);
+    }
+    return value.orNull();
+  }
+
+  @Override
+  public Map<String, T> lookup(String... keys) {
+    return lookup(ImmutableSet.copyOf(keys));
+  }
+
+  @Override
+  public Map<String, T> lookup(Set<String> keys) {
+    Map<String, Optional<T>> values = new HashMap<>(cache.getAllPresent(keys));
+    int hits = values.size();
+    count(hitsMetric, hits);
+    if (hits < keys.size()) {
+      count(missesMetric, keys.size() - hits);
+      List<String> missingKeys = new ArrayList<>(keys.size() - hits);
+      for (String key : keys) {
+        if (!values.containsKey(key)) {
+          missingKeys.add(key);
+        }
+      }
+      try {
+        values.putAll(cache.getAll(missingKeys));
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      }
+    }
+
+    ImmutableMap.Builder<String, T> found = ImmutableMap.builder();
+    for (Map.Entry<String, Optional<T>> entry : values.entrySet()) {
+      if (entry.getValue().isPresent()) {
+        found.put(entry.getKey(), entry.getValue().get());
+      } else if (!cacheMissing) {
+        cache.invalidate(entry.getKey());
+      }
+    }
+    return found.build();
+  }
+
+  private void count(String metric, int delta) {
+    if (metrics != null && delta > 0) {
+      metrics.count(metric, delta);
+    }
+  }
+
+  /**
+   * Loads values from the delegate. Reloads use the default implementation, which loads in the calling thread.
+   */
+  private final class DelegateLoader extends CacheLoader<String, Optional<T>> {
+
+    @Override
+    public Optional<T> load(String key) throws Exception {
+      long start = System.nanoTime();
+      T value = delegate.lookup(key);
+      count(loadMetric, (int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      return Optional.fromNullable(value);
+    }
+
+    @Override
+    public Map<String, Optional<T>> loadAll(Iterable<? extends String> keys) throws Exception {
+      Map<String, Optional<T>> values = new HashMap<>();
+      for (List<? extends String> batch : Iterables.partition(keys, batchSize)) {
+        long start = System.nanoTime();
+        Map<String, T> found = delegate.lookup(ImmutableSet.<String>copyOf(batch));
+        count(loadMetric, (int) TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        // the cache requires a value for every requested key
+        for (String key : batch) {
+          values.put(key, Optional.fromNullable(found.get(key)));
+        }
+      }
+      return values;
+    }
+  }
+}
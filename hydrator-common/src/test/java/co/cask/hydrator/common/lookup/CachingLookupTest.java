@@ -0,0 +1,255 @@
+/*
+ * Copyright © 2015 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.hydrator.common.lookup;
+
+import co.cask.cdap.etl.api.CacheConfig;
+import co.cask.cdap.etl.api.Lookup;
+import co.cask.cdap.etl.api.StageMetrics;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ *
+ */
+public class CachingLookupTest {
+
+  @Test
+  public void testExpiryByTime() throws InterruptedException {
+    Map<String, String> backing = new HashMap<>();
+    backing.put("foo", "1");
+
+    Lookup<String> delegate = new MapLookup<>(backing);
+    CacheConfig config = new CacheConfig(1, 10);
+    CachingLookup<String> lookup = new CachingLookup<>(delegate, config);
+
+    Assert.assertEquals("1", lookup.lookup("foo"));
+
+    backing.put("foo", "2");
+    Assert.assertEquals("1", lookup.lookup("foo"));
+    Thread.sleep(1100);
+    Assert.assertEquals("2", lookup.lookup("foo"));
+  }
+
+  @Test
+  public void testExpiryByFull() {
+    Map<String, String> backing = new HashMap<>();
+    for (int i = 1; i <= 100; i++) {
+      backing.put("foo" + i, Integer.toString(i));
+    }
+
+    Lookup<String> delegate = new MapLookup<>(backing);
+    CacheConfig config = new CacheConfig(0, 10);
+    CachingLookup<String> lookup = new CachingLookup<>(delegate, config);
+
+    Assert.assertEquals("1", lookup.lookup("foo1"));
+
+    // fill the cache and check that the first values cached are removed
+    for (int i = 1; i <= 100; i++) {
+      Assert.assertEquals(Integer.toString(i), lookup.lookup("foo" + i));
+    }
+
+    backing.put("foo1", "sdf");
+    Assert.assertEquals("sdf", lookup.lookup("foo1"));
+  }
+
+  @Test
+  public void testBatch() throws InterruptedException {
+    Map<String, String> backing = new HashMap<>();
+    for (int i = 1; i <= 100; i++) {
+      backing.put("foo" + i, Integer.toString(i));
+    }
+
+    Lookup<String> delegate = new MapLookup<>(backing);
+    CacheConfig config = new CacheConfig(1, 10);
+    CachingLookup<String> lookup = new CachingLookup<>(delegate, config);
+
+    Assert.assertEquals(
+      ImmutableMap.of("foo1", "1", "foo2", "2", "foo4", "4"),
+      lookup.lookup("foo1", "foo4", "foo2"));
+
+    backing.put("foo2", "sdf");
+    Assert.assertEquals(
+      ImmutableMap.of("foo1", "1", "foo2", "2", "foo4", "4"),
+      lookup.lookup("foo1", "foo4", "foo2"));
+    Thread.sleep(1100);
+    Assert.assertEquals(
+      ImmutableMap.of("foo1", "1", "foo2", "sdf", "foo4", "4"),
+      lookup.lookup("foo1", "foo4", "foo2"));
+  }
+
+  @Test
+  public void testMissingKeys() {
+    Map<String, String> backing = new HashMap<>();
+    backing.put("foo", "1");
+
+    CountingLookup<String> delegate = new CountingLookup<>(backing);
+    CachingLookup<String> lookup = new CachingLookup<>(delegate, new CacheConfig(100, 10), 0, true,
+                                                       CachingLookup.DEFAULT_BATCH_SIZE, null, null);
+    Assert.assertNull(lookup.lookup("bar"));
+    Assert.assertNull(lookup.lookup("bar"));
+    Assert.assertEquals(ImmutableMap.of("foo", "1"), lookup.lookup("foo", "bar"));
+    // the missing key is only loaded once
+    Assert.assertEquals(Arrays.asList("bar", "foo"), delegate.loaded);
+
+    // missing keys are not cached by default
+    delegate = new CountingLookup<>(backing);
+    lookup = new CachingLookup<>(delegate, new CacheConfig(100, 10));
+    Assert.assertNull(lookup.lookup("bar"));
+    Assert.assertEquals(ImmutableMap.of("foo", "1"), lookup.lookup("foo", "bar"));
+    Assert.assertNull(lookup.lookup("bar"));
+    Assert.assertEquals(Arrays.asList("bar", "bar", "foo", "bar"), delegate.loaded);
+  }
+
+  @Test
+  public void testBatchSize() {
+    Map<String, String> backing = new HashMap<>();
+    Set<String> keys = new HashSet<>();
+    for (int i = 0; i < 25; i++) {
+      backing.put("foo" + i, Integer.toString(i));
+      keys.add("foo" + i);
+    }
+
+    CountingLookup<String> delegate = new CountingLookup<>(backing);
+    CachingLookup<String> lookup = new CachingLookup<>(delegate, new CacheConfig(100, 100), 0, true, 10, null, null);
+    Assert.assertEquals(backing, lookup.lookup(keys));
+    Assert.assertEquals(Arrays.asList(10, 10, 5), delegate.batchSizes);
+
+    // only the keys that are not cached yet are loaded
+    keys.add("foo25");
+    Assert.assertEquals(backing, lookup.lookup(keys));
+    Assert.assertEquals(Arrays.asList(10, 10, 5, 1), delegate.batchSizes);
+  }
+
+  @Test
+  public void testRefresh() throws InterruptedException {
+    Map<String, String> backing = new HashMap<>();
+    backing.put("foo", "1");
+
+    final List<Thread> loadingThreads = new ArrayList<>();
+    Lookup<String> delegate = new MapLookup<String>(backing) {
+      @Override
+      public String lookup(String key) {
+        loadingThreads.add(Thread.currentThread());
+        return super.lookup(key);
+      }
+    };
+    CachingLookup<String> lookup = new CachingLookup<>(delegate, new CacheConfig(100, 10), 1, true,
+                                                       CachingLookup.DEFAULT_BATCH_SIZE, null, null);
+    Assert.assertEquals("1", lookup.lookup("foo"));
+    backing.put("foo", "2");
+    Assert.assertEquals("1", lookup.lookup("foo"));
+    Thread.sleep(1100);
+    // the value is reloaded by the read after the refresh interval
+    Assert.assertEquals("2", lookup.lookup("foo"));
+    // the delegate is only used by the thread reading from the cache
+    Assert.assertEquals(Arrays.asList(Thread.currentThread(), Thread.currentThread()), loadingThreads);
+  }
+
+  @Test
+  public void testMetrics() {
+    Map<String, String> backing = new HashMap<>();
+    backing.put("foo", "1");
+    backing.put("bar", "2");
+
+    Map<String, Integer> counts = new HashMap<>();
+    CachingLookup<String> lookup = new CachingLookup<>(new MapLookup<>(backing), new CacheConfig(100, 10), 0, true,
+                                                       CachingLookup.DEFAULT_BATCH_SIZE, metrics(counts), "table");
+    lookup.lookup("foo");
+    lookup.lookup("foo");
+    lookup.lookup("foo", "bar", "baz");
+    Assert.assertEquals(2, (int) counts.get("lookup.table.cache.hits"));
+    Assert.assertEquals(3, (int) counts.get("lookup.table.cache.misses"));
+  }
+
+  private static StageMetrics metrics(final Map<String, Integer> counts) {
+    return (StageMetrics) Proxy.newProxyInstance(StageMetrics.class.getClassLoader(),
+                                                 new Class<?>[] { StageMetrics.class }, new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+          if ("count".equals(method.getName())) {
+            String metric = (String) args[0];
+            Integer count = counts.get(metric);
+            counts.put(metric, (count == null ? 0 : count) + (Integer) args[1]);
+          }
+          return null;
+        }
+      });
+  }
+
+  private static class CountingLookup<T> extends MapLookup<T> {
+    private final List<String> loaded = new ArrayList<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+
+    CountingLookup(Map<String, T> backing) {
+      super(backing);
+    }
+
+    @Override
+    public T lookup(String key) {
+      loaded.add(key);
+      return super.lookup(key);
+    }
+
+    @Override
+    public Map<String, T> lookup(Set<String> keys) {
+      loaded.addAll(new TreeSet<>(keys));
+      batchSizes.add(keys.size());
+      return super.lookup(keys);
+    }
+  }
+
+  private static class MapLookup<T> implements Lookup<T> {
+
+    private final Map<String, T> backing;
+
+    MapLookup(Map<String, T> backing) {
+      this.backing = backing;
+    }
+
+    @Override
+    public T lookup(String key) {
+      return backing.get(key);
+    }
+
+    @Override
+    public Map<String, T> lookup(String... keys) {
+      return lookup(ImmutableSet.copyOf(keys));
+    }
+
+    @Override
+    public Map<String, T> lookup(Set<String> keys) {
+      return Maps.filterKeys(backing, Predicates.in(keys));
+    }
+  }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,14 +20,20 @@ import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.format.UnexpectedFormatException;
 import co.cask.cdap.api.data.schema.Schema;
 import com.google.common.collect.Lists;
-import org.bson.BSONObject;
-import org.bson.types.BasicBSONList;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import javax.annotation.Nullable;
 
 /**
- * Converts {@link BSONObject} to {@link StructuredRecord}.
+ * Converts raw BSON documents to {@link StructuredRecord}.
+ *
+ * Documents are decoded with a streaming reader over their bytes: fields that are not in the schema are skipped
+ * without being decoded, and the values of the other fields are set on the record as they are read.
  */
 public class BSONConverter {
   private static final List<Schema.Type> VALID_TYPES = Lists.newArrayList(Schema.Type.ARRAY, Schema.Type.BOOLEAN,
@@ -41,10 +47,19 @@ public class BSONConverter {
     this.schema = schema;
   }
 
-  public StructuredRecord transform(BSONObject bsonObject) throws IOException {
+  public StructuredRecord transform(RawBsonDocument document) {
     StructuredRecord.Builder builder = StructuredRecord.builder(schema);
-    for (Schema.Field field : schema.getFields()) {
-      builder.set(field.getName(), extractValue(bsonObject.get(field.getName()), field.getSchema()));
+    try (BsonBinaryReader reader = new BsonBinaryReader(document.getByteBuffer().asNIO())) {
+      reader.readStartDocument();
+      while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+        Schema.Field field = schema.getField(reader.readName());
+        if (field == null) {
+          reader.skipValue();
+        } else {
+          builder.set(field.getName(), readValue(reader, field.getName(), field.getSchema()));
+        }
+      }
+      reader.readEndDocument();
     }
     return builder.build();
   }
@@ -62,38 +77,100 @@ public class BSONConverter {
     }
   }
 
-  private Object extractValue(Object object, Schema schema) {
+  private Object readValue(BsonBinaryReader reader, String fieldName, Schema schema) {
+    BsonType bsonType = reader.getCurrentBsonType();
+    if (bsonType == BsonType.NULL || bsonType == BsonType.UNDEFINED) {
+      reader.skipValue();
+      return null;
+    }
     if (schema.isNullable()) {
-      if (object == null) {
-        return null;
-      }
       schema = schema.getNonNullable();
     }
     Schema.Type fieldType = schema.getType();
     switch (fieldType) {
       case ARRAY:
-        return convertArray(object, schema.getComponentSchema());
+        if (bsonType == BsonType.ARRAY) {
+          return readArray(reader, fieldName, schema.getComponentSchema());
+        }
+        break;
       case BYTES:
+        if (bsonType == BsonType.BINARY) {
+          return reader.readBinaryData().getData();
+        }
+        break;
       case INT:
       case LONG:
       case FLOAT:
       case DOUBLE:
+        if (fieldType == Schema.Type.LONG && bsonType == BsonType.DATE_TIME) {
+          // milliseconds since the epoch
+          return reader.readDateTime();
+        }
+        Number number = readNumber(reader, bsonType);
+        if (number != null) {
+          return toNumber(number, fieldType);
+        }
+        break;
       case BOOLEAN:
+        if (bsonType == BsonType.BOOLEAN) {
+          return reader.readBoolean();
+        }
+        break;
       case STRING:
-        return object;
+        if (bsonType == BsonType.STRING) {
+          return reader.readString();
+        }
+        if (bsonType == BsonType.SYMBOL) {
+          return reader.readSymbol();
+        }
+        if (bsonType == BsonType.OBJECT_ID) {
+          return reader.readObjectId().toHexString();
+        }
+        break;
       case NULL:
+        reader.skipValue();
         return null;
       default:
         throw new UnexpectedFormatException("field type " + fieldType + " is not supported.");
     }
+    throw new UnexpectedFormatException(String.format("Field '%s' of type %s cannot be read from a BSON %s value.",
+                                                      fieldName, fieldType, bsonType));
   }
 
-  private Object convertArray(Object object, Schema schema) {
-    BasicBSONList bsonList = (BasicBSONList) object;
-    List<Object> values = Lists.newArrayListWithCapacity(bsonList.size());
-    for (Object obj : bsonList) {
-      values.add(extractValue(obj, schema));
+  private List<Object> readArray(BsonBinaryReader reader, String fieldName, Schema componentSchema) {
+    List<Object> values = new ArrayList<>();
+    reader.readStartArray();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      values.add(readValue(reader, fieldName, componentSchema));
     }
+    reader.readEndArray();
     return values;
   }
+
+  @Nullable
+  private static Number readNumber(BsonBinaryReader reader, BsonType bsonType) {
+    switch (bsonType) {
+      case INT32:
+        return reader.readInt32();
+      case INT64:
+        return reader.readInt64();
+      case DOUBLE:
+        return reader.readDouble();
+      default:
+        return null;
+    }
+  }
+
+  private static Object toNumber(Number number, Schema.Type type) {
+    switch (type) {
+      case INT:
+        return number.intValue();
+      case LONG:
+        return number.longValue();
+      case FLOAT:
+        return number.floatValue();
+      default:
+        return number.doubleValue();
+    }
+  }
 }
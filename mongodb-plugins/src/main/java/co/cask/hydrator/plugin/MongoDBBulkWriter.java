@@ -0,0 +1,321 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+/**
+ * Writes documents to a MongoDB collection with unordered bulk writes.
+ *
+ * Documents are grouped in batches, and up to a maximum number of batches are written at the same time by a pool of
+ * threads. Since the bulk writes are unordered, an operation that fails does not prevent the next ones in the batch
+ * from being applied, and only the operations that failed are retried. In insert mode, documents that fail with a
+ * duplicate key error are assumed to have been written by a previous attempt, so that a replay of the same records does
+ * not fail. Documents without an _id are given a new one by the driver every time they are inserted, so a replay only
+ * skips them if the collection has a unique index on other fields of the documents. In upsert and replace mode, the
+ * operations are idempotent and the whole batch is retried when its outcome is unknown, for example after a network
+ * error. The operations of a batch, of concurrent batches and their retries can be applied in any order, so when
+ * several documents have the same key, any one of them may be the last one applied.
+ *
+ * If a batch fails, the writer waits for the other batches in progress, drops the documents that were not submitted
+ * yet and reports the failure, after which it can be used again to write the same documents.
+ *
+ * Instances must be used by a single thread.
+ */
+public class MongoDBBulkWriter implements Closeable {
+  public static final String INSERT_MODE = "insert";
+  public static final String UPSERT_MODE = "upsert";
+  public static final String REPLACE_MODE = "replace";
+
+  private static final Logger LOG = LoggerFactory.getLogger(MongoDBBulkWriter.class);
+  private static final int DUPLICATE_KEY_ERROR = 11000;
+  private static final long RETRY_DELAY_MILLIS = 100;
+  private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+  private static final UpdateOptions UPSERT = new UpdateOptions().upsert(true);
+
+  private final MongoCollection<Document> collection;
+  private final String writeMode;
+  private final List<String> keyFields;
+  private final int batchSize;
+  private final int maxRetries;
+  private final ExecutorService executor;
+  private final Semaphore inFlight;
+  private final List<Future<?>> pending;
+  private final AtomicLong duplicates;
+  private List<WriteModel<Document>> batch;
+
+  /**
+   * Creates a writer with the options of a config.
+   */
+  public MongoDBBulkWriter(MongoCollection<Document> collection, MongoDBWriteConfig config) {
+    this(collection, config.getWriteMode(), config.getKeyFields(), config.getBatchSize(),
+         config.getMaxInFlightBatches(), config.getWriteConcern(), config.getMaxRetries());
+  }
+
+  /**
+   * @param collection the collection to write to
+   * @param writeMode {@link #INSERT_MODE}, {@link #UPSERT_MODE} or {@link #REPLACE_MODE}
+   * @param keyFields the fields that identify a document in upsert and replace mode
+   * @param batchSize the number of documents in a bulk write
+   * @param maxInFlightBatches the maximum number of bulk writes in progress at the same time
+   * @param writeConcern the write concern of the bulk writes, or null to use the one of the collection
+   * @param maxRetries the number of times the failed operations of a bulk write are retried
+   */
+  public MongoDBBulkWriter(MongoCollection<Document> collection, String writeMode, List<String> keyFields,
+                           int batchSize, int maxInFlightBatches, @Nullable WriteConcern writeConcern,
+                           int maxRetries) {
+    this.collection = writeConcern == null ? collection : collection.withWriteConcern(writeConcern);
+    this.writeMode = writeMode;
+    this.keyFields = keyFields;
+    this.batchSize = batchSize;
+    this.maxRetries = maxRetries;
+    this.executor = Executors.newFixedThreadPool(
+      maxInFlightBatches, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("mongodb-bulk-writer-%d").build());
+    this.inFlight = new Semaphore(maxInFlightBatches);
+    this.pending = new ArrayList<>();
+    this.duplicates = new AtomicLong();
+    this.batch = new ArrayList<>(batchSize);
+  }
+
+  /**
+   * Converts a record to a document with the same fields.
+   */
+  public static Document toDocument(StructuredRecord record) {
+    Document document = new Document();
+    for (Schema.Field field : record.getSchema().getFields()) {
+      document.append(field.getName(), record.get(field.getName()));
+    }
+    return document;
+  }
+
+  /**
+   * Adds a document to the current batch, and starts writing the batch if it is full. This blocks while the
+   * maximum number of batches are being written.
+   *
+   * @throws IOException if the write of a previous batch failed
+   */
+  public void write(Document document) throws IOException, InterruptedException {
+    batch.add(toWriteModel(document));
+    if (batch.size() >= batchSize) {
+      submit();
+    }
+  }
+
+  /**
+   * Writes the current batch, and waits for all the batches to be written.
+   *
+   * @throws IOException if the write of a batch failed
+   */
+  public void flush() throws IOException, InterruptedException {
+    if (!batch.isEmpty()) {
+      submit();
+    }
+    awaitPending();
+    long skipped = duplicates.getAndSet(0);
+    if (skipped > 0) {
+      LOG.warn("Skipped {} documents of collection {} that were already written.",
+               skipped, collection.getNamespace());
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private WriteModel<Document> toWriteModel(Document document) {
+    if (INSERT_MODE.equals(writeMode)) {
+      return new InsertOneModel<>(document);
+    }
+    Document filter = new Document();
+    for (String field : keyFields) {
+      if (!document.containsKey(field)) {
+        throw new IllegalArgumentException(String.format("Key field '%s' is missing in document %s.",
+                                                         field, document.toJson()));
+      }
+      filter.append(field, document.get(field));
+    }
+    if (REPLACE_MODE.equals(writeMode)) {
+      return new ReplaceOneModel<>(filter, document, UPSERT);
+    }
+    // the key fields are set from the filter when a document is inserted, and must not be changed otherwise
+    Document fields = new Document(document);
+    for (String field : keyFields) {
+      fields.remove(field);
+    }
+    return new UpdateOneModel<>(filter, new Document("$set", fields), UPSERT);
+  }
+
+  private void submit() throws IOException, InterruptedException {
+    // fail early if a previous batch failed
+    boolean failed = false;
+    for (Iterator<Future<?>> iterator = pending.iterator(); iterator.hasNext();) {
+      Future<?> future = iterator.next();
+      if (isFailed(future)) {
+        failed = true;
+      } else if (future.isDone()) {
+        iterator.remove();
+      }
+    }
+    if (failed) {
+      // the caller writes the documents of the current batch again when it retries
+      batch = new ArrayList<>(batchSize);
+      awaitPending();
+    }
+    final List<WriteModel<Document>> operations = batch;
+    batch = new ArrayList<>(batchSize);
+    inFlight.acquire();
+    try {
+      pending.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          try {
+            writeBatch(operations);
+            return null;
+          } finally {
+            inFlight.release();
+          }
+        }
+      }));
+    } catch (RuntimeException e) {
+      inFlight.release();
+      throw e;
+    }
+  }
+
+  private void writeBatch(List<WriteModel<Document>> operations) throws InterruptedException {
+    List<WriteModel<Document>> remaining = operations;
+    for (int attempt = 0; ; attempt++) {
+      try {
+        collection.bulkWrite(remaining, UNORDERED);
+        return;
+      } catch (MongoBulkWriteException e) {
+        List<WriteModel<Document>> failed = getFailedOperations(remaining, e);
+        if (failed.isEmpty()) {
+          return;
+        }
+        if (attempt >= maxRetries) {
+          throw e;
+        }
+        LOG.debug("Retrying {} failed writes out of {} to collection {}.",
+                  failed.size(), remaining.size(), collection.getNamespace(), e);
+        remaining = failed;
+      } catch (MongoException e) {
+        // the outcome of every operation is unknown
+        if (attempt >= maxRetries) {
+          throw e;
+        }
+        LOG.debug("Retrying {} writes to collection {}.", remaining.size(), collection.getNamespace(), e);
+      }
+      TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MILLIS << attempt);
+    }
+  }
+
+  private List<WriteModel<Document>> getFailedOperations(List<WriteModel<Document>> operations,
+                                                         MongoBulkWriteException e) {
+    if (e.getWriteConcernError() != null) {
+      // the operations were applied, but it is not known whether they will be kept
+      return operations;
+    }
+    List<WriteModel<Document>> failed = new ArrayList<>();
+    for (BulkWriteError error : e.getWriteErrors()) {
+      if (error.getCode() == DUPLICATE_KEY_ERROR && INSERT_MODE.equals(writeMode)) {
+        duplicates.incrementAndGet();
+      } else {
+        failed.add(operations.get(error.getIndex()));
+      }
+    }
+    return failed;
+  }
+
+  /**
+   * Waits for all the batches in progress, and throws the first failure, if any, once they are all done.
+   */
+  private void awaitPending() throws IOException, InterruptedException {
+    IOException failure = null;
+    try {
+      for (Future<?> future : pending) {
+        try {
+          getResult(future);
+        } catch (IOException e) {
+          if (failure == null) {
+            failure = e;
+          } else {
+            failure.addSuppressed(e);
+          }
+        }
+      }
+    } finally {
+      pending.clear();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private static boolean isFailed(Future<?> future) throws InterruptedException {
+    if (!future.isDone()) {
+      return false;
+    }
+    try {
+      future.get();
+      return false;
+    } catch (ExecutionException e) {
+      return true;
+    }
+  }
+
+  private static void getResult(Future<?> future) throws IOException, InterruptedException {
+    try {
+      future.get();
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to write documents to MongoDB.", e.getCause());
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin;
+
+import co.cask.cdap.api.annotation.Description;
+import co.cask.cdap.api.annotation.Macro;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.hydrator.common.ReferencePluginConfig;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.mongodb.WriteConcern;
+
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * Write options of the MongoDB sinks, used to create a {@link MongoDBBulkWriter}.
+ */
+public class MongoDBWriteConfig extends ReferencePluginConfig {
+  @Description("How records are written. 'insert' inserts a new document for every record. 'upsert' sets the " +
+    "fields of the record in the document with the same key fields, and 'replace' replaces that document with " +
+    "the record. Both insert a new document if there is none with the same key. Defaults to 'insert'.")
+  @Nullable
+  private String writeMode;
+
+  @Description("Comma separated list of the fields that identify a document in upsert and replace mode. " +
+    "Defaults to '_id'.")
+  @Nullable
+  private String keyFields;
+
+  @Description("Number of documents sent to MongoDB in one bulk write. Defaults to 1000.")
+  @Nullable
+  @Macro
+  private Integer batchSize;
+
+  @Description("Maximum number of bulk writes in progress at the same time in each task. Defaults to 2.")
+  @Nullable
+  @Macro
+  private Integer maxInFlightBatches;
+
+  @Description("Write concern of the bulk writes, such as 'ACKNOWLEDGED', 'W1', 'W2', 'MAJORITY', 'JOURNALED' or " +
+    "'UNACKNOWLEDGED'. Defaults to the write concern of the connection string.")
+  @Nullable
+  @Macro
+  private String writeConcern;
+
+  @Description("Number of times the failed writes of a bulk write are retried before the sink fails. " +
+    "Defaults to 3.")
+  @Nullable
+  @Macro
+  private Integer maxRetries;
+
+  public MongoDBWriteConfig(String referenceName) {
+    super(referenceName);
+  }
+
+  public String getWriteMode() {
+    return Strings.isNullOrEmpty(writeMode) ? MongoDBBulkWriter.INSERT_MODE : writeMode.toLowerCase();
+  }
+
+  public List<String> getKeyFields() {
+    if (Strings.isNullOrEmpty(keyFields)) {
+      return ImmutableList.of("_id");
+    }
+    return ImmutableList.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(keyFields));
+  }
+
+  public int getBatchSize() {
+    return batchSize == null ? 1000 : batchSize;
+  }
+
+  public int getMaxInFlightBatches() {
+    return maxInFlightBatches == null ? 2 : maxInFlightBatches;
+  }
+
+  /**
+   * @return the write concern, or null to use the write concern of the connection string
+   */
+  @Nullable
+  public WriteConcern getWriteConcern() {
+    String name = getWriteConcernName();
+    return name == null ? null : WriteConcern.valueOf(name);
+  }
+
+  /**
+   * @return the name of the write concern, as accepted by {@link WriteConcern#valueOf(String)}, or null to use the
+   *         write concern of the connection string
+   */
+  @Nullable
+  public String getWriteConcernName() {
+    if (Strings.isNullOrEmpty(writeConcern)) {
+      return null;
+    }
+    String name = writeConcern.toUpperCase();
+    if (WriteConcern.valueOf(name) == null) {
+      throw new IllegalArgumentException(String.format("Invalid write concern '%s'.", writeConcern));
+    }
+    return name;
+  }
+
+  public int getMaxRetries() {
+    return maxRetries == null ? 3 : maxRetries;
+  }
+
+  /**
+   * Validates the write options, and the key fields against the input schema if it is known.
+   */
+  public void validate(@Nullable Schema inputSchema) {
+    String mode = getWriteMode();
+    if (!MongoDBBulkWriter.INSERT_MODE.equals(mode) && !MongoDBBulkWriter.UPSERT_MODE.equals(mode) &&
+      !MongoDBBulkWriter.REPLACE_MODE.equals(mode)) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid write mode '%s'. It must be '%s', '%s' or '%s'.", writeMode, MongoDBBulkWriter.INSERT_MODE,
+        MongoDBBulkWriter.UPSERT_MODE, MongoDBBulkWriter.REPLACE_MODE));
+    }
+    if (!MongoDBBulkWriter.INSERT_MODE.equals(mode)) {
+      List<String> fields = getKeyFields();
+      if (fields.isEmpty()) {
+        throw new IllegalArgumentException(String.format("Key fields must be given in %s mode.", mode));
+      }
+      if (inputSchema != null) {
+        for (String field : fields) {
+          if (inputSchema.getField(field) == null) {
+            throw new IllegalArgumentException(
+              String.format("Key field '%s' is not a field of the input schema.", field));
+          }
+        }
+      }
+    }
+    if (!containsMacro("batchSize") && getBatchSize() < 1) {
+      throw new IllegalArgumentException(String.format("Invalid batch size %d. It must be at least 1.", batchSize));
+    }
+    if (!containsMacro("maxInFlightBatches") && getMaxInFlightBatches() < 1) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid maximum number of batches in flight %d. It must be at least 1.", maxInFlightBatches));
+    }
+    if (!containsMacro("maxRetries") && getMaxRetries() < 0) {
+      throw new IllegalArgumentException(
+        String.format("Invalid maximum number of retries %d. It must not be negative.", maxRetries));
+    }
+    if (!containsMacro("writeConcern")) {
+      getWriteConcern();
+    }
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -23,32 +23,30 @@ import co.cask.cdap.api.annotation.Plugin;
 import co.cask.cdap.api.data.batch.Output;
 import co.cask.cdap.api.data.batch.OutputFormatProvider;
 import co.cask.cdap.api.data.format.StructuredRecord;
-import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.PipelineConfigurer;
 import co.cask.cdap.etl.api.batch.BatchSink;
 import co.cask.cdap.etl.api.batch.BatchSinkContext;
 import co.cask.hydrator.common.ReferenceBatchSink;
-import co.cask.hydrator.common.ReferencePluginConfig;
-import com.mongodb.BasicDBObjectBuilder;
-import com.mongodb.hadoop.MongoOutputFormat;
-import com.mongodb.hadoop.io.BSONWritable;
-import org.apache.hadoop.conf.Configuration;
+import co.cask.hydrator.plugin.MongoDBBulkWriter;
+import co.cask.hydrator.plugin.MongoDBWriteConfig;
+import com.google.common.base.Joiner;
 import org.apache.hadoop.io.NullWritable;
+import org.bson.Document;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
 
 /**
  * A {@link BatchSink} that writes data to MongoDB.
  * This {@link MongoDBBatchSink} takes a {@link StructuredRecord} in,
- * converts it to {@link BSONWritable}, and writes it to MongoDB.
+ * converts it to a {@link Document}, and writes it to MongoDB with unordered bulk writes.
  */
 @Plugin(type = "batchsink")
 @Name("MongoDB")
-@Description("MongoDB Batch Sink converts a StructuredRecord to a BSONWritable and writes it to MongoDB.")
-public class MongoDBBatchSink extends ReferenceBatchSink<StructuredRecord, NullWritable, BSONWritable> {
+@Description("MongoDB Batch Sink converts a StructuredRecord to a BSON document and writes it to MongoDB.")
+public class MongoDBBatchSink extends ReferenceBatchSink<StructuredRecord, NullWritable, Document> {
 
   private final MongoDBSinkConfig config;
 
@@ -57,39 +55,44 @@ public class MongoDBBatchSink extends ReferenceBatchSink<StructuredRecord, NullW
     this.config = config;
   }
 
+  @Override
+  public void configurePipeline(PipelineConfigurer pipelineConfigurer) {
+    super.configurePipeline(pipelineConfigurer);
+    config.validate(pipelineConfigurer.getStageConfigurer().getInputSchema());
+  }
+
   @Override
   public void prepareRun(BatchSinkContext context) throws Exception {
-    Configuration conf = new Configuration();
-    String path = conf.get(
-      "mapreduce.task.tmp.dir",
-      conf.get(
-        "mapred.child.tmp",
-        conf.get("hadoop.tmp.dir", System.getProperty("java.io.tmpdir")))) + "/" + UUID.randomUUID().toString();
-    context.addOutput(Output.of(config.referenceName, new MongoDBOutputFormatProvider(config, path)));
+    config.validate(null);
+    context.addOutput(Output.of(config.referenceName, new MongoDBOutputFormatProvider(config)));
   }
 
   @Override
-  public void transform(StructuredRecord input, Emitter<KeyValue<NullWritable, BSONWritable>> emitter)
+  public void transform(StructuredRecord input, Emitter<KeyValue<NullWritable, Document>> emitter)
     throws Exception {
-    BasicDBObjectBuilder bsonBuilder = BasicDBObjectBuilder.start();
-    for (Schema.Field field : input.getSchema().getFields()) {
-      bsonBuilder.add(field.getName(), input.get(field.getName()));
-    }
-    emitter.emit(new KeyValue<>(NullWritable.get(), new BSONWritable(bsonBuilder.get())));
+    emitter.emit(new KeyValue<>(NullWritable.get(), MongoDBBulkWriter.toDocument(input)));
   }
 
   private static class MongoDBOutputFormatProvider implements OutputFormatProvider {
     private final Map<String, String> conf;
 
-    MongoDBOutputFormatProvider(MongoDBSinkConfig config, String path) {
+    MongoDBOutputFormatProvider(MongoDBSinkConfig config) {
       this.conf = new HashMap<>();
-      conf.put("mongo.output.uri", config.connectionString);
-      conf.put("mapreduce.task.tmp.dir", path);
+      conf.put(MongoDBBulkOutputFormat.URI, config.connectionString);
+      conf.put(MongoDBBulkOutputFormat.WRITE_MODE, config.getWriteMode());
+      conf.put(MongoDBBulkOutputFormat.KEY_FIELDS, Joiner.on(',').join(config.getKeyFields()));
+      conf.put(MongoDBBulkOutputFormat.BATCH_SIZE, String.valueOf(config.getBatchSize()));
+      conf.put(MongoDBBulkOutputFormat.MAX_IN_FLIGHT_BATCHES, String.valueOf(config.getMaxInFlightBatches()));
+      conf.put(MongoDBBulkOutputFormat.MAX_RETRIES, String.valueOf(config.getMaxRetries()));
+      String writeConcern = config.getWriteConcernName();
+      if (writeConcern != null) {
+        conf.put(MongoDBBulkOutputFormat.WRITE_CONCERN, writeConcern);
+      }
     }
 
     @Override
     public String getOutputFormatClassName() {
-      return MongoOutputFormat.class.getName();
+      return MongoDBBulkOutputFormat.class.getName();
     }
 
     @Override
@@ -101,7 +104,7 @@ public class MongoDBBatchSink extends ReferenceBatchSink<StructuredRecord, NullW
   /**
    * Config class for {@link MongoDBBatchSink}
    */
-  public static class MongoDBSinkConfig extends ReferencePluginConfig {
+  public static class MongoDBSinkConfig extends MongoDBWriteConfig {
     @Name(Properties.CONNECTION_STRING)
     @Description("MongoDB Connection String (see http://docs.mongodb.org/manual/reference/connection-string); " +
       "Example: 'mongodb://localhost:27017/analytics.users'.")
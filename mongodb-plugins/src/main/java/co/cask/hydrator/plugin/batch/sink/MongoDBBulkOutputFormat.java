@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.sink;
+
+import co.cask.hydrator.plugin.MongoDBBulkWriter;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import com.mongodb.WriteConcern;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.OutputFormat;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.NullOutputFormat;
+import org.bson.Document;
+
+import java.io.IOException;
+
+/**
+ * {@link OutputFormat} that writes documents to the MongoDB collection of a connection string with a
+ * {@link MongoDBBulkWriter}.
+ *
+ * Documents are written while the task runs, so the output is not committed or rolled back with the job. Task
+ * attempts that are retried write their documents again, which in insert mode only skips the documents written
+ * before if they have an _id or the collection has a unique index on their fields.
+ */
+public class MongoDBBulkOutputFormat extends OutputFormat<NullWritable, Document> {
+  public static final String URI = "mongo.bulk.output.uri";
+  public static final String WRITE_MODE = "mongo.bulk.output.write.mode";
+  public static final String KEY_FIELDS = "mongo.bulk.output.key.fields";
+  public static final String BATCH_SIZE = "mongo.bulk.output.batch.size";
+  public static final String MAX_IN_FLIGHT_BATCHES = "mongo.bulk.output.max.in.flight.batches";
+  public static final String WRITE_CONCERN = "mongo.bulk.output.write.concern";
+  public static final String MAX_RETRIES = "mongo.bulk.output.max.retries";
+
+  @Override
+  public RecordWriter<NullWritable, Document> getRecordWriter(TaskAttemptContext context) {
+    Configuration conf = context.getConfiguration();
+    MongoClientURI uri = new MongoClientURI(conf.get(URI));
+    String writeConcern = conf.get(WRITE_CONCERN);
+    MongoClient client = new MongoClient(uri);
+    MongoDBBulkWriter writer = new MongoDBBulkWriter(
+      client.getDatabase(uri.getDatabase()).getCollection(uri.getCollection()),
+      conf.get(WRITE_MODE, MongoDBBulkWriter.INSERT_MODE),
+      ImmutableList.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(conf.get(KEY_FIELDS, "_id"))),
+      conf.getInt(BATCH_SIZE, 1000), conf.getInt(MAX_IN_FLIGHT_BATCHES, 2),
+      writeConcern == null ? null : WriteConcern.valueOf(writeConcern), conf.getInt(MAX_RETRIES, 3));
+    return new BulkRecordWriter(client, writer);
+  }
+
+  @Override
+  public void checkOutputSpecs(JobContext context) {
+    String uri = context.getConfiguration().get(URI);
+    if (uri == null || new MongoClientURI(uri).getCollection() == null) {
+      throw new IllegalArgumentException(
+        String.format("The connection string '%s' must name a database and a collection.", uri));
+    }
+  }
+
+  @Override
+  public OutputCommitter getOutputCommitter(TaskAttemptContext context) {
+    return new NullOutputFormat<NullWritable, Document>().getOutputCommitter(context);
+  }
+
+  /**
+   * Writes documents with a {@link MongoDBBulkWriter}, and waits for all of them to be written on close.
+   */
+  private static final class BulkRecordWriter extends RecordWriter<NullWritable, Document> {
+    private final MongoClient client;
+    private final MongoDBBulkWriter writer;
+
+    private BulkRecordWriter(MongoClient client, MongoDBBulkWriter writer) {
+      this.client = client;
+      this.writer = writer;
+    }
+
+    @Override
+    public void write(NullWritable key, Document document) throws IOException, InterruptedException {
+      writer.write(document);
+    }
+
+    @Override
+    public void close(TaskAttemptContext context) throws IOException, InterruptedException {
+      try {
+        writer.flush();
+      } finally {
+        writer.close();
+        client.close();
+      }
+    }
+  }
+}
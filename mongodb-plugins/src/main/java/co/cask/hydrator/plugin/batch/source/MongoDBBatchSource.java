@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015-2016 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -34,12 +34,13 @@ import co.cask.hydrator.common.ReferencePluginConfig;
 import co.cask.hydrator.common.SourceInputFormatProvider;
 import co.cask.hydrator.plugin.BSONConverter;
 import com.google.common.base.Strings;
-import com.mongodb.hadoop.MongoInputFormat;
+import com.mongodb.BasicDBObject;
 import com.mongodb.hadoop.splitter.MongoSplitter;
 import com.mongodb.hadoop.splitter.StandaloneMongoSplitter;
 import com.mongodb.hadoop.util.MongoConfigUtil;
 import org.apache.hadoop.conf.Configuration;
-import org.bson.BSONObject;
+import org.apache.hadoop.io.NullWritable;
+import org.bson.RawBsonDocument;
 
 import java.io.IOException;
 import javax.annotation.Nullable;
@@ -47,12 +48,15 @@ import javax.annotation.Nullable;
 /**
  * A {@link BatchSource} that reads data from MongoDB and converts each document into 
  * a {@link StructuredRecord} with the help of the specified Schema.
+ *
+ * Unless input fields are given, only the fields of the schema are read from the collection. Unless a splitter of
+ * the connector is given, the collection is split in ranges of an indexed key by the {@link MongoDBKeySplitter}.
  */
 @Plugin(type = "batchsource")
 @Name("MongoDB")
 @Description("MongoDB Batch Source will read documents from MongoDB and convert each document " +
   "into a StructuredRecord with the help of the specified Schema. ")
-public class MongoDBBatchSource extends ReferenceBatchSource<Object, BSONObject, StructuredRecord> {
+public class MongoDBBatchSource extends ReferenceBatchSource<NullWritable, RawBsonDocument, StructuredRecord> {
 
   private final MongoDBConfig config;
   private BSONConverter bsonConverter;
@@ -65,6 +69,7 @@ public class MongoDBBatchSource extends ReferenceBatchSource<Object, BSONObject,
   @Override
   public void configurePipeline(PipelineConfigurer pipelineConfigurer) {
     super.configurePipeline(pipelineConfigurer);
+    config.validate();
     try {
       BSONConverter.validateSchema(Schema.parseJson(config.schema));
       pipelineConfigurer.getStageConfigurer().setOutputSchema(Schema.parseJson(config.schema));
@@ -75,10 +80,10 @@ public class MongoDBBatchSource extends ReferenceBatchSource<Object, BSONObject,
 
   @Override
   public void prepareRun(BatchSourceContext context) throws Exception {
+    config.validate();
     Configuration conf = new Configuration();
     conf.clear();
 
-    MongoConfigUtil.setInputFormat(conf, MongoInputFormat.class);
     MongoConfigUtil.setInputURI(conf, config.connectionString);
     if (!Strings.isNullOrEmpty(config.inputQuery)) {
       MongoConfigUtil.setQuery(conf, config.inputQuery);
@@ -88,6 +93,8 @@ public class MongoDBBatchSource extends ReferenceBatchSource<Object, BSONObject,
     }
     if (!Strings.isNullOrEmpty(config.inputFields)) {
       MongoConfigUtil.setFields(conf, config.inputFields);
+    } else {
+      MongoConfigUtil.setFields(conf, getProjection(Schema.parseJson(config.schema)).toString());
     }
     if (!Strings.isNullOrEmpty(config.splitterClass)) {
       String className = String.format("%s.%s", StandaloneMongoSplitter.class.getPackage().getName(),
@@ -95,10 +102,15 @@ public class MongoDBBatchSource extends ReferenceBatchSource<Object, BSONObject,
       Class<? extends MongoSplitter> klass = getClass().getClassLoader().loadClass(
         className).asSubclass(MongoSplitter.class);
       MongoConfigUtil.setSplitterClass(conf, klass);
+    } else {
+      MongoConfigUtil.setSplitterClass(conf, MongoDBKeySplitter.class);
+      conf.set(MongoDBKeySplitter.SPLIT_KEY, config.getSplitKey());
+      if (config.numSplits != null) {
+        conf.setInt(MongoDBKeySplitter.NUM_SPLITS, config.numSplits);
+      }
     }
 
-    context.setInput(Input.of(config.referenceName,
-                              new SourceInputFormatProvider(MongoConfigUtil.getInputFormat(conf), conf)));
+    context.setInput(Input.of(config.referenceName, new SourceInputFormatProvider(MongoDBInputFormat.class, conf)));
   }
 
   @Override
@@ -108,9 +120,23 @@ public class MongoDBBatchSource extends ReferenceBatchSource<Object, BSONObject,
   }
 
   @Override
-  public void transform(KeyValue<Object, BSONObject> input, Emitter<StructuredRecord> emitter) throws Exception {
-    BSONObject bsonObject = input.getValue();
-    emitter.emit(bsonConverter.transform(bsonObject));
+  public void transform(KeyValue<NullWritable, RawBsonDocument> input,
+                        Emitter<StructuredRecord> emitter) throws Exception {
+    emitter.emit(bsonConverter.transform(input.getValue()));
+  }
+
+  /**
+   * Returns a projection of the fields of the schema. The _id field is excluded unless it is in the schema.
+   */
+  private static BasicDBObject getProjection(Schema schema) {
+    BasicDBObject projection = new BasicDBObject();
+    for (Schema.Field field : schema.getFields()) {
+      projection.put(field.getName(), 1);
+    }
+    if (!projection.containsField("_id")) {
+      projection.put("_id", 0);
+    }
+    return projection;
   }
 
   /**
@@ -126,7 +152,8 @@ public class MongoDBBatchSource extends ReferenceBatchSource<Object, BSONObject,
 
     @Name(Properties.AUTH_CONNECTION_STRING)
     @Nullable
-    @Description("Auxiliary MongoDB connection string to authenticate against when constructing splits.")
+    @Description("Auxiliary MongoDB connection string to authenticate against when constructing splits and " +
+      "reading documents.")
     @Macro
     private String authConnectionString;
 
@@ -158,17 +185,31 @@ public class MongoDBBatchSource extends ReferenceBatchSource<Object, BSONObject,
     @Name(Properties.INPUT_FIELDS)
     @Nullable
     @Description("A projection document limiting the fields that appear in each document. " +
-      "If no projection document is provided, all fields will be read.")
+      "If no projection document is provided, only the fields of the schema will be read.")
     @Macro
     private String inputFields;
 
     @Name(Properties.SPLITTER_CLASS)
     @Nullable
-    @Description("The name of the Splitter class to use. If left empty, the MongoDB Hadoop Connector will attempt " +
-      "to make a best guess as to what Splitter to use.")
+    @Description("The name of the Splitter class of the MongoDB Hadoop Connector to use. If left empty, the " +
+      "collection is split in ranges of the split key that hold about the same number of documents.")
     @Macro
     private String splitterClass;
 
+    @Name(Properties.SPLIT_KEY)
+    @Nullable
+    @Description("The top-level field to split the collection on when no splitter class is given. The field must " +
+      "have an ascending index. Defaults to '_id'.")
+    @Macro
+    private String splitKey;
+
+    @Name(Properties.NUM_SPLITS)
+    @Nullable
+    @Description("The number of splits to read the collection with when no splitter class is given. If left empty, " +
+      "the number of splits is derived from the size of the collection, with one split for every 8 MB.")
+    @Macro
+    private Integer numSplits;
+
     public MongoDBConfig(String referenceName, String connectionString, String authConnectionString,
                          String schema, String inputQuery, String inputFields, String splitterClass) {
       super(referenceName);
@@ -179,6 +220,21 @@ public class MongoDBBatchSource extends ReferenceBatchSource<Object, BSONObject,
       this.inputFields = inputFields;
       this.splitterClass = splitterClass;
     }
+
+    public String getSplitKey() {
+      return Strings.isNullOrEmpty(splitKey) ? MongoDBKeySplitter.DEFAULT_SPLIT_KEY : splitKey;
+    }
+
+    public void validate() {
+      if (!containsMacro(Properties.SPLIT_KEY) && getSplitKey().contains(".")) {
+        throw new IllegalArgumentException(
+          String.format("Invalid split key '%s'. It must be a top-level field.", splitKey));
+      }
+      if (!containsMacro(Properties.NUM_SPLITS) && numSplits != null && numSplits < 1) {
+        throw new IllegalArgumentException(
+          String.format("Invalid number of splits %d. It must be at least 1.", numSplits));
+      }
+    }
   }
 
   /**
@@ -191,5 +247,7 @@ public class MongoDBBatchSource extends ReferenceBatchSource<Object, BSONObject,
     public static final String INPUT_QUERY = "inputQuery";
     public static final String INPUT_FIELDS = "inputFields";
     public static final String SPLITTER_CLASS = "splitterClass";
+    public static final String SPLIT_KEY = "splitKey";
+    public static final String NUM_SPLITS = "numSplits";
   }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.source;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.hadoop.MongoInputFormat;
+import com.mongodb.hadoop.input.MongoInputSplit;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.InputFormat;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.RawBsonDocumentCodec;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.conversions.Bson;
+
+import java.io.IOException;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * {@link InputFormat} that reads the splits of the MongoDB Hadoop connector as {@link RawBsonDocument}s, which keep
+ * each document in the BSON bytes it was received in instead of decoding it into a map.
+ *
+ * Splits are calculated by the splitter configured for the connector.
+ */
+public class MongoDBInputFormat extends InputFormat<NullWritable, RawBsonDocument> {
+
+  @Override
+  public List<InputSplit> getSplits(JobContext context) throws IOException, InterruptedException {
+    return new MongoInputFormat().getSplits(context);
+  }
+
+  @Override
+  public RecordReader<NullWritable, RawBsonDocument> createRecordReader(InputSplit split,
+                                                                        TaskAttemptContext context) {
+    return new RawDocumentReader();
+  }
+
+  /**
+   * Reads the documents of a {@link MongoInputSplit} with a cursor over its query, projection and key range.
+   */
+  private static final class RawDocumentReader extends RecordReader<NullWritable, RawBsonDocument> {
+    private MongoClient client;
+    private MongoCursor<RawBsonDocument> cursor;
+    private RawBsonDocument current;
+    private boolean done;
+
+    @Override
+    public void initialize(InputSplit inputSplit, TaskAttemptContext context) {
+      MongoInputSplit split = (MongoInputSplit) inputSplit;
+      MongoClientURI uri = split.getInputURI();
+      MongoClientURI authURI = split.getAuthURI();
+      // like the connector, authenticate with the auth URI and read the database and collection of the input URI
+      client = new MongoClient(authURI == null ? uri : authURI);
+      MongoCollection<RawBsonDocument> collection = client.getDatabase(uri.getDatabase())
+        .getCollection(uri.getCollection(), RawBsonDocument.class)
+        .withCodecRegistry(CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(new RawBsonDocumentCodec()),
+                                                          MongoClient.getDefaultCodecRegistry()));
+
+      FindIterable<RawBsonDocument> find = collection.find(toBson(split.getQuery()))
+        .noCursorTimeout(split.getNoTimeout());
+      if (!isEmpty(split.getFields())) {
+        find.projection(toBson(split.getFields()));
+      }
+      if (!isEmpty(split.getSort())) {
+        find.sort(toBson(split.getSort()));
+      }
+      BasicDBObject modifiers = new BasicDBObject();
+      if (!isEmpty(split.getMin())) {
+        modifiers.put("$min", split.getMin());
+      }
+      if (!isEmpty(split.getMax())) {
+        modifiers.put("$max", split.getMax());
+      }
+      if (!modifiers.isEmpty()) {
+        // $min and $max are bounds on the index of the split key
+        modifiers.put("$hint", new BasicDBObject(split.getKeyField(), 1));
+        find.modifiers(modifiers);
+      }
+      cursor = find.iterator();
+    }
+
+    @Override
+    public boolean nextKeyValue() {
+      if (!cursor.hasNext()) {
+        done = true;
+        return false;
+      }
+      current = cursor.next();
+      return true;
+    }
+
+    @Override
+    public NullWritable getCurrentKey() {
+      return NullWritable.get();
+    }
+
+    @Override
+    public RawBsonDocument getCurrentValue() {
+      return current;
+    }
+
+    @Override
+    public float getProgress() {
+      // the number of documents in the range is not known
+      return done ? 1f : 0f;
+    }
+
+    @Override
+    public void close() {
+      try {
+        if (cursor != null) {
+          cursor.close();
+        }
+      } finally {
+        if (client != null) {
+          client.close();
+        }
+      }
+    }
+
+    private static boolean isEmpty(@Nullable DBObject object) {
+      return object == null || object.keySet().isEmpty();
+    }
+
+    private static Bson toBson(@Nullable DBObject object) {
+      if (object == null) {
+        return new BasicDBObject();
+      }
+      return object instanceof Bson ? (Bson) object : new BasicDBObject(object.toMap());
+    }
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2017 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.hydrator.plugin.batch.source;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.hadoop.input.MongoInputSplit;
+import com.mongodb.hadoop.splitter.MongoSplitter;
+import com.mongodb.hadoop.splitter.SplitFailedException;
+import com.mongodb.hadoop.util.MongoConfigUtil;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * {@link MongoSplitter} that divides a collection in ranges of an indexed key of about the same number of documents.
+ *
+ * The number of splits is either configured, or derived from the size of the collection and the split size of the
+ * connector. The boundaries of the ranges are found with the {@code splitVector} command, which walks the index of
+ * the key. If the command is not available, for example through a mongos router or without the cluster privileges
+ * it needs, the boundaries are taken from a {@code $sample} of the documents that match the input query instead.
+ * Each split reads its range with {@code $min} and {@code $max} on the index, so that documents whose keys have
+ * different BSON types are all read exactly once.
+ */
+public class MongoDBKeySplitter extends MongoSplitter {
+  public static final String SPLIT_KEY = "mongo.key.splitter.key";
+  public static final String NUM_SPLITS = "mongo.key.splitter.num.splits";
+  public static final String DEFAULT_SPLIT_KEY = "_id";
+
+  private static final Logger LOG = LoggerFactory.getLogger(MongoDBKeySplitter.class);
+  // number of sampled keys for each split, to even out the ranges found with $sample
+  private static final int SAMPLES_PER_SPLIT = 10;
+
+  public MongoDBKeySplitter() {
+  }
+
+  public MongoDBKeySplitter(Configuration conf) {
+    super(conf);
+  }
+
+  @Override
+  public List<InputSplit> calculateSplits() throws SplitFailedException {
+    Configuration conf = getConfiguration();
+    MongoClientURI inputURI = MongoConfigUtil.getInputURI(conf);
+    MongoClientURI authURI = MongoConfigUtil.getAuthURI(conf);
+    String key = conf.get(SPLIT_KEY, DEFAULT_SPLIT_KEY);
+
+    MongoClient client = new MongoClient(authURI == null ? inputURI : authURI);
+    try {
+      MongoDatabase database = client.getDatabase(inputURI.getDatabase());
+      Document stats = database.runCommand(new Document("collStats", inputURI.getCollection()));
+      long size = stats.get("size") == null ? 0L : ((Number) stats.get("size")).longValue();
+      int numSplits = conf.getInt(NUM_SPLITS, 0);
+      if (numSplits <= 0) {
+        long splitSize = MongoConfigUtil.getSplitSize(conf) * 1024L * 1024L;
+        numSplits = (int) Math.max(1L, (size + splitSize - 1) / splitSize);
+      }
+
+      List<Object> boundaries = new ArrayList<>();
+      if (numSplits > 1) {
+        try {
+          boundaries = getIndexBoundaries(database, inputURI, key, size, numSplits);
+        } catch (MongoException e) {
+          LOG.info("Could not find split keys with splitVector on '{}', sampling the collection instead: {}",
+                   key, e.getMessage());
+          boundaries = getSampleBoundaries(database, inputURI, key, MongoConfigUtil.getQuery(conf), numSplits);
+        }
+      }
+
+      List<InputSplit> splits = new ArrayList<>(boundaries.size() + 1);
+      Object lower = null;
+      for (Object upper : boundaries) {
+        splits.add(createSplit(conf, key, lower, upper));
+        lower = upper;
+      }
+      splits.add(createSplit(conf, key, lower, null));
+      LOG.debug("Created {} splits on key '{}' of {}.{}", splits.size(), key,
+                inputURI.getDatabase(), inputURI.getCollection());
+      return splits;
+    } catch (MongoException e) {
+      throw new SplitFailedException("Unable to calculate splits on key " + key, e);
+    } finally {
+      client.close();
+    }
+  }
+
+  private List<Object> getIndexBoundaries(MongoDatabase database, MongoClientURI uri, String key,
+                                          long size, int numSplits) {
+    // splitVector splits chunks when they reach half of the maximum size
+    Document command = new Document("splitVector", uri.getDatabase() + "." + uri.getCollection())
+      .append("keyPattern", new Document(key, 1))
+      .append("maxChunkSizeBytes", Math.max(1L, 2 * size / numSplits))
+      .append("force", false);
+    Document result = database.runCommand(command);
+    List<Object> boundaries = new ArrayList<>();
+    for (Object splitKey : (List<?>) result.get("splitKeys")) {
+      addBoundary(boundaries, ((Document) splitKey).get(key));
+    }
+    return boundaries;
+  }
+
+  private List<Object> getSampleBoundaries(MongoDatabase database, MongoClientURI uri, String key,
+                                           @Nullable DBObject query, int numSplits) {
+    List<Bson> pipeline = new ArrayList<>();
+    if (query != null && !query.keySet().isEmpty()) {
+      pipeline.add(new BasicDBObject("$match", query));
+    }
+    pipeline.add(new Document("$sample", new Document("size", numSplits * SAMPLES_PER_SPLIT)));
+    pipeline.add(new Document("$project", new Document(key, 1)));
+    pipeline.add(new Document("$sort", new Document(key, 1)));
+
+    List<Object> boundaries = new ArrayList<>();
+    int sample = 0;
+    for (Document document : database.getCollection(uri.getCollection()).aggregate(pipeline)) {
+      sample++;
+      if (sample % SAMPLES_PER_SPLIT == 0 && boundaries.size() < numSplits - 1) {
+        addBoundary(boundaries, document.get(key));
+      }
+    }
+    return boundaries;
+  }
+
+  private static void addBoundary(List<Object> boundaries, @Nullable Object value) {
+    // documents without the key sort first, so they are read by the first split
+    if (value != null && (boundaries.isEmpty() || !Objects.equals(boundaries.get(boundaries.size() - 1), value))) {
+      boundaries.add(value);
+    }
+  }
+
+  private static MongoInputSplit createSplit(Configuration conf, String key,
+                                             @Nullable Object lower, @Nullable Object upper) {
+    MongoInputSplit split = new MongoInputSplit();
+    split.setInputURI(MongoConfigUtil.getInputURI(conf));
+    split.setAuthURI(MongoConfigUtil.getAuthURI(conf));
+    split.setNoTimeout(MongoConfigUtil.isNoTimeout(conf));
+    split.setQuery(MongoConfigUtil.getQuery(conf));
+    split.setFields(MongoConfigUtil.getFields(conf));
+    split.setSort(new BasicDBObject(key, 1));
+    split.setKeyField(key);
+    if (lower != null) {
+      split.setMin(new BasicDBObject(key, lower));
+    }
+    if (upper != null) {
+      split.setMax(new BasicDBObject(key, upper));
+    }
+    return split;
+  }
+}
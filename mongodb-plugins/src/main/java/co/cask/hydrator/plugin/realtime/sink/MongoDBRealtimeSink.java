@@ -1,5 +1,5 @@
 /*
- * Copyright © 2015 Cask Data, Inc.
+ * Copyright © 2015-2017 Cask Data, Inc.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not
  * use this file except in compliance with the License. You may obtain a copy of
@@ -20,22 +20,17 @@ import co.cask.cdap.api.annotation.Description;
 import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.annotation.Plugin;
 import co.cask.cdap.api.data.format.StructuredRecord;
-import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.etl.api.PipelineConfigurer;
 import co.cask.cdap.etl.api.realtime.DataWriter;
 import co.cask.cdap.etl.api.realtime.RealtimeContext;
-import co.cask.hydrator.common.ReferencePluginConfig;
 import co.cask.hydrator.common.ReferenceRealtimeSink;
+import co.cask.hydrator.plugin.MongoDBBulkWriter;
+import co.cask.hydrator.plugin.MongoDBWriteConfig;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientURI;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoDatabase;
-import org.bson.Document;
-
-import java.util.ArrayList;
-import java.util.List;
 
 /**
- * MongoDB Realtime Sink.
+ * MongoDB Realtime Sink, which writes each batch of records with unordered bulk writes.
  */
 @Plugin(type = "realtimesink")
 @Name("MongoDB")
@@ -44,42 +39,54 @@ import java.util.List;
 public class MongoDBRealtimeSink extends ReferenceRealtimeSink<StructuredRecord> {
   private final MongoDBConfig config;
   private MongoClient mongoClient;
-  private MongoDatabase mongoDatabase;
+  private MongoDBBulkWriter writer;
 
   public MongoDBRealtimeSink(MongoDBConfig config) {
     super(config);
     this.config = config;
   }
 
+  @Override
+  public void configurePipeline(PipelineConfigurer pipelineConfigurer) {
+    super.configurePipeline(pipelineConfigurer);
+    config.validate(pipelineConfigurer.getStageConfigurer().getInputSchema());
+  }
+
   @Override
   public void initialize(RealtimeContext context) throws Exception {
     super.initialize(context);
     MongoClientURI clientURI = new MongoClientURI(config.connectionString);
     mongoClient = new MongoClient(clientURI);
-    mongoDatabase = mongoClient.getDatabase(config.dbName);
+    writer = new MongoDBBulkWriter(mongoClient.getDatabase(config.dbName).getCollection(config.collectionName),
+                                   config);
   }
 
   @Override
   public int write(Iterable<StructuredRecord> iterable, DataWriter dataWriter) throws Exception {
     int recordCount = 0;
-    MongoCollection<Document> collection = mongoDatabase.getCollection(config.collectionName);
-    List<Document> documentList = new ArrayList<>();
     for (StructuredRecord record : iterable) {
-      Document document = new Document();
-      for (Schema.Field field : record.getSchema().getFields()) {
-        document.append(field.getName(), record.get(field.getName()));
-      }
-      documentList.add(document);
+      writer.write(MongoDBBulkWriter.toDocument(record));
       recordCount++;
     }
-    collection.insertMany(documentList);
+    writer.flush();
     return recordCount;
   }
 
+  @Override
+  public void destroy() {
+    super.destroy();
+    if (writer != null) {
+      writer.close();
+    }
+    if (mongoClient != null) {
+      mongoClient.close();
+    }
+  }
+
   /**
    * Config class for {@link MongoDBRealtimeSink}.
    */
-  public static class MongoDBConfig extends ReferencePluginConfig {
+  public static class MongoDBConfig extends MongoDBWriteConfig {
     @Name(Properties.CONNECTION_STRING)
     @Description("MongoDB Connection String (see http://docs.mongodb.org/manual/reference/connection-string); " +
       "Example: 'mongodb://localhost:27017/analytics.users'.")
@@ -66,7 +66,11 @@ public class HTTPPollerSource extends StreamingSource<StructuredRecord> {
               while (!isStopped()) {
 
                 try {
-                  store(httpRequestor.get());
+                  StructuredRecord record = httpRequestor.get();
+                  // null means the content did not change since the last poll
+                  if (record != null) {
+                    store(record);
+                  }
                 } catch (Exception e) {
                   LOG.error("Error getting content from {}.", conf.getUrl(), e);
                 }
@@ -22,17 +22,20 @@ import co.cask.cdap.api.annotation.Plugin;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.plugin.PluginConfig;
+import co.cask.cdap.etl.api.CacheConfig;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.Lookup;
 import co.cask.cdap.etl.api.LookupTableConfig;
 import co.cask.cdap.etl.api.PipelineConfigurer;
 import co.cask.cdap.etl.api.Transform;
 import co.cask.cdap.etl.api.TransformContext;
+import co.cask.hydrator.common.lookup.CachingLookup;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Transforms records using custom mapping provided by the config.
@@ -73,9 +76,63 @@ public class ValueMapper extends Transform<StructuredRecord, StructuredRecord> {
             "For example: lang_code:English,country_code:Britain")
     private final String defaults;
 
+    @Nullable
+    @Name("cacheSize")
+    @Description("Maximum number of values to cache for each mapping table. Caching avoids reading the mapping " +
+      "table for every record, but values changed in the table are only seen once the cached value expires. " +
+      "Defaults to 0, which disables caching.")
+    private final Integer cacheSize;
+
+    @Nullable
+    @Name("cacheExpirySeconds")
+    @Description("Number of seconds after which a cached value expires. Set to 0 to keep cached values for the " +
+      "lifetime of the stage, which is meant for small mapping tables such as code tables that fit into the cache. " +
+      "Defaults to 3600.")
+    private final Integer cacheExpirySeconds;
+
+    @Nullable
+    @Name("cacheRefreshSeconds")
+    @Description("Number of seconds after which a cached value that is still used is reloaded the next time it is " +
+      "read, instead of waiting for it to expire. Defaults to 0, which disables refreshing.")
+    private final Integer cacheRefreshSeconds;
+
     public Config(String mapping, String defaults) {
+      this(mapping, defaults, null, null, null);
+    }
+
+    public Config(String mapping, String defaults, @Nullable Integer cacheSize, @Nullable Integer cacheExpirySeconds,
+                  @Nullable Integer cacheRefreshSeconds) {
       this.mapping = mapping;
       this.defaults = defaults;
+      this.cacheSize = cacheSize;
+      this.cacheExpirySeconds = cacheExpirySeconds;
+      this.cacheRefreshSeconds = cacheRefreshSeconds;
+    }
+
+    public int getCacheSize() {
+      return cacheSize == null ? 0 : cacheSize;
+    }
+
+    public int getCacheExpirySeconds() {
+      return cacheExpirySeconds == null ? 3600 : cacheExpirySeconds;
+    }
+
+    public int getCacheRefreshSeconds() {
+      return cacheRefreshSeconds == null ? 0 : cacheRefreshSeconds;
+    }
+
+    private void validate() {
+      if (getCacheSize() < 0) {
+        throw new IllegalArgumentException("Invalid cache size " + getCacheSize() + ". It must not be negative.");
+      }
+      if (getCacheExpirySeconds() < 0) {
+        throw new IllegalArgumentException("Invalid cache expiry " + getCacheExpirySeconds() +
+                                             ". It must not be negative.");
+      }
+      if (getCacheRefreshSeconds() < 0) {
+        throw new IllegalArgumentException("Invalid cache refresh interval " + getCacheRefreshSeconds() +
+                                             ". It must not be negative.");
+      }
     }
 
     /**
@@ -170,6 +227,14 @@ public class ValueMapper extends Transform<StructuredRecord, StructuredRecord> {
       if (!lookupTableCache.containsKey(lookupTableName)) {
         LookupTableConfig tableConfig = new LookupTableConfig(LookupTableConfig.TableType.DATASET);
         Lookup<String> lookupTable = context.provide(lookupTableName, tableConfig.getDatasetProperties());
+        if (config.getCacheSize() > 0) {
+          // an expiry of 0 keeps the values for the lifetime of the stage
+          int expirySeconds = config.getCacheExpirySeconds() == 0 ? Integer.MAX_VALUE : config.getCacheExpirySeconds();
+          CacheConfig cacheConfig = new CacheConfig(expirySeconds, config.getCacheSize());
+          lookupTable = new CachingLookup<>(lookupTable, cacheConfig, config.getCacheRefreshSeconds(), true,
+                                            CachingLookup.DEFAULT_BATCH_SIZE, context.getMetrics(),
+                                            lookupTableName);
+        }
         lookupTableCache.put(lookupTableName, lookupTable);
       }
     }
@@ -221,6 +286,7 @@ public class ValueMapper extends Transform<StructuredRecord, StructuredRecord> {
   @Override
   public void configurePipeline(PipelineConfigurer pipelineConfigurer) throws IllegalArgumentException {
     super.configurePipeline(pipelineConfigurer);
+    config.validate();
     Schema outputSchema = null;
     Schema inputSchema = pipelineConfigurer.getStageConfigurer().getInputSchema();
     if (inputSchema != null) {